@@ -22,6 +22,7 @@ import io.siddhi.annotation.Example;
 import io.siddhi.annotation.Extension;
 import io.siddhi.annotation.Parameter;
 import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
 import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.config.SiddhiQueryContext;
 import io.siddhi.core.event.ComplexEventChunk;
@@ -36,12 +37,18 @@ import io.siddhi.core.executor.ExpressionExecutor;
 import io.siddhi.core.executor.VariableExpressionExecutor;
 import io.siddhi.core.query.processor.ProcessingMode;
 import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
 import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
 import io.siddhi.core.util.config.ConfigReader;
 import io.siddhi.core.util.snapshot.state.State;
 import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
 import io.siddhi.query.api.definition.AbstractDefinition;
 import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.IdleStateSpiller;
+import org.wso2.extension.siddhi.execution.approximate.util.MemoryBudget;
+import org.wso2.extension.siddhi.execution.approximate.util.PeriodicEmitter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -57,7 +64,12 @@ import java.util.Map;
         description = "This extension applies the `count-min sketch` algorithm to a Siddhi window. The algorithm" +
                 " calculates the approximate count i.e., the frequency of events that arrive, based on " +
                 " the given values for the 'relative error' and 'confidence value'." +
-                " Note that, using this extension without a window may cause an 'out of memory' error.",
+                " Note that, using this extension without a window may cause an 'out of memory' error." +
+                " Alternatively, when a 'half life' is given, the counts are exponentially decayed so that" +
+                " the recent events weigh more, and no window is needed." +
+                " When an 'emit interval' is given, a summary event carrying the up to date count of the latest" +
+                " event is also emitted once per interval, and the input events can be suppressed so that only" +
+                " the summary events are emitted.",
         parameters = {
                 @Parameter(
                         name = "value",
@@ -91,26 +103,80 @@ import java.util.Map;
                         type = {DataType.DOUBLE, DataType.FLOAT},
                         optional = true,
                         defaultValue = "0.99"
+                ),
+                @Parameter(
+                        name = "half.life",
+                        description = "The time in milliseconds after which the weight of an event is halved. " +
+                                "When this is specified, the counts are exponentially decayed counts of all the " +
+                                "events which arrived so far, hence the extension does not need a window. " +
+                                "Expired events do not reduce the decayed counts. Specify `0` to keep the counts " +
+                                "undecayed when the parameters after this are given.",
+                        type = {DataType.INT, DataType.LONG, DataType.TIME},
+                        optional = true,
+                        defaultValue = "The counts are not decayed"
+                ),
+                @Parameter(
+                        name = "emit.interval",
+                        description = "The time in milliseconds between two summary events. Each summary event " +
+                                "is a copy of the latest event, carrying its count at the time of the emission, " +
+                                "hence the expired events are taken into account even when no new event arrives.",
+                        type = {DataType.INT, DataType.LONG, DataType.TIME},
+                        optional = true,
+                        defaultValue = "No summary events are emitted"
+                ),
+                @Parameter(
+                        name = "suppress.input",
+                        description = "If this is set to true, the input events are not emitted, and only the " +
+                                "summary events are emitted.",
+                        type = {DataType.BOOL},
+                        optional = true,
+                        defaultValue = "false"
                 )
         },
         returnAttributes = {
                 @ReturnAttribute(
                         name = "count",
                         description = "This represents the approximate count per attribute based on the latest " +
-                                "event.",
-                        type = {DataType.LONG}
+                                "event. This is a decayed count of type DOUBLE when the 'half.life' is specified.",
+                        type = {DataType.LONG, DataType.DOUBLE}
                 ),
                 @ReturnAttribute(
                         name = "countLowerBound",
                         description = "The lowest value in the range within which the most accurate count for the " +
                                 "attribute is included. This count range is based on the latest event.",
-                        type = {DataType.LONG}
+                        type = {DataType.LONG, DataType.DOUBLE}
                 ),
                 @ReturnAttribute(
                         name = "countUpperBound",
                         description = "The highest value in the range within which the most accurate count for the " +
                                 "attribute is included. This count range is based on the latest event.",
-                        type = {DataType.LONG}
+                        type = {DataType.LONG, DataType.DOUBLE}
+                )
+        },
+        systemParameter = {
+                @SystemParameter(
+                        name = IdleStateSpiller.IDLE_STATE_TTL,
+                        description = "The time in milliseconds after which the count-min sketch of a partition key " +
+                                "which has not received any events is written to a spill file and removed from " +
+                                "the heap. It is read back from the file when the next event of the partition key " +
+                                "arrives.",
+                        defaultValue = "0",
+                        possibleParameters = {"0 (idle states are kept in the heap)", "Any positive long value"}
+                ),
+                @SystemParameter(
+                        name = IdleStateSpiller.SPILL_DIRECTORY,
+                        description = "The directory into which the idle states are spilled.",
+                        defaultValue = "The temporary directory of the JVM",
+                        possibleParameters = "Any writable directory"
+                ),
+                @SystemParameter(
+                        name = MemoryBudget.MEMORY_BUDGET,
+                        description = "The maximum size in bytes of the count-min sketch of each partition key. " +
+                                "When the count-min sketch of the given relative error does not fit in it, the " +
+                                "lowest relative error which fits is used instead, and the resulting error bounds " +
+                                "are logged when the query is created.",
+                        defaultValue = "0",
+                        possibleParameters = {"0 (the memory is not bounded)", "Any positive long value"}
                 )
         },
         examples = {
@@ -138,12 +204,37 @@ import java.util.Map;
                                 "guaranteed to deviate from the actual event count within the window by only 5%." +
                                 "The output consists of the approximate count of the latest events, " +
                                 "lower bound and upper bound of the approximate result."
+                ),
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#approximate:count(ip, 0.01, 0.99, 10 min)\n" +
+                                "select ip, count\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the exponentially decayed count of requests from " +
+                                "different IP addresses without a window, where a request made 10 minutes ago " +
+                                "weighs half as much as a request made now. The output consists of the " +
+                                "approximate decayed count of the IP address of the latest event."
+                ),
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#window.time(1 min)#approximate:count(ip, 0.01, 0.99, 0, 10 sec, " +
+                                "true)\n" +
+                                "select ip, count, countLowerBound, countUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query emits, once per 10 seconds, the count of requests from the IP " +
+                                "address of the latest request during the last minute, together with its bounds. " +
+                                "The requests themselves are not emitted."
                 )
         }
 )
-public class CountExtension extends StreamProcessor<CountExtension.ExtensionState> {
+public class CountExtension extends StreamProcessor<CountExtension.ExtensionState> implements SchedulingProcessor {
     private ExpressionExecutor valueExecutor;
+    private IdleStateSpiller idleStateSpiller;
+    private PeriodicEmitter periodicEmitter;
+    private Scheduler scheduler;
+    private TimestampGenerator timestampGenerator;
     private  List<Attribute> attributeList = new ArrayList<>(3);
+    private boolean decayed;
 
     @Override
     protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
@@ -158,10 +249,15 @@ public class CountExtension extends StreamProcessor<CountExtension.ExtensionStat
 
         double relativeError = defaultRelativeError;
         double confidence = defaultConfidence;
+        long halfLife = 0;
+        long emitInterval = 0;
+        boolean suppressInput = false;
 
 //       validate number of attributes
-        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 3)) {
-            throw new SiddhiAppCreationException("1 or 3 attributes are expected but " +
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 3 ||
+                attributeExpressionExecutors.length == 4 || attributeExpressionExecutors.length == 5 ||
+                attributeExpressionExecutors.length == 6)) {
+            throw new SiddhiAppCreationException("1, 3, 4, 5 or 6 attributes are expected but " +
                     attributeExpressionExecutors.length + " attributes are found inside the count function");
         }
 
@@ -173,6 +269,9 @@ public class CountExtension extends StreamProcessor<CountExtension.ExtensionStat
         }
         valueExecutor = attributeExpressionExecutors[0];
 
+        idleStateSpiller = IdleStateSpiller.create(configReader, "count");
+        timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+
         //expressionExecutors[1] --> relativeError
         if (attributeExpressionExecutors.length > 1) {
             if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
@@ -217,23 +316,136 @@ public class CountExtension extends StreamProcessor<CountExtension.ExtensionStat
             }
         }
 
-        CountMinSketch<Object> countMinSketch = new CountMinSketch<>(relativeError, confidence);
+        //expressionExecutors[3] --> halfLife
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside count function - " +
+                        "'half.life' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.LONG) {
+                halfLife = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3]).getValue())
+                        .longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside count function - " +
+                        "'half.life' should be of type Integer, Long or Time but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if (halfLife < 0) {
+                throw new SiddhiAppCreationException("The 4th parameter inside count function - " +
+                        "'half.life' must be a non negative value, where 0 keeps the counts undecayed, but found " +
+                        halfLife);
+            }
+        }
+
+        //expressionExecutors[4] --> emitInterval
+        if (attributeExpressionExecutors.length > 4) {
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside count function - " +
+                        "'emit.interval' has to be a constant but found " +
+                        this.attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.LONG) {
+                emitInterval = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4]).getValue())
+                        .longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside count function - " +
+                        "'emit.interval' should be of type Integer, Long or Time but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if (emitInterval <= 0) {
+                throw new SiddhiAppCreationException("The 5th parameter inside count function - " +
+                        "'emit.interval' must be a positive value but found " + emitInterval);
+            }
+        }
+
+        //expressionExecutors[5] --> suppressInput
+        if (attributeExpressionExecutors.length > 5) {
+            if (!(attributeExpressionExecutors[5] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 6th parameter inside count function - " +
+                        "'suppress.input' has to be a constant but found " +
+                        this.attributeExpressionExecutors[5].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[5].getReturnType() != Attribute.Type.BOOL) {
+                throw new SiddhiAppCreationException("The 6th parameter inside count function - " +
+                        "'suppress.input' should be of type Bool but found " +
+                        attributeExpressionExecutors[5].getReturnType());
+            }
+            suppressInput = (Boolean) ((ConstantExpressionExecutor) attributeExpressionExecutors[5]).getValue();
+        }
+
+        if (emitInterval > 0) {
+            periodicEmitter = new PeriodicEmitter(emitInterval, suppressInput, this, siddhiQueryContext);
+        }
+
+        relativeError = MemoryBudget.fitCountMinSketch(configReader, "count", relativeError, confidence);
+
+        decayed = halfLife > 0;
+        Attribute.Type countType = decayed ? Attribute.Type.DOUBLE : Attribute.Type.LONG;
+        attributeList.add(new Attribute("count", countType));
+        attributeList.add(new Attribute("countLowerBound", countType));
+        attributeList.add(new Attribute("countUpperBound", countType));
 
-        attributeList.add(new Attribute("count", Attribute.Type.LONG));
-        attributeList.add(new Attribute("countLowerBound", Attribute.Type.LONG));
-        attributeList.add(new Attribute("countUpperBound", Attribute.Type.LONG));
-        return () -> new ExtensionState(countMinSketch);
+        if (decayed) {
+            final double decayedRelativeError = relativeError;
+            final double decayedConfidence = confidence;
+            final long decayedHalfLife = halfLife;
+            return () -> new ExtensionState(
+                    new DecayingCountMinSketch<>(decayedRelativeError, decayedConfidence, decayedHalfLife));
+        }
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+//      each state gets its own sketch, so that the partitions of the query are not mixed
+        return () -> new ExtensionState(new CountMinSketch<>(sketchRelativeError, sketchConfidence));
     }
 
     @Override
     protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
                            StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
                            ExtensionState state) {
+        if (idleStateSpiller != null) {
+            if (periodicEmitter != null && PeriodicEmitter.isTimerEventChunk(streamEventChunk)) {
+//              a timer event neither keeps the state in use nor reloads it once it is spilled
+                if (!idleStateSpiller.acquireIfNotSpilled(state)) {
+                    return;
+                }
+            } else {
+                idleStateSpiller.use(state, timestampGenerator.currentTime());
+            }
+        }
+        try {
+//          the state is locked after it is acquired, in the same order as the idle state spiller locks it
+            synchronized (state) {
+                if (decayed) {
+                    processDecayed(streamEventChunk, streamEventCloner, complexEventPopulater, state);
+                } else {
+                    processCounts(streamEventChunk, streamEventCloner, complexEventPopulater, state);
+                }
+            }
+        } finally {
+            if (idleStateSpiller != null) {
+                idleStateSpiller.release(state);
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    /**
+     * Populate the counts, where the values of the expired events are removed from the count-min sketch
+     */
+    private void processCounts(ComplexEventChunk<StreamEvent> streamEventChunk, StreamEventCloner streamEventCloner,
+                               ComplexEventPopulater complexEventPopulater, ExtensionState state) {
         long approximateCount = 0;
         long[] confidenceInterval = new long[2];
 
         while (streamEventChunk.hasNext()) {
             StreamEvent streamEvent = streamEventChunk.next();
+            if (periodicEmitter != null && streamEvent.getType().equals(StreamEvent.Type.TIMER)) {
+                emit(streamEventChunk, streamEvent, streamEventCloner, complexEventPopulater, state);
+                continue;
+            }
             Object newData = valueExecutor.execute(streamEvent);
             if (newData == null) {
                 streamEventChunk.remove();
@@ -248,19 +460,107 @@ public class CountExtension extends StreamProcessor<CountExtension.ExtensionStat
                     state.countMinSketch.clear();
                 }
 
+                if (periodicEmitter != null && record(streamEventChunk, streamEvent, streamEventCloner, state)) {
+                    continue;
+                }
+
                 Object[] outputData = {approximateCount, confidenceInterval[0], confidenceInterval[1]};
 
                 complexEventPopulater.populateComplexEvent(streamEvent, outputData);
             }
         }
-        nextProcessor.process(streamEventChunk);
+    }
+
+    /**
+     * Populate the decayed counts, where the expired events are only used to read the count of their values
+     * since the decay has already reduced the weight of the old events
+     */
+    private void processDecayed(ComplexEventChunk<StreamEvent> streamEventChunk, StreamEventCloner streamEventCloner,
+                                ComplexEventPopulater complexEventPopulater, ExtensionState state) {
+        double approximateCount = 0;
+        double[] confidenceInterval = new double[2];
+
+        while (streamEventChunk.hasNext()) {
+            StreamEvent streamEvent = streamEventChunk.next();
+            if (periodicEmitter != null && streamEvent.getType().equals(StreamEvent.Type.TIMER)) {
+                emit(streamEventChunk, streamEvent, streamEventCloner, complexEventPopulater, state);
+                continue;
+            }
+            Object newData = valueExecutor.execute(streamEvent);
+            if (newData == null) {
+                streamEventChunk.remove();
+            } else {
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    approximateCount = state.decayingCountMinSketch.insert(newData, streamEvent.getTimestamp());
+                    confidenceInterval = state.decayingCountMinSketch.getConfidenceInterval(approximateCount);
+                } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                    approximateCount = state.decayingCountMinSketch.getCount(newData, streamEvent.getTimestamp());
+                    confidenceInterval = state.decayingCountMinSketch.getConfidenceInterval(approximateCount);
+                } else if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.decayingCountMinSketch.clear();
+                }
+
+                if (periodicEmitter != null && record(streamEventChunk, streamEvent, streamEventCloner, state)) {
+                    continue;
+                }
+
+                Object[] outputData = {approximateCount, confidenceInterval[0], confidenceInterval[1]};
+
+                complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+            }
+        }
+    }
+
+    /**
+     * Keep the latest current event for the summary events, and drop the input event if the input is suppressed
+     *
+     * @return whether the input event is dropped
+     */
+    private boolean record(ComplexEventChunk<StreamEvent> streamEventChunk, StreamEvent streamEvent,
+                           StreamEventCloner streamEventCloner, ExtensionState state) {
+        periodicEmitter.record(streamEvent, streamEventCloner, state.emission);
+        if (periodicEmitter.isSuppressInput()) {
+            streamEventChunk.remove();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replace a timer event with the summary event of the state, carrying the count of the latest event at the
+     * time of the emission
+     */
+    private void emit(ComplexEventChunk<StreamEvent> streamEventChunk, StreamEvent timerEvent,
+                      StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                      ExtensionState state) {
+        StreamEvent summaryEvent = periodicEmitter.emit(timerEvent, streamEventCloner, state.emission);
+        if (summaryEvent != null) {
+            Object value = valueExecutor.execute(summaryEvent);
+            Object[] outputData;
+            if (decayed) {
+                double approximateCount = state.decayingCountMinSketch.getCount(value, timerEvent.getTimestamp());
+                double[] confidenceInterval = state.decayingCountMinSketch.getConfidenceInterval(approximateCount);
+                outputData = new Object[]{approximateCount, confidenceInterval[0], confidenceInterval[1]};
+            } else {
+                long approximateCount = state.countMinSketch.getCount(value);
+                long[] confidenceInterval = state.countMinSketch.getConfidenceInterval(approximateCount);
+                outputData = new Object[]{approximateCount, confidenceInterval[0], confidenceInterval[1]};
+            }
+            complexEventPopulater.populateComplexEvent(summaryEvent, outputData);
+            streamEventChunk.insertBeforeCurrent(summaryEvent);
+        }
+        streamEventChunk.remove();
     }
 
     @Override
     public void start() { }
 
     @Override
-    public void stop() { }
+    public void stop() {
+        if (idleStateSpiller != null) {
+            idleStateSpiller.clear();
+        }
+    }
 
     @Override
     public List<Attribute> getReturnAttributes() {
@@ -272,13 +572,31 @@ public class CountExtension extends StreamProcessor<CountExtension.ExtensionStat
         return ProcessingMode.BATCH;
     }
 
-    static class ExtensionState extends State {
+    @Override
+    public Scheduler getScheduler() {
+        return periodicEmitter != null ? periodicEmitter.getScheduler() : scheduler;
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+//      the timer events of this scheduler pass through the windows of the query, hence the periodic emitter
+//      schedules the summary events with a scheduler of its own, which is initialized in place of this one
+        this.scheduler = scheduler;
+    }
+
+    class ExtensionState extends State {
         private CountMinSketch<Object> countMinSketch;
+        private DecayingCountMinSketch<Object> decayingCountMinSketch;
+        private PeriodicEmitter.Emission emission = new PeriodicEmitter.Emission();
 
         private ExtensionState(CountMinSketch<Object> countMinSketch) {
             this.countMinSketch = countMinSketch;
         }
 
+        private ExtensionState(DecayingCountMinSketch<Object> decayingCountMinSketch) {
+            this.decayingCountMinSketch = decayingCountMinSketch;
+        }
+
         @Override
         public boolean canDestroy() {
             return false;
@@ -286,17 +604,44 @@ public class CountExtension extends StreamProcessor<CountExtension.ExtensionStat
 
         @Override
         public Map<String, Object> snapshot() {
-            synchronized (this) {
-                Map<String, Object> map = new HashMap();
-                map.put("countMinSketch", countMinSketch);
-                return map;
+            if (idleStateSpiller != null) {
+                idleStateSpiller.acquire(this);
+            }
+            try {
+                synchronized (this) {
+                    Map<String, Object> map = new HashMap();
+                    map.put("countMinSketch", countMinSketch);
+                    map.put("decayingCountMinSketch", decayingCountMinSketch);
+                    map.put("emission", emission);
+                    return map;
+                }
+            } finally {
+                if (idleStateSpiller != null) {
+                    idleStateSpiller.release(this);
+                }
             }
         }
 
         @Override
         public void restore(Map<String, Object> map) {
-            synchronized (this) {
-                countMinSketch = (CountMinSketch) map.get("countMinSketch");
+            if (idleStateSpiller != null) {
+                idleStateSpiller.forget(this);
+                idleStateSpiller.acquire(this);
+            }
+            try {
+                synchronized (this) {
+                    countMinSketch = (CountMinSketch) map.get("countMinSketch");
+                    decayingCountMinSketch = (DecayingCountMinSketch) map.get("decayingCountMinSketch");
+                    PeriodicEmitter.Emission restoredEmission = (PeriodicEmitter.Emission) map.get("emission");
+                    emission = restoredEmission != null ? restoredEmission : new PeriodicEmitter.Emission();
+                    if (periodicEmitter != null) {
+                        periodicEmitter.restore(emission, timestampGenerator.currentTime());
+                    }
+                }
+            } finally {
+                if (idleStateSpiller != null) {
+                    idleStateSpiller.release(this);
+                }
             }
         }
     }
@@ -21,6 +21,7 @@ import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -38,8 +39,8 @@ public class CountMinSketch<E> implements Serializable {
 
     private long totalNoOfItems;
 
-    //  2D array to store the counts
-    private long[][] countArray;
+    //  2D array to store the counts, which is allocated when the first item is inserted
+    private long[][] countArray = null;
 
     //  hash coefficients
     private ArrayList<Integer> hashCoefficientsA;
@@ -62,12 +63,8 @@ public class CountMinSketch<E> implements Serializable {
         this.totalNoOfItems = 0;
         this.relativeError = relativeError;
 
-//      depth = ln(1 / (1 - confidence))
-        this.depth = (int) Math.ceil(Math.log(1 / (1 - confidence)));
-//      width = e / relativeError
-        this.width = (int) Math.ceil(Math.E / relativeError);
-
-        this.countArray = new long[depth][width];
+        this.depth = getDepth(confidence);
+        this.width = getWidth(relativeError);
 
 //      create random hash coefficients
 //      using linear hash functions of the form (a*x+b)
@@ -81,6 +78,62 @@ public class CountMinSketch<E> implements Serializable {
         }
     }
 
+    /**
+     * Calculate the number of rows of a count min sketch with the given confidence
+     *
+     * @param confidence is a positive number less than 1
+     * @return the depth, which is ln(1 / (1 - confidence))
+     */
+    private static int getDepth(double confidence) {
+        return (int) Math.ceil(Math.log(1 / (1 - confidence)));
+    }
+
+    /**
+     * Calculate the number of columns of a count min sketch with the given relative error
+     *
+     * @param relativeError is a positive number less than 1
+     * @return the width, which is e / relativeError
+     */
+    private static int getWidth(double relativeError) {
+        return (int) Math.ceil(Math.E / relativeError);
+    }
+
+    /**
+     * Calculate the size of the count array of a count min sketch with the given relative error and confidence
+     *
+     * @param relativeError is a positive number less than 1
+     * @param confidence    is a positive number less than 1
+     * @return the size of the count array in bytes
+     */
+    public static long getMemorySize(double relativeError, double confidence) {
+        return (long) Long.BYTES * getDepth(confidence) * getWidth(relativeError);
+    }
+
+    /**
+     * Calculate the lowest relative error of a count min sketch whose count array fits in a memory budget,
+     * by using the widest rows which fit in the budget for the depth of the given confidence
+     *
+     * @param memoryBudget is the maximum size of the count array in bytes
+     * @param confidence   is a positive number less than 1
+     * @return the relative error, which is a positive number less than 1
+     * @throws IllegalArgumentException if the budget cannot hold a count min sketch with the given confidence
+     */
+    public static double getRelativeError(long memoryBudget, double confidence) {
+        int depth = getDepth(confidence);
+        long width = Math.min(memoryBudget / ((long) Long.BYTES * depth), Integer.MAX_VALUE);
+//      a width of at least 3 is needed for a relative error below 1
+        if (width < 3) {
+            throw new IllegalArgumentException("a memory budget of " + memoryBudget + " bytes cannot hold a " +
+                    "count min sketch with a confidence of " + confidence);
+        }
+        double relativeError = Math.E / width;
+//      the rounding of e / relativeError must not widen the rows beyond the budget
+        while (getWidth(relativeError) > width) {
+            relativeError = Math.nextUp(relativeError);
+        }
+        return relativeError;
+    }
+
     /**
      * Compute the cell position in a row of the count array for a given hash value
      *
@@ -92,14 +145,13 @@ public class CountMinSketch<E> implements Serializable {
     }
 
     /**
-     * Compute a set of different integer hash values for a given item
+     * Compute a set of different integer hash values for the hash of a given item
      *
-     * @param item is the object for which the hash values are calculated
+     * @param hash is the MurmurHash of the item for which the hash values are calculated
      * @return an int array(of size {@code depth}) of hash values
      */
-    private int[] getHashValues(E item) {
+    private int[] getHashValues(int hash) {
         int[] hashValues = new int[depth];
-        int hash = MurmurHash.hash(item);
         for (int i = 0; i < depth; i++) {
             hashValues[i] = hashCoefficientsA.get(i) * hash + hashCoefficientsB.get(i);
         }
@@ -116,15 +168,42 @@ public class CountMinSketch<E> implements Serializable {
      * @return the approximate count of the item
      */
     public synchronized long insert(E item) {
-        totalNoOfItems++;
+        return insert(item, 1);
+    }
+
+    /**
+     * Adds a weight of an item to the count min sketch
+     * calculate hash values relevant for each row in the count array
+     * compute indices in the range of [0, width) from those hash values
+     * add the weight to each value in the cell of relevant row and index (e.g. countArray[row][index] += weight)
+     *
+     * @param item   is the item to be inserted
+     * @param weight is a non negative weight of the item
+     * @return the approximate total weight of the item
+     */
+    public synchronized long insert(E item, long weight) {
+        return insertHash(MurmurHash.hash(item), weight);
+    }
+
+    /**
+     * Adds a weight of an item, whose MurmurHash is already calculated, to the count min sketch, so that the
+     * hash can be shared with the other sketches of the item
+     *
+     * @param hash   is the MurmurHash of the item to be inserted
+     * @param weight is a non negative weight of the item
+     * @return the approximate total weight of the item
+     */
+    public synchronized long insertHash(int hash, long weight) {
+        totalNoOfItems += weight;
+        allocateCountArray();
 
-        int[] hashValues = getHashValues(item);
+        int[] hashValues = getHashValues(hash);
         int index;
         long currentMin = Long.MAX_VALUE;
 
         for (int i = 0; i < depth; i++) {
             index = getArrayIndex(hashValues[i]);
-            countArray[i][index]++;
+            countArray[i][index] += weight;
             if (currentMin > countArray[i][index]) {
                 currentMin = countArray[i][index];
             }
@@ -142,15 +221,45 @@ public class CountMinSketch<E> implements Serializable {
      * @return the approximate count of the item
      */
     public synchronized long remove(E item) {
-        totalNoOfItems--;
+        return remove(item, 1);
+    }
+
+    /**
+     * Removes a weight of an item, which was previously inserted, from the count min sketch
+     * calculate hash values relevant for each row in the count array
+     * compute indices in the range of [0, width) from those hash values
+     * subtract the weight from each value in the cell of relevant row and index
+     * (e.g. countArray[row][index] -= weight)
+     *
+     * @param item   is the item to be removed
+     * @param weight is the weight with which the item was inserted
+     * @return the approximate total weight of the item
+     */
+    public synchronized long remove(E item, long weight) {
+        return removeHash(MurmurHash.hash(item), weight);
+    }
+
+    /**
+     * Removes a weight of an item, whose MurmurHash is already calculated, from the count min sketch
+     *
+     * @param hash   is the MurmurHash of the item to be removed
+     * @param weight is the weight with which the item was inserted
+     * @return the approximate total weight of the item
+     */
+    public synchronized long removeHash(int hash, long weight) {
+        if (countArray == null) {
+//          no item has been inserted yet
+            return 0;
+        }
+        totalNoOfItems -= weight;
 
-        int[] hashValues = getHashValues(item);
+        int[] hashValues = getHashValues(hash);
         int index;
         long currentMin = Long.MAX_VALUE;
 
         for (int i = 0; i < depth; i++) {
             index = getArrayIndex(hashValues[i]);
-            countArray[i][index]--;
+            countArray[i][index] -= weight;
 
             if (currentMin > countArray[i][index]) {
                 currentMin = countArray[i][index];
@@ -159,9 +268,98 @@ public class CountMinSketch<E> implements Serializable {
         return currentMin;
     }
 
+    /**
+     * Calculate the approximate count of an item without changing the sketch
+     *
+     * @param item is the item whose count is calculated
+     * @return the approximate count of the item
+     */
+    public synchronized long getCount(E item) {
+        if (countArray == null) {
+            return 0;
+        }
+        int[] hashValues = getHashValues(MurmurHash.hash(item));
+        long currentMin = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            currentMin = Math.min(currentMin, countArray[i][getArrayIndex(hashValues[i])]);
+        }
+        return currentMin;
+    }
+
+    /**
+     * Check whether no item is counted, i.e. no item has been inserted since the sketch was created or cleared,
+     * or all the inserted items have been removed
+     *
+     * @return {@code true} if the total count of the items is 0
+     */
+    public synchronized boolean isEmpty() {
+        return countArray == null || totalNoOfItems == 0;
+    }
+
+    /**
+     * Adds the counts of another count min sketch of the same relative error and confidence to this sketch,
+     * cell by cell, so that this sketch counts the items inserted to either of them.
+     *
+     * @param countMinSketch is the count min sketch to be merged, which is not modified
+     */
+    public synchronized void merge(CountMinSketch<E> countMinSketch) {
+        combine(countMinSketch, 1);
+    }
+
+    /**
+     * Subtracts the counts of another count min sketch of the same relative error and confidence, which was
+     * previously merged into this sketch, cell by cell.
+     *
+     * @param countMinSketch is the count min sketch to be subtracted, which is not modified
+     */
+    public synchronized void subtract(CountMinSketch<E> countMinSketch) {
+        combine(countMinSketch, -1);
+    }
+
+    private void combine(CountMinSketch<E> countMinSketch, int sign) {
+        if (countMinSketch.depth != depth || countMinSketch.width != width) {
+            throw new IllegalArgumentException("a count min sketch of " + countMinSketch.depth + " x " +
+                    countMinSketch.width + " cells cannot be combined with a count min sketch of " + depth + " x " +
+                    width + " cells");
+        }
+        synchronized (countMinSketch) {
+            if (countMinSketch.countArray == null) {
+                return;
+            }
+            allocateCountArray();
+            for (int i = 0; i < depth; i++) {
+                for (int j = 0; j < width; j++) {
+                    countArray[i][j] += sign * countMinSketch.countArray[i][j];
+                }
+            }
+            totalNoOfItems += sign * countMinSketch.totalNoOfItems;
+        }
+    }
+
+    /**
+     * Replace the counts of this sketch with the counts of a sketch of the same relative error and confidence,
+     * such as one read from a snapshot, so that the references held to this sketch see the restored counts.
+     *
+     * @param countMinSketch is the count min sketch from which the counts are copied
+     */
+    public synchronized void restore(CountMinSketch<E> countMinSketch) {
+        clear();
+        combine(countMinSketch, 1);
+    }
+
+    /**
+     * Allocate the count array, unless it is already allocated
+     */
+    private void allocateCountArray() {
+        if (countArray == null) {
+            countArray = new long[depth][width];
+        }
+    }
+
     /**
      * Calculate the confidence interval of the approximate count
      * [approximateCount - (totalNoOfItems * relativeError), approximateCount + (totalNoOfItems * relativeError)]
+     * where totalNoOfItems is the total weight of the items in the sketch
      *
      * @param count is the approximate count
      * @return a long array which contains the lower bound and
@@ -177,10 +375,14 @@ public class CountMinSketch<E> implements Serializable {
     }
 
     /**
-     * Clears the counts within the sketch.
+     * Clears the counts within the sketch, keeping the allocated count array to be reused.
      */
     public synchronized void clear() {
         this.totalNoOfItems = 0;
-        this.countArray = new long[depth][width];
+        if (countArray != null) {
+            for (long[] row : countArray) {
+                Arrays.fill(row, 0);
+            }
+        }
     }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates values, or count min sketches of values, into a count min sketch which can be merged with other
+ * count min sketches.
+ */
+@Extension(
+        name = "countMinSketch",
+        namespace = "approximate",
+        description = "This aggregator counts the values of the events in a `count min sketch` and returns the " +
+                "sketch as an object. If the value of an event is itself a count min sketch, such as the output " +
+                "of another `approximate:countMinSketch` aggregator, its counts are added cell by cell, so that " +
+                "the result is the sketch of all the values of both. Use `approximate:frequencyOf` to get the " +
+                "approximate count of a value from the sketch. The same aggregator can be used inside an " +
+                "incremental aggregation, where a sketch is kept per time bucket and merged for the larger " +
+                "durations. The values of the expired events are subtracted from the sketch.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value, or the count min sketch, which is added to the sketch.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error of the counts, relative to the total number " +
+                                "of values in the sketch. This should be a value in the range (0, 1). Only " +
+                                "sketches of the same relative error and confidence can be merged.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This is the confidence with which the relative error is guaranteed. This " +
+                                "should be a value in the range (0, 1).",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The count min sketch of the values.",
+                type = {DataType.OBJECT}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#window.length(1000)\n" +
+                                "select ip, approximate:frequencyOf(approximate:countMinSketch(ip), ip) as ipCount\n" +
+                                "insert into OutputStream;",
+                        description = "This query calculates the approximate number of requests of each IP " +
+                                "address within the last 1000 requests."
+                )
+        }
+)
+public class CountMinSketchAggregatorExtension
+        extends AttributeAggregatorExecutor<CountMinSketchAggregatorExtension.ExtensionState> {
+    private double relativeError;
+    private double confidence;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode, boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+
+        relativeError = defaultRelativeError;
+        confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 3)) {
+            throw new SiddhiAppCreationException("1 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the countMinSketch " +
+                    "function");
+        }
+
+        //expressionExecutors[1] --> relativeError
+        if (attributeExpressionExecutors.length > 1) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside countMinSketch function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[1].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 2nd parameter inside countMinSketch function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            if (relativeError <= 0 || relativeError >= 1) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside countMinSketch function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        //expressionExecutors[2] --> confidence
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside countMinSketch function - " +
+                        "'confidence' has to be a constant but found " +
+                        attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside countMinSketch function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if (confidence <= 0 || confidence >= 1) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside countMinSketch function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        return () -> new ExtensionState(new CountMinSketch<>(relativeError, confidence));
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        synchronized (this) {
+            if (data instanceof CountMinSketch) {
+                state.countMinSketch.merge((CountMinSketch<Object>) data);
+            } else if (data != null) {
+                state.countMinSketch.insert(data);
+            }
+            return state.countMinSketch;
+        }
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        return processAdd(data[0], state);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        synchronized (this) {
+            if (data instanceof CountMinSketch) {
+                state.countMinSketch.subtract((CountMinSketch<Object>) data);
+            } else if (data != null) {
+                state.countMinSketch.remove(data);
+            }
+            return state.countMinSketch;
+        }
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        return processRemove(data[0], state);
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        synchronized (this) {
+//          a new sketch is created, as the returned one may still be referred by the previous output
+            state.countMinSketch = new CountMinSketch<>(relativeError, confidence);
+            return state.countMinSketch;
+        }
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+
+    class ExtensionState extends State {
+        private CountMinSketch<Object> countMinSketch;
+
+        private ExtensionState(CountMinSketch<Object> countMinSketch) {
+            this.countMinSketch = countMinSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+//          the state of a group is released once the group has no values, such as after all its values expired
+            synchronized (CountMinSketchAggregatorExtension.this) {
+                return countMinSketch.isEmpty();
+            }
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (CountMinSketchAggregatorExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("countMinSketch", countMinSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (CountMinSketchAggregatorExtension.this) {
+                countMinSketch = (CountMinSketch<Object>) state.get("countMinSketch");
+            }
+        }
+    }
+}
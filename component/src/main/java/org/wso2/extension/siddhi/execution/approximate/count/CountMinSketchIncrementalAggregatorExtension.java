@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.query.selector.attribute.aggregator.incremental.IncrementalAttributeAggregator;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.Expression;
+
+/**
+ * Keeps a count min sketch per time bucket of an incremental aggregation, merged for the larger durations by
+ * approximate:countMinSketch.
+ */
+@Extension(
+        name = "countMinSketch",
+        namespace = "incrementalAggregator",
+        description = "This lets `approximate:countMinSketch` be used inside an incremental aggregation. A " +
+                "`count min sketch` of the values, with a relative error of 0.01 and a confidence of 0.99, is " +
+                "kept for each time bucket of the smallest duration, and the sketches are added cell by cell " +
+                "into the sketches of the larger durations, and into the sketch of a store query over several " +
+                "buckets. Use `approximate:frequencyOf` on the result to get the approximate count of a value.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value which is counted in the sketch.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The count min sketch of the values of the time bucket.",
+                type = {DataType.OBJECT}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string, timestamp long);\n" +
+                                "define aggregation RequestAggregation\n" +
+                                "from RequestStream\n" +
+                                "select approximate:countMinSketch(ip) as ipCounts\n" +
+                                "aggregate by timestamp every sec ... year;",
+                        description = "This keeps a count min sketch of the IP addresses per second, minute, " +
+                                "hour, day, month and year, each of which is merged from the sketches of the " +
+                                "smaller duration."
+                )
+        }
+)
+public class CountMinSketchIncrementalAggregatorExtension extends IncrementalAttributeAggregator {
+    private Attribute[] baseAttributes;
+    private Expression[] baseAttributeInitialValues;
+
+    @Override
+    public void init(String attributeName, Attribute.Type attributeType) {
+//      the base attribute holds the values of the events before they are aggregated, and the sketches
+//      afterwards, both of which are accepted by approximate:countMinSketch
+        Attribute countMinSketch = new Attribute("AGG_COUNT_MIN_SKETCH_".concat(attributeName),
+                Attribute.Type.OBJECT);
+        baseAttributes = new Attribute[]{countMinSketch};
+        baseAttributeInitialValues = new Expression[]{Expression.variable(attributeName)};
+    }
+
+    @Override
+    public Attribute[] getBaseAttributes() {
+        return baseAttributes;
+    }
+
+    @Override
+    public Expression[] getBaseAttributeInitialValues() {
+        return baseAttributeInitialValues;
+    }
+
+    @Override
+    public Expression[] getBaseAggregators() {
+        return new Expression[]{Expression.function("approximate", "countMinSketch",
+                Expression.variable(baseAttributes[0].getName()))};
+    }
+
+    @Override
+    public Expression aggregate() {
+        return Expression.variable(baseAttributes[0].getName());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.SketchRegistry;
+
+/**
+ * Reads the approximate count of a value from a named Count-Min Sketch populated by approximate:countSketch.
+ */
+@Extension(
+        name = "countOf",
+        namespace = "approximate",
+        description = "This function returns the approximate count(frequency) of a value in the `count-min " +
+                "sketch` of the given name, which is populated by the `approximate:countSketch` extension in the " +
+                "same Siddhi app. The count is never less than the actual count, and is greater than it by at " +
+                "most the relative error of the sketch times the total count, with the confidence of the sketch.",
+        parameters = {
+                @Parameter(
+                        name = "sketch.name",
+                        description = "The name of the sketch given in the `approximate:countSketch` extension.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "value",
+                        description = "The value whose count is read.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The approximate count of the value, or 0 if the value is null.",
+                type = {DataType.LONG}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "define stream CheckStream (ip string);\n" +
+                                "from RequestStream#window.time(1 hour)#approximate:countSketch('ipFreq', ip)\n" +
+                                "insert into RequestLogStream;\n" +
+                                "from CheckStream\n" +
+                                "select ip, approximate:countOf('ipFreq', ip) as requests\n" +
+                                "insert into OutputStream;",
+                        description = "The second query reads the number of requests of the IP address of each " +
+                                "check event during the last hour from the sketch named 'ipFreq', which is " +
+                                "populated by the first query."
+                )
+        }
+)
+public class CountOfExtension extends FunctionExecutor<State> {
+    private String sketchName;
+    private SiddhiAppContext siddhiAppContext;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+//       validate number of attributes
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppCreationException("2 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the countOf function");
+        }
+
+        //expressionExecutors[0] --> sketchName
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside countOf function - " +
+                    "'sketch.name' has to be a constant but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 1st parameter inside countOf function - " +
+                    "'sketch.name' should be of type String but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        sketchName = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+        siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+
+//      the function does not hold any state, the sketch is owned by the approximate:countSketch extension
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (data[1] == null) {
+            return 0L;
+        }
+//      the sketch is looked up on each call, as it may be registered after this function is initialized
+        CountMinSketch<Object> countMinSketch = SketchRegistry.get(siddhiAppContext, sketchName,
+                CountMinSketch.class);
+        if (countMinSketch == null) {
+            throw new SiddhiAppRuntimeException("No approximate:countSketch named '" + sketchName +
+                    "' is defined in the Siddhi app '" + siddhiAppContext.getName() + "'");
+        }
+        return countMinSketch.getCount(data[1]);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+//      the function always has two parameters
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.LONG;
+    }
+}
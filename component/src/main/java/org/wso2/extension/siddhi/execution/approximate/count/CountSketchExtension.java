@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.SketchRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Populates a named Count-Min Sketch which can be queried by approximate:countOf from any query of the Siddhi app.
+ */
+@Extension(
+        name = "countSketch",
+        namespace = "approximate",
+        description = "This extension populates a named `count-min sketch` with the values of a stream, so that " +
+                "the approximate count(frequency) of any value can be read at any time from any query of the " +
+                "Siddhi app, including on-demand queries, using the `approximate:countOf` function. The values of " +
+                "the expired events are removed from the sketch, hence the sketch can be used with a window to " +
+                "count the values within the window. The sketch is shared by the whole Siddhi app, hence the " +
+                "function cannot be used inside a partition.",
+        parameters = {
+                @Parameter(
+                        name = "sketch.name",
+                        description = "The name of the sketch, which is used to refer to it from the " +
+                                "`approximate:countOf` function. It should be unique within the Siddhi app.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "value",
+                        description = "The value which is counted in the sketch.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the counts, expressed as a " +
+                                "value between 0 and 1. Lower the value specified, lower is the rate by which the " +
+                                "counts can deviate from being perfectly correct. Note that you cannot specify `1` " +
+                                "or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the counts can deviate from the " +
+                                "actual counts. Higher the value specified, higher is the possibility of the amount " +
+                                "of error in a count being no greater than the relative error specified. Note that " +
+                                "you cannot specify `1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "define stream CheckStream (ip string);\n" +
+                                "from RequestStream#window.time(1 hour)#approximate:countSketch('ipFreq', ip)\n" +
+                                "insert into RequestLogStream;\n" +
+                                "from CheckStream\n" +
+                                "select ip, approximate:countOf('ipFreq', ip) as requests\n" +
+                                "insert into OutputStream;",
+                        description = "The first query counts the requests of each IP address during the last " +
+                                "hour in a sketch named 'ipFreq'. The second query reads the count of the IP " +
+                                "address of each check event from the sketch, without passing the check events " +
+                                "through the sketch."
+                )
+        }
+)
+public class CountSketchExtension extends StreamProcessor<CountSketchExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private String sketchName;
+    private SiddhiAppContext siddhiAppContext;
+    private CountMinSketch<Object> countMinSketch;
+    private List<Attribute> attributeList = new ArrayList<>(0);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      the sketch is shared by the whole Siddhi app, hence it cannot be kept per partition key
+        if (siddhiQueryContext.isPartitioned()) {
+            throw new SiddhiAppCreationException("The countSketch function cannot be used inside a partition, " +
+                    "as the named sketch is shared by the whole Siddhi app");
+        }
+
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 4)) {
+            throw new SiddhiAppCreationException("2 or 4 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the countSketch function");
+        }
+
+        //expressionExecutors[0] --> sketchName
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside countSketch function - " +
+                    "'sketch.name' has to be a constant but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 1st parameter inside countSketch function - " +
+                    "'sketch.name' should be of type String but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        sketchName = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+
+        //expressionExecutors[1] --> value
+        if (!(attributeExpressionExecutors[1] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside countSketch function - " +
+                    "'value' has to be a variable but found " +
+                    attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[1];
+
+        if (attributeExpressionExecutors.length > 2) {
+            //expressionExecutors[2] --> relativeError
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside countSketch function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside countSketch function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside countSketch function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+
+            //expressionExecutors[3] --> confidence
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside countSketch function - " +
+                        "'confidence' has to be a constant but found " +
+                        attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside countSketch function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside countSketch function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        countMinSketch = new CountMinSketch<>(relativeError, confidence);
+        siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+        SketchRegistry.declare(siddhiAppContext, sketchName);
+
+        return () -> new ExtensionState(countMinSketch);
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.countMinSketch.clear();
+                    continue;
+                }
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    continue;
+                }
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    state.countMinSketch.insert(newData);
+                } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                    state.countMinSketch.remove(newData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() {
+        SketchRegistry.register(siddhiAppContext, sketchName, countMinSketch);
+    }
+
+    @Override
+    public void stop() {
+        SketchRegistry.unregister(siddhiAppContext, sketchName);
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private final CountMinSketch<Object> countMinSketch;
+
+        private ExtensionState(CountMinSketch<Object> countMinSketch) {
+            this.countMinSketch = countMinSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (CountSketchExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("countMinSketch", countMinSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (CountSketchExtension.this) {
+//              the sketch is shared with the approximate:countOf functions, hence it is restored in place
+                countMinSketch.restore((CountMinSketch<Object>) state.get("countMinSketch"));
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+* Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* WSO2 Inc. licenses this file to you under the Apache License,
+* Version 2.0 (the "License"); you may not use this file except
+* in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied. See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A probabilistic data structure to keep exponentially decayed counts of different items, where the weight of
+ * an item halves for each half life passed since its arrival, without buffering the items.
+ * It uses forward decay, i.e. an item which arrived at time t is added with the weight exp(lambda * (t - L))
+ * relative to a landmark time L, and the counts are divided by exp(lambda * (now - L)) when they are read.
+ * Hence only the cells of an item are touched per item. The landmark is moved forward, and all the counts are
+ * rescaled, whenever the weights grow too large, so that the counts never overflow.
+ * The referred research paper - Forward Decay: A Practical Time Decay Model for Streaming Systems
+ * by Graham Cormode, Vladislav Shkapenyuk, Divesh Srivastava and Bojian Xu.
+ * http://dimacs.rutgers.edu/~graham/pubs/papers/fwddecay.pdf
+ *
+ * @param <E> is the type of data to be counted
+ */
+public class DecayingCountMinSketch<E> implements Serializable {
+    private static final long serialVersionUID = -6934217553950184562L;
+
+    //  the weights are rescaled when they exceed exp(MAX_EXPONENT)
+    private static final double MAX_EXPONENT = 64;
+
+    private int depth;
+    private int width;
+
+    //  decay rate per millisecond, lambda = ln(2) / halfLife
+    private double decayRate;
+    private long landmarkTimestamp = Long.MIN_VALUE;
+    private long currentTimestamp = Long.MIN_VALUE;
+
+    //  the forward decayed weights relative to the landmark, whose array is allocated when the first item is inserted
+    private double totalWeight;
+    private double[][] weightArray = null;
+
+    //  hash coefficients
+    private ArrayList<Integer> hashCoefficientsA;
+    private ArrayList<Integer> hashCoefficientsB;
+
+    //  Error factor of approximation
+    private double relativeError;
+
+    /**
+     * Instantiate the decaying count min sketch based on a given relative error, confidence and half life
+     *
+     * @param relativeError is a positive number less than 1 (e.g. 0.01)
+     * @param confidence    is a positive number less than 1 (e.g. 0.01)
+     *                      which is the probability of answers being within the relative error
+     * @param halfLife      is the time in milliseconds after which the weight of an item halves
+     */
+    public DecayingCountMinSketch(double relativeError, double confidence, long halfLife) {
+        if (!(relativeError < 1 && relativeError > 0) || !(confidence < 1 && confidence > 0)) {
+            throw new IllegalArgumentException("confidence and relativeError must be values in the range (0,1)");
+        }
+        if (halfLife <= 0) {
+            throw new IllegalArgumentException("halfLife must be a positive value but found " + halfLife);
+        }
+        this.relativeError = relativeError;
+        this.decayRate = Math.log(2) / halfLife;
+
+//      depth = ln(1 / (1 - confidence))
+        this.depth = (int) Math.ceil(Math.log(1 / (1 - confidence)));
+//      width = e / relativeError
+        this.width = (int) Math.ceil(Math.E / relativeError);
+
+//      create random hash coefficients
+//      using linear hash functions of the form (a*x+b)
+//      a,b are chosen independently for each hash function.
+        this.hashCoefficientsA = new ArrayList<>(depth);
+        this.hashCoefficientsB = new ArrayList<>(depth);
+        Random random = new Random(123);
+        for (int i = 0; i < depth; i++) {
+            hashCoefficientsA.add(random.nextInt(Integer.MAX_VALUE));
+            hashCoefficientsB.add(random.nextInt(Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Compute the cell position in a row of the weight array for a given hash value
+     *
+     * @param hash is the integer hash value generated from some hash function
+     * @return an integer value in the range [0,width)
+     */
+    private int getArrayIndex(int hash) {
+        return Math.abs(hash % width);
+    }
+
+    /**
+     * Compute a set of different integer hash values for a given item
+     *
+     * @param item is the object for which the hash values are calculated
+     * @return an int array(of size {@code depth}) of hash values
+     */
+    private int[] getHashValues(E item) {
+        int[] hashValues = new int[depth];
+        int hash = MurmurHash.hash(item);
+        for (int i = 0; i < depth; i++) {
+            hashValues[i] = hashCoefficientsA.get(i) * hash + hashCoefficientsB.get(i);
+        }
+        return hashValues;
+    }
+
+    /**
+     * Adds an item which arrived at the given time to the sketch
+     *
+     * @param item      is the item to be inserted
+     * @param timestamp is the arrival time of the item in milliseconds
+     * @return the approximate decayed count of the item at the latest arrival time
+     */
+    public synchronized double insert(E item, long timestamp) {
+        advanceTime(timestamp);
+        double weight = Math.exp(decayRate * (timestamp - landmarkTimestamp));
+        totalWeight += weight;
+        allocateWeightArray();
+
+        int[] hashValues = getHashValues(item);
+        double currentMin = Double.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = getArrayIndex(hashValues[i]);
+            weightArray[i][index] += weight;
+            currentMin = Math.min(currentMin, weightArray[i][index]);
+        }
+        return currentMin / getCurrentScale();
+    }
+
+    /**
+     * Calculate the decayed count of an item at the given time, without adding it
+     *
+     * @param item      is the item to be counted
+     * @param timestamp is the current time in milliseconds
+     * @return the approximate decayed count of the item at the latest arrival time
+     */
+    public synchronized double getCount(E item, long timestamp) {
+        advanceTime(timestamp);
+        if (weightArray == null) {
+            return 0;
+        }
+        int[] hashValues = getHashValues(item);
+        double currentMin = Double.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            currentMin = Math.min(currentMin, weightArray[i][getArrayIndex(hashValues[i])]);
+        }
+        return currentMin / getCurrentScale();
+    }
+
+    /**
+     * Calculate the confidence interval of the approximate decayed count
+     * [approximateCount - (totalCount * relativeError), approximateCount + (totalCount * relativeError)]
+     * where totalCount is the decayed count of all the items in the sketch
+     *
+     * @param count is the approximate decayed count
+     * @return a double array which contains the lower bound and
+     * the upper bound of the confidence interval consecutively
+     */
+    public synchronized double[] getConfidenceInterval(double count) {
+        double error = totalWeight / getCurrentScale() * relativeError;
+        return new double[]{Math.max(count - error, 0), count + error};
+    }
+
+    /**
+     * Clears the counts within the sketch, keeping the allocated weight array to be reused.
+     */
+    public synchronized void clear() {
+        if (weightArray != null) {
+            for (double[] weights : weightArray) {
+                Arrays.fill(weights, 0);
+            }
+        }
+        this.totalWeight = 0;
+        this.landmarkTimestamp = Long.MIN_VALUE;
+        this.currentTimestamp = Long.MIN_VALUE;
+    }
+
+    /**
+     * Move the current time forward, and move the landmark to the current time if the weights of the
+     * current time are too large, so that the weights never overflow
+     */
+    private void advanceTime(long timestamp) {
+        if (landmarkTimestamp == Long.MIN_VALUE) {
+            landmarkTimestamp = timestamp;
+        }
+        if (timestamp <= currentTimestamp) {
+            return;
+        }
+        currentTimestamp = timestamp;
+        double exponent = decayRate * (currentTimestamp - landmarkTimestamp);
+        if (exponent > MAX_EXPONENT) {
+            double scale = Math.exp(-exponent);
+            if (weightArray != null) {
+                for (double[] weights : weightArray) {
+                    for (int i = 0; i < width; i++) {
+                        weights[i] *= scale;
+                    }
+                }
+            }
+            totalWeight *= scale;
+            landmarkTimestamp = currentTimestamp;
+        }
+    }
+
+    /**
+     * Allocate the weight array, unless it is already allocated
+     */
+    private void allocateWeightArray() {
+        if (weightArray == null) {
+            weightArray = new double[depth][width];
+        }
+    }
+
+    private double getCurrentScale() {
+        return Math.exp(decayRate * (currentTimestamp - landmarkTimestamp));
+    }
+}
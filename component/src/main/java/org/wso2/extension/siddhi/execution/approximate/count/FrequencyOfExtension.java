@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+/**
+ * Calculates the approximate count of a value in a count min sketch returned by approximate:countMinSketch.
+ */
+@Extension(
+        name = "frequencyOf",
+        namespace = "approximate",
+        description = "This function returns the approximate count of a value in a `count min sketch`, which is " +
+                "returned by the `approximate:countMinSketch` aggregator, either in a query or in an incremental " +
+                "aggregation. The count is never less than the actual count, and it exceeds the actual count by " +
+                "at most the relative error of the sketch times the total count of the sketch, with the " +
+                "confidence of the sketch.",
+        parameters = {
+                @Parameter(
+                        name = "sketch",
+                        description = "The count min sketch from which the count is calculated.",
+                        type = {DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "value",
+                        description = "The value whose count is calculated.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The approximate count of the value, or 0 if the sketch is null.",
+                type = {DataType.LONG}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string, timestamp long);\n" +
+                                "define aggregation RequestAggregation\n" +
+                                "from RequestStream\n" +
+                                "select approximate:countMinSketch(ip) as ipCounts\n" +
+                                "aggregate by timestamp every sec ... year;\n" +
+                                "from RequestAggregation within \"2017-**-** **:**:**\" per \"days\"\n" +
+                                "select AGG_TIMESTAMP, approximate:frequencyOf(ipCounts, '10.0.0.1') as requests;",
+                        description = "The aggregation keeps a count min sketch of the IP addresses per second, " +
+                                "which are merged into a sketch per minute, hour, day, month and year. The " +
+                                "store query calculates the approximate number of requests from the IP address " +
+                                "'10.0.0.1' on each day of 2017."
+                )
+        }
+)
+public class FrequencyOfExtension extends FunctionExecutor<State> {
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+//       validate number of attributes
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppCreationException("2 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the frequencyOf function");
+        }
+
+        //expressionExecutors[0] --> sketch
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.OBJECT) {
+            throw new SiddhiAppCreationException("The 1st parameter inside frequencyOf function - " +
+                    "'sketch' should be of type Object but found " + attributeExpressionExecutors[0].getReturnType());
+        }
+
+//      the function does not hold any state
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (data[0] == null || data[1] == null) {
+            return 0L;
+        }
+        if (!(data[0] instanceof CountMinSketch)) {
+            throw new SiddhiAppRuntimeException("The 1st parameter inside frequencyOf function - 'sketch' should " +
+                    "be a count min sketch returned by approximate:countMinSketch but found " +
+                    data[0].getClass().getCanonicalName());
+        }
+        return ((CountMinSketch<Object>) data[0]).getCount(data[1]);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+//      the function always has two parameters
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.LONG;
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs Count-Min Sketch algorithm on one sketch shared by all the partitions of a query, where the values are
+ * salted with the partition key.
+ */
+@Extension(
+        name = "partitionedCount",
+        namespace = "approximate",
+        description = "This extension calculates the approximate count(frequency) of events like " +
+                "`approximate:count`, but it is meant to be used inside a partition with many partition keys. " +
+                "Instead of a count-min sketch per partition key, all the partitions share a single count-min " +
+                "sketch where each value is hashed together with its partition key, so that the counts of the " +
+                "partitions are kept apart while the memory used stays the same regardless of the number of " +
+                "partition keys. Since the sketch is shared, the error of a count is relative to the total number " +
+                "of events of all the partitions, and the bounds are calculated from that total. Hence a smaller " +
+                "relative error should be used than with `approximate:count`. As the counts of a single " +
+                "partition cannot be cleared from the shared sketch, use a sliding window rather than a batch " +
+                "window with this extension.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value for which the count is derived.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the count generated, expressed " +
+                                "as a fraction of the total number of events of all the partitions. Lower the " +
+                                "value specified, larger is the shared sketch. Note that you cannot specify `1` or " +
+                                "`0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.001"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the result can deviate from " +
+                                "the actual event count. Higher the value specified, higher is the possibility of " +
+                                "the amount of error in the count being no greater than the relative error " +
+                                "specified. Note that you cannot specify `1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "count",
+                        description = "This represents the approximate count of the value of the latest event " +
+                                "within its partition.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "countLowerBound",
+                        description = "The lowest value in the range within which the most accurate count for the " +
+                                "value is included. This count range is based on the latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "countUpperBound",
+                        description = "The highest value in the range within which the most accurate count for the " +
+                                "value is included. This count range is based on the latest event.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (tenant string, ip string);\n" +
+                                "partition with (tenant of RequestStream)\n" +
+                                "begin\n" +
+                                "    from RequestStream#window.time(1 hour)#approximate:partitionedCount(ip)\n" +
+                                "    select tenant, ip, count, countLowerBound, countUpperBound\n" +
+                                "    insert into OutputStream;\n" +
+                                "end;",
+                        description = "This query generates the count of the requests from each IP address of " +
+                                "each tenant during the last hour. All the tenants share one count-min sketch of a " +
+                                "relative error of 0.001, hence the memory used does not grow with the number of " +
+                                "tenants, and the counts are 99% guaranteed to deviate from the actual counts by " +
+                                "at most 0.1% of the number of requests of all the tenants within the window."
+                )
+        }
+)
+public class PartitionedCountExtension extends StreamProcessor<PartitionedCountExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+    private CountMinSketch<Long> countMinSketch;
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.001;
+        final double defaultConfidence = 0.99;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 3)) {
+            throw new SiddhiAppCreationException("1 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the partitionedCount " +
+                    "function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside partitionedCount function - " +
+                    "'value' has to be a variable but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> relativeError
+        if (attributeExpressionExecutors.length > 1) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside partitionedCount function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[1].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 2nd parameter inside partitionedCount function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside partitionedCount function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+
+            //expressionExecutors[2] --> confidence
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside partitionedCount function - " +
+                        "'confidence' has to be a constant but found " +
+                        attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside partitionedCount function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside partitionedCount function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        attributeList.add(new Attribute("count", Attribute.Type.LONG));
+        attributeList.add(new Attribute("countLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("countUpperBound", Attribute.Type.LONG));
+
+//      the same processor serves all the partition keys of the query, hence the sketch is kept here and only
+//      referred by the state of each partition key
+        countMinSketch = new CountMinSketch<>(relativeError, confidence);
+        return () -> new ExtensionState(countMinSketch);
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            long approximateCount = 0;
+            long[] confidenceInterval = new long[2];
+            int partitionHash = getPartitionHash();
+
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    streamEventChunk.remove();
+                } else {
+                    Long saltedData = salt(partitionHash, newData);
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        approximateCount = countMinSketch.insert(saltedData);
+                        confidenceInterval = countMinSketch.getConfidenceInterval(approximateCount);
+                    } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                        approximateCount = countMinSketch.remove(saltedData);
+                        confidenceInterval = countMinSketch.getConfidenceInterval(approximateCount);
+                    } else if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+//                      the other partitions still hold their counts in the shared sketch
+                        approximateCount = 0;
+                        confidenceInterval = new long[2];
+                    }
+
+                    Object[] outputData = {approximateCount, confidenceInterval[0], confidenceInterval[1]};
+
+                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    /**
+     * Calculate the hash of the partition key of the events being processed, which is a constant when the query is
+     * not inside a partition
+     *
+     * @return the hash of the partition key
+     */
+    private static int getPartitionHash() {
+        String partitionKey = SiddhiAppContext.getPartitionFlowId();
+        return partitionKey == null ? 0 : MurmurHash.hash(partitionKey);
+    }
+
+    /**
+     * Combine the hash of the partition key and the hash of a value into the item which is counted in the shared
+     * sketch, so that the same value of two partitions is counted as two different items
+     *
+     * @param partitionHash is the hash of the partition key
+     * @param value         is the value to be counted
+     * @return the salted item
+     */
+    private static Long salt(int partitionHash, Object value) {
+        return ((long) partitionHash << Integer.SIZE) | (MurmurHash.hash(value) & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private CountMinSketch<Long> countMinSketch;
+
+        private ExtensionState(CountMinSketch<Long> countMinSketch) {
+            this.countMinSketch = countMinSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (PartitionedCountExtension.this) {
+//              the states of all the partition keys refer to the same sketch, which is written only once when
+//              they are serialized together
+                Map<String, Object> map = new HashMap<>();
+                map.put("countMinSketch", countMinSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (PartitionedCountExtension.this) {
+                countMinSketch = (CountMinSketch<Long>) state.get("countMinSketch");
+                PartitionedCountExtension.this.countMinSketch = countMinSketch;
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs Count-Min Sketch algorithm on a ring of panes to get the approximate count(frequency) of events in a
+ * sliding time window.
+ */
+@Extension(
+        name = "timeSlicedCount",
+        namespace = "approximate",
+        description = "This extension calculates the approximate count i.e., the frequency of events that arrived " +
+                "within the last 'window.time', without a Siddhi window. The window is divided into " +
+                "'no.of.panes' panes, each of which has its own count-min sketch, and the counts of the panes are " +
+                "summed into another count-min sketch. When the timestamps of the events move past a pane, its " +
+                "counts are subtracted from the sum and the pane is reused for the new events. Hence the events " +
+                "are not buffered, and the memory used depends only on the number of panes and the relative " +
+                "error. One more pane is kept for the events of the current pane, so no event within the " +
+                "'window.time' is missed, but as the window slides by a pane at a time, the events of up to one " +
+                "pane older than the 'window.time' may still be counted. The more panes are used, the smoother " +
+                "the window slides.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value for which the count is derived.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "window.time",
+                        description = "The length of the sliding time window over which the events are counted.",
+                        type = {DataType.INT, DataType.LONG, DataType.TIME}
+                ),
+                @Parameter(
+                        name = "no.of.panes",
+                        description = "The number of panes the window is divided into.",
+                        type = {DataType.INT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the count generated, expressed " +
+                                "as a value between 0 and 1. Lower the value specified, lower is the rate by which " +
+                                "the count can deviate from being perfectly correct. Note that you cannot specify " +
+                                "`1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the result can deviate from " +
+                                "the actual event count. Higher the value specified, higher is the possibility of " +
+                                "the amount of error in the count being no greater than the relative error " +
+                                "specified. Note that you cannot specify `1` or `0` as the value for this " +
+                                "parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "timeSlicedCount",
+                        description = "This represents the approximate count of the value of the latest event " +
+                                "within the window.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "timeSlicedCountLowerBound",
+                        description = "The lowest value in the range within which the most accurate count for the " +
+                                "attribute is included. This count range is based on the latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "timeSlicedCountUpperBound",
+                        description = "The highest value in the range within which the most accurate count for the " +
+                                "attribute is included. This count range is based on the latest event.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#approximate:timeSlicedCount(ip, 1 hour, 60)\n" +
+                                "select ip, timeSlicedCount, timeSlicedCountLowerBound, timeSlicedCountUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the count(frequency) of requests from each IP address " +
+                                "during the last hour, which slides a minute at a time, with a default relative " +
+                                "error of 0.01 and a default confidence of 0.99, using 61 count-min sketches " +
+                                "instead of buffering the requests of the last hour."
+                )
+        }
+)
+public class TimeSlicedCountExtension extends StreamProcessor<TimeSlicedCountExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+        long windowTime;
+        int noOfPanes;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 3 || attributeExpressionExecutors.length == 5)) {
+            throw new SiddhiAppCreationException("3 or 5 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the timeSlicedCount " +
+                    "function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside timeSlicedCount function - " +
+                    "'value' has to be a variable but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> windowTime
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside timeSlicedCount function - " +
+                    "'window.time' has to be a constant but found " +
+                    attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.INT ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.LONG) {
+            windowTime = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                    .getValue()).longValue();
+        } else {
+            throw new SiddhiAppCreationException("The 2nd parameter inside timeSlicedCount function - " +
+                    "'window.time' should be of type Int or Long but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        if (windowTime <= 0) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside timeSlicedCount function - " +
+                    "'window.time' must be a positive value but found " + windowTime);
+        }
+
+        //expressionExecutors[2] --> noOfPanes
+        if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside timeSlicedCount function - " +
+                    "'no.of.panes' has to be a constant but found " +
+                    attributeExpressionExecutors[2].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.INT) {
+            noOfPanes = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[2]).getValue();
+        } else {
+            throw new SiddhiAppCreationException("The 3rd parameter inside timeSlicedCount function - " +
+                    "'no.of.panes' should be of type Int but found " +
+                    attributeExpressionExecutors[2].getReturnType());
+        }
+        if (noOfPanes <= 0) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside timeSlicedCount function - " +
+                    "'no.of.panes' must be a positive value but found " + noOfPanes);
+        }
+
+        if (attributeExpressionExecutors.length > 3) {
+            //expressionExecutors[3] --> relativeError
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside timeSlicedCount function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside timeSlicedCount function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside timeSlicedCount function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+
+            //expressionExecutors[4] --> confidence
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside timeSlicedCount function - " +
+                        "'confidence' has to be a constant but found " +
+                        attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside timeSlicedCount function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside timeSlicedCount function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+        final long sketchWindowTime = windowTime;
+        final int sketchNoOfPanes = noOfPanes;
+
+        attributeList.add(new Attribute("timeSlicedCount", Attribute.Type.LONG));
+        attributeList.add(new Attribute("timeSlicedCountLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("timeSlicedCountUpperBound", Attribute.Type.LONG));
+        return () -> new ExtensionState(new TimeSlicedCountMinSketch<>(sketchRelativeError, sketchConfidence,
+                sketchWindowTime, sketchNoOfPanes));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.timeSlicedCountMinSketch.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0L, 0L, 0L});
+                    continue;
+                }
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    streamEventChunk.remove();
+                } else {
+                    long approximateCount;
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        approximateCount = state.timeSlicedCountMinSketch.insert(newData,
+                                streamEvent.getTimestamp());
+                    } else {
+//                      the panes leave the window based on the timestamps, hence the expired events of an
+//                      upstream window do not remove anything
+                        approximateCount = state.timeSlicedCountMinSketch.getCount(newData,
+                                streamEvent.getTimestamp());
+                    }
+                    long[] confidenceInterval =
+                            state.timeSlicedCountMinSketch.getConfidenceInterval(approximateCount);
+
+                    Object[] outputData = {approximateCount, confidenceInterval[0], confidenceInterval[1]};
+
+                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private TimeSlicedCountMinSketch<Object> timeSlicedCountMinSketch;
+
+        private ExtensionState(TimeSlicedCountMinSketch<Object> timeSlicedCountMinSketch) {
+            this.timeSlicedCountMinSketch = timeSlicedCountMinSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (TimeSlicedCountExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("timeSlicedCountMinSketch", timeSlicedCountMinSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (TimeSlicedCountExtension.this) {
+                timeSlicedCountMinSketch = (TimeSlicedCountMinSketch) state.get("timeSlicedCountMinSketch");
+            }
+        }
+    }
+}
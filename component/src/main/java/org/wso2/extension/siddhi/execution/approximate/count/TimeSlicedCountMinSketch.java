@@ -0,0 +1,142 @@
+/*
+* Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* WSO2 Inc. licenses this file to you under the Apache License,
+* Version 2.0 (the "License"); you may not use this file except
+* in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied. See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * A data structure to keep count of different items within a sliding time window, as a ring of count min sketches
+ * each of which counts the items of a pane of the window. The sum of the panes is kept in a separate count min
+ * sketch, from which the oldest pane is subtracted when the window slides past it, hence the items do not have to
+ * be buffered to remove them when they leave the window.
+ * The ring holds one pane more than the panes of the window, as the current pane is only partly filled, hence no
+ * item within the window length is missed. The window slides by a whole pane at a time, therefore the items of up
+ * to one pane older than the window length may still be counted.
+ *
+ * @param <E> is the type of data to be counted
+ */
+public class TimeSlicedCountMinSketch<E> implements Serializable {
+    private static final long serialVersionUID = -2018394732541262750L;
+
+    private long paneLength;
+    private int currentPane;
+    private long currentPaneEnd = Long.MIN_VALUE;
+
+    private ArrayList<CountMinSketch<E>> panes;
+    private CountMinSketch<E> totalSketch;
+
+    /**
+     * Instantiate the time sliced count min sketch based on a given relative error, confidence, window length and
+     * number of panes
+     *
+     * @param relativeError is a positive number less than 1 (e.g. 0.01)
+     * @param confidence    is a positive number less than 1 (e.g. 0.01)
+     *                      which is the probability of answers being within the relative error
+     * @param windowLength  is the length of the sliding window in milliseconds
+     * @param noOfPanes     is the number of panes the window is divided into
+     */
+    public TimeSlicedCountMinSketch(double relativeError, double confidence, long windowLength, int noOfPanes) {
+        this.paneLength = Math.max(1, (windowLength + noOfPanes - 1) / noOfPanes);
+//      the current pane is kept in addition to the whole panes of the window
+        this.panes = new ArrayList<>(noOfPanes + 1);
+        for (int i = 0; i <= noOfPanes; i++) {
+            panes.add(new CountMinSketch<>(relativeError, confidence));
+        }
+        this.totalSketch = new CountMinSketch<>(relativeError, confidence);
+    }
+
+    /**
+     * Slide the window till the pane of the given timestamp is the current pane, subtracting the counts of the
+     * panes which leave the window from the total counts
+     *
+     * @param timestamp is the timestamp of the latest event
+     */
+    private void slide(long timestamp) {
+        if (currentPaneEnd == Long.MIN_VALUE) {
+            currentPaneEnd = (Math.floorDiv(timestamp, paneLength) + 1) * paneLength;
+            return;
+        }
+        if (timestamp < currentPaneEnd) {
+            return;
+        }
+        long noOfExpiredPanes = (timestamp - currentPaneEnd) / paneLength + 1;
+        if (noOfExpiredPanes >= panes.size()) {
+            clearPanes();
+        } else {
+            for (int i = 0; i < noOfExpiredPanes; i++) {
+                currentPane = (currentPane + 1) % panes.size();
+                totalSketch.subtract(panes.get(currentPane));
+                panes.get(currentPane).clear();
+            }
+        }
+        currentPaneEnd += noOfExpiredPanes * paneLength;
+    }
+
+    /**
+     * Adds the count of an item, which arrived at the given timestamp, to the current pane
+     *
+     * @param item      is the item to be inserted
+     * @param timestamp is the timestamp of the item
+     * @return the approximate count of the item within the window
+     */
+    public synchronized long insert(E item, long timestamp) {
+        slide(timestamp);
+        panes.get(currentPane).insert(item);
+        return totalSketch.insert(item);
+    }
+
+    /**
+     * Calculate the approximate count of an item within the window at the given timestamp
+     *
+     * @param item      is the item whose count is calculated
+     * @param timestamp is the current timestamp
+     * @return the approximate count of the item within the window
+     */
+    public synchronized long getCount(E item, long timestamp) {
+        slide(timestamp);
+        return totalSketch.getCount(item);
+    }
+
+    /**
+     * Calculate the confidence interval of the approximate count, based on the total count of the items within
+     * the window
+     *
+     * @param count is the approximate count
+     * @return a long array which contains the lower bound and
+     * the upper bound of the confidence interval consecutively
+     */
+    public synchronized long[] getConfidenceInterval(long count) {
+        return totalSketch.getConfidenceInterval(count);
+    }
+
+    private void clearPanes() {
+        for (CountMinSketch<E> pane : panes) {
+            pane.clear();
+        }
+        totalSketch.clear();
+    }
+
+    /**
+     * Clears the counts within the window.
+     */
+    public synchronized void clear() {
+        clearPanes();
+        currentPaneEnd = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.dedup;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs Stable Bloom Filter algorithm to drop the events whose id was probably seen recently.
+ */
+@Extension(
+        name = "dedup",
+        namespace = "approximate",
+        description = "This extension applies the `stable bloom filter` algorithm to drop duplicate events from " +
+                "a stream. An event is dropped if its 'id' was probably seen before, and emitted otherwise. The " +
+                "filter uses a fixed amount of memory and gradually forgets old ids, so that it can be used on " +
+                "unbounded streams without a window. Hence an id which has not been seen for a long time may be " +
+                "emitted again, and a new id may be dropped with the probability of the given " +
+                "'false positive rate'. Only the `CURRENT` events are filtered, the events of other types " +
+                "are passed through.",
+        parameters = {
+                @Parameter(
+                        name = "id",
+                        description = "The id based on which the duplicates are detected.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "false.positive.rate",
+                        description = "The probability of a new event being dropped as a duplicate, expressed " +
+                                "as a value between 0 and 1. Lower the value specified, sooner the old ids are " +
+                                "forgotten for a given 'memory budget'. Note that you cannot specify `1` or `0` as " +
+                                "the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "memory.budget",
+                        description = "The number of bytes used by the filter. Higher the value specified, " +
+                                "longer the ids are remembered.",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "1048576"
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream TransactionStream (transactionId string, amount double);\n" +
+                                "from TransactionStream#approximate:dedup(transactionId)\n" +
+                                "select *\n" +
+                                "insert into UniqueTransactionStream;",
+                        description = "This query drops the replayed transactions whose ids were seen before. " +
+                                "A new transaction is dropped with a default probability of 0.01 and the filter " +
+                                "uses a default memory budget of 1 MB."
+                ),
+                @Example(
+                        syntax = "define stream SensorStream (readingId long, temperature double);\n" +
+                                "from SensorStream#approximate:dedup(readingId, 0.001, 8388608)\n" +
+                                "select *\n" +
+                                "insert into OutputStream;",
+                        description = "This query drops the readings whose ids were seen before, using 8 MB of " +
+                                "memory. A new reading is dropped with a probability of 0.001."
+                )
+        }
+)
+public class DedupExtension extends StreamProcessor<DedupExtension.ExtensionState> {
+    private ExpressionExecutor idExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(0);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for false positive rate and memory budget
+        final double defaultFalsePositiveRate = 0.01;
+        final long defaultMemoryBudget = 1024 * 1024;
+
+        double falsePositiveRate = defaultFalsePositiveRate;
+        long memoryBudget = defaultMemoryBudget;
+
+//       validate number of attributes
+        if (attributeExpressionExecutors.length < 1 || attributeExpressionExecutors.length > 3) {
+            throw new SiddhiAppCreationException("1, 2 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the dedup function");
+        }
+
+        //expressionExecutors[0] --> id
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside dedup function - " +
+                    "'id' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        idExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> falsePositiveRate
+        if (attributeExpressionExecutors.length > 1) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside dedup function - " +
+                        "'false.positive.rate' has to be a constant but found " +
+                        this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+                falsePositiveRate = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 2nd parameter inside dedup function - " +
+                        "'false.positive.rate' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            if ((falsePositiveRate <= 0) || (falsePositiveRate >= 1)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside dedup function - " +
+                        "'false.positive.rate' must be in the range of (0, 1) but found " + falsePositiveRate);
+            }
+        }
+
+        //expressionExecutors[2] --> memoryBudget
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside dedup function - " +
+                        "'memory.budget' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.LONG) {
+                memoryBudget = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside dedup function - " +
+                        "'memory.budget' should be of type Int or Long but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if (memoryBudget < Long.BYTES) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside dedup function - " +
+                        "'memory.budget' must be at least " + Long.BYTES + " bytes but found " + memoryBudget);
+            }
+        }
+
+        final double filterFalsePositiveRate = falsePositiveRate;
+        final long filterMemoryBudget = memoryBudget;
+        return () -> new ExtensionState(new StableBloomFilter<>(filterFalsePositiveRate, filterMemoryBudget));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    Object id = idExecutor.execute(streamEvent);
+                    if (id != null && state.stableBloomFilter.insert(id)) {
+                        streamEventChunk.remove();
+                    }
+                } else if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.stableBloomFilter.clear();
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private StableBloomFilter<Object> stableBloomFilter;
+
+        private ExtensionState(StableBloomFilter<Object> stableBloomFilter) {
+            this.stableBloomFilter = stableBloomFilter;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (DedupExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("stableBloomFilter", stableBloomFilter);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (DedupExtension.this) {
+                stableBloomFilter = (StableBloomFilter) state.get("stableBloomFilter");
+            }
+        }
+    }
+}
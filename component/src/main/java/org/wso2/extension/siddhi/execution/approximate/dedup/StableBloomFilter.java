@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.dedup;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A probabilistic data structure to detect duplicates in an unbounded stream using a fixed amount of memory.
+ * Each insertion decrements a few cells so that old items are gradually forgotten, which keeps the
+ * rate of false positives stable regardless of the length of the stream.
+ * The referred research paper - Approximately Detecting Duplicates for Streaming Data using Stable Bloom Filters
+ * by Fan Deng and Davood Rafiei.
+ * http://webdocs.cs.ualberta.ca/~drafiei/papers/DupDet06Sigmod.pdf
+ *
+ * @param <E> is the type of items to be checked
+ */
+public class StableBloomFilter<E> implements Serializable {
+    private static final long serialVersionUID = 2960232513356812371L;
+
+    //  each cell is a 2 bit counter, 32 of them are packed into a long
+    private static final int CELLS_PER_WORD = 32;
+    private static final int MAX_CELL_VALUE = 3;
+    private static final long LOWER_BITS_MASK = 0x5555555555555555L;
+
+    private static final int SECOND_HASH_SEED = 0x9747b28c;
+
+    private long[] cells;
+    private int noOfCells;
+
+    private int noOfHashFunctions;
+    private int noOfDecrements;
+
+    private long randomState;
+
+    /**
+     * Instantiate the stable bloom filter for a given false positive rate and memory size
+     *
+     * @param falsePositiveRate is the probability of a new item being reported as a duplicate, in the range (0, 1)
+     * @param memorySize        is the number of bytes used for the cells
+     */
+    public StableBloomFilter(double falsePositiveRate, long memorySize) {
+        if (!(falsePositiveRate < 1 && falsePositiveRate > 0)) {
+            throw new IllegalArgumentException("falsePositiveRate must be a value in the range (0,1)");
+        }
+        int noOfWords = (int) Math.min(Math.max(memorySize / Long.BYTES, 1), Integer.MAX_VALUE / CELLS_PER_WORD);
+        this.cells = new long[noOfWords];
+        this.noOfCells = noOfWords * CELLS_PER_WORD;
+
+//      k = ln(1 / falsePositiveRate) / ln(2), as for a standard bloom filter
+        this.noOfHashFunctions = Math.max(1, (int) Math.ceil(Math.log(1 / falsePositiveRate) / Math.log(2)));
+
+//      the false positive rate at the stable point is
+//      (1 - (1 / (1 + 1 / (P * (1 / k - 1 / m)))) ^ Max) ^ k
+//      which is solved for the number of cells decremented per insertion, P
+        double maxOfCell = Math.pow(1 - Math.pow(falsePositiveRate, 1.0 / noOfHashFunctions),
+                1.0 / MAX_CELL_VALUE);
+        double decrements = 1 / ((1 / maxOfCell - 1) * (1.0 / noOfHashFunctions - 1.0 / noOfCells));
+        this.noOfDecrements = (int) Math.max(1, Math.min(Math.round(decrements), noOfCells));
+
+        this.randomState = 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * Checks whether the item was seen recently and records it as seen
+     * <ol>
+     * <li>the item is a duplicate if all of its k cells are non zero</li>
+     * <li>P cells starting from a random position are decremented</li>
+     * <li>the k cells of the item are set to the maximum value</li>
+     * </ol>
+     *
+     * @param item is the item to be inserted
+     * @return {@code true} if the item is probably a duplicate, {@code false} if it is definitely new
+     * or was forgotten
+     */
+    public synchronized boolean insert(E item) {
+        int[] indices = getCellIndices(item);
+
+        boolean duplicate = true;
+        for (int index : indices) {
+            if (getCell(index) == 0) {
+                duplicate = false;
+                break;
+            }
+        }
+
+        decrementCells((int) ((nextRandom() >>> 1) % noOfCells), noOfDecrements);
+
+        for (int index : indices) {
+            cells[index / CELLS_PER_WORD] |= ((long) MAX_CELL_VALUE) << (2 * (index % CELLS_PER_WORD));
+        }
+        return duplicate;
+    }
+
+    /**
+     * Compute k cell indices for an item using double hashing (h1 + i * h2)
+     *
+     * @param item is the item for which the indices are calculated
+     * @return an int array(of size {@code noOfHashFunctions}) of cell indices
+     */
+    private int[] getCellIndices(E item) {
+        int[] indices = new int[noOfHashFunctions];
+        long hash1 = MurmurHash.hash(item);
+        long hash2 = MurmurHash.hash(item, SECOND_HASH_SEED);
+        for (int i = 0; i < noOfHashFunctions; i++) {
+            indices[i] = (int) Math.floorMod(hash1 + i * hash2, (long) noOfCells);
+        }
+        return indices;
+    }
+
+    private int getCell(int index) {
+        return (int) (cells[index / CELLS_PER_WORD] >>> (2 * (index % CELLS_PER_WORD))) & MAX_CELL_VALUE;
+    }
+
+    /**
+     * Decrement the non zero cells in the range [start, start + count), wrapping around the end of the cells.
+     * All the cells of a word in the range are decremented at once.
+     */
+    private void decrementCells(int start, int count) {
+        int cell = start;
+        int remaining = count;
+        while (remaining > 0) {
+            int word = cell / CELLS_PER_WORD;
+            int firstCellInWord = cell % CELLS_PER_WORD;
+            int cellsInWord = Math.min(CELLS_PER_WORD - firstCellInWord, remaining);
+
+            long rangeMask = (cellsInWord == CELLS_PER_WORD ? -1L : ((1L << (2 * cellsInWord)) - 1))
+                    << (2 * firstCellInWord);
+            long value = cells[word];
+//          the lower bit of each non zero cell, subtracting it decrements that cell without any borrow
+            long nonZeroMask = (value | (value >>> 1)) & LOWER_BITS_MASK & rangeMask;
+            cells[word] = value - nonZeroMask;
+
+            remaining -= cellsInWord;
+            cell += cellsInWord;
+            if (cell >= noOfCells) {
+                cell = 0;
+            }
+        }
+    }
+
+    /**
+     * xorshift64 pseudo random generator, kept in the filter so that it can be persisted with it
+     */
+    private long nextRandom() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return randomState;
+    }
+
+    /**
+     * Clears all the cells within the filter.
+     */
+    public synchronized void clear() {
+        Arrays.fill(cells, 0);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+/**
+ * Calculates the approximate distinct count of a HyperLogLog returned by approximate:hyperLogLog.
+ */
+@Extension(
+        name = "cardinality",
+        namespace = "approximate",
+        description = "This function returns the approximate distinct count of the values of a `HyperLogLog`, " +
+                "which is returned by the `approximate:hyperLogLog` aggregator, either in a query or in an " +
+                "incremental aggregation.",
+        parameters = {
+                @Parameter(
+                        name = "sketch",
+                        description = "The HyperLogLog whose distinct count is calculated.",
+                        type = {DataType.OBJECT}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The approximate distinct count, or 0 if the HyperLogLog is null.",
+                type = {DataType.LONG}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string, timestamp long);\n" +
+                                "define aggregation RequestAggregation\n" +
+                                "from RequestStream\n" +
+                                "select approximate:hyperLogLog(ip) as ipSketch\n" +
+                                "aggregate by timestamp every sec ... year;\n" +
+                                "from RequestAggregation within \"2017-**-** **:**:**\" per \"months\"\n" +
+                                "select AGG_TIMESTAMP, approximate:cardinality(ipSketch) as distinctIps;",
+                        description = "The aggregation keeps a HyperLogLog of the IP addresses per second, which " +
+                                "are merged into a HyperLogLog per minute, hour, day, month and year. The " +
+                                "store query calculates the approximate number of distinct IP addresses of each " +
+                                "month of 2017."
+                )
+        }
+)
+public class CardinalityExtension extends FunctionExecutor<State> {
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+//       validate number of attributes
+        if (attributeExpressionExecutors.length != 1) {
+            throw new SiddhiAppCreationException("1 attribute is expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the cardinality function");
+        }
+
+        //expressionExecutors[0] --> sketch
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.OBJECT) {
+            throw new SiddhiAppCreationException("The 1st parameter inside cardinality function - " +
+                    "'sketch' should be of type Object but found " + attributeExpressionExecutors[0].getReturnType());
+        }
+
+//      the function does not hold any state
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+//      the function always has one parameter
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+        if (data == null) {
+            return 0L;
+        }
+        if (!(data instanceof HyperLogLog)) {
+            throw new SiddhiAppRuntimeException("The 1st parameter inside cardinality function - 'sketch' should " +
+                    "be a HyperLogLog returned by approximate:hyperLogLog but found " +
+                    data.getClass().getCanonicalName());
+        }
+        return ((HyperLogLog<?>) data).getCardinality();
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.LONG;
+    }
+}
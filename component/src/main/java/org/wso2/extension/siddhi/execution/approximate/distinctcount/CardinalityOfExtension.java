@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.SketchRegistry;
+
+/**
+ * Reads the approximate distinct count of a named HyperLogLog populated by approximate:distinctCountSketch.
+ */
+@Extension(
+        name = "cardinalityOf",
+        namespace = "approximate",
+        description = "This function returns the approximate distinct count of the values in the `HyperLogLog` " +
+                "of the given name, which is populated by the `approximate:distinctCountSketch` extension in the " +
+                "same Siddhi app.",
+        parameters = {
+                @Parameter(
+                        name = "sketch.name",
+                        description = "The name of the sketch given in the `approximate:distinctCountSketch` " +
+                                "extension.",
+                        type = {DataType.STRING}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The approximate distinct count of the values in the sketch.",
+                type = {DataType.LONG}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "define stream TriggerStream (triggerId string);\n" +
+                                "from RequestStream#window.time(1 hour)#approximate:distinctCountSketch('ips', ip)\n" +
+                                "insert into RequestLogStream;\n" +
+                                "from TriggerStream\n" +
+                                "select approximate:cardinalityOf('ips') as distinctIps\n" +
+                                "insert into OutputStream;",
+                        description = "The second query reads the approximate number of distinct IP addresses of " +
+                                "the last hour from the sketch named 'ips', which is populated by the first query, " +
+                                "on each trigger event."
+                )
+        }
+)
+public class CardinalityOfExtension extends FunctionExecutor<State> {
+    private String sketchName;
+    private SiddhiAppContext siddhiAppContext;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+//       validate number of attributes
+        if (attributeExpressionExecutors.length != 1) {
+            throw new SiddhiAppCreationException("1 attribute is expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the cardinalityOf function");
+        }
+
+        //expressionExecutors[0] --> sketchName
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside cardinalityOf function - " +
+                    "'sketch.name' has to be a constant but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 1st parameter inside cardinalityOf function - " +
+                    "'sketch.name' should be of type String but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        sketchName = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+        siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+
+//      the function does not hold any state, the sketch is owned by the approximate:distinctCountSketch extension
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+//      the function always has one parameter
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+//      the sketch is looked up on each call, as it may be registered after this function is initialized
+        HyperLogLog<Object> hyperLogLog = SketchRegistry.get(siddhiAppContext, sketchName, HyperLogLog.class);
+        if (hyperLogLog == null) {
+            throw new SiddhiAppRuntimeException("No approximate:distinctCountSketch named '" + sketchName +
+                    "' is defined in the Siddhi app '" + siddhiAppContext.getName() + "'");
+        }
+        return hyperLogLog.getCardinality();
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.LONG;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * An exact set of integer values, compressed as in a Roaring bitmap.
+ * The values are grouped by their high 48 bits, and the low 16 bits of a group are kept in a container, which
+ * is a sorted array of the low bits while the group has at most 4096 values, and a bitmap of 65536 bits
+ * afterwards. When the reference counts are enabled, the number of times each value was added is kept along
+ * with the sorted array so that the values can be removed, and the containers are never converted to bitmaps.
+ * The referred research paper - Better bitmap performance with Roaring bitmaps
+ * by Samy Chambi, Daniel Lemire, Owen Kaser and Robert Godin.
+ * https://arxiv.org/pdf/1402.6407.pdf
+ */
+public class CompressedBitmap implements Serializable {
+    private static final long serialVersionUID = -4386317360471218917L;
+
+    private static final int MAX_ARRAY_SIZE = 4096;
+    private static final int BITMAP_SIZE = 1024;
+    private static final int INITIAL_ARRAY_SIZE = 4;
+    private static final int INITIAL_NO_OF_CONTAINERS = 4;
+
+    //  the bytes of the key and the references of a container
+    private static final int CONTAINER_OVERHEAD = 24;
+
+    private boolean referenceCountsEnabled;
+
+    //  containers sorted by the high bits of their values
+    private long[] highBits;
+    private char[][] lowBitArrays;
+    private int[][] referenceCounts;
+    private long[][] bitmaps;
+    private int[] cardinalities;
+    private int noOfContainers;
+
+    private long cardinality;
+    private long sizeInBytes;
+
+    /**
+     * @param referenceCountsEnabled is a boolean value to mention whether to keep the number of times each
+     *                               value was added, which is needed to remove the values
+     */
+    public CompressedBitmap(boolean referenceCountsEnabled) {
+        this.referenceCountsEnabled = referenceCountsEnabled;
+        clear();
+    }
+
+    /**
+     * Adds a value to the set
+     *
+     * @param value is the value to be added
+     */
+    public void add(long value) {
+        int container = findContainer(value >>> 16);
+        if (container < 0) {
+            container = addContainer(-(container + 1), value >>> 16);
+        }
+        char lowBits = (char) value;
+        if (bitmaps[container] != null) {
+            long[] bitmap = bitmaps[container];
+            long bit = 1L << lowBits;
+            if ((bitmap[lowBits >>> 6] & bit) == 0) {
+                bitmap[lowBits >>> 6] |= bit;
+                cardinalities[container]++;
+                cardinality++;
+            }
+            return;
+        }
+        char[] lowBitArray = lowBitArrays[container];
+        int position = Arrays.binarySearch(lowBitArray, 0, cardinalities[container], lowBits);
+        if (position >= 0) {
+            if (referenceCountsEnabled) {
+                referenceCounts[container][position]++;
+            }
+            return;
+        }
+        if (!referenceCountsEnabled && cardinalities[container] == MAX_ARRAY_SIZE) {
+            convertToBitmap(container);
+            add(value);
+            return;
+        }
+        insertIntoArray(container, -(position + 1), lowBits);
+        cardinality++;
+    }
+
+    /**
+     * Removes a value, which was previously added, from the set once
+     *
+     * @param value is the value to be removed
+     */
+    public void remove(long value) {
+        if (!referenceCountsEnabled) {
+            throw new IllegalStateException(this.getClass().getCanonicalName() +
+                    " : Remove operation is called while the 'referenceCountsEnabled' is false");
+        }
+        int container = findContainer(value >>> 16);
+        if (container < 0) {
+            return;
+        }
+        int position = Arrays.binarySearch(lowBitArrays[container], 0, cardinalities[container], (char) value);
+        if (position < 0) {
+            return;
+        }
+        if (--referenceCounts[container][position] > 0) {
+            return;
+        }
+        int noOfMovedValues = cardinalities[container] - position - 1;
+        System.arraycopy(lowBitArrays[container], position + 1, lowBitArrays[container], position,
+                noOfMovedValues);
+        System.arraycopy(referenceCounts[container], position + 1, referenceCounts[container], position,
+                noOfMovedValues);
+        cardinalities[container]--;
+        cardinality--;
+        sizeInBytes -= Character.BYTES + Integer.BYTES;
+        if (cardinalities[container] == 0) {
+            removeContainer(container);
+        }
+    }
+
+    /**
+     * @return the number of distinct values in the set
+     */
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the containers
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Adds each value of the set to a HyperLogLog, as many times as it was added to the set when the reference
+     * counts are enabled, so that the values can be removed from the HyperLogLog
+     *
+     * @param hyperLogLog is the HyperLogLog to which the values are added
+     */
+    public void addTo(HyperLogLog<Object> hyperLogLog) {
+        for (int container = 0; container < noOfContainers; container++) {
+            long high = highBits[container] << 16;
+            if (bitmaps[container] != null) {
+                long[] bitmap = bitmaps[container];
+                for (int word = 0; word < BITMAP_SIZE; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0) {
+                        hyperLogLog.addItem(high | (word << 6) | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+                continue;
+            }
+            for (int i = 0; i < cardinalities[container]; i++) {
+                long value = high | lowBitArrays[container][i];
+                int noOfTimes = referenceCountsEnabled ? referenceCounts[container][i] : 1;
+                for (int j = 0; j < noOfTimes; j++) {
+                    hyperLogLog.addItem(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears all the values of the set.
+     */
+    public void clear() {
+        highBits = new long[INITIAL_NO_OF_CONTAINERS];
+        lowBitArrays = new char[INITIAL_NO_OF_CONTAINERS][];
+        referenceCounts = new int[INITIAL_NO_OF_CONTAINERS][];
+        bitmaps = new long[INITIAL_NO_OF_CONTAINERS][];
+        cardinalities = new int[INITIAL_NO_OF_CONTAINERS];
+        noOfContainers = 0;
+        cardinality = 0;
+        sizeInBytes = 0;
+    }
+
+    private int findContainer(long high) {
+        return Arrays.binarySearch(highBits, 0, noOfContainers, high);
+    }
+
+    private int addContainer(int position, long high) {
+        if (noOfContainers == highBits.length) {
+            int newLength = highBits.length * 2;
+            highBits = Arrays.copyOf(highBits, newLength);
+            lowBitArrays = Arrays.copyOf(lowBitArrays, newLength);
+            referenceCounts = Arrays.copyOf(referenceCounts, newLength);
+            bitmaps = Arrays.copyOf(bitmaps, newLength);
+            cardinalities = Arrays.copyOf(cardinalities, newLength);
+        }
+        int noOfMovedContainers = noOfContainers - position;
+        System.arraycopy(highBits, position, highBits, position + 1, noOfMovedContainers);
+        System.arraycopy(lowBitArrays, position, lowBitArrays, position + 1, noOfMovedContainers);
+        System.arraycopy(referenceCounts, position, referenceCounts, position + 1, noOfMovedContainers);
+        System.arraycopy(bitmaps, position, bitmaps, position + 1, noOfMovedContainers);
+        System.arraycopy(cardinalities, position, cardinalities, position + 1, noOfMovedContainers);
+        highBits[position] = high;
+        lowBitArrays[position] = new char[INITIAL_ARRAY_SIZE];
+        referenceCounts[position] = referenceCountsEnabled ? new int[INITIAL_ARRAY_SIZE] : null;
+        bitmaps[position] = null;
+        cardinalities[position] = 0;
+        noOfContainers++;
+        sizeInBytes += CONTAINER_OVERHEAD;
+        return position;
+    }
+
+    private void removeContainer(int position) {
+        int noOfMovedContainers = noOfContainers - position - 1;
+        System.arraycopy(highBits, position + 1, highBits, position, noOfMovedContainers);
+        System.arraycopy(lowBitArrays, position + 1, lowBitArrays, position, noOfMovedContainers);
+        System.arraycopy(referenceCounts, position + 1, referenceCounts, position, noOfMovedContainers);
+        System.arraycopy(bitmaps, position + 1, bitmaps, position, noOfMovedContainers);
+        System.arraycopy(cardinalities, position + 1, cardinalities, position, noOfMovedContainers);
+        noOfContainers--;
+        lowBitArrays[noOfContainers] = null;
+        referenceCounts[noOfContainers] = null;
+        bitmaps[noOfContainers] = null;
+        sizeInBytes -= CONTAINER_OVERHEAD;
+    }
+
+    private void insertIntoArray(int container, int position, char lowBits) {
+        int size = cardinalities[container];
+        if (size == lowBitArrays[container].length) {
+            int newLength = Math.min(size * 2, MAX_ARRAY_SIZE);
+            if (referenceCountsEnabled) {
+                newLength = size * 2;
+                referenceCounts[container] = Arrays.copyOf(referenceCounts[container], newLength);
+            }
+            lowBitArrays[container] = Arrays.copyOf(lowBitArrays[container], newLength);
+        }
+        System.arraycopy(lowBitArrays[container], position, lowBitArrays[container], position + 1, size - position);
+        lowBitArrays[container][position] = lowBits;
+        if (referenceCountsEnabled) {
+            System.arraycopy(referenceCounts[container], position, referenceCounts[container], position + 1,
+                    size - position);
+            referenceCounts[container][position] = 1;
+            sizeInBytes += Integer.BYTES;
+        }
+        cardinalities[container]++;
+        sizeInBytes += Character.BYTES;
+    }
+
+    private void convertToBitmap(int container) {
+        long[] bitmap = new long[BITMAP_SIZE];
+        char[] lowBitArray = lowBitArrays[container];
+        for (int i = 0; i < cardinalities[container]; i++) {
+            bitmap[lowBitArray[i] >>> 6] |= 1L << lowBitArray[i];
+        }
+        bitmaps[container] = bitmap;
+        lowBitArrays[container] = null;
+        sizeInBytes += (long) BITMAP_SIZE * Long.BYTES - (long) cardinalities[container] * Character.BYTES;
+    }
+}
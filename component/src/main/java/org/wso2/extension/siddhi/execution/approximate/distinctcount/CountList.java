@@ -81,4 +81,11 @@ public class CountList implements Serializable {
         }
         return 0;
     }
+
+    /**
+     * Remove all the counts, keeping the allocated list to be reused
+     */
+    public void clear() {
+        counts.clear();
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calculates the approximate distinct count of the values of each group, as an aggregator of the select clause.
+ */
+@Extension(
+        name = "distinctCountAgg",
+        namespace = "approximate",
+        description = "This aggregator applies the `HyperLogLog` algorithm to calculate the approximate number of " +
+                "distinct values of an attribute, like `approximate:distinctCount`, but in the select clause of " +
+                "a query. Hence it can be used with `group by` to keep a HyperLogLog per group without a " +
+                "partition, and it returns only the distinct count instead of appending attributes to the " +
+                "events. The values of the events expired from a window are removed from the HyperLogLog.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value used to find the distinct count.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the distinct count " +
+                                "generated, expressed as a value in the range (0, 0.26]. Lower the value " +
+                                "specified, higher is the memory used per group.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The approximate distinct count of the values of the group.",
+                type = {DataType.LONG}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string, region string);\n" +
+                                "from RequestStream#window.time(1 hour)\n" +
+                                "select region, approximate:distinctCountAgg(ip, 0.02) as distinctIps\n" +
+                                "group by region\n" +
+                                "insert into OutputStream;",
+                        description = "This query calculates the approximate number of distinct IP addresses " +
+                                "which sent requests within the last hour, for each region. The distinct count " +
+                                "of a region deviates from the exact count by about 2% of its value."
+                )
+        }
+)
+public class DistinctCountAggExtension
+        extends AttributeAggregatorExecutor<DistinctCountAggExtension.ExtensionState> {
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode, boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+//      default value for relative error
+        final double defaultRelativeError = 0.01;
+
+        double relativeError = defaultRelativeError;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 2)) {
+            throw new SiddhiAppCreationException("1 or 2 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the distinctCountAgg " +
+                    "function");
+        }
+
+        //expressionExecutors[1] --> relativeError
+        if (attributeExpressionExecutors.length > 1) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside distinctCountAgg function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[1].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 2nd parameter inside distinctCountAgg function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            if (relativeError <= 0 || relativeError > 0.26) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside distinctCountAgg function - " +
+                        "'relative.error' must be in the range of (0, 0.26] but found " + relativeError);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+//      the past counts are kept so that the values of the expired events can be removed
+        return () -> new ExtensionState(new HyperLogLog<>(sketchRelativeError, 0.95, true));
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        synchronized (this) {
+            if (data != null) {
+                state.hyperLogLog.addItem(data);
+            }
+            return state.hyperLogLog.getCardinality();
+        }
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        return processAdd(data[0], state);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        synchronized (this) {
+            if (data != null) {
+                state.hyperLogLog.removeItem(data);
+            }
+            return state.hyperLogLog.getCardinality();
+        }
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        return processRemove(data[0], state);
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        synchronized (this) {
+            state.hyperLogLog.clear();
+            return 0L;
+        }
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.LONG;
+    }
+
+    class ExtensionState extends State {
+        private HyperLogLog<Object> hyperLogLog;
+
+        private ExtensionState(HyperLogLog<Object> hyperLogLog) {
+            this.hyperLogLog = hyperLogLog;
+        }
+
+        @Override
+        public boolean canDestroy() {
+//          the state of a group is released once the group has no values, such as after all its values expired
+            synchronized (DistinctCountAggExtension.this) {
+                return hyperLogLog.isEmpty();
+            }
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (DistinctCountAggExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("hyperLogLog", hyperLogLog);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (DistinctCountAggExtension.this) {
+                hyperLogLog = (HyperLogLog<Object>) state.get("hyperLogLog");
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.wso2.extension.siddhi.execution.approximate.distinctcount;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * A probabilistic data structure to calculate the distinctCount of a set.
@@ -32,6 +33,9 @@ public class HyperLogLog<E> implements Serializable {
 
     private static final double STANDARD_ERROR = 1.04;
     private static final double POW_2_OF_32 = Math.pow(2, 32);
+//  the reference to the count list of a bucket, the count list, its array list and the array of the default
+//  capacity of 10, while the leading zero counts are small enough to be the cached boxed integers
+    private static final int PAST_COUNTS_BYTES_PER_BUCKET = 4 + 16 + 24 + 56;
 
     private boolean pastCountsEnabled;
 
@@ -46,7 +50,9 @@ public class HyperLogLog<E> implements Serializable {
 
     private long currentCardinality;
 
-    private int[] countArray;
+//  the arrays are allocated when the first item is added, and the count list of a bucket when the first item
+//  falls into the bucket, so that an unused HyperLogLog, such as the one of an idle partition, stays small
+    private int[] countArray = null;
     private CountList[] pastCountsArray = null;
 
     /**
@@ -78,13 +84,6 @@ public class HyperLogLog<E> implements Serializable {
                     " cannot be achieved");
         }
 
-        countArray = new int[noOfBuckets];
-        if (pastCountsEnabled) {
-            pastCountsArray = new CountList[noOfBuckets];
-            for (int i = 0; i < noOfBuckets; i++) {
-                pastCountsArray[i] = new CountList();
-            }
-        }
         estimationFactor = getEstimationFactor(lengthOfBucketId, noOfBuckets);
 
         harmonicCountSum = noOfBuckets;
@@ -102,6 +101,22 @@ public class HyperLogLog<E> implements Serializable {
      * estimated distinctCount = n * estimationFactor * harmonicCountMean
      */
     private void calculateCardinality() {
+        this.currentCardinality = estimateCardinality(noOfBuckets, estimationFactor, harmonicCountSum,
+                noOfZeroBuckets);
+    }
+
+    /**
+     * Estimate the distinctCount from the harmonic sum of the buckets, correcting the estimations
+     * of small and large cardinalities.
+     *
+     * @param noOfBuckets      is the number of buckets
+     * @param estimationFactor is the estimation factor of the number of buckets
+     * @param harmonicCountSum is (1/2)^c1 + (1/2)^c2 + ... + (1/2)^cn
+     * @param noOfZeroBuckets  is the number of buckets with a count of zero
+     * @return the estimated distinctCount
+     */
+    public static long estimateCardinality(int noOfBuckets, double estimationFactor, double harmonicCountSum,
+                                           int noOfZeroBuckets) {
         double harmonicCountMean;
         long estimatedCardinality;
         long cardinality;
@@ -122,16 +137,26 @@ public class HyperLogLog<E> implements Serializable {
         } else {
             cardinality = estimatedCardinality;
         }
-        this.currentCardinality = cardinality;
+        return cardinality;
     }
 
     /**
      * @return the current distinctCount value
      */
-    public long getCardinality() {
+    public synchronized long getCardinality() {
         return this.currentCardinality;
     }
 
+    /**
+     * Check whether no item is counted, i.e. no item has been added since the HyperLogLog was created or cleared,
+     * or all the added items have been removed
+     *
+     * @return {@code true} if all the buckets are empty
+     */
+    public synchronized boolean isEmpty() {
+        return countArray == null || noOfZeroBuckets == noOfBuckets;
+    }
+
     /**
      * Calculate the confidence interval for the current distinctCount.
      * The confidence values can be one value out of 0.65, 0.95, 0.99.
@@ -139,19 +164,32 @@ public class HyperLogLog<E> implements Serializable {
      * @return an long array which contain the lower bound and the upper bound of the confidence interval
      * e.g. - {310, 350} for the distinctCount of 330
      */
-    public long[] getConfidenceInterval() {
+    public synchronized long[] getConfidenceInterval() {
+        return getConfidenceInterval(currentCardinality, relativeError, confidence);
+    }
+
+    /**
+     * Calculate the confidence interval for a distinctCount estimated with the given relative error.
+     * The confidence values can be one value out of 0.65, 0.95, 0.99.
+     *
+     * @param cardinality   is the estimated distinctCount
+     * @param relativeError is the relative error of the estimation
+     * @param confidence    is the confidence of the interval
+     * @return an long array which contain the lower bound and the upper bound of the confidence interval
+     */
+    public static long[] getConfidenceInterval(long cardinality, double relativeError, double confidence) {
         long[] confidenceInterval = new long[2];
 
 //      sigma = relative error
         if (Math.abs(confidence - 0.65) < 0.0000001) { //      65% sure the answer in the range of sigma
-            confidenceInterval[0] = (long) Math.floor(currentCardinality - (currentCardinality * relativeError * 0.5));
-            confidenceInterval[1] = (long) Math.ceil(currentCardinality + (currentCardinality * relativeError * 0.5));
+            confidenceInterval[0] = (long) Math.floor(cardinality - (cardinality * relativeError * 0.5));
+            confidenceInterval[1] = (long) Math.ceil(cardinality + (cardinality * relativeError * 0.5));
         } else if (Math.abs(confidence - 0.95) < 0.0000001) { //      95% sure the answer in the range of (2 * sigma)
-            confidenceInterval[0] = (long) Math.floor(currentCardinality - (currentCardinality * relativeError));
-            confidenceInterval[1] = (long) Math.ceil(currentCardinality + (currentCardinality * relativeError));
+            confidenceInterval[0] = (long) Math.floor(cardinality - (cardinality * relativeError));
+            confidenceInterval[1] = (long) Math.ceil(cardinality + (cardinality * relativeError));
         } else if (Math.abs(confidence - 0.99) < 0.0000001) { //      99% sure the answer in the range of (3 * sigma)
-            confidenceInterval[0] = (long) Math.floor(currentCardinality - (currentCardinality * relativeError * 1.5));
-            confidenceInterval[1] = (long) Math.ceil(currentCardinality + (currentCardinality * relativeError * 1.5));
+            confidenceInterval[0] = (long) Math.floor(cardinality - (cardinality * relativeError * 1.5));
+            confidenceInterval[1] = (long) Math.ceil(cardinality + (cardinality * relativeError * 1.5));
         }
         return confidenceInterval;
     }
@@ -161,8 +199,17 @@ public class HyperLogLog<E> implements Serializable {
      *
      * @param item is the item to be inserted
      */
-    public void addItem(E item) {
-        int hash = getHashValue(item);
+    public synchronized void addItem(E item) {
+        addHash(getHashValue(item));
+    }
+
+    /**
+     * Adds a new item, whose hash value is already calculated, to the array, so that the hash can be shared with
+     * the other sketches of the item
+     *
+     * @param hash is the hash value of the item to be inserted, as returned by {@link #getHashValue(Object)}
+     */
+    public synchronized void addHash(int hash) {
 
 //      Shift all the bits to right till only the bucket ID is left
         int bucketId = hash >>> (Integer.SIZE - lengthOfBucketId);
@@ -172,9 +219,14 @@ public class HyperLogLog<E> implements Serializable {
 
         int newLeadingZeroCount = Integer.numberOfLeadingZeros(remainingValue) + 1;
 
+        allocateArrays();
+
 //      update the value in the  bucket
         int currentLeadingZeroCount = countArray[bucketId];
         if (pastCountsEnabled) {
+            if (pastCountsArray[bucketId] == null) {
+                pastCountsArray[bucketId] = new CountList();
+            }
             pastCountsArray[bucketId].add(newLeadingZeroCount);
         }
         if (currentLeadingZeroCount < newLeadingZeroCount) {
@@ -200,9 +252,22 @@ public class HyperLogLog<E> implements Serializable {
      *
      * @param item is the item to be removed
      */
-    public void removeItem(E item) {
+    public synchronized void removeItem(E item) {
+        removeHash(getHashValue(item));
+    }
+
+    /**
+     * Removes an item, whose hash value is already calculated, from the array and restore the distinctCount value
+     * by using the previous count.
+     *
+     * @param hash is the hash value of the item to be removed, as returned by {@link #getHashValue(Object)}
+     */
+    public synchronized void removeHash(int hash) {
         if (pastCountsEnabled) {
-            int hash = getHashValue(item);
+            if (countArray == null) {
+//              no item has been added yet
+                return;
+            }
 
 //      Shift all the bits to right till only the bucket ID is left
             int bucketId = hash >>> (Integer.SIZE - lengthOfBucketId);
@@ -212,7 +277,8 @@ public class HyperLogLog<E> implements Serializable {
 
             int currentLeadingZeroCount = Integer.numberOfLeadingZeros(remainingValue) + 1;
 
-            int newLeadingZeroCount = pastCountsArray[bucketId].remove(currentLeadingZeroCount);
+            CountList countList = pastCountsArray[bucketId];
+            int newLeadingZeroCount = countList == null ? -1 : countList.remove(currentLeadingZeroCount);
             int oldLeadingZeroCount = countArray[bucketId];
 
 //      check the next maximum leading zero count
@@ -237,6 +303,71 @@ public class HyperLogLog<E> implements Serializable {
         }
     }
 
+    /**
+     * Merges the counts of another HyperLogLog of the same number of buckets into this HyperLogLog, by taking the
+     * maximum count of each bucket, so that this HyperLogLog counts the distinct items added to either of them.
+     *
+     * @param hyperLogLog is the HyperLogLog to be merged, which is not modified
+     */
+    public synchronized void merge(HyperLogLog<E> hyperLogLog) {
+        if (pastCountsEnabled) {
+            throw new IllegalStateException(this.getClass().getCanonicalName() +
+                    " : Merge operation is called while the 'pastCountsEnabled' is true");
+        }
+        if (hyperLogLog.noOfBuckets != noOfBuckets) {
+            throw new IllegalArgumentException("a HyperLogLog of " + hyperLogLog.noOfBuckets + " buckets cannot " +
+                    "be merged into a HyperLogLog of " + noOfBuckets + " buckets");
+        }
+        if (hyperLogLog.countArray == null) {
+            return;
+        }
+        allocateArrays();
+        for (int bucketId = 0; bucketId < noOfBuckets; bucketId++) {
+            int currentLeadingZeroCount = countArray[bucketId];
+            int newLeadingZeroCount = hyperLogLog.countArray[bucketId];
+            if (currentLeadingZeroCount < newLeadingZeroCount) {
+                harmonicCountSum = harmonicCountSum - (1.0 / (1L << currentLeadingZeroCount))
+                        + (1.0 / (1L << newLeadingZeroCount));
+                if (currentLeadingZeroCount == 0) {
+                    noOfZeroBuckets--;
+                }
+                countArray[bucketId] = newLeadingZeroCount;
+            }
+        }
+        calculateCardinality();
+    }
+
+    /**
+     * Replace the counts of this HyperLogLog with the counts of a HyperLogLog of the same number of buckets, such as
+     * one read from a snapshot, so that the references held to this HyperLogLog see the restored counts.
+     * The arrays of the given HyperLogLog are taken over, hence it should not be used afterwards.
+     *
+     * @param hyperLogLog is the HyperLogLog from which the counts are taken
+     */
+    public synchronized void restore(HyperLogLog<E> hyperLogLog) {
+        if (hyperLogLog.noOfBuckets != noOfBuckets || hyperLogLog.pastCountsEnabled != pastCountsEnabled) {
+            throw new IllegalArgumentException("a HyperLogLog of " + hyperLogLog.noOfBuckets + " buckets cannot " +
+                    "be restored into a HyperLogLog of " + noOfBuckets + " buckets");
+        }
+        countArray = hyperLogLog.countArray;
+        pastCountsArray = hyperLogLog.pastCountsArray;
+        harmonicCountSum = hyperLogLog.harmonicCountSum;
+        noOfZeroBuckets = hyperLogLog.noOfZeroBuckets;
+        currentCardinality = hyperLogLog.currentCardinality;
+    }
+
+    /**
+     * Allocate the arrays of the buckets, unless they are already allocated
+     */
+    private void allocateArrays() {
+        if (countArray == null) {
+            countArray = new int[noOfBuckets];
+            if (pastCountsEnabled) {
+                pastCountsArray = new CountList[noOfBuckets];
+            }
+        }
+    }
+
     /**
      * Compute an integer hash value for a given value
      *
@@ -247,6 +378,57 @@ public class HyperLogLog<E> implements Serializable {
         return MurmurHash.hash(value);
     }
 
+    /**
+     * Calculate the number of buckets of a HyperLogLog with the given relative error
+     *
+     * @param relativeError is a number in the range (0, 1)
+     * @return the number of buckets, which is a power of 2
+     */
+    public static int getNoOfBuckets(double relativeError) {
+        int noOfBuckets = (int) Math.ceil(Math.pow(STANDARD_ERROR / relativeError, 2));
+        return 1 << (int) Math.ceil(Math.log(noOfBuckets) / Math.log(2));
+    }
+
+    /**
+     * Calculate the size of the buckets of a HyperLogLog with the given relative error.
+     * The past counts, which are kept to remove items, are sized as a count list of the default capacity per bucket,
+     * which a bucket outgrows only when it holds more than 10 past maximums, hence the size is an estimate.
+     *
+     * @param relativeError     is a number in the range (0, 1)
+     * @param pastCountsEnabled is whether the past counts of the buckets are kept
+     * @return the size of the buckets in bytes
+     */
+    public static long getMemorySize(double relativeError, boolean pastCountsEnabled) {
+        return getBytesPerBucket(pastCountsEnabled) * getNoOfBuckets(relativeError);
+    }
+
+    /**
+     * Calculate the lowest relative error of a HyperLogLog whose buckets fit in a memory budget,
+     * by using the largest power of 2 of buckets which fits in the budget
+     *
+     * @param memoryBudget      is the maximum size of the buckets in bytes
+     * @param pastCountsEnabled is whether the past counts of the buckets are kept
+     * @return the relative error, which is a number in the range (0, 1)
+     * @throws IllegalArgumentException if the budget cannot hold the minimum of 16 buckets
+     */
+    public static double getRelativeError(long memoryBudget, boolean pastCountsEnabled) {
+        long noOfBuckets = Long.highestOneBit(Math.min(memoryBudget / getBytesPerBucket(pastCountsEnabled), 1 << 30));
+        if (noOfBuckets < 16) {
+            throw new IllegalArgumentException("a memory budget of " + memoryBudget + " bytes cannot hold the " +
+                    "16 buckets of a HyperLogLog" + (pastCountsEnabled ? " with their past counts" : ""));
+        }
+        double relativeError = STANDARD_ERROR / Math.sqrt(noOfBuckets);
+//      the rounding of (STANDARD_ERROR / relativeError) ^ 2 must not double the buckets beyond the budget
+        while (getNoOfBuckets(relativeError) > noOfBuckets) {
+            relativeError = Math.nextUp(relativeError);
+        }
+        return relativeError;
+    }
+
+    private static long getBytesPerBucket(boolean pastCountsEnabled) {
+        return Integer.BYTES + (pastCountsEnabled ? PAST_COUNTS_BYTES_PER_BUCKET : 0);
+    }
+
     /**
      * Calculate the {@code estimationFactor} based on the length of bucket id and number of buckets.
      * The used constants are proven values from the research paper.
@@ -255,7 +437,7 @@ public class HyperLogLog<E> implements Serializable {
      * @param noOfBuckets      is the number of buckets
      * @return {@code estimationFactor}
      */
-    private double getEstimationFactor(int lengthOfBucketId, int noOfBuckets) {
+    public static double getEstimationFactor(int lengthOfBucketId, int noOfBuckets) {
         switch (lengthOfBucketId) {
             case 4:
                 return 0.673;
@@ -269,19 +451,22 @@ public class HyperLogLog<E> implements Serializable {
     }
 
     /**
-     * Clears all the counts stored in the data structure.
+     * Clears all the counts stored in the data structure, keeping the allocated arrays to be reused.
      */
-    public void clear() {
-        countArray = new int[noOfBuckets];
-
-        if (pastCountsEnabled) {
-            pastCountsArray = new CountList[noOfBuckets];
-            for (int i = 0; i < noOfBuckets; i++) {
-                pastCountsArray[i] = new CountList();
+    public synchronized void clear() {
+        if (countArray != null) {
+            Arrays.fill(countArray, 0);
+            if (pastCountsEnabled) {
+                for (CountList countList : pastCountsArray) {
+                    if (countList != null) {
+                        countList.clear();
+                    }
+                }
             }
         }
         harmonicCountSum = noOfBuckets;
         noOfZeroBuckets = noOfBuckets;
+        currentCardinality = 0;
     }
 }
 
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates values, or HyperLogLogs of values, into a HyperLogLog which can be merged with other HyperLogLogs.
+ */
+@Extension(
+        name = "hyperLogLog",
+        namespace = "approximate",
+        description = "This aggregator adds the values of the events to a `HyperLogLog` and returns the " +
+                "HyperLogLog as an object. If the value of an event is itself a HyperLogLog, such as the output " +
+                "of another `approximate:hyperLogLog` aggregator, it is merged by taking the maximum count of " +
+                "each bucket, so that the result is the HyperLogLog of all the values of both. Use " +
+                "`approximate:cardinality` to get the approximate distinct count of the values from the " +
+                "HyperLogLog. The same aggregator can be used inside an incremental aggregation, where a " +
+                "HyperLogLog is kept per time bucket and merged for the larger durations. The values of the " +
+                "expired events cannot be removed from a HyperLogLog, hence do not use it with sliding windows.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value, or the HyperLogLog, which is added to the HyperLogLog.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "The relative error of the distinct count. This should be a value in the " +
+                                "range (0, 0.26]. Only HyperLogLogs of the same relative error can be merged.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The HyperLogLog of the values.",
+                type = {DataType.OBJECT}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string, region string);\n" +
+                                "from RequestStream#window.timeBatch(1 min)\n" +
+                                "select region, approximate:hyperLogLog(ip) as ipSketch\n" +
+                                "group by region\n" +
+                                "insert into RegionSketchStream;\n" +
+                                "from RegionSketchStream#window.lengthBatch(5)\n" +
+                                "select approximate:cardinality(approximate:hyperLogLog(ipSketch)) as distinctIps\n" +
+                                "insert into OutputStream;",
+                        description = "The first query keeps a HyperLogLog of the IP addresses of each region " +
+                                "per minute. The second query merges the HyperLogLogs of 5 regions and " +
+                                "calculates the approximate number of distinct IP addresses of all of them."
+                )
+        }
+)
+public class HyperLogLogAggregatorExtension
+        extends AttributeAggregatorExecutor<HyperLogLogAggregatorExtension.ExtensionState> {
+    private double relativeError;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode, boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+//      default value for relative error
+        final double defaultRelativeError = 0.01;
+
+        relativeError = defaultRelativeError;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 2)) {
+            throw new SiddhiAppCreationException("1 or 2 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the hyperLogLog function");
+        }
+
+        //expressionExecutors[1] --> relativeError
+        if (attributeExpressionExecutors.length > 1) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside hyperLogLog function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[1].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 2nd parameter inside hyperLogLog function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            if (relativeError <= 0 || relativeError > 0.26) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside hyperLogLog function - " +
+                        "'relative.error' must be in the range of (0, 0.26] but found " + relativeError);
+            }
+        }
+
+        return () -> new ExtensionState(new HyperLogLog<>(relativeError, 0.95, false));
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+        synchronized (this) {
+            if (data instanceof HyperLogLog) {
+                state.hyperLogLog.merge((HyperLogLog<Object>) data);
+            } else if (data != null) {
+                state.hyperLogLog.addItem(data);
+            }
+            return state.hyperLogLog;
+        }
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        return processAdd(data[0], state);
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+        throw new SiddhiAppRuntimeException("The values of the expired events cannot be removed from the " +
+                "approximate:hyperLogLog aggregator, hence it cannot be used with a sliding window");
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        return processRemove(data[0], state);
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        synchronized (this) {
+//          a new HyperLogLog is created, as the returned one may still be referred by the previous output
+            state.hyperLogLog = new HyperLogLog<>(relativeError, 0.95, false);
+            return state.hyperLogLog;
+        }
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.OBJECT;
+    }
+
+    class ExtensionState extends State {
+        private HyperLogLog<Object> hyperLogLog;
+
+        private ExtensionState(HyperLogLog<Object> hyperLogLog) {
+            this.hyperLogLog = hyperLogLog;
+        }
+
+        @Override
+        public boolean canDestroy() {
+//          the state of a group is released once the group has no values, such as after the reset of a batch
+            synchronized (HyperLogLogAggregatorExtension.this) {
+                return hyperLogLog.isEmpty();
+            }
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (HyperLogLogAggregatorExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("hyperLogLog", hyperLogLog);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (HyperLogLogAggregatorExtension.this) {
+                hyperLogLog = (HyperLogLog<Object>) state.get("hyperLogLog");
+            }
+        }
+    }
+}
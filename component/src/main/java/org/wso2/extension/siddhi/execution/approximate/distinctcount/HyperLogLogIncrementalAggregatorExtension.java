@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.query.selector.attribute.aggregator.incremental.IncrementalAttributeAggregator;
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.expression.Expression;
+
+/**
+ * Keeps a HyperLogLog per time bucket of an incremental aggregation, merged for the larger durations by
+ * approximate:hyperLogLog.
+ */
+@Extension(
+        name = "hyperLogLog",
+        namespace = "incrementalAggregator",
+        description = "This lets `approximate:hyperLogLog` be used inside an incremental aggregation. A " +
+                "`HyperLogLog` of the values, with a relative error of 0.01, is kept for each time bucket of the " +
+                "smallest duration, and the HyperLogLogs are merged bucket by bucket into the HyperLogLogs of the " +
+                "larger durations, and into the HyperLogLog of a store query over several buckets. Use " +
+                "`approximate:cardinality` on the result to get the approximate distinct count.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value which is added to the HyperLogLog.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The HyperLogLog of the values of the time bucket.",
+                type = {DataType.OBJECT}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string, timestamp long);\n" +
+                                "define aggregation RequestAggregation\n" +
+                                "from RequestStream\n" +
+                                "select approximate:hyperLogLog(ip) as ipSketch\n" +
+                                "aggregate by timestamp every sec ... year;",
+                        description = "This keeps a HyperLogLog of the IP addresses per second, minute, hour, " +
+                                "day, month and year, each of which is merged from the HyperLogLogs of the " +
+                                "smaller duration."
+                )
+        }
+)
+public class HyperLogLogIncrementalAggregatorExtension extends IncrementalAttributeAggregator {
+    private Attribute[] baseAttributes;
+    private Expression[] baseAttributeInitialValues;
+
+    @Override
+    public void init(String attributeName, Attribute.Type attributeType) {
+//      the base attribute holds the values of the events before they are aggregated, and the HyperLogLogs
+//      afterwards, both of which are accepted by approximate:hyperLogLog
+        Attribute hyperLogLog = new Attribute("AGG_HYPER_LOG_LOG_".concat(attributeName), Attribute.Type.OBJECT);
+        baseAttributes = new Attribute[]{hyperLogLog};
+        baseAttributeInitialValues = new Expression[]{Expression.variable(attributeName)};
+    }
+
+    @Override
+    public Attribute[] getBaseAttributes() {
+        return baseAttributes;
+    }
+
+    @Override
+    public Expression[] getBaseAttributeInitialValues() {
+        return baseAttributeInitialValues;
+    }
+
+    @Override
+    public Expression[] getBaseAggregators() {
+        return new Expression[]{Expression.function("approximate", "hyperLogLog",
+                Expression.variable(baseAttributes[0].getName()))};
+    }
+
+    @Override
+    public Expression aggregate() {
+        return Expression.variable(baseAttributes[0].getName());
+    }
+}
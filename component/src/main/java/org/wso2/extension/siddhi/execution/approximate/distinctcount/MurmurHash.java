@@ -48,6 +48,33 @@ public final class MurmurHash {
         }
     }
 
+    /**
+     * Compute a hash value for a given object with a given seed, so that independent hash values
+     * can be derived for the same object.
+     *
+     * @param o    is the object to be hashed
+     * @param seed is the seed of the hash function
+     * @return integer hash value
+     */
+    public static int hash(Object o, int seed) {
+        if (o == null) {
+            return seed;
+        } else if (o instanceof Long) {
+            return hashLong(((Long) o).longValue(), seed);
+        } else if (o instanceof Integer) {
+            return hashLong((long) ((Integer) o).intValue(), seed);
+        } else if (o instanceof Double) {
+            return hashLong(Double.doubleToRawLongBits(((Double) o).doubleValue()), seed);
+        } else if (o instanceof Float) {
+            return hashLong((long) Float.floatToRawIntBits(((Float) o).floatValue()), seed);
+        } else if (o instanceof String) {
+            byte[] data = ((String) o).getBytes(Charset.forName("UTF-8"));
+            return hash(data, data.length, seed);
+        } else {
+            return hash(o.toString(), seed);
+        }
+    }
+
     public static int hash(byte[] data) {
         return hash(data, data.length, -1);
     }
@@ -102,9 +129,13 @@ public final class MurmurHash {
     }
 
     public static int hashLong(long data) {
+        return hashLong(data, 0);
+    }
+
+    public static int hashLong(long data, int seed) {
         int m = 1540483477;
         int r = 24;
-        int h = 0;
+        int h = seed;
         int k = (int) data * m;
         k ^= k >>> r;
         h = h ^ k * m;
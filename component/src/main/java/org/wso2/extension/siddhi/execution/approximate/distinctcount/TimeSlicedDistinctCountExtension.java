@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs HyperLogLog algorithm on a ring of panes to get the approximate distinct count of events in a sliding
+ * time window.
+ */
+@Extension(
+        name = "timeSlicedDistinctCount",
+        namespace = "approximate",
+        description = "This extension calculates the approximate number of distinct values of the events that " +
+                "arrived within the last 'window.time', without a Siddhi window. The window is divided into " +
+                "'no.of.panes' panes, each of which has its own `HyperLogLog`, and the HyperLogLogs of the panes " +
+                "are merged into another HyperLogLog. When the timestamps of the events move past a pane, the pane " +
+                "is cleared for the new events and the remaining panes are merged again. Hence neither the events " +
+                "nor the past counts of the HyperLogLog buckets are kept, and the memory used depends only on the " +
+                "number of panes and the relative error. One more pane is kept for the values of the current " +
+                "pane, so no value within the 'window.time' is missed, but as the window slides by a pane at a " +
+                "time, the values of up to one pane older than the 'window.time' may still be counted.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value used to find the distinct count.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "window.time",
+                        description = "The length of the sliding time window over which the distinct values are " +
+                                "counted.",
+                        type = {DataType.INT, DataType.LONG, DataType.TIME}
+                ),
+                @Parameter(
+                        name = "no.of.panes",
+                        description = "The number of panes the window is divided into. Each pane is a HyperLogLog " +
+                                "of its own, and all of them are merged whenever the window slides.",
+                        type = {DataType.INT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the distinct count generated, " +
+                                "expressed as a value in the range (0, 0.26]. Lower the value specified, larger " +
+                                "are the HyperLogLogs of the panes.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "The confidence value determines the degree of guarantee with which the " +
+                                "relative error given can be treated. The possible values are `0.65`, `0.95` and " +
+                                "`0.99`.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.95"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "timeSlicedDistinctCount",
+                        description = "This represents the distinct count within the window based on the latest " +
+                                "event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "timeSlicedDistinctCountLowerBound",
+                        description = "The lowest value in the range within which the most accurate distinct count " +
+                                "is included. This distinct count range is based on the latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "timeSlicedDistinctCountUpperBound",
+                        description = "The highest value in the range within which the most accurate distinct count " +
+                                "is included. This distinct count range is based on the latest event.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#approximate:timeSlicedDistinctCount(ip, 1 hour, 12)\n" +
+                                "select timeSlicedDistinctCount\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the number of distinct IP addresses which made " +
+                                "requests during the last hour, which slides 5 minutes at a time, with a default " +
+                                "relative error of 0.01 and a default confidence of 0.95, without buffering the " +
+                                "requests of the last hour."
+                )
+        }
+)
+public class TimeSlicedDistinctCountExtension extends StreamProcessor<TimeSlicedDistinctCountExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.95;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+        long windowTime;
+        int noOfPanes;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 3 || attributeExpressionExecutors.length == 5)) {
+            throw new SiddhiAppCreationException("3 or 5 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the timeSlicedDistinctCount " +
+                    "function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside timeSlicedDistinctCount function - " +
+                    "'value' has to be a variable but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> windowTime
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside timeSlicedDistinctCount function - " +
+                    "'window.time' has to be a constant but found " +
+                    attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.INT ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.LONG) {
+            windowTime = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                    .getValue()).longValue();
+        } else {
+            throw new SiddhiAppCreationException("The 2nd parameter inside timeSlicedDistinctCount function - " +
+                    "'window.time' should be of type Int or Long but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        if (windowTime <= 0) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside timeSlicedDistinctCount function - " +
+                    "'window.time' must be a positive value but found " + windowTime);
+        }
+
+        //expressionExecutors[2] --> noOfPanes
+        if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside timeSlicedDistinctCount function - " +
+                    "'no.of.panes' has to be a constant but found " +
+                    attributeExpressionExecutors[2].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.INT) {
+            noOfPanes = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[2]).getValue();
+        } else {
+            throw new SiddhiAppCreationException("The 3rd parameter inside timeSlicedDistinctCount function - " +
+                    "'no.of.panes' should be of type Int but found " +
+                    attributeExpressionExecutors[2].getReturnType());
+        }
+        if (noOfPanes <= 0) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside timeSlicedDistinctCount function - " +
+                    "'no.of.panes' must be a positive value but found " + noOfPanes);
+        }
+
+        if (attributeExpressionExecutors.length > 3) {
+            //expressionExecutors[3] --> relativeError
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside timeSlicedDistinctCount function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside timeSlicedDistinctCount function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError > 0.26)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside timeSlicedDistinctCount function - " +
+                        "'relative.error' must be in the range of (0, 0.26] but found " + relativeError);
+            }
+
+            //expressionExecutors[4] --> confidence
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside timeSlicedDistinctCount function - " +
+                        "'confidence' has to be a constant but found " +
+                        attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside timeSlicedDistinctCount function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if (!(Math.abs(confidence - 0.65) < 0.0000001 || Math.abs(confidence - 0.95) < 0.0000001 ||
+                    Math.abs(confidence - 0.99) < 0.0000001)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside timeSlicedDistinctCount function - " +
+                        "'confidence' must be a value from 0.65, 0.95 and 0.99 but found " + confidence);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+        final long sketchWindowTime = windowTime;
+        final int sketchNoOfPanes = noOfPanes;
+
+        attributeList.add(new Attribute("timeSlicedDistinctCount", Attribute.Type.LONG));
+        attributeList.add(new Attribute("timeSlicedDistinctCountLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("timeSlicedDistinctCountUpperBound", Attribute.Type.LONG));
+        return () -> new ExtensionState(new TimeSlicedHyperLogLog<>(sketchRelativeError, sketchConfidence,
+                sketchWindowTime, sketchNoOfPanes));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.timeSlicedHyperLogLog.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0L, 0L, 0L});
+                    continue;
+                }
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    streamEventChunk.remove();
+                } else {
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        state.timeSlicedHyperLogLog.addItem(newData, streamEvent.getTimestamp());
+                    }
+//                  the panes leave the window based on the timestamps, hence the expired events of an upstream
+//                  window do not remove anything
+                    long distinctCount = state.timeSlicedHyperLogLog.getCardinality(streamEvent.getTimestamp());
+                    long[] confidenceInterval = state.timeSlicedHyperLogLog.getConfidenceInterval();
+
+                    Object[] outputData = {distinctCount, confidenceInterval[0], confidenceInterval[1]};
+
+                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private TimeSlicedHyperLogLog<Object> timeSlicedHyperLogLog;
+
+        private ExtensionState(TimeSlicedHyperLogLog<Object> timeSlicedHyperLogLog) {
+            this.timeSlicedHyperLogLog = timeSlicedHyperLogLog;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (TimeSlicedDistinctCountExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("timeSlicedHyperLogLog", timeSlicedHyperLogLog);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (TimeSlicedDistinctCountExtension.this) {
+                timeSlicedHyperLogLog = (TimeSlicedHyperLogLog) state.get("timeSlicedHyperLogLog");
+            }
+        }
+    }
+}
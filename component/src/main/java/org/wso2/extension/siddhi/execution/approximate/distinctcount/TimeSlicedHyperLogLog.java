@@ -0,0 +1,137 @@
+/*
+* Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* WSO2 Inc. licenses this file to you under the Apache License,
+* Version 2.0 (the "License"); you may not use this file except
+* in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied. See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * A data structure to calculate the distinctCount of the items within a sliding time window, as a ring of
+ * HyperLogLogs each of which holds the items of a pane of the window. The merge of the panes is kept in a separate
+ * HyperLogLog, which is merged again from the remaining panes when the window slides past the oldest pane, hence
+ * the items do not have to be buffered, nor their past counts kept, to remove them when they leave the window.
+ * The ring holds one pane more than the panes of the window, as the current pane is only partly filled, hence no
+ * item within the window length is missed. The window slides by a whole pane at a time, therefore the items of up
+ * to one pane older than the window length may still be counted.
+ *
+ * @param <E> is the type of objects in the set.
+ */
+public class TimeSlicedHyperLogLog<E> implements Serializable {
+    private static final long serialVersionUID = 6243189370418542214L;
+
+    private long paneLength;
+    private int currentPane;
+    private long currentPaneEnd = Long.MIN_VALUE;
+
+    private ArrayList<HyperLogLog<E>> panes;
+    private HyperLogLog<E> totalHyperLogLog;
+
+    /**
+     * Create a new time sliced HyperLogLog by specifying the relative error and confidence of answers being within
+     * the error margin, the window length and the number of panes
+     *
+     * @param relativeError is a number in the range (0, 0.26]
+     * @param confidence    is a value out of 0.65, 0.95, 0.99
+     * @param windowLength  is the length of the sliding window in milliseconds
+     * @param noOfPanes     is the number of panes the window is divided into
+     */
+    public TimeSlicedHyperLogLog(double relativeError, double confidence, long windowLength, int noOfPanes) {
+        this.paneLength = Math.max(1, (windowLength + noOfPanes - 1) / noOfPanes);
+//      the current pane is kept in addition to the whole panes of the window
+        this.panes = new ArrayList<>(noOfPanes + 1);
+        for (int i = 0; i <= noOfPanes; i++) {
+            panes.add(new HyperLogLog<>(relativeError, confidence, false));
+        }
+        this.totalHyperLogLog = new HyperLogLog<>(relativeError, confidence, false);
+    }
+
+    /**
+     * Slide the window till the pane of the given timestamp is the current pane, merging the remaining panes again
+     * if any pane left the window
+     *
+     * @param timestamp is the timestamp of the latest event
+     */
+    private void slide(long timestamp) {
+        if (currentPaneEnd == Long.MIN_VALUE) {
+            currentPaneEnd = (Math.floorDiv(timestamp, paneLength) + 1) * paneLength;
+            return;
+        }
+        if (timestamp < currentPaneEnd) {
+            return;
+        }
+        long noOfExpiredPanes = (timestamp - currentPaneEnd) / paneLength + 1;
+        if (noOfExpiredPanes >= panes.size()) {
+            for (HyperLogLog<E> pane : panes) {
+                pane.clear();
+            }
+        } else {
+            for (int i = 0; i < noOfExpiredPanes; i++) {
+                currentPane = (currentPane + 1) % panes.size();
+                panes.get(currentPane).clear();
+            }
+        }
+        totalHyperLogLog.clear();
+        for (HyperLogLog<E> pane : panes) {
+            totalHyperLogLog.merge(pane);
+        }
+        currentPaneEnd += noOfExpiredPanes * paneLength;
+    }
+
+    /**
+     * Adds an item, which arrived at the given timestamp, to the current pane
+     *
+     * @param item      is the item to be inserted
+     * @param timestamp is the timestamp of the item
+     */
+    public synchronized void addItem(E item, long timestamp) {
+        slide(timestamp);
+        panes.get(currentPane).addItem(item);
+        totalHyperLogLog.addItem(item);
+    }
+
+    /**
+     * Calculate the distinctCount of the items within the window at the given timestamp
+     *
+     * @param timestamp is the current timestamp
+     * @return the approximate distinctCount
+     */
+    public synchronized long getCardinality(long timestamp) {
+        slide(timestamp);
+        return totalHyperLogLog.getCardinality();
+    }
+
+    /**
+     * Calculate the confidence interval for the current distinctCount.
+     *
+     * @return an long array which contain the lower bound and the upper bound of the confidence interval
+     */
+    public synchronized long[] getConfidenceInterval() {
+        return totalHyperLogLog.getConfidenceInterval();
+    }
+
+    /**
+     * Clears all the items within the window.
+     */
+    public synchronized void clear() {
+        for (HyperLogLog<E> pane : panes) {
+            pane.clear();
+        }
+        totalHyperLogLog.clear();
+        currentPaneEnd = Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.distinctcountbykey;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.HyperLogLog;
+
+import java.io.Serializable;
+
+/**
+ * A HyperLogLog which starts with a sparse representation holding only the non zero buckets, and switches to
+ * a dense array of byte sized buckets once the sparse representation becomes larger than the dense one.
+ * Hence a set with a few items costs a few bytes, which allows keeping a HyperLogLog for each of a large
+ * number of keys.
+ * The referred research paper - HyperLogLog in Practice: Algorithmic Engineering of a State of The Art
+ * Cardinality Estimation Algorithm by Stefan Heule, Marc Nunkesser and Alexander Hall.
+ * https://research.google.com/pubs/archive/40671.pdf
+ */
+public class CompactHyperLogLog implements Serializable {
+    private static final long serialVersionUID = 3946410373315254683L;
+
+    private static final int INITIAL_SPARSE_SIZE = 4;
+    private static final int COUNT_BITS = 8;
+    private static final int COUNT_MASK = (1 << COUNT_BITS) - 1;
+
+    //  sparse representation, each entry is (bucketId << COUNT_BITS | count) sorted by the bucket id
+    private int[] sparseEntries;
+    private int noOfSparseEntries;
+
+    //  dense representation
+    private byte[] countArray;
+    private double harmonicCountSum;
+    private int noOfZeroBuckets;
+
+    public CompactHyperLogLog() {
+        this.sparseEntries = new int[INITIAL_SPARSE_SIZE];
+    }
+
+    /**
+     * Adds the hash of an item by increasing the count of the relevant bucket
+     *
+     * @param hash             is the hash value of the item
+     * @param lengthOfBucketId is the number of bits of the hash used as the bucket id
+     */
+    public void addHash(int hash, int lengthOfBucketId) {
+//      Shift all the bits to right till only the bucket ID is left
+        int bucketId = hash >>> (Integer.SIZE - lengthOfBucketId);
+
+//      Shift all the bits to left till the bucket id is removed
+        int remainingValue = hash << lengthOfBucketId;
+
+        int newLeadingZeroCount = Integer.numberOfLeadingZeros(remainingValue) + 1;
+
+        if (countArray != null) {
+            int currentLeadingZeroCount = countArray[bucketId];
+            if (currentLeadingZeroCount < newLeadingZeroCount) {
+                harmonicCountSum = harmonicCountSum - (1.0 / (1L << currentLeadingZeroCount))
+                        + (1.0 / (1L << newLeadingZeroCount));
+                if (currentLeadingZeroCount == 0) {
+                    noOfZeroBuckets--;
+                }
+                countArray[bucketId] = (byte) newLeadingZeroCount;
+            }
+            return;
+        }
+
+        int position = findSparseEntry(bucketId);
+        if (position >= 0) {
+            if ((sparseEntries[position] & COUNT_MASK) < newLeadingZeroCount) {
+                sparseEntries[position] = (bucketId << COUNT_BITS) | newLeadingZeroCount;
+            }
+            return;
+        }
+
+//      a sparse entry costs 4 bytes and a dense bucket costs 1 byte
+        int noOfBuckets = 1 << lengthOfBucketId;
+        if ((noOfSparseEntries + 1) * Integer.BYTES > noOfBuckets) {
+            convertToDense(noOfBuckets);
+            addHash(hash, lengthOfBucketId);
+            return;
+        }
+        if (noOfSparseEntries == sparseEntries.length) {
+            int[] newSparseEntries = new int[Math.min(sparseEntries.length * 2, noOfBuckets / Integer.BYTES)];
+            System.arraycopy(sparseEntries, 0, newSparseEntries, 0, noOfSparseEntries);
+            sparseEntries = newSparseEntries;
+        }
+        int insertionPoint = -(position + 1);
+        System.arraycopy(sparseEntries, insertionPoint, sparseEntries, insertionPoint + 1,
+                noOfSparseEntries - insertionPoint);
+        sparseEntries[insertionPoint] = (bucketId << COUNT_BITS) | newLeadingZeroCount;
+        noOfSparseEntries++;
+    }
+
+    /**
+     * Calculate the distinctCount of the added items
+     *
+     * @param lengthOfBucketId is the number of bits of the hash used as the bucket id
+     * @param estimationFactor is the estimation factor of the number of buckets
+     * @return the estimated distinctCount
+     */
+    public long getCardinality(int lengthOfBucketId, double estimationFactor) {
+        int noOfBuckets = 1 << lengthOfBucketId;
+        if (countArray != null) {
+            return HyperLogLog.estimateCardinality(noOfBuckets, estimationFactor, harmonicCountSum,
+                    noOfZeroBuckets);
+        }
+//      the sparse representation holds at most a quarter of the buckets, where the linear counting is used
+        return (long) (-noOfBuckets * Math.log((double) (noOfBuckets - noOfSparseEntries) / noOfBuckets));
+    }
+
+    /**
+     * @return the number of bytes used by the buckets
+     */
+    public int getSizeInBytes() {
+        return countArray != null ? countArray.length : sparseEntries.length * Integer.BYTES;
+    }
+
+    private int findSparseEntry(int bucketId) {
+        int low = 0;
+        int high = noOfSparseEntries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midBucketId = sparseEntries[mid] >>> COUNT_BITS;
+            if (midBucketId < bucketId) {
+                low = mid + 1;
+            } else if (midBucketId > bucketId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void convertToDense(int noOfBuckets) {
+        countArray = new byte[noOfBuckets];
+        harmonicCountSum = noOfBuckets;
+        noOfZeroBuckets = noOfBuckets;
+        for (int i = 0; i < noOfSparseEntries; i++) {
+            int count = sparseEntries[i] & COUNT_MASK;
+            countArray[sparseEntries[i] >>> COUNT_BITS] = (byte) count;
+            harmonicCountSum = harmonicCountSum - 1 + (1.0 / (1L << count));
+            noOfZeroBuckets--;
+        }
+        sparseEntries = null;
+        noOfSparseEntries = 0;
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcountbykey;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs HyperLogLog algorithm per key to get the approximate distinct count of values for each key.
+ */
+@Extension(
+        name = "distinctCountByKey",
+        namespace = "approximate",
+        description = "This extension applies the `HyperLogLog` algorithm separately for each key, in order to " +
+                "calculate the number of distinct values seen with each key on a streaming data set. It is a " +
+                "compact alternative to partitioning the stream by the key and using " +
+                "`approximate:distinctCountEver`, as a key with a few distinct values uses only a few bytes. " +
+                "The number of tracked keys is bounded by 'max.keys', and the least recently seen key is " +
+                "forgotten to make room for a new key. Similar to `approximate:distinctCountEver`, this " +
+                "extension returns erroneous values if it is used with a Siddhi window.",
+        parameters = {
+                @Parameter(
+                        name = "key",
+                        description = "The key for which the distinct values are counted.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "value",
+                        description = "The value for which the distinct count is calculated.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the distinct count of each " +
+                                "key, expressed as a value between 0 and 1. Lower the value specified, higher is " +
+                                "the memory used for a key with many distinct values, which is at most " +
+                                "2.2 / (relative.error ^ 2) bytes. Note that the value should be in the range " +
+                                "of [0.005, 0.35].",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.05"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "The confidence value determines the degree of guarantee with which the " +
+                                "relative error given can be treated. The possible values include `0.65`, `0.95` " +
+                                "and `0.99`.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.95"
+                ),
+                @Parameter(
+                        name = "max.keys",
+                        description = "The maximum number of keys tracked at a time. When a new key arrives " +
+                                "after this limit is reached, the key which was not seen for the longest time " +
+                                "is forgotten.",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "100000"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "distinctCountByKey",
+                        description = "This represents the distinct count of the key of the latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "distinctCountByKeyLowerBound",
+                        description = "The lowest value in the range within which the most accurate distinct count " +
+                                "of the key of the latest event is included.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "distinctCountByKeyUpperBound",
+                        description = "The highest value in the range within which the most accurate distinct " +
+                                "count of the key of the latest event is included.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream FlowStream (sourceIp string, destinationIp string);\n" +
+                                "from FlowStream#approximate:distinctCountByKey(sourceIp, destinationIp)\n" +
+                                "select sourceIp, distinctCountByKey, distinctCountByKeyLowerBound, " +
+                                "distinctCountByKeyUpperBound\n" +
+                                "insert into OutputStream;\n",
+                        description = "This query calculates the number of distinct destinations contacted by " +
+                                "each source IP address. The distinct count is 95% guaranteed to deviate no more " +
+                                "than 5% from the actual distinct count of the source, and up to 100000 sources " +
+                                "are tracked at a time."
+                ),
+                @Example(
+                        syntax = "define stream PurchaseStream (userId long, itemId long);\n" +
+                                "from PurchaseStream#approximate:distinctCountByKey(userId, itemId, 0.1, 0.65, " +
+                                "5000000)\n" +
+                                "select userId, distinctCountByKey\n" +
+                                "insert into OutputStream;\n",
+                        description = "This query calculates the number of distinct items purchased by each " +
+                                "user, tracking up to 5000000 users. The distinct count is 65% guaranteed to " +
+                                "deviate no more than 10% from the actual distinct count of the user."
+                )
+        }
+)
+public class DistinctCountByKeyExtension extends StreamProcessor<DistinctCountByKeyExtension.ExtensionState> {
+    private ExpressionExecutor keyExecutor;
+    private ExpressionExecutor valueExecutor;
+
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error, confidence and maximum number of keys
+        final double defaultRelativeError = 0.05;
+        final double defaultConfidence = 0.95;
+        final int defaultMaxKeys = 100000;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+        long maxKeys = defaultMaxKeys;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 4 ||
+                attributeExpressionExecutors.length == 5)) {
+            throw new SiddhiAppCreationException("2, 4 or 5 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the " +
+                    "distinctCountByKey function");
+        }
+
+        //expressionExecutors[0] --> key
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside distinctCountByKey function - " +
+                    "'key' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        keyExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> value
+        if (!(attributeExpressionExecutors[1] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside distinctCountByKey function - " +
+                    "'value' has to be a variable but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[1];
+
+        //expressionExecutors[2] --> relativeError
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside distinctCountByKey function - " +
+                        "'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside distinctCountByKey function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside distinctCountByKey function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        //expressionExecutors[3] --> confidence
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside distinctCountByKey function - " +
+                        "'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside distinctCountByKey function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if (Math.abs(confidence - 0.65) > 0.0000001 && Math.abs(confidence - 0.95) > 0.0000001
+                    && Math.abs(confidence - 0.99) > 0.0000001) {
+                throw new SiddhiAppCreationException("The 4th parameter inside distinctCountByKey function - " +
+                        "'confidence' must be a value from 0.65, 0.95 and 0.99 but found " + confidence);
+            }
+        }
+
+        //expressionExecutors[4] --> maxKeys
+        if (attributeExpressionExecutors.length > 4) {
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside distinctCountByKey function - " +
+                        "'max.keys' has to be a constant but found " +
+                        this.attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.LONG) {
+                maxKeys = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4])
+                        .getValue()).longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside distinctCountByKey function - " +
+                        "'max.keys' should be of type Int or Long but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if (maxKeys <= 0 || maxKeys > Integer.MAX_VALUE / 4) {
+                throw new SiddhiAppCreationException("The 5th parameter inside distinctCountByKey function - " +
+                        "'max.keys' must be in the range of [1, " + (Integer.MAX_VALUE / 4) + "] but found " +
+                        maxKeys);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+        final int sketchMaxKeys = (int) maxKeys;
+        try {
+            new KeyedHyperLogLog<>(sketchRelativeError, sketchConfidence, 1);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside distinctCountByKey function - " +
+                    "'relative.error' is not supported, " + e.getMessage(), e);
+        }
+
+        attributeList.add(new Attribute("distinctCountByKey", Attribute.Type.LONG));
+        attributeList.add(new Attribute("distinctCountByKeyLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("distinctCountByKeyUpperBound", Attribute.Type.LONG));
+        return () -> new ExtensionState(new KeyedHyperLogLog<>(sketchRelativeError, sketchConfidence,
+                sketchMaxKeys));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.keyedHyperLogLog.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0L, 0L, 0L});
+                    continue;
+                }
+                Object key = keyExecutor.execute(streamEvent);
+                Object newData = valueExecutor.execute(streamEvent);
+                if (key == null || newData == null) {
+                    streamEventChunk.remove();
+                } else {
+                    long cardinality;
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        cardinality = state.keyedHyperLogLog.addItem(key, newData);
+                    } else {
+                        cardinality = state.keyedHyperLogLog.getCardinality(key);
+                    }
+                    long[] confidenceInterval = state.keyedHyperLogLog.getConfidenceInterval(cardinality);
+
+                    Object[] outputData = {cardinality, confidenceInterval[0], confidenceInterval[1]};
+
+                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private KeyedHyperLogLog<Object, Object> keyedHyperLogLog;
+
+        private ExtensionState(KeyedHyperLogLog<Object, Object> keyedHyperLogLog) {
+            this.keyedHyperLogLog = keyedHyperLogLog;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (DistinctCountByKeyExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("keyedHyperLogLog", keyedHyperLogLog);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (DistinctCountByKeyExtension.this) {
+                keyedHyperLogLog = (KeyedHyperLogLog) state.get("keyedHyperLogLog");
+            }
+        }
+    }
+}
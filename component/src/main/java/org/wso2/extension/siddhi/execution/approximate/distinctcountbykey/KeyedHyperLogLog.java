@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.distinctcountbykey;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.HyperLogLog;
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+
+/**
+ * Keeps a {@link CompactHyperLogLog} for each key to calculate the distinctCount of values per key.
+ * The keys are identified by a 64 bit hash, and stored in an open addressing hash table of primitive arrays.
+ * The number of keys is bounded, and the least recently updated key is evicted to make room for a new key.
+ *
+ * @param <K> is the type of keys
+ * @param <E> is the type of values
+ */
+public class KeyedHyperLogLog<K, E> implements Serializable {
+    private static final long serialVersionUID = -2069146870963373510L;
+
+    private static final double STANDARD_ERROR = 1.04;
+    private static final int INITIAL_NO_OF_KEYS = 16;
+    private static final int KEY_SEED = 0x5f356495;
+    private static final int NONE = -1;
+
+    private int maxNoOfKeys;
+    private int lengthOfBucketId;
+    private double estimationFactor;
+    private double relativeError;
+    private double confidence;
+
+    //  hash table from the key hash to the entry id + 1, 0 marks an empty slot
+    private long[] tableKeyHashes;
+    private int[] tableEntryIds;
+    private int tableMask;
+
+    //  entries, linked in the order of their last update
+    private long[] entryKeyHashes;
+    private CompactHyperLogLog[] entrySketches;
+    private int[] previousEntryIds;
+    private int[] nextEntryIds;
+    private int mostRecentEntryId;
+    private int leastRecentEntryId;
+    private int noOfEntries;
+
+    /**
+     * Create a new KeyedHyperLogLog by specifying the relative error and confidence of answers
+     * being within the error margin and the maximum number of keys.
+     *
+     * @param relativeError is a number in the range (0, 1)
+     * @param confidence    is a value out of 0.65, 0.95, 0.99
+     * @param maxNoOfKeys   is the maximum number of keys to be tracked
+     */
+    public KeyedHyperLogLog(double relativeError, double confidence, int maxNoOfKeys) {
+        this.relativeError = relativeError;
+        this.confidence = confidence;
+        this.maxNoOfKeys = maxNoOfKeys;
+
+//      relativeError = STANDARD_ERROR / sqrt(noOfBuckets) = > noOfBuckets = (STANDARD_ERROR / relativeError) ^ 2
+        int noOfBuckets = (int) Math.ceil(Math.pow(STANDARD_ERROR / relativeError, 2));
+        lengthOfBucketId = (int) Math.ceil(Math.log(noOfBuckets) / Math.log(2));
+        noOfBuckets = (1 << lengthOfBucketId);
+
+//      HyperLogLog estimations valid only when at least 16 buckets are used,
+//      and the bucket counts fit in a byte when at most 2 ^ 16 buckets are used
+        if (lengthOfBucketId < 4) {
+            throw new IllegalArgumentException("a higher relative error of " + relativeError +
+                    " cannot be achieved");
+        }
+        if (lengthOfBucketId > 16) {
+            throw new IllegalArgumentException("a lower relative error of " + relativeError +
+                    " cannot be achieved");
+        }
+        estimationFactor = HyperLogLog.getEstimationFactor(lengthOfBucketId, noOfBuckets);
+        clear();
+    }
+
+    /**
+     * Adds a value to the set of the given key, evicting the least recently updated key if there is
+     * no room for a new key
+     *
+     * @param key   is the key
+     * @param value is the value to be added to the set of the key
+     * @return the distinctCount of the key after adding the value
+     */
+    public long addItem(K key, E value) {
+        long keyHash = getKeyHash(key);
+        int entryId = findEntry(keyHash);
+        if (entryId == NONE) {
+            entryId = addEntry(keyHash);
+        } else {
+            moveToMostRecent(entryId);
+        }
+        CompactHyperLogLog sketch = entrySketches[entryId];
+        sketch.addHash(MurmurHash.hash(value), lengthOfBucketId);
+        return sketch.getCardinality(lengthOfBucketId, estimationFactor);
+    }
+
+    /**
+     * @param key is the key
+     * @return the distinctCount of the given key, 0 if the key is not tracked
+     */
+    public long getCardinality(K key) {
+        int entryId = findEntry(getKeyHash(key));
+        if (entryId == NONE) {
+            return 0;
+        }
+        return entrySketches[entryId].getCardinality(lengthOfBucketId, estimationFactor);
+    }
+
+    /**
+     * Calculate the confidence interval for a distinctCount calculated by this data structure.
+     *
+     * @param cardinality is the distinctCount of a key
+     * @return an long array which contain the lower bound and the upper bound of the confidence interval
+     */
+    public long[] getConfidenceInterval(long cardinality) {
+        return HyperLogLog.getConfidenceInterval(cardinality, relativeError, confidence);
+    }
+
+    /**
+     * @return the number of keys tracked
+     */
+    public int size() {
+        return noOfEntries;
+    }
+
+    /**
+     * Clears all the keys and their sets.
+     */
+    public void clear() {
+        int initialNoOfKeys = Math.min(INITIAL_NO_OF_KEYS, maxNoOfKeys);
+        allocateTable(initialNoOfKeys);
+        entryKeyHashes = new long[initialNoOfKeys];
+        entrySketches = new CompactHyperLogLog[initialNoOfKeys];
+        previousEntryIds = new int[initialNoOfKeys];
+        nextEntryIds = new int[initialNoOfKeys];
+        mostRecentEntryId = NONE;
+        leastRecentEntryId = NONE;
+        noOfEntries = 0;
+    }
+
+    private int addEntry(long keyHash) {
+        int entryId;
+        if (noOfEntries == maxNoOfKeys) {
+//          reuse the entry of the least recently updated key
+            entryId = leastRecentEntryId;
+            removeFromTable(entryKeyHashes[entryId]);
+            unlink(entryId);
+        } else {
+            if (noOfEntries == entryKeyHashes.length) {
+                growEntries();
+            }
+            entryId = noOfEntries++;
+        }
+        entryKeyHashes[entryId] = keyHash;
+        entrySketches[entryId] = new CompactHyperLogLog();
+        linkAsMostRecent(entryId);
+        insertIntoTable(keyHash, entryId);
+        return entryId;
+    }
+
+    private void growEntries() {
+        int newLength = (int) Math.min((long) entryKeyHashes.length * 2, maxNoOfKeys);
+        long[] newEntryKeyHashes = new long[newLength];
+        CompactHyperLogLog[] newEntrySketches = new CompactHyperLogLog[newLength];
+        int[] newPreviousEntryIds = new int[newLength];
+        int[] newNextEntryIds = new int[newLength];
+        System.arraycopy(entryKeyHashes, 0, newEntryKeyHashes, 0, noOfEntries);
+        System.arraycopy(entrySketches, 0, newEntrySketches, 0, noOfEntries);
+        System.arraycopy(previousEntryIds, 0, newPreviousEntryIds, 0, noOfEntries);
+        System.arraycopy(nextEntryIds, 0, newNextEntryIds, 0, noOfEntries);
+        entryKeyHashes = newEntryKeyHashes;
+        entrySketches = newEntrySketches;
+        previousEntryIds = newPreviousEntryIds;
+        nextEntryIds = newNextEntryIds;
+
+//      keep the load factor of the hash table below 0.5
+        allocateTable(newLength);
+        for (int i = 0; i < noOfEntries; i++) {
+            insertIntoTable(entryKeyHashes[i], i);
+        }
+    }
+
+    private void moveToMostRecent(int entryId) {
+        if (entryId != mostRecentEntryId) {
+            unlink(entryId);
+            linkAsMostRecent(entryId);
+        }
+    }
+
+    private void linkAsMostRecent(int entryId) {
+        previousEntryIds[entryId] = NONE;
+        nextEntryIds[entryId] = mostRecentEntryId;
+        if (mostRecentEntryId != NONE) {
+            previousEntryIds[mostRecentEntryId] = entryId;
+        }
+        mostRecentEntryId = entryId;
+        if (leastRecentEntryId == NONE) {
+            leastRecentEntryId = entryId;
+        }
+    }
+
+    private void unlink(int entryId) {
+        int previousEntryId = previousEntryIds[entryId];
+        int nextEntryId = nextEntryIds[entryId];
+        if (previousEntryId == NONE) {
+            mostRecentEntryId = nextEntryId;
+        } else {
+            nextEntryIds[previousEntryId] = nextEntryId;
+        }
+        if (nextEntryId == NONE) {
+            leastRecentEntryId = previousEntryId;
+        } else {
+            previousEntryIds[nextEntryId] = previousEntryId;
+        }
+    }
+
+    private void allocateTable(int noOfKeys) {
+        int tableSize = Integer.highestOneBit(Math.max(noOfKeys, 2) - 1) << 2;
+        tableKeyHashes = new long[tableSize];
+        tableEntryIds = new int[tableSize];
+        tableMask = tableSize - 1;
+    }
+
+    private int findEntry(long keyHash) {
+        for (int slot = getSlot(keyHash); tableEntryIds[slot] != 0; slot = (slot + 1) & tableMask) {
+            if (tableKeyHashes[slot] == keyHash) {
+                return tableEntryIds[slot] - 1;
+            }
+        }
+        return NONE;
+    }
+
+    private void insertIntoTable(long keyHash, int entryId) {
+        int slot = getSlot(keyHash);
+        while (tableEntryIds[slot] != 0) {
+            slot = (slot + 1) & tableMask;
+        }
+        tableKeyHashes[slot] = keyHash;
+        tableEntryIds[slot] = entryId + 1;
+    }
+
+    private void removeFromTable(long keyHash) {
+        int slot = getSlot(keyHash);
+        while (tableKeyHashes[slot] != keyHash || tableEntryIds[slot] == 0) {
+            slot = (slot + 1) & tableMask;
+        }
+//      shift back the following entries of the probe sequence to fill the gap
+        int gap = slot;
+        for (slot = (slot + 1) & tableMask; tableEntryIds[slot] != 0; slot = (slot + 1) & tableMask) {
+            int homeSlot = getSlot(tableKeyHashes[slot]);
+            if (((slot - homeSlot) & tableMask) >= ((slot - gap) & tableMask)) {
+                tableKeyHashes[gap] = tableKeyHashes[slot];
+                tableEntryIds[gap] = tableEntryIds[slot];
+                gap = slot;
+            }
+        }
+        tableEntryIds[gap] = 0;
+    }
+
+    private int getSlot(long keyHash) {
+        return (int) (keyHash ^ (keyHash >>> 32)) & tableMask;
+    }
+
+    private long getKeyHash(K key) {
+        return ((long) MurmurHash.hash(key) << 32) | (MurmurHash.hash(key, KEY_SEED) & 0xFFFFFFFFL);
+    }
+}
@@ -22,6 +22,7 @@ import io.siddhi.annotation.Example;
 import io.siddhi.annotation.Extension;
 import io.siddhi.annotation.Parameter;
 import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.SystemParameter;
 import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.config.SiddhiQueryContext;
 import io.siddhi.core.event.ComplexEventChunk;
@@ -36,12 +37,19 @@ import io.siddhi.core.executor.ExpressionExecutor;
 import io.siddhi.core.executor.VariableExpressionExecutor;
 import io.siddhi.core.query.processor.ProcessingMode;
 import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.SchedulingProcessor;
 import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.Scheduler;
 import io.siddhi.core.util.config.ConfigReader;
 import io.siddhi.core.util.snapshot.state.State;
 import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.timestamp.TimestampGenerator;
 import io.siddhi.query.api.definition.AbstractDefinition;
 import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.IdleStateSpiller;
+import org.wso2.extension.siddhi.execution.approximate.util.MemoryBudget;
+import org.wso2.extension.siddhi.execution.approximate.util.PeriodicEmitter;
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.CompressedBitmap;
 import org.wso2.extension.siddhi.execution.approximate.distinctcount.HyperLogLog;
 
 import java.util.ArrayList;
@@ -59,7 +67,10 @@ import java.util.Map;
                 "calculate the number of distinct events on a streaming data set based on a specific " +
                 "relative error and a confidence value given. Note that this extension returns " +
                 "erroneous values if it is used with a Siddhi window. If you want to perform these calculations " +
-                "with a window, you need to use the `approximate:distinctCount` extension.",
+                "with a window, you need to use the `approximate:distinctCount` extension." +
+                " When an 'emit interval' is given, a summary event carrying the up to date distinct count is" +
+                " also emitted once per interval, and the input events can be suppressed so that only the" +
+                " summary events are emitted.",
         parameters = {
                 @Parameter(
                         name = "value",
@@ -92,6 +103,35 @@ import java.util.Map;
                         type = {DataType.DOUBLE, DataType.FLOAT},
                         optional = true,
                         defaultValue = "0.95"
+                ),
+                @Parameter(
+                        name = "exact.bitmap",
+                        description = "If this is set to true, the distinct values of an INT or LONG attribute " +
+                                "are kept in an exact compressed bitmap, and the exact distinct count is " +
+                                "returned while the bitmap is smaller than the buckets of the HyperLogLog " +
+                                "of the given relative error. Afterwards, the values are moved to a " +
+                                "HyperLogLog and the distinct count is approximated as usual, until the " +
+                                "extension is reset.",
+                        type = {DataType.BOOL},
+                        optional = true,
+                        defaultValue = "false"
+                ),
+                @Parameter(
+                        name = "emit.interval",
+                        description = "The time in milliseconds between two summary events. Each summary event " +
+                                "is a copy of the latest event, carrying the distinct count at the time of the " +
+                                "emission.",
+                        type = {DataType.INT, DataType.LONG, DataType.TIME},
+                        optional = true,
+                        defaultValue = "No summary events are emitted"
+                ),
+                @Parameter(
+                        name = "suppress.input",
+                        description = "If this is set to true, the input events are not emitted, and only the " +
+                                "summary events are emitted.",
+                        type = {DataType.BOOL},
+                        optional = true,
+                        defaultValue = "false"
                 )
         },
         returnAttributes = {
@@ -115,6 +155,32 @@ import java.util.Map;
                         type = {DataType.LONG}
                 )
         },
+        systemParameter = {
+                @SystemParameter(
+                        name = IdleStateSpiller.IDLE_STATE_TTL,
+                        description = "The time in milliseconds after which the HyperLogLog of a partition key " +
+                                "which has not received any events is written to a spill file and removed from " +
+                                "the heap. It is read back from the file when the next event of the partition key " +
+                                "arrives.",
+                        defaultValue = "0",
+                        possibleParameters = {"0 (idle states are kept in the heap)", "Any positive long value"}
+                ),
+                @SystemParameter(
+                        name = IdleStateSpiller.SPILL_DIRECTORY,
+                        description = "The directory into which the idle states are spilled.",
+                        defaultValue = "The temporary directory of the JVM",
+                        possibleParameters = "Any writable directory"
+                ),
+                @SystemParameter(
+                        name = MemoryBudget.MEMORY_BUDGET,
+                        description = "The maximum size in bytes of the HyperLogLog of each partition key. When the " +
+                                "HyperLogLog of the given relative error does not fit in it, the lowest relative " +
+                                "error which fits is used instead, and the resulting error bounds are logged " +
+                                "when the query is created.",
+                        defaultValue = "0",
+                        possibleParameters = {"0 (the memory is not bounded)", "Any positive long value"}
+                )
+        },
         examples = {
                 @Example(
                         syntax = "define stream RequestStream (ip string);\n" +
@@ -139,13 +205,42 @@ import java.util.Map;
                                 "approximate distinct count, the lower bound, and the upper bound of the approximate" +
                                 " answer."
 
+                ),
+                @Example(
+                        syntax = "define stream SensorStream (sensorId int);\n" +
+                                "from SensorStream#approximate:distinctCountEver(sensorId, 0.01, 0.95, true)\n" +
+                                "select distinctCountEver, distinctCountEverLowerBound, distinctCountEverUpperBound\n" +
+                                "insert into OutputStream;\n",
+                        description = "This query calculates the exact distinct count of the sensors that have sent " +
+                                "data to the stream, as long as the bitmap of the sensor ids is smaller than the " +
+                                "HyperLogLog of 1% relative error. Afterwards, the distinct count is 95% guaranteed " +
+                                "to deviate no more than 1% from the actual distinct count."
+                ),
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream\n" +
+                                "#approximate:distinctCountEver(ip, 0.01, 0.95, false, 10 sec, true)\n" +
+                                "select distinctCountEver, distinctCountEverLowerBound, distinctCountEverUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query emits the distinct count of the IP addresses which have sent " +
+                                "requests so far, together with its bounds, once per 10 seconds. " +
+                                "The requests themselves are not emitted."
                 )
         }
 )
-public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEverExtension.ExtensionState> {
+public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEverExtension.ExtensionState>
+        implements SchedulingProcessor {
     private ExpressionExecutor valueExecutor;
+    private IdleStateSpiller idleStateSpiller;
+    private PeriodicEmitter periodicEmitter;
+    private Scheduler scheduler;
+    private TimestampGenerator timestampGenerator;
 
     private List<Attribute> attributeList = new ArrayList<>(3);
+    private boolean exactBitmap;
+    private long bitmapSizeThreshold;
+    private double relativeError;
+    private double confidence;
 
     @Override
     protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
@@ -160,10 +255,14 @@ public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEve
 
         double relativeError = defaultRelativeError;
         double confidence = defaultConfidence;
+        long emitInterval = 0;
+        boolean suppressInput = false;
 
 //       validate number of attributes
-        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 3)) {
-            throw new SiddhiAppCreationException("1 or 3 attributes are expected but " +
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 3 ||
+                attributeExpressionExecutors.length == 4 || attributeExpressionExecutors.length == 5 ||
+                attributeExpressionExecutors.length == 6)) {
+            throw new SiddhiAppCreationException("1, 3, 4, 5 or 6 attributes are expected but " +
                     attributeExpressionExecutors.length + " attributes are found inside the " +
                     "distinctCountEver function");
         }
@@ -176,6 +275,9 @@ public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEve
         }
         valueExecutor = attributeExpressionExecutors[0];
 
+        idleStateSpiller = IdleStateSpiller.create(configReader, "distinctCountEver");
+        timestampGenerator = siddhiQueryContext.getSiddhiAppContext().getTimestampGenerator();
+
         //expressionExecutors[1] --> relativeError
         if (attributeExpressionExecutors.length > 1) {
 
@@ -224,12 +326,86 @@ public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEve
             }
         }
 
-        HyperLogLog<Object> hyperLogLog = new HyperLogLog<>(relativeError, confidence, false);
+        //expressionExecutors[3] --> exactBitmap
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside distinctCountEver function - " +
+                        "'exact.bitmap' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() != Attribute.Type.BOOL) {
+                throw new SiddhiAppCreationException("The 4th parameter inside distinctCountEver function - " +
+                        "'exact.bitmap' should be of type Bool but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            exactBitmap = (Boolean) ((ConstantExpressionExecutor) attributeExpressionExecutors[3]).getValue();
+            Attribute.Type valueType = attributeExpressionExecutors[0].getReturnType();
+            if (exactBitmap && valueType != Attribute.Type.INT && valueType != Attribute.Type.LONG) {
+                throw new SiddhiAppCreationException("The 1st parameter inside distinctCountEver function - " +
+                        "'value' should be of type Integer or Long when 'exact.bitmap' is true but found " +
+                        valueType);
+            }
+        }
+
+        //expressionExecutors[4] --> emitInterval
+        if (attributeExpressionExecutors.length > 4) {
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside distinctCountEver function - " +
+                        "'emit.interval' has to be a constant but found " +
+                        this.attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.LONG) {
+                emitInterval = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4]).getValue())
+                        .longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside distinctCountEver function - " +
+                        "'emit.interval' should be of type Integer, Long or Time but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if (emitInterval <= 0) {
+                throw new SiddhiAppCreationException("The 5th parameter inside distinctCountEver function - " +
+                        "'emit.interval' must be a positive value but found " + emitInterval);
+            }
+        }
+
+        //expressionExecutors[5] --> suppressInput
+        if (attributeExpressionExecutors.length > 5) {
+            if (!(attributeExpressionExecutors[5] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 6th parameter inside distinctCountEver function - " +
+                        "'suppress.input' has to be a constant but found " +
+                        this.attributeExpressionExecutors[5].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[5].getReturnType() != Attribute.Type.BOOL) {
+                throw new SiddhiAppCreationException("The 6th parameter inside distinctCountEver function - " +
+                        "'suppress.input' should be of type Bool but found " +
+                        attributeExpressionExecutors[5].getReturnType());
+            }
+            suppressInput = (Boolean) ((ConstantExpressionExecutor) attributeExpressionExecutors[5]).getValue();
+        }
+
+        if (emitInterval > 0) {
+            periodicEmitter = new PeriodicEmitter(emitInterval, suppressInput, this, siddhiQueryContext);
+        }
+
+        relativeError = MemoryBudget.fitHyperLogLog(configReader, "distinctCountEver", relativeError, confidence,
+                false);
+
+        this.relativeError = relativeError;
+        this.confidence = confidence;
+//      the bitmap is used while it is smaller than the int buckets of the HyperLogLog
+        bitmapSizeThreshold = (long) HyperLogLog.getNoOfBuckets(relativeError) * Integer.BYTES;
 
         attributeList.add(new Attribute("distinctCountEver", Attribute.Type.LONG));
         attributeList.add(new Attribute("distinctCountEverLowerBound", Attribute.Type.LONG));
         attributeList.add(new Attribute("distinctCountEverUpperBound", Attribute.Type.LONG));
-        return () -> new ExtensionState(hyperLogLog);
+        if (exactBitmap) {
+            return () -> new ExtensionState(new CompressedBitmap(false));
+        }
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+//      each state gets its own HyperLogLog, so that the partitions of the query are not mixed
+        return () -> new ExtensionState(new HyperLogLog<>(sketchRelativeError, sketchConfidence, false));
 
     }
 
@@ -238,34 +414,124 @@ public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEve
                            StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
                            ExtensionState state) {
         synchronized (this) {
-            while (streamEventChunk.hasNext()) {
-                StreamEvent streamEvent = streamEventChunk.next();
-                Object newData = valueExecutor.execute(streamEvent);
-                if (newData == null) {
-                    streamEventChunk.remove();
+            if (idleStateSpiller != null) {
+                if (periodicEmitter != null && PeriodicEmitter.isTimerEventChunk(streamEventChunk)) {
+//                  a timer event neither keeps the state in use nor reloads it once it is spilled
+                    if (!idleStateSpiller.acquireIfNotSpilled(state)) {
+                        return;
+                    }
                 } else {
-                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    idleStateSpiller.use(state, timestampGenerator.currentTime());
+                }
+            }
+            try {
+                while (streamEventChunk.hasNext()) {
+                    StreamEvent streamEvent = streamEventChunk.next();
+                    if (periodicEmitter != null && streamEvent.getType().equals(StreamEvent.Type.TIMER)) {
+                        emit(streamEventChunk, streamEvent, streamEventCloner, complexEventPopulater, state);
+                        continue;
+                    }
+                    Object newData = valueExecutor.execute(streamEvent);
+                    if (newData == null) {
+                        streamEventChunk.remove();
+                        continue;
+                    }
+                    if (exactBitmap && state.hyperLogLog == null) {
+                        processExactly(streamEvent, (Number) newData, state);
+                    } else if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
                         state.hyperLogLog.addItem(newData);
                     } else if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
                         state.hyperLogLog.clear();
+                        if (exactBitmap) {
+//                          start again with an exact bitmap
+                            state.hyperLogLog = null;
+                            state.compressedBitmap = new CompressedBitmap(false);
+                        }
                     }
 
-                    Object[] outputData = {state.hyperLogLog.getCardinality(),
-                            state.hyperLogLog.getConfidenceInterval()[0],
-                            state.hyperLogLog.getConfidenceInterval()[1]};
+                    if (periodicEmitter != null && record(streamEventChunk, streamEvent, streamEventCloner, state)) {
+                        continue;
+                    }
 
-                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                    complexEventPopulater.populateComplexEvent(streamEvent, getDistinctCount(state));
+                }
+            } finally {
+                if (idleStateSpiller != null) {
+                    idleStateSpiller.release(state);
                 }
             }
         }
         nextProcessor.process(streamEventChunk);
     }
 
+    /**
+     * Update the exact bitmap, and move its values to a HyperLogLog once it becomes larger than the HyperLogLog
+     */
+    private void processExactly(StreamEvent streamEvent, Number value, ExtensionState state) {
+        if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+            state.compressedBitmap.add(value.longValue());
+        } else if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+            state.compressedBitmap.clear();
+        }
+        if (state.compressedBitmap.getSizeInBytes() > bitmapSizeThreshold) {
+            HyperLogLog<Object> hyperLogLog = new HyperLogLog<>(relativeError, confidence, false);
+            state.compressedBitmap.addTo(hyperLogLog);
+            state.hyperLogLog = hyperLogLog;
+            state.compressedBitmap = null;
+        }
+    }
+
+    /**
+     * Get the distinct count and its bounds, which are exact while the values are kept in the exact bitmap
+     */
+    private Object[] getDistinctCount(ExtensionState state) {
+        if (state.hyperLogLog == null) {
+            long distinctCount = state.compressedBitmap.getCardinality();
+            return new Object[]{distinctCount, distinctCount, distinctCount};
+        }
+        long[] confidenceInterval = state.hyperLogLog.getConfidenceInterval();
+        return new Object[]{state.hyperLogLog.getCardinality(), confidenceInterval[0], confidenceInterval[1]};
+    }
+
+    /**
+     * Keep the latest current event for the summary events, and drop the input event if the input is suppressed
+     *
+     * @return whether the input event is dropped
+     */
+    private boolean record(ComplexEventChunk<StreamEvent> streamEventChunk, StreamEvent streamEvent,
+                           StreamEventCloner streamEventCloner, ExtensionState state) {
+        periodicEmitter.record(streamEvent, streamEventCloner, state.emission);
+        if (periodicEmitter.isSuppressInput()) {
+            streamEventChunk.remove();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replace a timer event with the summary event of the state, carrying the distinct count at the time of the
+     * emission
+     */
+    private void emit(ComplexEventChunk<StreamEvent> streamEventChunk, StreamEvent timerEvent,
+                      StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                      ExtensionState state) {
+        StreamEvent summaryEvent = periodicEmitter.emit(timerEvent, streamEventCloner, state.emission);
+        if (summaryEvent != null) {
+            complexEventPopulater.populateComplexEvent(summaryEvent, getDistinctCount(state));
+            streamEventChunk.insertBeforeCurrent(summaryEvent);
+        }
+        streamEventChunk.remove();
+    }
+
     @Override
     public void start() {}
 
     @Override
-    public void stop() {}
+    public void stop() {
+        if (idleStateSpiller != null) {
+            idleStateSpiller.clear();
+        }
+    }
 
     @Override
     public List<Attribute> getReturnAttributes() {
@@ -277,13 +543,31 @@ public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEve
         return ProcessingMode.BATCH;
     }
 
+    @Override
+    public Scheduler getScheduler() {
+        return periodicEmitter != null ? periodicEmitter.getScheduler() : scheduler;
+    }
+
+    @Override
+    public void setScheduler(Scheduler scheduler) {
+//      the timer events of this scheduler pass through the windows of the query, hence the periodic emitter
+//      schedules the summary events with a scheduler of its own, which is initialized in place of this one
+        this.scheduler = scheduler;
+    }
+
     class ExtensionState extends State {
         private HyperLogLog<Object> hyperLogLog;
+        private CompressedBitmap compressedBitmap;
+        private PeriodicEmitter.Emission emission = new PeriodicEmitter.Emission();
 
         private ExtensionState(HyperLogLog<Object> hyperLogLog) {
             this.hyperLogLog = hyperLogLog;
         }
 
+        private ExtensionState(CompressedBitmap compressedBitmap) {
+            this.compressedBitmap = compressedBitmap;
+        }
+
         @Override
         public boolean canDestroy() {
             return false;
@@ -292,8 +576,15 @@ public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEve
         @Override
         public Map<String, Object> snapshot() {
             synchronized (DistinctCountEverExtension.this) {
+//              the spilled state is reloaded, and is not spilled again while the extension is locked
+                if (idleStateSpiller != null) {
+                    idleStateSpiller.acquire(this);
+                    idleStateSpiller.release(this);
+                }
                 Map<String, Object> map = new HashMap();
                 map.put("hyperLogLog", hyperLogLog);
+                map.put("compressedBitmap", compressedBitmap);
+                map.put("emission", emission);
                 return map;
             }
         }
@@ -301,7 +592,16 @@ public class DistinctCountEverExtension extends StreamProcessor<DistinctCountEve
         @Override
         public void restore(Map<String, Object> state) {
             synchronized (DistinctCountEverExtension.this) {
+                if (idleStateSpiller != null) {
+                    idleStateSpiller.forget(this);
+                }
                 hyperLogLog = (HyperLogLog) state.get("hyperLogLog");
+                compressedBitmap = (CompressedBitmap) state.get("compressedBitmap");
+                PeriodicEmitter.Emission restoredEmission = (PeriodicEmitter.Emission) state.get("emission");
+                emission = restoredEmission != null ? restoredEmission : new PeriodicEmitter.Emission();
+                if (periodicEmitter != null) {
+                    periodicEmitter.restore(emission, timestampGenerator.currentTime());
+                }
             }
         }
     }
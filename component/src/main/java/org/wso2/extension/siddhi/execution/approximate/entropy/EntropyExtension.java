@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.entropy;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs a stable projection sketch to get the approximate entropy of the values of the events in a window.
+ */
+@Extension(
+        name = "entropy",
+        namespace = "approximate",
+        description = "This extension applies a `stable projection sketch` to a Siddhi window to calculate the " +
+                "approximate Shannon entropy (in bits) of the distribution of the values of the events, based on " +
+                "the given values for the 'absolute error' and 'confidence value'. The sketch uses a fixed amount " +
+                "of memory and a fixed amount of time per event, regardless of the number of distinct values. " +
+                "The values of the expired events are removed from the sketch, hence it can be used with any " +
+                "window. The time taken per event is proportional to (1 / absolute.error^2).",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value whose entropy is calculated.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "absolute.error",
+                        description = "This is the error in bits to be allowed for the entropy generated, " +
+                                "expressed as a value between 0 and 1. Lower the value specified, lower is the " +
+                                "amount by which the entropy can deviate from being perfectly correct, and higher " +
+                                "is the memory and the time used per event. Note that you cannot specify `1` or " +
+                                "`0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.25"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the result can deviate from " +
+                                "the actual entropy. Higher the value specified, higher is the possibility of " +
+                                "the amount of error in the entropy being no greater than the absolute error " +
+                                "specified. Note that you cannot specify `1` or `0` as the value for this " +
+                                "parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.95"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "entropy",
+                        description = "This represents the approximate entropy of the values within the window " +
+                                "in bits, based on the latest event.",
+                        type = {DataType.DOUBLE}
+                ),
+                @ReturnAttribute(
+                        name = "entropyLowerBound",
+                        description = "The lowest value in the range within which the most accurate entropy is " +
+                                "included. This range is based on the latest event.",
+                        type = {DataType.DOUBLE}
+                ),
+                @ReturnAttribute(
+                        name = "entropyUpperBound",
+                        description = "The highest value in the range within which the most accurate entropy is " +
+                                "included. This range is based on the latest event.",
+                        type = {DataType.DOUBLE}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream PacketStream (sourceIp string, destinationPort int);\n" +
+                                "from PacketStream#window.time(1 min)#approximate:entropy(sourceIp)\n" +
+                                "select entropy, entropyLowerBound, entropyUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the entropy of the source IP addresses of the packets " +
+                                "that arrived during the last minute, with a default absolute error of 0.25 bits " +
+                                "and a default confidence of 0.95. A sudden drop of the entropy indicates that a " +
+                                "few sources dominate the traffic."
+                ),
+                @Example(
+                        syntax = "define stream PacketStream (sourceIp string, destinationPort int);\n" +
+                                "from PacketStream#window.length(10000)" +
+                                "#approximate:entropy(destinationPort, 0.1, 0.99)\n" +
+                                "select entropy\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the entropy of the destination ports of the last " +
+                                "10000 packets. The entropy generated is 99% guaranteed to deviate from the actual " +
+                                "entropy within the window by only 0.1 bits. A sudden rise of the entropy " +
+                                "indicates a port scan."
+                )
+        }
+)
+public class EntropyExtension extends StreamProcessor<EntropyExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for absolute error and confidence
+        final double defaultAbsoluteError = 0.25;
+        final double defaultConfidence = 0.95;
+
+        double absoluteError = defaultAbsoluteError;
+        double confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 3)) {
+            throw new SiddhiAppCreationException("1 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the entropy function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside entropy function - " +
+                    "'value' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> absoluteError
+        if (attributeExpressionExecutors.length > 1) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside entropy function - " +
+                        "'absolute.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+                absoluteError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 2nd parameter inside entropy function - " +
+                        "'absolute.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            if ((absoluteError <= 0) || (absoluteError >= 1)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside entropy function - " +
+                        "'absolute.error' must be in the range of (0, 1) but found " + absoluteError);
+            }
+        }
+
+        //expressionExecutors[2] --> confidence
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside entropy function - " +
+                        "'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside entropy function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside entropy function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        final double sketchAbsoluteError = absoluteError;
+        final double sketchConfidence = confidence;
+
+        attributeList.add(new Attribute("entropy", Attribute.Type.DOUBLE));
+        attributeList.add(new Attribute("entropyLowerBound", Attribute.Type.DOUBLE));
+        attributeList.add(new Attribute("entropyUpperBound", Attribute.Type.DOUBLE));
+        return () -> new ExtensionState(new EntropySketch<>(sketchAbsoluteError, sketchConfidence));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.entropySketch.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0.0, 0.0, 0.0});
+                    continue;
+                }
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    streamEventChunk.remove();
+                } else {
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        state.entropySketch.insert(newData);
+                    } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                        state.entropySketch.remove(newData);
+                    }
+                    double approximateEntropy = state.entropySketch.getEntropy();
+                    double[] confidenceInterval = state.entropySketch.getConfidenceInterval(approximateEntropy);
+
+                    Object[] outputData = {approximateEntropy, confidenceInterval[0], confidenceInterval[1]};
+
+                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private EntropySketch<Object> entropySketch;
+
+        private ExtensionState(EntropySketch<Object> entropySketch) {
+            this.entropySketch = entropySketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (EntropyExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("entropySketch", entropySketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (EntropyExtension.this) {
+                entropySketch = (EntropySketch) state.get("entropySketch");
+            }
+        }
+    }
+}
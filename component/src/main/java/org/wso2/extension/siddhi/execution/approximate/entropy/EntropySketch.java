@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.entropy;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+
+/**
+ * A probabilistic data structure to estimate the Shannon entropy of the empirical distribution of the items
+ * in a stream, which supports removing items.
+ * Each projection is the sum of the maximally skewed 1-stable random values assigned to the items, and the
+ * entropy is estimated as -ln(mean(exp(projection / totalCount))). The random value of an item is derived
+ * from its hash value, hence an item can be removed by subtracting the same value.
+ * The projections are kept in fixed point, so that adding and removing the same item is exact.
+ * The referred research paper - A simple sketching algorithm for entropy estimation over streaming data
+ * by Peter Clifford and Ioana A. Cosma.
+ * http://proceedings.mlr.press/v31/clifford13a.pdf
+ *
+ * @param <E> is the type of data whose entropy is estimated
+ */
+public class EntropySketch<E> implements Serializable {
+    private static final long serialVersionUID = -4403618325372768157L;
+
+    private static final int SECOND_HASH_SEED = 0x1b873593;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double FIXED_POINT_SCALE = 1 << 16;
+    //  the random values are clamped, which only affects values with a probability of about 1e-12
+    private static final double MAX_RANDOM_VALUE = 1L << 40;
+    private static final double LN_2 = Math.log(2);
+
+    private int noOfProjections;
+    private long[] projections;
+    private long totalCount;
+
+    //  the half width of the confidence interval in bits
+    private double error;
+
+    /**
+     * Create a new EntropySketch based on a given absolute error and confidence
+     *
+     * @param error      is the absolute error of the entropy in bits, a positive number (e.g. 0.25)
+     * @param confidence is a positive number less than 1 (e.g. 0.95)
+     *                   which is the probability of answers being within the error
+     */
+    public EntropySketch(double error, double confidence) {
+        if (!(error > 0) || !(confidence < 1 && confidence > 0)) {
+            throw new IllegalArgumentException("error must be a positive value and confidence must be a value " +
+                    "in the range (0,1)");
+        }
+        this.error = error;
+//      the variance of exp(projection / totalCount) is 3 times the square of its mean, hence
+//      noOfProjections = 3 * (z / (error * ln(2)))^2, where z is the standard normal quantile of the confidence
+        double z = getStandardNormalQuantile(confidence);
+        this.noOfProjections = (int) Math.ceil(3 * Math.pow(z / (error * LN_2), 2));
+        this.projections = new long[noOfProjections];
+    }
+
+    /**
+     * Adds an item to the sketch
+     *
+     * @param item is the item to be inserted
+     */
+    public synchronized void insert(E item) {
+        update(item, 1);
+    }
+
+    /**
+     * Removes an item which was added to the sketch
+     *
+     * @param item is the item to be removed
+     */
+    public synchronized void remove(E item) {
+        update(item, -1);
+    }
+
+    /**
+     * @return the approximate entropy of the items in the sketch in bits
+     */
+    public synchronized double getEntropy() {
+        if (totalCount <= 1) {
+            return 0;
+        }
+        double scale = FIXED_POINT_SCALE * totalCount;
+        double maxExponent = Double.NEGATIVE_INFINITY;
+        for (long projection : projections) {
+            maxExponent = Math.max(maxExponent, projection / scale);
+        }
+        double sum = 0;
+        for (long projection : projections) {
+            sum += Math.exp(projection / scale - maxExponent);
+        }
+        double entropy = -(maxExponent + Math.log(sum / noOfProjections)) / LN_2;
+        return Math.min(Math.max(entropy, 0), getMaxEntropy());
+    }
+
+    /**
+     * Calculate the confidence interval of the approximate entropy
+     * [approximateEntropy - error, approximateEntropy + error]
+     * which is limited to the possible range of the entropy [0, log2(totalCount)]
+     *
+     * @param entropy is the approximate entropy
+     * @return a double array which contains the lower bound and
+     * the upper bound of the confidence interval consecutively
+     */
+    public synchronized double[] getConfidenceInterval(double entropy) {
+        if (totalCount <= 1) {
+            return new double[]{0, 0};
+        }
+        return new double[]{Math.max(entropy - error, 0), Math.min(entropy + error, getMaxEntropy())};
+    }
+
+    /**
+     * @return the number of items in the sketch
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Clears all the items of the sketch.
+     */
+    public synchronized void clear() {
+        this.projections = new long[noOfProjections];
+        this.totalCount = 0;
+    }
+
+    private double getMaxEntropy() {
+        return Math.log(totalCount) / LN_2;
+    }
+
+    private void update(E item, int sign) {
+        totalCount += sign;
+        long seed = ((long) MurmurHash.hash(item) << 32) | (MurmurHash.hash(item, SECOND_HASH_SEED) & 0xFFFFFFFFL);
+        for (int i = 0; i < noOfProjections; i++) {
+            seed += GOLDEN_GAMMA;
+            long randomBits1 = mix(seed);
+            long randomBits2 = mix(randomBits1);
+//          the fixed point additions are exact even when they overflow, hence the removals restore the sums
+            projections[i] += sign * Math.round(getStableRandomValue(randomBits1, randomBits2) * FIXED_POINT_SCALE);
+        }
+    }
+
+    /**
+     * Generate a maximally skewed 1-stable random value S(1, -1, pi/2, 0) using the Chambers-Mallows-Stuck method
+     */
+    private static double getStableRandomValue(long randomBits1, long randomBits2) {
+        double v = Math.PI * (toOpenUnitInterval(randomBits1) - 0.5);
+        double w = -Math.log(toOpenUnitInterval(randomBits2));
+        double halfPiMinusV = Math.PI / 2 - v;
+        double standardValue = (2 / Math.PI) * (halfPiMinusV * Math.tan(v) +
+                Math.log((Math.PI / 2) * w * Math.cos(v) / halfPiMinusV));
+//      scale the standard value by pi/2
+        double value = (Math.PI / 2) * standardValue - Math.log(Math.PI / 2);
+        return Math.min(Math.max(value, -MAX_RANDOM_VALUE), MAX_RANDOM_VALUE);
+    }
+
+    /**
+     * @return a uniformly distributed value in the range (0, 1) from the 53 high bits
+     */
+    private static double toOpenUnitInterval(long randomBits) {
+        return ((randomBits >>> 11) + 0.5) / (1L << 53);
+    }
+
+    /**
+     * The SplitMix64 finalizer, which turns consecutive seeds into independent random bits
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Approximate the upper (1 - confidence) / 2 quantile of the standard normal distribution,
+     * using the formula 26.2.23 of Abramowitz and Stegun, whose absolute error is less than 4.5e-4
+     */
+    private static double getStandardNormalQuantile(double confidence) {
+        double t = Math.sqrt(-2 * Math.log((1 - confidence) / 2));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t) /
+                (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+    }
+}
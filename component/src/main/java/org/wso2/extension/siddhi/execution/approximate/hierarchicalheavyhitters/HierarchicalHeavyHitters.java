@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.hierarchicalheavyhitters;
+
+import org.wso2.extension.siddhi.execution.approximate.count.CountMinSketch;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A probabilistic data structure to find the hierarchical heavy hitters of the IPv4 addresses in a stream,
+ * i.e. the /32, /24, /16 and /8 prefixes whose discounted count is at least a given fraction of all the items.
+ * The discounted count of a prefix is its count excluding the counts of its descendant heavy hitter prefixes,
+ * hence a prefix is reported only if it is heavy by itself rather than due to a single heavier descendant.
+ * It keeps a count min sketch per prefix level, and the prefixes whose count is above the threshold.
+ * The referred research paper - Finding Hierarchical Heavy Hitters in Streaming Data
+ * by Graham Cormode, Flip Korn, S. Muthukrishnan and Divesh Srivastava.
+ * http://dimacs.rutgers.edu/~graham/pubs/papers/ckmsh4.pdf
+ */
+public class HierarchicalHeavyHitters implements Serializable {
+    private static final long serialVersionUID = 8305402185718843016L;
+
+    //  the prefix lengths from the most specific level to the least specific level
+    private static final int[] PREFIX_LENGTHS = {32, 24, 16, 8};
+
+    private double threshold;
+    private long totalCount;
+
+    private ArrayList<CountMinSketch<Integer>> countMinSketches;
+
+    //  the prefixes of each level whose count was above the threshold when it was last updated
+    private ArrayList<HashMap<Integer, Long>> heavyPrefixCandidates;
+    private int noOfCandidates;
+    private int candidatePruneSize;
+
+    /**
+     * Instantiate the sketch based on a given threshold, relative error and confidence
+     *
+     * @param threshold     is the minimum fraction of all the items which a heavy hitter prefix represents
+     * @param relativeError is a positive number less than the threshold (e.g. 0.001)
+     * @param confidence    is a positive number less than 1 (e.g. 0.99)
+     *                      which is the probability of the counts being within the relative error
+     */
+    public HierarchicalHeavyHitters(double threshold, double relativeError, double confidence) {
+        if (!(threshold < 1 && threshold > 0) || !(relativeError < threshold && relativeError > 0)) {
+            throw new IllegalArgumentException("threshold must be a value in the range (0,1) and relativeError " +
+                    "must be a value in the range (0,threshold)");
+        }
+        this.threshold = threshold;
+        this.countMinSketches = new ArrayList<>(PREFIX_LENGTHS.length);
+        this.heavyPrefixCandidates = new ArrayList<>(PREFIX_LENGTHS.length);
+        for (int i = 0; i < PREFIX_LENGTHS.length; i++) {
+            countMinSketches.add(new CountMinSketch<>(relativeError, confidence));
+            heavyPrefixCandidates.add(new HashMap<>());
+        }
+//      at most (1 / threshold) prefixes of a level can be above the threshold at a time
+        this.candidatePruneSize = 2 * PREFIX_LENGTHS.length * (int) Math.ceil(1 / threshold);
+    }
+
+    /**
+     * Adds an IPv4 address to the sketch, and finds the heavy hitter prefixes of the address
+     *
+     * @param ip is the IPv4 address as an integer
+     * @return the heavy hitter prefixes of the address, from the most specific to the least specific
+     */
+    public synchronized List<HeavyPrefix> insert(int ip) {
+        totalCount++;
+        long minCount = getMinCount();
+        for (int level = 0; level < PREFIX_LENGTHS.length; level++) {
+            int prefix = getPrefix(ip, PREFIX_LENGTHS[level]);
+            long count = countMinSketches.get(level).insert(prefix);
+            if (count >= minCount) {
+                if (heavyPrefixCandidates.get(level).put(prefix, count) == null) {
+                    noOfCandidates++;
+                }
+            }
+        }
+        if (noOfCandidates > candidatePruneSize) {
+            pruneCandidates(minCount);
+        }
+        return getHeavyPrefixes(ip, minCount);
+    }
+
+    /**
+     * Removes an IPv4 address which was added to the sketch
+     *
+     * @param ip is the IPv4 address as an integer
+     */
+    public synchronized void remove(int ip) {
+        totalCount--;
+        for (int level = 0; level < PREFIX_LENGTHS.length; level++) {
+            int prefix = getPrefix(ip, PREFIX_LENGTHS[level]);
+            long count = countMinSketches.get(level).remove(prefix);
+            heavyPrefixCandidates.get(level).replace(prefix, count);
+        }
+    }
+
+    /**
+     * Clears all the items of the sketch.
+     */
+    public synchronized void clear() {
+        totalCount = 0;
+        for (int level = 0; level < PREFIX_LENGTHS.length; level++) {
+            countMinSketches.get(level).clear();
+            heavyPrefixCandidates.get(level).clear();
+        }
+        noOfCandidates = 0;
+    }
+
+    /**
+     * Calculate the discounted counts of the candidate prefixes under the /8 prefix of the given address, level
+     * by level, by passing the counts of the heavy hitter prefixes (or the counts passed to the prefixes which
+     * are not heavy hitters) up to their parents
+     */
+    private List<HeavyPrefix> getHeavyPrefixes(int ip, long minCount) {
+        List<HeavyPrefix> heavyPrefixes = new ArrayList<>(PREFIX_LENGTHS.length);
+        int rootPrefix = getPrefix(ip, PREFIX_LENGTHS[PREFIX_LENGTHS.length - 1]);
+        Map<Integer, Long> heavyDescendantCounts = new HashMap<>();
+        for (int level = 0; level < PREFIX_LENGTHS.length; level++) {
+            int prefixLength = PREFIX_LENGTHS[level];
+            int parentPrefixLength = level + 1 < PREFIX_LENGTHS.length ? PREFIX_LENGTHS[level + 1] : 0;
+            Map<Integer, Long> parentHeavyDescendantCounts = new HashMap<>();
+            Iterator<Map.Entry<Integer, Long>> candidates = heavyPrefixCandidates.get(level).entrySet().iterator();
+            while (candidates.hasNext()) {
+                Map.Entry<Integer, Long> candidate = candidates.next();
+                int prefix = candidate.getKey();
+                if (getPrefix(prefix, PREFIX_LENGTHS[PREFIX_LENGTHS.length - 1]) != rootPrefix) {
+                    continue;
+                }
+                long count = candidate.getValue();
+                if (count < minCount) {
+//                  the prefix can no longer be a heavy hitter, its heavy descendants are passed to the parent
+                    candidates.remove();
+                    noOfCandidates--;
+                    continue;
+                }
+                Long heavyDescendantCount = heavyDescendantCounts.remove(prefix);
+                long discountedCount = heavyDescendantCount == null ? count : count - heavyDescendantCount;
+                long countToParent;
+                if (discountedCount >= minCount) {
+                    countToParent = count;
+                    if (prefix == getPrefix(ip, prefixLength)) {
+                        heavyPrefixes.add(new HeavyPrefix(prefix, prefixLength, count, discountedCount));
+                    }
+                } else {
+                    countToParent = heavyDescendantCount == null ? 0 : heavyDescendantCount;
+                }
+                if (countToParent > 0) {
+                    parentHeavyDescendantCounts.merge(getPrefix(prefix, parentPrefixLength), countToParent,
+                            Long::sum);
+                }
+            }
+            for (Map.Entry<Integer, Long> entry : heavyDescendantCounts.entrySet()) {
+                parentHeavyDescendantCounts.merge(getPrefix(entry.getKey(), parentPrefixLength), entry.getValue(),
+                        Long::sum);
+            }
+            heavyDescendantCounts = parentHeavyDescendantCounts;
+        }
+        return heavyPrefixes;
+    }
+
+    /**
+     * Remove the candidate prefixes whose count is below the threshold, under all the /8 prefixes
+     */
+    private void pruneCandidates(long minCount) {
+        for (HashMap<Integer, Long> candidates : heavyPrefixCandidates) {
+            candidates.values().removeIf(count -> count < minCount);
+        }
+        noOfCandidates = 0;
+        for (HashMap<Integer, Long> candidates : heavyPrefixCandidates) {
+            noOfCandidates += candidates.size();
+        }
+//      avoid pruning on each item when there are many candidates above the threshold
+        candidatePruneSize = Math.max(candidatePruneSize, 2 * noOfCandidates);
+    }
+
+    private long getMinCount() {
+        return Math.max(1, (long) Math.ceil(threshold * totalCount));
+    }
+
+    private static int getPrefix(int ip, int prefixLength) {
+        return prefixLength == 0 ? 0 : ip & (-1 << (32 - prefixLength));
+    }
+
+    /**
+     * A prefix which is a hierarchical heavy hitter
+     */
+    public static class HeavyPrefix {
+        private final int prefix;
+        private final int prefixLength;
+        private final long count;
+        private final long discountedCount;
+
+        private HeavyPrefix(int prefix, int prefixLength, long count, long discountedCount) {
+            this.prefix = prefix;
+            this.prefixLength = prefixLength;
+            this.count = count;
+            this.discountedCount = discountedCount;
+        }
+
+        /**
+         * @return the prefix in the CIDR notation, e.g. 10.1.2.0/24
+         */
+        public String getPrefix() {
+            return ((prefix >>> 24) & 0xFF) + "." + ((prefix >>> 16) & 0xFF) + "." + ((prefix >>> 8) & 0xFF) + "." +
+                    (prefix & 0xFF) + "/" + prefixLength;
+        }
+
+        public int getPrefixLength() {
+            return prefixLength;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getDiscountedCount() {
+            return discountedCount;
+        }
+    }
+}
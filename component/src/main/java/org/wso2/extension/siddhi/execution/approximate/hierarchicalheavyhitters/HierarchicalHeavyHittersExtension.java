@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.hierarchicalheavyhitters;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs Hierarchical Heavy Hitters algorithm to find the IPv4 prefixes which receive a large fraction of
+ * the events in a window.
+ */
+@Extension(
+        name = "hierarchicalHeavyHitters",
+        namespace = "approximate",
+        description = "This extension applies the `hierarchical heavy hitters` algorithm to a Siddhi window, with " +
+                "a `count-min sketch` per IPv4 prefix level (/32, /24, /16 and /8). For each event, it emits the " +
+                "prefixes of the 'ip' of the event whose discounted count is at least 'threshold' times the " +
+                "number of events in the window. The discounted count of a prefix is its count excluding the " +
+                "counts of its more specific heavy hitter prefixes, hence a /24 prefix is emitted when the events " +
+                "are spread across its addresses, even if none of the addresses is a heavy hitter by itself. An " +
+                "event is emitted once per heavy hitter prefix, and the events without heavy hitter prefixes " +
+                "are dropped. The values of the expired events are removed from the sketches, and the expired " +
+                "events are dropped as well. The events whose 'ip' is not a valid IPv4 address are dropped.",
+        parameters = {
+                @Parameter(
+                        name = "ip",
+                        description = "The IPv4 address in the dotted decimal notation, e.g. '10.1.2.3'.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "threshold",
+                        description = "The minimum fraction of the events of the window which a prefix should " +
+                                "receive by itself to be emitted, expressed as a value between 0 and 1.",
+                        type = {DataType.DOUBLE, DataType.FLOAT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the counts of the prefixes, " +
+                                "expressed as a fraction of the number of events in the window. It should be " +
+                                "less than the 'threshold'. Lower the value specified, more memory is used by " +
+                                "the sketches.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "threshold / 10"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the counts can deviate from " +
+                                "the actual counts. Higher the value specified, higher is the possibility of " +
+                                "the amount of error in the counts being no greater than the relative error " +
+                                "specified. Note that you cannot specify `1` or `0` as the value for this " +
+                                "parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "prefix",
+                        description = "The heavy hitter prefix of the ip of the event in the CIDR notation, " +
+                                "e.g. '10.1.2.0/24'.",
+                        type = {DataType.STRING}
+                ),
+                @ReturnAttribute(
+                        name = "prefixLength",
+                        description = "The length of the heavy hitter prefix, which is one of 32, 24, 16 and 8.",
+                        type = {DataType.INT}
+                ),
+                @ReturnAttribute(
+                        name = "prefixCount",
+                        description = "The approximate number of events of the window whose ip is within the " +
+                                "prefix.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "discountedCount",
+                        description = "The approximate number of events of the window whose ip is within the " +
+                                "prefix but not within its more specific heavy hitter prefixes.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (sourceIp string);\n" +
+                                "from RequestStream#window.time(1 min)" +
+                                "#approximate:hierarchicalHeavyHitters(sourceIp, 0.05)\n" +
+                                "select prefix, prefixLength, discountedCount\n" +
+                                "insert into HeavySourceStream;",
+                        description = "This query emits the source addresses and the /24, /16 and /8 networks " +
+                                "which sent at least 5% of the requests of the last minute by themselves, so that " +
+                                "both single heavy sources and attacks distributed across a network are detected. " +
+                                "The counts are calculated with a default relative error of 0.005 and a default " +
+                                "confidence of 0.99."
+                )
+        }
+)
+public class HierarchicalHeavyHittersExtension
+        extends StreamProcessor<HierarchicalHeavyHittersExtension.ExtensionState> {
+    private ExpressionExecutor ipExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(4);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default value for confidence, the default relative error depends on the threshold
+        final double defaultConfidence = 0.99;
+
+        double threshold;
+        double relativeError;
+        double confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 4)) {
+            throw new SiddhiAppCreationException("2 or 4 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the " +
+                    "hierarchicalHeavyHitters function");
+        }
+
+        //expressionExecutors[0] --> ip
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside hierarchicalHeavyHitters function - " +
+                    "'ip' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 1st parameter inside hierarchicalHeavyHitters function - " +
+                    "'ip' should be of type String but found " + attributeExpressionExecutors[0].getReturnType());
+        }
+        ipExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> threshold
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside hierarchicalHeavyHitters function - " +
+                    "'threshold' has to be a constant but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+            threshold = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                    .getValue()).doubleValue();
+        } else {
+            throw new SiddhiAppCreationException("The 2nd parameter inside hierarchicalHeavyHitters function - " +
+                    "'threshold' should be of type Double or Float but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        if ((threshold <= 0) || (threshold >= 1)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside hierarchicalHeavyHitters function - " +
+                    "'threshold' must be in the range of (0, 1) but found " + threshold);
+        }
+        relativeError = threshold / 10;
+
+        //expressionExecutors[2] --> relativeError
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside hierarchicalHeavyHitters " +
+                        "function - 'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside hierarchicalHeavyHitters " +
+                        "function - 'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= threshold)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside hierarchicalHeavyHitters " +
+                        "function - 'relative.error' must be in the range of (0, " + threshold + ") but found " +
+                        relativeError);
+            }
+        }
+
+        //expressionExecutors[3] --> confidence
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside hierarchicalHeavyHitters " +
+                        "function - 'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside hierarchicalHeavyHitters " +
+                        "function - 'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside hierarchicalHeavyHitters " +
+                        "function - 'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        final double sketchThreshold = threshold;
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+
+        attributeList.add(new Attribute("prefix", Attribute.Type.STRING));
+        attributeList.add(new Attribute("prefixLength", Attribute.Type.INT));
+        attributeList.add(new Attribute("prefixCount", Attribute.Type.LONG));
+        attributeList.add(new Attribute("discountedCount", Attribute.Type.LONG));
+        return () -> new ExtensionState(new HierarchicalHeavyHitters(sketchThreshold, sketchRelativeError,
+                sketchConfidence));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.hierarchicalHeavyHitters.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{null, 0, 0L, 0L});
+                    continue;
+                }
+                Object ip = ipExecutor.execute(streamEvent);
+                long parsedIp = ip == null ? -1 : parseIPv4((String) ip);
+                if (parsedIp < 0) {
+                    streamEventChunk.remove();
+                } else if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    List<HierarchicalHeavyHitters.HeavyPrefix> heavyPrefixes =
+                            state.hierarchicalHeavyHitters.insert((int) parsedIp);
+                    if (heavyPrefixes.isEmpty()) {
+                        streamEventChunk.remove();
+                        continue;
+                    }
+//                  the event is emitted once per heavy prefix, from the most specific to the least specific
+                    for (int i = 0; i < heavyPrefixes.size() - 1; i++) {
+                        StreamEvent clonedEvent = streamEventCloner.copyStreamEvent(streamEvent);
+                        complexEventPopulater.populateComplexEvent(clonedEvent, getOutputData(heavyPrefixes.get(i)));
+                        streamEventChunk.insertBeforeCurrent(clonedEvent);
+                    }
+                    complexEventPopulater.populateComplexEvent(streamEvent,
+                            getOutputData(heavyPrefixes.get(heavyPrefixes.size() - 1)));
+                } else {
+                    if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                        state.hierarchicalHeavyHitters.remove((int) parsedIp);
+                    }
+                    streamEventChunk.remove();
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    private Object[] getOutputData(HierarchicalHeavyHitters.HeavyPrefix heavyPrefix) {
+        return new Object[]{heavyPrefix.getPrefix(), heavyPrefix.getPrefixLength(), heavyPrefix.getCount(),
+                heavyPrefix.getDiscountedCount()};
+    }
+
+    /**
+     * Parse an IPv4 address in the dotted decimal notation
+     *
+     * @param ip is the IPv4 address
+     * @return the address as an unsigned 32 bit value, or -1 if it is not a valid IPv4 address
+     */
+    private static long parseIPv4(String ip) {
+        long address = 0;
+        int octet = -1;
+        int noOfOctets = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && noOfOctets < 3) {
+                address = (address << 8) | octet;
+                octet = -1;
+                noOfOctets++;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || noOfOctets != 3) {
+            return -1;
+        }
+        return (address << 8) | octet;
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private HierarchicalHeavyHitters hierarchicalHeavyHitters;
+
+        private ExtensionState(HierarchicalHeavyHitters hierarchicalHeavyHitters) {
+            this.hierarchicalHeavyHitters = hierarchicalHeavyHitters;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (HierarchicalHeavyHittersExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("hierarchicalHeavyHitters", hierarchicalHeavyHitters);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (HierarchicalHeavyHittersExtension.this) {
+                hierarchicalHeavyHitters = (HierarchicalHeavyHitters) state.get("hierarchicalHeavyHitters");
+            }
+        }
+    }
+}
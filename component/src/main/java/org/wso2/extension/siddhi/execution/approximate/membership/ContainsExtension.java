@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.membership;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.SketchRegistry;
+
+/**
+ * Checks whether a value is in a named Cuckoo Filter populated by approximate:cuckooFilter.
+ */
+@Extension(
+        name = "contains",
+        namespace = "approximate",
+        description = "This function checks whether a value is in the `cuckoo filter` of the given name, which is " +
+                "populated by the `approximate:cuckooFilter` extension in the same Siddhi app. It returns " +
+                "`false` if the value is definitely not in the filter, and `true` if the value is probably in " +
+                "the filter. A value which is not in the filter returns `true` with a probability of about 0.0001.",
+        parameters = {
+                @Parameter(
+                        name = "filter.name",
+                        description = "The name of the filter given in the `approximate:cuckooFilter` extension.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "value",
+                        description = "The value whose membership is checked.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "`true` if the value is probably in the filter, `false` if it is not.",
+                type = {DataType.BOOL}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream BlockedUserStream (userId string);\n" +
+                                "define stream LoginStream (userId string, ip string);\n" +
+                                "from BlockedUserStream#approximate:cuckooFilter('blockList', userId)\n" +
+                                "insert into BlockedUserLogStream;\n" +
+                                "from LoginStream\n" +
+                                "select userId, ip, approximate:contains('blockList', userId) as isBlocked\n" +
+                                "insert into OutputStream;",
+                        description = "The second query checks whether the user of each login is in the " +
+                                "filter named 'blockList', which is populated by the first query."
+                )
+        }
+)
+public class ContainsExtension extends FunctionExecutor<State> {
+    private String filterName;
+    private SiddhiAppContext siddhiAppContext;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+//       validate number of attributes
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppCreationException("2 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the contains function");
+        }
+
+        //expressionExecutors[0] --> filterName
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside contains function - " +
+                    "'filter.name' has to be a constant but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 1st parameter inside contains function - " +
+                    "'filter.name' should be of type String but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        filterName = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+        siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+
+//      the function does not hold any state, the filter is owned by the approximate:cuckooFilter extension
+        return null;
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+        if (data[1] == null) {
+            return false;
+        }
+//      the filter is looked up on each call, as it may be registered after this function is initialized
+        CuckooFilter<Object> cuckooFilter = SketchRegistry.get(siddhiAppContext, filterName, CuckooFilter.class);
+        if (cuckooFilter == null) {
+            throw new SiddhiAppRuntimeException("No approximate:cuckooFilter named '" + filterName +
+                    "' is defined in the Siddhi app '" + siddhiAppContext.getName() + "'");
+        }
+        return cuckooFilter.contains(data[1]);
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+//      the function always has two parameters
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.BOOL;
+    }
+}
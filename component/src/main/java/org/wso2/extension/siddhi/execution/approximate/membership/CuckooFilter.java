@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.membership;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+
+/**
+ * A probabilistic data structure to check the membership of items in a set, which supports removing items.
+ * A 16 bit fingerprint of each item is stored in one of two candidate buckets.
+ * The referred research paper - Cuckoo Filter: Practically Better Than Bloom
+ * by Bin Fan, David G. Andersen, Michael Kaminsky and Michael D. Mitzenmacher.
+ * https://www.cs.cmu.edu/~dga/papers/cuckoo-conext2014.pdf
+ *
+ * @param <E> is the type of items in the set
+ */
+public class CuckooFilter<E> implements Serializable {
+    private static final long serialVersionUID = -4318329105932717204L;
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_NO_OF_KICKS = 500;
+    private static final double MAX_LOAD_FACTOR = 0.95;
+    private static final int FINGERPRINT_SEED = 0x2f0f3d8b;
+
+    //  fingerprints of each bucket are stored consecutively, 0 marks an empty slot
+    private char[] fingerprints;
+    private int bucketMask;
+
+    //  a fingerprint which could not be placed after the maximum number of kicks
+    private boolean hasVictim;
+    private char victimFingerprint;
+    private int victimIndex;
+
+    private long noOfItems;
+    private long randomState;
+
+    /**
+     * Instantiate the cuckoo filter to hold the given number of items
+     *
+     * @param capacity is the expected maximum number of items in the filter
+     */
+    public CuckooFilter(long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be a positive value");
+        }
+//      number of buckets is the next power of 2 of (capacity / (BUCKET_SIZE * MAX_LOAD_FACTOR))
+        long noOfBuckets = Math.max(1, (long) Math.ceil(capacity / (BUCKET_SIZE * MAX_LOAD_FACTOR)));
+        noOfBuckets = noOfBuckets == 1 ? 1 : Long.highestOneBit(noOfBuckets - 1) << 1;
+        if (noOfBuckets * BUCKET_SIZE > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("a capacity of " + capacity + " cannot be achieved");
+        }
+        this.fingerprints = new char[(int) noOfBuckets * BUCKET_SIZE];
+        this.bucketMask = (int) noOfBuckets - 1;
+        this.randomState = 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * Adds an item to the filter by storing its fingerprint in one of its two buckets,
+     * relocating the existing fingerprints if both buckets are full
+     *
+     * @param item is the item to be inserted
+     * @return {@code true} if the item is added, {@code false} if the filter is full
+     */
+    public synchronized boolean insert(E item) {
+        if (hasVictim) {
+            return false;
+        }
+        char fingerprint = getFingerprint(item);
+        int index = getIndex(item);
+        if (insertIntoBucket(index, fingerprint) ||
+                insertIntoBucket(getAlternateIndex(index, fingerprint), fingerprint)) {
+            noOfItems++;
+            return true;
+        }
+
+//      kick out a random fingerprint and move it to its alternate bucket
+        if ((nextRandom() & 1) == 0) {
+            index = getAlternateIndex(index, fingerprint);
+        }
+        for (int i = 0; i < MAX_NO_OF_KICKS; i++) {
+            int slot = index * BUCKET_SIZE + (int) ((nextRandom() >>> 1) % BUCKET_SIZE);
+            char kickedFingerprint = fingerprints[slot];
+            fingerprints[slot] = fingerprint;
+            fingerprint = kickedFingerprint;
+            index = getAlternateIndex(index, fingerprint);
+            if (insertIntoBucket(index, fingerprint)) {
+                noOfItems++;
+                return true;
+            }
+        }
+        hasVictim = true;
+        victimFingerprint = fingerprint;
+        victimIndex = index;
+        noOfItems++;
+        return true;
+    }
+
+    /**
+     * Checks whether the item is in the filter
+     *
+     * @param item is the item to be checked
+     * @return {@code true} if the item is probably in the filter, {@code false} if it is definitely not
+     */
+    public synchronized boolean contains(E item) {
+        char fingerprint = getFingerprint(item);
+        int index = getIndex(item);
+        int alternateIndex = getAlternateIndex(index, fingerprint);
+        if (hasVictim && victimFingerprint == fingerprint &&
+                (victimIndex == index || victimIndex == alternateIndex)) {
+            return true;
+        }
+        return bucketContains(index, fingerprint) || bucketContains(alternateIndex, fingerprint);
+    }
+
+    /**
+     * Removes one occurrence of a previously inserted item from the filter
+     *
+     * @param item is the item to be removed
+     * @return {@code true} if a fingerprint of the item is removed
+     */
+    public synchronized boolean remove(E item) {
+        char fingerprint = getFingerprint(item);
+        int index = getIndex(item);
+        int alternateIndex = getAlternateIndex(index, fingerprint);
+        boolean removed;
+        if (hasVictim && victimFingerprint == fingerprint &&
+                (victimIndex == index || victimIndex == alternateIndex)) {
+            hasVictim = false;
+            removed = true;
+        } else {
+            removed = removeFromBucket(index, fingerprint) || removeFromBucket(alternateIndex, fingerprint);
+        }
+        if (removed) {
+            noOfItems--;
+//          there is space for the victim now
+            if (hasVictim) {
+                hasVictim = false;
+                noOfItems--;
+                insertFingerprint(victimIndex, victimFingerprint);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of items in the filter
+     */
+    public synchronized long size() {
+        return noOfItems;
+    }
+
+    /**
+     * Clears all the fingerprints stored in the filter.
+     */
+    public synchronized void clear() {
+        fingerprints = new char[fingerprints.length];
+        hasVictim = false;
+        noOfItems = 0;
+    }
+
+    /**
+     * Replace the content of this filter with the content of a filter of the same size, so that the
+     * references held to this filter see the restored content.
+     *
+     * @param cuckooFilter is the filter from which the content is copied
+     */
+    public synchronized void restore(CuckooFilter<E> cuckooFilter) {
+        if (cuckooFilter.fingerprints.length != fingerprints.length) {
+            throw new IllegalArgumentException("a cuckoo filter of " + cuckooFilter.fingerprints.length +
+                    " slots cannot be restored into a cuckoo filter of " + fingerprints.length + " slots");
+        }
+        System.arraycopy(cuckooFilter.fingerprints, 0, fingerprints, 0, fingerprints.length);
+        hasVictim = cuckooFilter.hasVictim;
+        victimFingerprint = cuckooFilter.victimFingerprint;
+        victimIndex = cuckooFilter.victimIndex;
+        noOfItems = cuckooFilter.noOfItems;
+        randomState = cuckooFilter.randomState;
+    }
+
+    private void insertFingerprint(int index, char fingerprint) {
+        if (insertIntoBucket(index, fingerprint) ||
+                insertIntoBucket(getAlternateIndex(index, fingerprint), fingerprint)) {
+            noOfItems++;
+        } else {
+            hasVictim = true;
+            victimFingerprint = fingerprint;
+            victimIndex = index;
+            noOfItems++;
+        }
+    }
+
+    private boolean insertIntoBucket(int index, char fingerprint) {
+        int start = index * BUCKET_SIZE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (fingerprints[i] == 0) {
+                fingerprints[i] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean bucketContains(int index, char fingerprint) {
+        int start = index * BUCKET_SIZE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (fingerprints[i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean removeFromBucket(int index, char fingerprint) {
+        int start = index * BUCKET_SIZE;
+        for (int i = start; i < start + BUCKET_SIZE; i++) {
+            if (fingerprints[i] == fingerprint) {
+                fingerprints[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getIndex(E item) {
+        return MurmurHash.hash(item) & bucketMask;
+    }
+
+    /**
+     * Compute a non zero 16 bit fingerprint of an item, which is independent of its bucket index
+     */
+    private char getFingerprint(E item) {
+        char fingerprint = (char) MurmurHash.hash(item, FINGERPRINT_SEED);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * Compute the other candidate bucket of a fingerprint, index ^ hash(fingerprint).
+     * Applying it twice gives back the original index.
+     */
+    private int getAlternateIndex(int index, char fingerprint) {
+        return (index ^ MurmurHash.hashLong(fingerprint)) & bucketMask;
+    }
+
+    /**
+     * xorshift64 pseudo random generator, kept in the filter so that it can be persisted with it
+     */
+    private long nextRandom() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return randomState;
+    }
+}
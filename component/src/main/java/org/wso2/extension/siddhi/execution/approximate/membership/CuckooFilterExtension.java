@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.membership;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.log4j.Logger;
+import org.wso2.extension.siddhi.execution.approximate.util.SketchRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Populates a named Cuckoo Filter, which can be checked from other queries using approximate:contains.
+ */
+@Extension(
+        name = "cuckooFilter",
+        namespace = "approximate",
+        description = "This extension populates a named `cuckoo filter` with the values of a stream, so that " +
+                "the membership of a value can be checked from any query of the Siddhi app using the " +
+                "`approximate:contains` function. The values of the expired events are removed from the filter, " +
+                "hence the filter can be used with a window to check the membership within the window. The " +
+                "filter is shared by the whole Siddhi app, including all the partitions of the query. " +
+                "A value which is not in the filter may be reported as a member with a probability of about " +
+                "0.0001. Note that each value can be added to the filter at most 8 times without being removed.",
+        parameters = {
+                @Parameter(
+                        name = "filter.name",
+                        description = "The name of the filter, which is used to refer to it from the " +
+                                "`approximate:contains` function. It should be unique within the Siddhi app.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "value",
+                        description = "The value which is added to the filter.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "capacity",
+                        description = "The maximum number of values expected to be in the filter at a time. The " +
+                                "filter uses about 2 to 4 bytes per value of the capacity.",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "1000000"
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream BlockedUserStream (userId string);\n" +
+                                "define stream LoginStream (userId string, ip string);\n" +
+                                "from BlockedUserStream#approximate:cuckooFilter('blockList', userId)\n" +
+                                "insert into BlockedUserLogStream;\n" +
+                                "from LoginStream[approximate:contains('blockList', userId)]\n" +
+                                "select userId, ip\n" +
+                                "insert into BlockedLoginStream;",
+                        description = "The first query adds the ids of the blocked users to a filter named " +
+                                "'blockList', which can hold a default of 1000000 ids. The second query uses the " +
+                                "filter to find the logins of the blocked users, instead of joining with a table " +
+                                "of blocked users."
+                ),
+                @Example(
+                        syntax = "define stream SessionStream (sessionId long);\n" +
+                                "from SessionStream#window.time(30 min)" +
+                                "#approximate:cuckooFilter('activeSessions', sessionId, 50000)\n" +
+                                "insert into SessionLogStream;",
+                        description = "This query keeps the ids of the sessions seen during the last 30 minutes " +
+                                "in a filter named 'activeSessions', which can hold 50000 ids. The ids are removed " +
+                                "from the filter when they expire from the window."
+                )
+        }
+)
+public class CuckooFilterExtension extends StreamProcessor<CuckooFilterExtension.ExtensionState> {
+    private static final Logger LOG = Logger.getLogger(CuckooFilterExtension.class);
+
+    private ExpressionExecutor valueExecutor;
+    private String filterName;
+    private SiddhiAppContext siddhiAppContext;
+    private CuckooFilter<Object> cuckooFilter;
+    private boolean filterFullLogged = false;
+    private List<Attribute> attributeList = new ArrayList<>(0);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default value for capacity
+        final long defaultCapacity = 1000000;
+
+        long capacity = defaultCapacity;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 3)) {
+            throw new SiddhiAppCreationException("2 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the cuckooFilter function");
+        }
+
+        //expressionExecutors[0] --> filterName
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside cuckooFilter function - " +
+                    "'filter.name' has to be a constant but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 1st parameter inside cuckooFilter function - " +
+                    "'filter.name' should be of type String but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        filterName = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+
+        //expressionExecutors[1] --> value
+        if (!(attributeExpressionExecutors[1] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside cuckooFilter function - " +
+                    "'value' has to be a variable but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[1];
+
+        //expressionExecutors[2] --> capacity
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside cuckooFilter function - " +
+                        "'capacity' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.LONG) {
+                capacity = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2]).getValue())
+                        .longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside cuckooFilter function - " +
+                        "'capacity' should be of type Int or Long but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if (capacity <= 0) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside cuckooFilter function - " +
+                        "'capacity' must be a positive value but found " + capacity);
+            }
+        }
+
+        try {
+            cuckooFilter = new CuckooFilter<>(capacity);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside cuckooFilter function - " +
+                    "'capacity' is too large, " + e.getMessage(), e);
+        }
+        siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+        SketchRegistry.declare(siddhiAppContext, filterName);
+
+        return () -> new ExtensionState(cuckooFilter);
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.cuckooFilter.clear();
+                    continue;
+                }
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    continue;
+                }
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    if (!state.cuckooFilter.insert(newData) && !filterFullLogged) {
+                        filterFullLogged = true;
+                        LOG.warn("The approximate cuckoo filter '" + filterName + "' of the Siddhi app '" +
+                                siddhiAppContext.getName() + "' is full, hence the new values are not added. " +
+                                "Increase the 'capacity' of the filter.");
+                    }
+                } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                    state.cuckooFilter.remove(newData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() {
+        SketchRegistry.register(siddhiAppContext, filterName, cuckooFilter);
+    }
+
+    @Override
+    public void stop() {
+        SketchRegistry.unregister(siddhiAppContext, filterName);
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private final CuckooFilter<Object> cuckooFilter;
+
+        private ExtensionState(CuckooFilter<Object> cuckooFilter) {
+            this.cuckooFilter = cuckooFilter;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (CuckooFilterExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("cuckooFilter", cuckooFilter);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (CuckooFilterExtension.this) {
+//              the filter is shared with the approximate:contains functions, hence it is restored in place
+                cuckooFilter.restore((CuckooFilter<Object>) state.get("cuckooFilter"));
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.percentile;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A probabilistic data structure to calculate quantiles of a stream of numbers with a relative error guarantee.
+ * Values are mapped to logarithmically sized buckets, so that removing a value is just a decrement of its bucket.
+ * The referred research paper - DDSketch: A Fast and Fully-Mergeable Quantile Sketch with Relative-Error
+ * Guarantees by Charles Masson, Jee E. Rim and Homin K. Lee.
+ * http://www.vldb.org/pvldb/vol12/p2195-masson.pdf
+ */
+public class DDSketch implements Serializable {
+    private static final long serialVersionUID = 6112485319485745712L;
+
+    //  maximum number of buckets kept for each sign, the lowest buckets are collapsed beyond that
+    private static final int DEFAULT_MAX_NO_OF_BUCKETS = 2048;
+
+    private double relativeError;
+    private double logGamma;
+    private double minIndexableValue;
+
+    private BucketStore positiveStore;
+    private BucketStore negativeStore;
+    private long zeroCount;
+
+    private long totalNoOfItems;
+
+    /**
+     * Instantiate the sketch based on a given relative error
+     *
+     * @param relativeError is a positive number less than 1 (e.g. 0.01)
+     */
+    public DDSketch(double relativeError) {
+        this(relativeError, DEFAULT_MAX_NO_OF_BUCKETS);
+    }
+
+    /**
+     * Instantiate the sketch based on a given relative error and an upper limit for the number of buckets
+     *
+     * @param relativeError    is a positive number less than 1 (e.g. 0.01)
+     * @param maxNoOfBuckets   is the maximum number of buckets kept for positive and negative values separately
+     */
+    public DDSketch(double relativeError, int maxNoOfBuckets) {
+        if (!(relativeError < 1 && relativeError > 0)) {
+            throw new IllegalArgumentException("relativeError must be a value in the range (0,1)");
+        }
+        if (maxNoOfBuckets < 1) {
+            throw new IllegalArgumentException("maxNoOfBuckets must be a positive value");
+        }
+        this.relativeError = relativeError;
+
+//      gamma = (1 + relativeError) / (1 - relativeError)
+        double gamma = (1 + relativeError) / (1 - relativeError);
+        this.logGamma = Math.log(gamma);
+        this.minIndexableValue = Double.MIN_NORMAL * gamma;
+
+        this.positiveStore = new BucketStore(maxNoOfBuckets);
+        this.negativeStore = new BucketStore(maxNoOfBuckets);
+        this.zeroCount = 0;
+        this.totalNoOfItems = 0;
+    }
+
+    /**
+     * Compute the bucket index of a positive value
+     * index = ceil(log(value) / log(gamma))
+     *
+     * @param value is a positive value greater than {@code minIndexableValue}
+     * @return the index of the bucket which covers the value
+     */
+    private int getIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * Compute the representative value of a bucket, which is within the relative error
+     * of every value mapped to that bucket
+     *
+     * @param index is the index of the bucket
+     * @return the representative value of the bucket
+     */
+    private double getValue(int index) {
+        return 2 * Math.exp(index * logGamma) / (1 + Math.exp(logGamma));
+    }
+
+    /**
+     * Adds a value to the sketch by incrementing the count of its bucket
+     *
+     * @param value is the value to be inserted
+     */
+    public void insert(double value) {
+        if (value > minIndexableValue) {
+            positiveStore.add(getIndex(value));
+        } else if (value < -minIndexableValue) {
+            negativeStore.add(getIndex(-value));
+        } else {
+            zeroCount++;
+        }
+        totalNoOfItems++;
+    }
+
+    /**
+     * Removes a previously inserted value from the sketch by decrementing the count of its bucket
+     *
+     * @param value is the value to be removed
+     */
+    public void remove(double value) {
+        boolean removed;
+        if (value > minIndexableValue) {
+            removed = positiveStore.remove(getIndex(value));
+        } else if (value < -minIndexableValue) {
+            removed = negativeStore.remove(getIndex(-value));
+        } else {
+            removed = zeroCount > 0;
+            if (removed) {
+                zeroCount--;
+            }
+        }
+        if (removed) {
+            totalNoOfItems--;
+        }
+    }
+
+    /**
+     * @return {@code true} if there are no values in the sketch
+     */
+    public boolean isEmpty() {
+        return totalNoOfItems == 0;
+    }
+
+    /**
+     * Calculate the approximate value at the given quantile.
+     * The buckets are scanned from the end which is closer to the requested rank, so that the high percentiles
+     * usually monitored only touch a few buckets.
+     *
+     * @param quantile is a value in the range [0, 1] (e.g. 0.99 for the 99th percentile)
+     * @return the approximate value at the quantile, {@code Double.NaN} if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        if (totalNoOfItems == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (totalNoOfItems - 1));
+
+        if (quantile <= 0.5) {
+//          negative values from the largest magnitude, zeros, then positive values from the smallest
+            long noOfItemsSeen = 0;
+            for (int i = negativeStore.getMaxIndex(); i >= negativeStore.getMinIndex(); i--) {
+                noOfItemsSeen += negativeStore.getCount(i);
+                if (noOfItemsSeen > rank) {
+                    return -getValue(i);
+                }
+            }
+            noOfItemsSeen += zeroCount;
+            if (noOfItemsSeen > rank) {
+                return 0;
+            }
+            for (int i = positiveStore.getMinIndex(); i <= positiveStore.getMaxIndex(); i++) {
+                noOfItemsSeen += positiveStore.getCount(i);
+                if (noOfItemsSeen > rank) {
+                    return getValue(i);
+                }
+            }
+            return getValue(positiveStore.getMaxIndex());
+        } else {
+//          same order as above, walked backwards from the largest positive value
+            long noOfItemsAbove = totalNoOfItems - 1 - rank;
+            long noOfItemsSeen = 0;
+            for (int i = positiveStore.getMaxIndex(); i >= positiveStore.getMinIndex(); i--) {
+                noOfItemsSeen += positiveStore.getCount(i);
+                if (noOfItemsSeen > noOfItemsAbove) {
+                    return getValue(i);
+                }
+            }
+            noOfItemsSeen += zeroCount;
+            if (noOfItemsSeen > noOfItemsAbove) {
+                return 0;
+            }
+            for (int i = negativeStore.getMinIndex(); i <= negativeStore.getMaxIndex(); i++) {
+                noOfItemsSeen += negativeStore.getCount(i);
+                if (noOfItemsSeen > noOfItemsAbove) {
+                    return -getValue(i);
+                }
+            }
+            return -getValue(negativeStore.getMaxIndex());
+        }
+    }
+
+    /**
+     * Calculate the interval which contains the exact value of the quantile for a given approximate value.
+     * The approximate value deviates from the exact value x by at most (relativeError * |x|).
+     *
+     * @param value is the approximate value returned by {@link #getQuantile(double)}
+     * @return a double array which contains the lower bound and
+     * the upper bound of the interval consecutively
+     */
+    public double[] getConfidenceInterval(double value) {
+        if (value >= 0) {
+            return new double[]{value / (1 + relativeError), value / (1 - relativeError)};
+        } else {
+            return new double[]{value / (1 - relativeError), value / (1 + relativeError)};
+        }
+    }
+
+    /**
+     * Clears all the counts stored in the sketch.
+     */
+    public void clear() {
+        positiveStore.clear();
+        negativeStore.clear();
+        zeroCount = 0;
+        totalNoOfItems = 0;
+    }
+
+    /**
+     * A contiguous range of bucket counts which grows on demand up to a maximum number of buckets.
+     * When the range would exceed that limit, the lowest buckets are merged into one.
+     */
+    private static class BucketStore implements Serializable {
+        private static final long serialVersionUID = -1270930281434915233L;
+        private static final int INITIAL_LENGTH = 64;
+
+        private int maxNoOfBuckets;
+
+        //  counts[i] is the count of the bucket with index (offset + i)
+        private long[] counts;
+        private int offset;
+
+        //  range of indices that may hold non zero counts
+        private int minIndex;
+        private int maxIndex;
+
+        //  indices below this limit were collapsed into it
+        private int collapsingLimit;
+
+        private long noOfItems;
+
+        private BucketStore(int maxNoOfBuckets) {
+            this.maxNoOfBuckets = maxNoOfBuckets;
+            clear();
+        }
+
+        private int getMinIndex() {
+            return minIndex;
+        }
+
+        private int getMaxIndex() {
+            return maxIndex;
+        }
+
+        private long getCount(int index) {
+            return counts[index - offset];
+        }
+
+        private void add(int index) {
+            if (noOfItems == 0) {
+                collapsingLimit = Integer.MIN_VALUE;
+                if (counts == null) {
+                    counts = new long[Math.min(INITIAL_LENGTH, maxNoOfBuckets)];
+                }
+                offset = index - counts.length / 2;
+                minIndex = index;
+                maxIndex = index;
+            }
+            if (index < collapsingLimit) {
+                index = collapsingLimit;
+            }
+            if (index < minIndex || index > maxIndex) {
+                extendRange(Math.min(minIndex, index), Math.max(maxIndex, index));
+                if (index < minIndex) {
+                    index = minIndex;
+                }
+            }
+            counts[index - offset]++;
+            noOfItems++;
+        }
+
+        private boolean remove(int index) {
+            if (noOfItems == 0) {
+                return false;
+            }
+            if (index < minIndex) {
+                if (minIndex > collapsingLimit) {
+                    return false;
+                }
+                index = minIndex;
+            }
+            if (index > maxIndex || counts[index - offset] == 0) {
+                return false;
+            }
+            counts[index - offset]--;
+            noOfItems--;
+            return true;
+        }
+
+        /**
+         * Make the counts array cover the given range of indices, collapsing the lowest buckets
+         * if the range is wider than {@code maxNoOfBuckets}
+         */
+        private void extendRange(int newMinIndex, int newMaxIndex) {
+            long collapsedCount = 0;
+            if ((long) newMaxIndex - newMinIndex + 1 > maxNoOfBuckets) {
+                newMinIndex = newMaxIndex - maxNoOfBuckets + 1;
+                for (int i = minIndex; i <= Math.min(newMinIndex - 1, maxIndex); i++) {
+                    collapsedCount += counts[i - offset];
+                    counts[i - offset] = 0;
+                }
+                collapsingLimit = newMinIndex;
+            }
+            relocate(newMinIndex, newMaxIndex, Math.max(minIndex, newMinIndex), maxIndex);
+            minIndex = newMinIndex;
+            maxIndex = newMaxIndex;
+            counts[newMinIndex - offset] += collapsedCount;
+        }
+
+        /**
+         * Move the counts of the surviving range so that the array covers [newMinIndex, newMaxIndex],
+         * growing the array if needed
+         */
+        private void relocate(int newMinIndex, int newMaxIndex, int copyFrom, int copyTo) {
+            if (newMinIndex >= offset && newMaxIndex < offset + counts.length) {
+                return;
+            }
+            int requiredLength = newMaxIndex - newMinIndex + 1;
+            int newLength = counts.length;
+            while (newLength < requiredLength) {
+                newLength = newLength * 2;
+            }
+            newLength = Math.min(newLength, maxNoOfBuckets);
+            int newOffset = newMinIndex - (newLength - requiredLength) / 2;
+
+            long[] newCounts = new long[newLength];
+            for (int i = copyFrom; i <= copyTo; i++) {
+                newCounts[i - newOffset] = counts[i - offset];
+            }
+            counts = newCounts;
+            offset = newOffset;
+        }
+
+        private void clear() {
+            if (counts != null) {
+                Arrays.fill(counts, 0);
+            }
+            noOfItems = 0;
+            minIndex = 0;
+            maxIndex = -1;
+            collapsingLimit = Integer.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.percentile;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.selector.attribute.aggregator.AttributeAggregatorExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calculates the approximate percentile of the values of each group, as an aggregator of the select clause.
+ */
+@Extension(
+        name = "percentileAgg",
+        namespace = "approximate",
+        description = "This aggregator applies the `DDSketch` algorithm to calculate the approximate percentile of " +
+                "a numeric attribute, like `approximate:windowPercentile`, but in the select clause of a query. " +
+                "Hence it can be used with `group by` to keep a sketch per group without a partition, and it " +
+                "returns only the percentile instead of appending attributes to the events. The values of the " +
+                "events expired from a window are removed from the sketch. The calculated percentile deviates " +
+                "from the exact percentile by no more than the given 'relative error' of that exact value.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value for which the percentile is calculated.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG}
+                ),
+                @Parameter(
+                        name = "percentile",
+                        description = "The percentile to be calculated, expressed as a value between 0 and 1. " +
+                                "e.g., `0.99` calculates the 99th percentile and `0.5` calculates the median.",
+                        type = {DataType.DOUBLE, DataType.FLOAT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the percentile generated, " +
+                                "expressed as a value between 0 and 1. Lower the value specified, higher is the " +
+                                "number of buckets used per group.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The approximate percentile of the values of the group, or `null` when the group " +
+                        "has no values.",
+                type = {DataType.DOUBLE}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (service string, latency long);\n" +
+                                "from RequestStream#window.time(5 min)\n" +
+                                "select service, approximate:percentileAgg(latency, 0.99) as p99Latency\n" +
+                                "group by service\n" +
+                                "insert into OutputStream;",
+                        description = "This query calculates the 99th percentile of the latencies of the requests " +
+                                "of each service within the last 5 minutes, with a default relative error of 0.01."
+                )
+        }
+)
+public class PercentileAggExtension extends AttributeAggregatorExecutor<PercentileAggExtension.ExtensionState> {
+    private double percentile;
+
+    @Override
+    protected StateFactory<ExtensionState> init(ExpressionExecutor[] attributeExpressionExecutors,
+                                                ProcessingMode processingMode, boolean outputExpectsExpiredEvents,
+                                                ConfigReader configReader, SiddhiQueryContext siddhiQueryContext) {
+//      default value for relative error
+        final double defaultRelativeError = 0.01;
+
+        double relativeError = defaultRelativeError;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 3)) {
+            throw new SiddhiAppCreationException("2 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the percentileAgg " +
+                    "function");
+        }
+
+        //expressionExecutors[0] --> value
+        Attribute.Type valueType = attributeExpressionExecutors[0].getReturnType();
+        if (!(valueType == Attribute.Type.INT || valueType == Attribute.Type.LONG ||
+                valueType == Attribute.Type.FLOAT || valueType == Attribute.Type.DOUBLE)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside percentileAgg function - " +
+                    "'value' should be of type Int, Long, Float or Double but found " + valueType);
+        }
+
+        //expressionExecutors[1] --> percentile
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside percentileAgg function - " +
+                    "'percentile' has to be a constant but found " +
+                    attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+            percentile = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue())
+                    .doubleValue();
+        } else {
+            throw new SiddhiAppCreationException("The 2nd parameter inside percentileAgg function - " +
+                    "'percentile' should be of type Double or Float but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        if ((percentile < 0) || (percentile > 1)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside percentileAgg function - " +
+                    "'percentile' must be in the range of [0, 1] but found " + percentile);
+        }
+
+        //expressionExecutors[2] --> relativeError
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside percentileAgg function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside percentileAgg function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside percentileAgg function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        return () -> new ExtensionState(new DDSketch(sketchRelativeError));
+    }
+
+    @Override
+    public Object processAdd(Object data, ExtensionState state) {
+//      the aggregator always has at least two parameters
+        return null;
+    }
+
+    @Override
+    public Object processAdd(Object[] data, ExtensionState state) {
+        synchronized (this) {
+            if (data[0] != null) {
+                state.ddSketch.insert(((Number) data[0]).doubleValue());
+            }
+            return getPercentile(state);
+        }
+    }
+
+    @Override
+    public Object processRemove(Object data, ExtensionState state) {
+//      the aggregator always has at least two parameters
+        return null;
+    }
+
+    @Override
+    public Object processRemove(Object[] data, ExtensionState state) {
+        synchronized (this) {
+            if (data[0] != null) {
+                state.ddSketch.remove(((Number) data[0]).doubleValue());
+            }
+            return getPercentile(state);
+        }
+    }
+
+    @Override
+    public Object reset(ExtensionState state) {
+        synchronized (this) {
+            state.ddSketch.clear();
+            return null;
+        }
+    }
+
+    private Double getPercentile(ExtensionState state) {
+        if (state.ddSketch.isEmpty()) {
+            return null;
+        }
+        return state.ddSketch.getQuantile(percentile);
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.DOUBLE;
+    }
+
+    class ExtensionState extends State {
+        private DDSketch ddSketch;
+
+        private ExtensionState(DDSketch ddSketch) {
+            this.ddSketch = ddSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+//          the state of a group is released once the group has no values, such as after all its values expired
+            synchronized (PercentileAggExtension.this) {
+                return ddSketch.isEmpty();
+            }
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (PercentileAggExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("ddSketch", ddSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (PercentileAggExtension.this) {
+                ddSketch = (DDSketch) state.get("ddSketch");
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.percentile;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs DDSketch algorithm to get the approximate percentile of numeric events in a window.
+ */
+@Extension(
+        name = "windowPercentile",
+        namespace = "approximate",
+        description = "This extension applies the `DDSketch` algorithm to a Siddhi window in order to calculate " +
+                "the approximate percentile of a numeric attribute. The values are counted in logarithmically " +
+                "sized buckets, so the events expired from the window are removed by decrementing their buckets " +
+                "instead of keeping a sorted buffer of the window. The calculated percentile deviates from the " +
+                "exact percentile by no more than the given 'relative error' of that exact value.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value for which the percentile is calculated.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG}
+                ),
+                @Parameter(
+                        name = "percentile",
+                        description = "The percentile to be calculated, expressed as a value between 0 and 1. " +
+                                "e.g., `0.99` calculates the 99th percentile and `0.5` calculates the median.",
+                        type = {DataType.DOUBLE, DataType.FLOAT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the percentile generated, " +
+                                "expressed as a value between 0 and 1. If 0.01 is specified, the percentile " +
+                                "generated deviates from the exact percentile by at most 1% of its value. " +
+                                "Lower the value specified, higher is the number of buckets used. " +
+                                "Note that you cannot specify `1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "percentile",
+                        description = "This represents the approximate percentile of the window based on the " +
+                                "latest event. This is `null` when the window is empty.",
+                        type = {DataType.DOUBLE}
+                ),
+                @ReturnAttribute(
+                        name = "percentileLowerBound",
+                        description = "The lowest value in the range within which the exact percentile of the " +
+                                "window is included. This range is based on the latest event.",
+                        type = {DataType.DOUBLE}
+                ),
+                @ReturnAttribute(
+                        name = "percentileUpperBound",
+                        description = "The highest value in the range within which the exact percentile of the " +
+                                "window is included. This range is based on the latest event.",
+                        type = {DataType.DOUBLE}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (latency long);\n" +
+                                "from RequestStream#window.time(5 min)#approximate:windowPercentile(latency, 0.99)\n" +
+                                "select percentile, percentileLowerBound, percentileUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query calculates the 99th percentile of the latencies of the requests " +
+                                "that arrived during the last 5 minutes with a default relative error of 0.01. " +
+                                "The output consists of the approximate percentile, and the lower bound and upper " +
+                                "bound of the approximate answer."
+                ),
+                @Example(
+                        syntax = "define stream SensorStream (temperature double);\n" +
+                                "from SensorStream#window.length(1000)\n" +
+                                "#approximate:windowPercentile(temperature, 0.5, 0.05)\n" +
+                                "select percentile, percentileLowerBound, percentileUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query calculates the median of the temperatures of the last 1000 " +
+                                "events. The calculated median deviates from the exact median by at most 5% of " +
+                                "the exact value."
+                )
+        }
+)
+public class WindowPercentileExtension extends StreamProcessor<WindowPercentileExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private double percentile;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default value for relative error
+        final double defaultRelativeError = 0.01;
+
+        double relativeError = defaultRelativeError;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 3)) {
+            throw new SiddhiAppCreationException("2 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the windowPercentile " +
+                    "function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside windowPercentile function - " +
+                    "'value' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        Attribute.Type valueType = attributeExpressionExecutors[0].getReturnType();
+        if (!(valueType == Attribute.Type.INT || valueType == Attribute.Type.LONG ||
+                valueType == Attribute.Type.FLOAT || valueType == Attribute.Type.DOUBLE)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside windowPercentile function - " +
+                    "'value' should be of type Int, Long, Float or Double but found " + valueType);
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> percentile
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside windowPercentile function - " +
+                    "'percentile' has to be a constant but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.DOUBLE ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.FLOAT) {
+            percentile = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue())
+                    .doubleValue();
+        } else {
+            throw new SiddhiAppCreationException("The 2nd parameter inside windowPercentile function - " +
+                    "'percentile' should be of type Double or Float but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        if ((percentile < 0) || (percentile > 1)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside windowPercentile function - " +
+                    "'percentile' must be in the range of [0, 1] but found " + percentile);
+        }
+
+        //expressionExecutors[2] --> relativeError
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside windowPercentile function - " +
+                        "'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside windowPercentile function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside windowPercentile function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+
+        attributeList.add(new Attribute("percentile", Attribute.Type.DOUBLE));
+        attributeList.add(new Attribute("percentileLowerBound", Attribute.Type.DOUBLE));
+        attributeList.add(new Attribute("percentileUpperBound", Attribute.Type.DOUBLE));
+        return () -> new ExtensionState(new DDSketch(sketchRelativeError));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    streamEventChunk.remove();
+                } else {
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        state.ddSketch.insert(((Number) newData).doubleValue());
+                    } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                        state.ddSketch.remove(((Number) newData).doubleValue());
+                    } else if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                        state.ddSketch.clear();
+                    }
+
+                    Object[] outputData;
+                    if (state.ddSketch.isEmpty()) {
+                        outputData = new Object[]{null, null, null};
+                    } else {
+                        double approximatePercentile = state.ddSketch.getQuantile(percentile);
+                        double[] confidenceInterval = state.ddSketch.getConfidenceInterval(approximatePercentile);
+                        outputData = new Object[]{approximatePercentile, confidenceInterval[0],
+                                confidenceInterval[1]};
+                    }
+
+                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private DDSketch ddSketch;
+
+        private ExtensionState(DDSketch ddSketch) {
+            this.ddSketch = ddSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (WindowPercentileExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("ddSketch", ddSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (WindowPercentileExtension.this) {
+                ddSketch = (DDSketch) state.get("ddSketch");
+            }
+        }
+    }
+}
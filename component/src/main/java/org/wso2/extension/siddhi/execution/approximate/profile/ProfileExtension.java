@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.profile;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.count.CountMinSketch;
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.HyperLogLog;
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds a selected set of sketches, namely a Count-Min Sketch, a HyperLogLog and a top-k candidate set, from a
+ * single evaluation and a single hash of the value of each event.
+ */
+@Extension(
+        name = "profile",
+        namespace = "approximate",
+        description = "This extension calculates several approximate statistics of the same attribute in a single " +
+                "pass, instead of chaining `approximate:count`, `approximate:distinctCount` and similar extensions. " +
+                "The value of each event is evaluated and hashed once, and the hash is fed to each selected " +
+                "sketch. The count(frequency) of the value is calculated with a `count-min sketch`, the distinct " +
+                "count of the values with a `HyperLogLog`, and whether the value is one of the most frequent " +
+                "values with a set of top-k candidates whose counts are taken from the count-min sketch. The " +
+                "values of the expired events are removed from all the sketches, hence the extension can be used " +
+                "with a window. Note that, using this extension without a window may cause an 'out of memory' " +
+                "error when the distinct count is selected.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value which is profiled.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "sketches",
+                        description = "A comma separated list of the statistics to be calculated, out of `count`, " +
+                                "`distinctCount` and `topK`. The output attributes of the selected statistics are " +
+                                "returned in this order, irrespective of the order of the list.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the count and the distinct " +
+                                "count, expressed as a value between 0 and 1. Note that you cannot specify `1` or " +
+                                "`0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "The confidence with which the count and the distinct count deviate no " +
+                                "more than the relative error. The possible values are `0.65`, `0.95` and " +
+                                "`0.99` when the distinct count is selected, and any value between 0 and 1 " +
+                                "otherwise.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                ),
+                @Parameter(
+                        name = "top.k",
+                        description = "The number of the most frequent values tracked when `topK` is selected.",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "10"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "count",
+                        description = "The approximate count of the value of the event, when `count` is selected.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "countLowerBound",
+                        description = "The lower bound of the count, when `count` is selected.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "countUpperBound",
+                        description = "The upper bound of the count, when `count` is selected.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "distinctCount",
+                        description = "The approximate distinct count of the values, when `distinctCount` is " +
+                                "selected.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "distinctCountLowerBound",
+                        description = "The lower bound of the distinct count, when `distinctCount` is selected.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "distinctCountUpperBound",
+                        description = "The upper bound of the distinct count, when `distinctCount` is selected.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "isTopK",
+                        description = "`true` if the value of the event is one of the `top.k` most frequent " +
+                                "values, when `topK` is selected.",
+                        type = {DataType.BOOL}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#window.time(1 min)\n" +
+                                "#approximate:profile(ip, 'count,distinctCount')\n" +
+                                "select ip, count, distinctCount\n" +
+                                "insert into OutputStream;",
+                        description = "This query calculates the number of requests from the IP address of each " +
+                                "request, and the number of distinct IP addresses, during the last minute, " +
+                                "hashing each IP address only once."
+                ),
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#window.length(10000)\n" +
+                                "#approximate:profile(ip, 'count,topK', 0.01, 0.99, 5)\n" +
+                                "select ip, count, isTopK\n" +
+                                "insert into OutputStream;",
+                        description = "This query calculates the number of requests from the IP address of each " +
+                                "request within the last 10000 requests, and whether the IP address is one of the " +
+                                "5 IP addresses with the most requests."
+                )
+        }
+)
+public class ProfileExtension extends StreamProcessor<ProfileExtension.ExtensionState> {
+    private static final String COUNT = "count";
+    private static final String DISTINCT_COUNT = "distinctCount";
+    private static final String TOP_K = "topK";
+
+    private ExpressionExecutor valueExecutor;
+    private List<Attribute> attributeList = new ArrayList<>();
+    private boolean countSelected;
+    private boolean distinctCountSelected;
+    private boolean topKSelected;
+    private int topK;
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error, confidence and top k
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+        final int defaultTopK = 10;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+        topK = defaultTopK;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 4 ||
+                attributeExpressionExecutors.length == 5)) {
+            throw new SiddhiAppCreationException("2, 4 or 5 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the profile function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside profile function - " +
+                    "'value' has to be a variable but found " +
+                    attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> sketches
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside profile function - " +
+                    "'sketches' has to be a constant but found " +
+                    attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside profile function - " +
+                    "'sketches' should be of type String but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        String sketches = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue();
+        for (String sketch : sketches.split(",")) {
+            switch (sketch.trim()) {
+                case COUNT:
+                    countSelected = true;
+                    break;
+                case DISTINCT_COUNT:
+                    distinctCountSelected = true;
+                    break;
+                case TOP_K:
+                    topKSelected = true;
+                    break;
+                default:
+                    throw new SiddhiAppCreationException("The 2nd parameter inside profile function - " +
+                            "'sketches' must be a comma separated list of " + COUNT + ", " + DISTINCT_COUNT +
+                            " and " + TOP_K + " but found '" + sketch.trim() + "'");
+            }
+        }
+
+        if (attributeExpressionExecutors.length > 2) {
+            //expressionExecutors[2] --> relativeError
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside profile function - " +
+                        "'relative.error' has to be a constant but found " +
+                        attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside profile function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside profile function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+
+            //expressionExecutors[3] --> confidence
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside profile function - " +
+                        "'confidence' has to be a constant but found " +
+                        attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside profile function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside profile function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+            if (distinctCountSelected && Math.abs(confidence - 0.65) > 0.0000001 &&
+                    Math.abs(confidence - 0.95) > 0.0000001 && Math.abs(confidence - 0.99) > 0.0000001) {
+                throw new SiddhiAppCreationException("The 4th parameter inside profile function - " +
+                        "'confidence' must be a value from 0.65, 0.95 and 0.99 when the distinct count is " +
+                        "selected but found " + confidence);
+            }
+        }
+
+        //expressionExecutors[4] --> topK
+        if (attributeExpressionExecutors.length > 4) {
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside profile function - " +
+                        "'top.k' has to be a constant but found " +
+                        attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() != Attribute.Type.INT) {
+                throw new SiddhiAppCreationException("The 5th parameter inside profile function - " +
+                        "'top.k' should be of type Integer but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            topK = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[4]).getValue();
+            if (topK <= 0) {
+                throw new SiddhiAppCreationException("The 5th parameter inside profile function - " +
+                        "'top.k' must be a positive value but found " + topK);
+            }
+        }
+
+        if (countSelected) {
+            attributeList.add(new Attribute("count", Attribute.Type.LONG));
+            attributeList.add(new Attribute("countLowerBound", Attribute.Type.LONG));
+            attributeList.add(new Attribute("countUpperBound", Attribute.Type.LONG));
+        }
+        if (distinctCountSelected) {
+            attributeList.add(new Attribute("distinctCount", Attribute.Type.LONG));
+            attributeList.add(new Attribute("distinctCountLowerBound", Attribute.Type.LONG));
+            attributeList.add(new Attribute("distinctCountUpperBound", Attribute.Type.LONG));
+        }
+        if (topKSelected) {
+            attributeList.add(new Attribute("isTopK", Attribute.Type.BOOL));
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+//      the top k candidates are ranked by the counts of the count-min sketch, hence it is kept for them as well
+        final boolean countMinSketchNeeded = countSelected || topKSelected;
+//      each state gets its own sketches, so that the partitions of the query are not mixed
+        return () -> new ExtensionState(
+                countMinSketchNeeded ? new CountMinSketch<>(sketchRelativeError, sketchConfidence) : null,
+                distinctCountSelected ? new HyperLogLog<>(sketchRelativeError, sketchConfidence, true) : null,
+                topKSelected ? new HashMap<>() : null);
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        Object[] outputData = new Object[attributeList.size()];
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    streamEventChunk.remove();
+                    continue;
+                }
+                long approximateCount = 0;
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.clear();
+                } else if (streamEvent.getType().equals(StreamEvent.Type.CURRENT) ||
+                        streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                    boolean current = streamEvent.getType().equals(StreamEvent.Type.CURRENT);
+//                  the value is hashed once, and the hash is shared by all the sketches
+                    int hash = MurmurHash.hash(newData);
+                    if (state.countMinSketch != null) {
+                        approximateCount = current ? state.countMinSketch.insertHash(hash, 1) :
+                                state.countMinSketch.removeHash(hash, 1);
+                    }
+                    if (state.hyperLogLog != null) {
+                        if (current) {
+                            state.hyperLogLog.addHash(hash);
+                        } else {
+                            state.hyperLogLog.removeHash(hash);
+                        }
+                    }
+                    if (state.topKCandidates != null) {
+                        updateTopKCandidates(state.topKCandidates, newData, approximateCount, current);
+                    }
+                }
+
+                int index = 0;
+                if (countSelected) {
+                    long[] confidenceInterval = state.countMinSketch.getConfidenceInterval(approximateCount);
+                    outputData[index++] = approximateCount;
+                    outputData[index++] = confidenceInterval[0];
+                    outputData[index++] = confidenceInterval[1];
+                }
+                if (distinctCountSelected) {
+                    long[] confidenceInterval = state.hyperLogLog.getConfidenceInterval();
+                    outputData[index++] = state.hyperLogLog.getCardinality();
+                    outputData[index++] = confidenceInterval[0];
+                    outputData[index++] = confidenceInterval[1];
+                }
+                if (topKSelected) {
+                    outputData[index] = state.topKCandidates.containsKey(newData);
+                }
+                complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    /**
+     * Update the count of a value in the top k candidates, where a value which is not a candidate replaces the
+     * candidate of the lowest count once its count becomes higher than that
+     */
+    private void updateTopKCandidates(Map<Object, Long> topKCandidates, Object value, long approximateCount,
+                                      boolean current) {
+        if (!current) {
+            if (topKCandidates.containsKey(value)) {
+                if (approximateCount > 0) {
+                    topKCandidates.put(value, approximateCount);
+                } else {
+                    topKCandidates.remove(value);
+                }
+            }
+            return;
+        }
+        if (topKCandidates.containsKey(value) || topKCandidates.size() < topK) {
+            topKCandidates.put(value, approximateCount);
+            return;
+        }
+        Object leastFrequentValue = null;
+        long leastCount = Long.MAX_VALUE;
+        for (Map.Entry<Object, Long> candidate : topKCandidates.entrySet()) {
+            if (candidate.getValue() < leastCount) {
+                leastFrequentValue = candidate.getKey();
+                leastCount = candidate.getValue();
+            }
+        }
+        if (approximateCount > leastCount) {
+            topKCandidates.remove(leastFrequentValue);
+            topKCandidates.put(value, approximateCount);
+        }
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private CountMinSketch<Object> countMinSketch;
+        private HyperLogLog<Object> hyperLogLog;
+        private HashMap<Object, Long> topKCandidates;
+
+        private ExtensionState(CountMinSketch<Object> countMinSketch, HyperLogLog<Object> hyperLogLog,
+                               HashMap<Object, Long> topKCandidates) {
+            this.countMinSketch = countMinSketch;
+            this.hyperLogLog = hyperLogLog;
+            this.topKCandidates = topKCandidates;
+        }
+
+        private void clear() {
+            if (countMinSketch != null) {
+                countMinSketch.clear();
+            }
+            if (hyperLogLog != null) {
+                hyperLogLog.clear();
+            }
+            if (topKCandidates != null) {
+                topKCandidates.clear();
+            }
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (ProfileExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("countMinSketch", countMinSketch);
+                map.put("hyperLogLog", hyperLogLog);
+                map.put("topKCandidates", topKCandidates);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (ProfileExtension.this) {
+                countMinSketch = (CountMinSketch<Object>) state.get("countMinSketch");
+                hyperLogLog = (HyperLogLog<Object>) state.get("hyperLogLog");
+                topKCandidates = (HashMap<Object, Long>) state.get("topKCandidates");
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.rangecount;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * A probabilistic data structure to count the items within a range of values.
+ * The values are unsigned keys of a given number of bits. The keys are counted at each level of the dyadic
+ * decomposition of the key space, where the level l counts the prefixes (key >>> l), with a count min sketch
+ * per level. A range is decomposed into at most 2 dyadic intervals per level, whose counts are added.
+ * The upper levels with fewer prefixes than the cells of a count min sketch are counted exactly.
+ * The referred research paper - An Improved Data Stream Summary: The Count-Min Sketch and its Applications
+ * by Graham Cormode and S. Muthukrishnan.
+ * http://dimacs.rutgers.edu/~graham/pubs/papers/cm-full.pdf
+ */
+public class DyadicCountMinSketch implements Serializable {
+    private static final long serialVersionUID = 5178624081452187356L;
+
+    private int depth;
+    private int width;
+    private int noOfBits;
+
+    //  the levels from firstExactLevel upwards have at most (depth * width) prefixes and are counted exactly
+    private int firstExactLevel;
+
+    //  countArrays[level] is the count min sketch of the level as (depth * width) cells, or the exact counts
+    //  of the prefixes of the level
+    private long[][] countArrays;
+    private long totalNoOfItems;
+
+    //  hash coefficients
+    private ArrayList<Integer> hashCoefficientsA;
+    private ArrayList<Integer> hashCoefficientsB;
+
+    //  Error factor of approximation
+    private double relativeError;
+
+    /**
+     * Instantiate the dyadic count min sketch based on a given relative error, confidence and key size
+     *
+     * @param relativeError is a positive number less than 1 (e.g. 0.01), which is the relative error of the
+     *                      count of a dyadic interval
+     * @param confidence    is a positive number less than 1 (e.g. 0.01)
+     *                      which is the probability of answers being within the relative error
+     * @param noOfBits      is the number of bits of the keys, at most 64
+     */
+    public DyadicCountMinSketch(double relativeError, double confidence, int noOfBits) {
+        if (!(relativeError < 1 && relativeError > 0) || !(confidence < 1 && confidence > 0)) {
+            throw new IllegalArgumentException("confidence and relativeError must be values in the range (0,1)");
+        }
+        if (noOfBits < 1 || noOfBits > Long.SIZE) {
+            throw new IllegalArgumentException("noOfBits must be in the range [1, 64] but found " + noOfBits);
+        }
+        this.relativeError = relativeError;
+        this.noOfBits = noOfBits;
+
+//      depth = ln(1 / (1 - confidence))
+        this.depth = (int) Math.ceil(Math.log(1 / (1 - confidence)));
+//      width = e / relativeError
+        this.width = (int) Math.ceil(Math.E / relativeError);
+
+//      the level l has 2 ^ (noOfBits - l) prefixes
+        int sketchSize = depth * width;
+        firstExactLevel = noOfBits;
+        while (firstExactLevel > 0 && noOfBits - (firstExactLevel - 1) < Integer.SIZE - 1 &&
+                (1 << (noOfBits - (firstExactLevel - 1))) <= sketchSize) {
+            firstExactLevel--;
+        }
+        countArrays = new long[noOfBits][];
+        clear();
+
+//      create random hash coefficients
+//      using linear hash functions of the form (a*x+b)
+//      a,b are chosen independently for each hash function.
+        this.hashCoefficientsA = new ArrayList<>(depth);
+        this.hashCoefficientsB = new ArrayList<>(depth);
+        Random random = new Random(123);
+        for (int i = 0; i < depth; i++) {
+            hashCoefficientsA.add(random.nextInt(Integer.MAX_VALUE));
+            hashCoefficientsB.add(random.nextInt(Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Adds a key to the count of each of its prefixes
+     *
+     * @param key is the unsigned key to be inserted
+     */
+    public synchronized void insert(long key) {
+        update(key, 1);
+    }
+
+    /**
+     * Removes a key, which was previously inserted, from the count of each of its prefixes
+     *
+     * @param key is the unsigned key to be removed
+     */
+    public synchronized void remove(long key) {
+        update(key, -1);
+    }
+
+    /**
+     * Calculate the approximate number of keys within a range, by adding the counts of the dyadic intervals
+     * of the range
+     *
+     * @param low  is the unsigned lower bound of the range, inclusive
+     * @param high is the unsigned upper bound of the range, inclusive
+     * @return a long array which contains the approximate count and the number of dyadic intervals counted by
+     * the count min sketches consecutively
+     */
+    public synchronized long[] getRangeCount(long low, long high) {
+        long count = 0;
+        long noOfSketchedIntervals = 0;
+        if (Long.compareUnsigned(low, high) > 0) {
+            return new long[]{0, 0};
+        }
+        long currentLow = low;
+        long currentHigh = high;
+        for (int level = 0; level < noOfBits; level++) {
+            long maxPrefix = noOfBits - level == Long.SIZE ? -1L : (1L << (noOfBits - level)) - 1;
+            if (currentLow == 0 && currentHigh == maxPrefix) {
+                return new long[]{count + totalNoOfItems, noOfSketchedIntervals};
+            }
+            if ((currentLow & 1) == 1) {
+                count += getCount(level, currentLow);
+                noOfSketchedIntervals += level < firstExactLevel ? 1 : 0;
+                if (currentLow == currentHigh) {
+                    break;
+                }
+                currentLow++;
+            }
+            if ((currentHigh & 1) == 0) {
+                count += getCount(level, currentHigh);
+                noOfSketchedIntervals += level < firstExactLevel ? 1 : 0;
+                if (currentLow == currentHigh) {
+                    break;
+                }
+                currentHigh--;
+            }
+            currentLow >>>= 1;
+            currentHigh >>>= 1;
+        }
+        return new long[]{count, noOfSketchedIntervals};
+    }
+
+    /**
+     * Calculate the confidence interval of an approximate range count
+     * [approximateCount - error, approximateCount + error]
+     * where error = totalNoOfItems * relativeError * noOfSketchedIntervals
+     *
+     * @param count                 is the approximate range count
+     * @param noOfSketchedIntervals is the number of dyadic intervals of the range counted by the sketches
+     * @return a long array which contains the lower bound and
+     * the upper bound of the confidence interval consecutively
+     */
+    public synchronized long[] getConfidenceInterval(long count, long noOfSketchedIntervals) {
+        long error = (long) (totalNoOfItems * relativeError * noOfSketchedIntervals);
+        if (count - error > 0) {
+            return new long[]{count - error, count + error};
+        } else {
+            return new long[]{0, count + error};
+        }
+    }
+
+    /**
+     * Clears the counts within the sketch.
+     */
+    public synchronized void clear() {
+        for (int level = 0; level < noOfBits; level++) {
+            countArrays[level] = level < firstExactLevel ? new long[depth * width] :
+                    new long[1 << (noOfBits - level)];
+        }
+        totalNoOfItems = 0;
+    }
+
+    private void update(long key, long weight) {
+        totalNoOfItems += weight;
+        for (int level = 0; level < noOfBits; level++) {
+            long prefix = key >>> level;
+            long[] countArray = countArrays[level];
+            if (level >= firstExactLevel) {
+                countArray[(int) prefix] += weight;
+                continue;
+            }
+            int hash = MurmurHash.hashLong(prefix);
+            for (int i = 0; i < depth; i++) {
+                countArray[i * width + getArrayIndex(hashCoefficientsA.get(i) * hash + hashCoefficientsB.get(i))] +=
+                        weight;
+            }
+        }
+    }
+
+    private long getCount(int level, long prefix) {
+        long[] countArray = countArrays[level];
+        if (level >= firstExactLevel) {
+            return countArray[(int) prefix];
+        }
+        int hash = MurmurHash.hashLong(prefix);
+        long currentMin = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            currentMin = Math.min(currentMin,
+                    countArray[i * width + getArrayIndex(hashCoefficientsA.get(i) * hash + hashCoefficientsB.get(i))]);
+        }
+        return currentMin;
+    }
+
+    /**
+     * Compute the cell position in a row of a count min sketch for a given hash value
+     *
+     * @param hash is the integer hash value generated from some hash function
+     * @return an integer value in the range [0,width)
+     */
+    private int getArrayIndex(int hash) {
+        return Math.abs(hash % width);
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.rangecount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs a dyadic Count-Min Sketch algorithm to get the approximate number of events in a window whose value
+ * is within a range.
+ */
+@Extension(
+        name = "rangeCount",
+        namespace = "approximate",
+        description = "This extension applies a dyadic `count-min sketch` to a Siddhi window, with a count-min " +
+                "sketch per level of the dyadic decomposition of the values. It calculates the approximate " +
+                "number of events whose value is within the range [low, high], e.g. the number of requests " +
+                "whose latency was between 200 and 500 milliseconds, based on the given values for the " +
+                "'relative error' and 'confidence value'. A range is counted by adding the counts of at most " +
+                "2 dyadic intervals per level. The values of the expired events are removed from the sketch." +
+                " Note that, using this extension without a window may cause the counts to grow indefinitely.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value which is counted when it is within the range.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}
+                ),
+                @Parameter(
+                        name = "low",
+                        description = "The lower bound of the range, inclusive.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}
+                ),
+                @Parameter(
+                        name = "high",
+                        description = "The upper bound of the range, inclusive.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the count of each dyadic " +
+                                "interval of the range, expressed as a value between 0 and 1. The error of the " +
+                                "range count is the sum of the errors of its intervals. Lower the value " +
+                                "specified, more memory is used by the sketches. Note that you cannot specify " +
+                                "`1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the result can deviate from " +
+                                "the actual count. Higher the value specified, higher is the possibility of the " +
+                                "amount of error in the count being no greater than the relative error " +
+                                "specified. Note that you cannot specify `1` or `0` as the value for this " +
+                                "parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "rangeCount",
+                        description = "The approximate number of events in the window whose value is within " +
+                                "the range, based on the latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "rangeCountLowerBound",
+                        description = "The lowest value in the range within which the most accurate count is " +
+                                "included.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "rangeCountUpperBound",
+                        description = "The highest value in the range within which the most accurate count is " +
+                                "included.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (latency double);\n" +
+                                "from RequestStream#window.time(1 min)" +
+                                "#approximate:rangeCount(latency, 200, 500)\n" +
+                                "select rangeCount, rangeCountLowerBound, rangeCountUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the number of requests of the last minute whose " +
+                                "latency was between 200 and 500 milliseconds, with a default relative error of " +
+                                "0.01 per dyadic interval and a default confidence of 0.99."
+                )
+        }
+)
+public class RangeCountExtension extends StreamProcessor<RangeCountExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private ExpressionExecutor lowExecutor;
+    private ExpressionExecutor highExecutor;
+    private Attribute.Type valueType;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 3 || attributeExpressionExecutors.length == 5)) {
+            throw new SiddhiAppCreationException("3 or 5 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the rangeCount function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside rangeCount function - " +
+                    "'value' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        valueType = attributeExpressionExecutors[0].getReturnType();
+        if (!isNumeric(valueType)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside rangeCount function - " +
+                    "'value' should be of type Integer, Long, Double or Float but found " + valueType);
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> low
+        if (!isNumeric(attributeExpressionExecutors[1].getReturnType())) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside rangeCount function - " +
+                    "'low' should be of type Integer, Long, Double or Float but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        lowExecutor = attributeExpressionExecutors[1];
+
+        //expressionExecutors[2] --> high
+        if (!isNumeric(attributeExpressionExecutors[2].getReturnType())) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside rangeCount function - " +
+                    "'high' should be of type Integer, Long, Double or Float but found " +
+                    attributeExpressionExecutors[2].getReturnType());
+        }
+        highExecutor = attributeExpressionExecutors[2];
+
+        //expressionExecutors[3] --> relativeError
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside rangeCount function - " +
+                        "'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside rangeCount function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside rangeCount function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        //expressionExecutors[4] --> confidence
+        if (attributeExpressionExecutors.length > 4) {
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside rangeCount function - " +
+                        "'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside rangeCount function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside rangeCount function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+//      the int values are mapped to 32 bit keys, and the other values to 64 bit keys
+        final int noOfBits = valueType == Attribute.Type.INT ? Integer.SIZE : Long.SIZE;
+
+        attributeList.add(new Attribute("rangeCount", Attribute.Type.LONG));
+        attributeList.add(new Attribute("rangeCountLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("rangeCountUpperBound", Attribute.Type.LONG));
+        return () -> new ExtensionState(new DyadicCountMinSketch(sketchRelativeError, sketchConfidence, noOfBits));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.dyadicCountMinSketch.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0L, 0L, 0L});
+                    continue;
+                }
+                Object value = valueExecutor.execute(streamEvent);
+                if (value == null || isNaN(value)) {
+                    streamEventChunk.remove();
+                    continue;
+                }
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    state.dyadicCountMinSketch.insert(toKey((Number) value));
+                } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                    state.dyadicCountMinSketch.remove(toKey((Number) value));
+                }
+
+                long[] rangeCount = getRangeCount(state.dyadicCountMinSketch, lowExecutor.execute(streamEvent),
+                        highExecutor.execute(streamEvent));
+                long[] confidenceInterval = state.dyadicCountMinSketch.getConfidenceInterval(rangeCount[0],
+                        rangeCount[1]);
+                complexEventPopulater.populateComplexEvent(streamEvent,
+                        new Object[]{rangeCount[0], confidenceInterval[0], confidenceInterval[1]});
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    /**
+     * Count the keys of the values within the range, where the bounds are rounded inwards to the values of
+     * the type of the attribute
+     *
+     * @return a long array which contains the approximate count and the number of sketched dyadic intervals
+     */
+    private long[] getRangeCount(DyadicCountMinSketch dyadicCountMinSketch, Object low, Object high) {
+        if (low == null || high == null || isNaN(low) || isNaN(high)) {
+            return new long[]{0, 0};
+        }
+        if (valueType == Attribute.Type.INT || valueType == Attribute.Type.LONG) {
+            long minValue = valueType == Attribute.Type.INT ? Integer.MIN_VALUE : Long.MIN_VALUE;
+            long maxValue = valueType == Attribute.Type.INT ? Integer.MAX_VALUE : Long.MAX_VALUE;
+            if (toDouble(low) > maxValue || toDouble(high) < minValue) {
+                return new long[]{0, 0};
+            }
+            long lowValue = Math.max(minValue, low instanceof Integer || low instanceof Long ?
+                    ((Number) low).longValue() : (long) Math.ceil(toDouble(low)));
+            long highValue = Math.min(maxValue, high instanceof Integer || high instanceof Long ?
+                    ((Number) high).longValue() : (long) Math.floor(toDouble(high)));
+            if (lowValue > highValue) {
+                return new long[]{0, 0};
+            }
+            return dyadicCountMinSketch.getRangeCount(toKey(lowValue), toKey(highValue));
+        }
+        if (toDouble(low) > toDouble(high)) {
+            return new long[]{0, 0};
+        }
+        return dyadicCountMinSketch.getRangeCount(toKey(toDouble(low)), toKey(toDouble(high)));
+    }
+
+    /**
+     * Map a value to an unsigned key which keeps the order of the values
+     */
+    private long toKey(Number value) {
+        switch (valueType) {
+            case INT:
+                return (value.intValue() ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            case LONG:
+                return value.longValue() ^ Long.MIN_VALUE;
+            default:
+//              -0.0 and 0.0 are the same value, the bits of the negative values are inverted to reverse their order
+                long bits = Double.doubleToLongBits(value.doubleValue() == 0 ? 0.0 : value.doubleValue());
+                return bits >= 0 ? bits ^ Long.MIN_VALUE : ~bits;
+        }
+    }
+
+    private static double toDouble(Object value) {
+        return ((Number) value).doubleValue();
+    }
+
+    private static boolean isNaN(Object value) {
+        return (value instanceof Double || value instanceof Float) && Double.isNaN(toDouble(value));
+    }
+
+    private static boolean isNumeric(Attribute.Type type) {
+        return type == Attribute.Type.INT || type == Attribute.Type.LONG || type == Attribute.Type.DOUBLE ||
+                type == Attribute.Type.FLOAT;
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private DyadicCountMinSketch dyadicCountMinSketch;
+
+        private ExtensionState(DyadicCountMinSketch dyadicCountMinSketch) {
+            this.dyadicCountMinSketch = dyadicCountMinSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (RangeCountExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("dyadicCountMinSketch", dyadicCountMinSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (RangeCountExtension.this) {
+                dyadicCountMinSketch = (DyadicCountMinSketch) state.get("dyadicCountMinSketch");
+            }
+        }
+    }
+}
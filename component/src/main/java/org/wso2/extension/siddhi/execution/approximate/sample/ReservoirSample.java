@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.sample;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * A data structure to keep a uniform random sample of a fixed number of items from a stream of unknown length.
+ * Instead of drawing a random number for each item, the number of items to skip until the next item is
+ * selected is drawn, hence the cost per item is O(1) and only the selected items are materialized.
+ * The referred research paper - Reservoir-Sampling Algorithms of Time Complexity O(n(1 + log(N/n)))
+ * by Kim-Hung Li.
+ * https://dl.acm.org/doi/10.1145/198429.198435
+ *
+ * @param <E> is the type of the sampled items
+ */
+public class ReservoirSample<E> implements Serializable {
+    private static final long serialVersionUID = -2207633614787733035L;
+
+    private int sampleSize;
+    private Object[] reservoir;
+    private int noOfSampledItems;
+    private long noOfItemsSeen;
+
+    //  the (1-based) position of the next item to be selected after the reservoir is full, and the largest
+    //  random key among the selected items which decides the skip length
+    private long nextSelectedItem;
+    private double largestKey;
+
+    private Random random = new Random();
+
+    /**
+     * Create a new ReservoirSample which keeps the given number of items
+     *
+     * @param sampleSize is the number of items kept in the sample
+     */
+    public ReservoirSample(int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("sampleSize must be a positive value but found " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        this.reservoir = new Object[sampleSize];
+        clear();
+    }
+
+    /**
+     * Offers an item to the sample, the item is obtained from the supplier only if it is selected
+     *
+     * @param item is the supplier of the item to be sampled
+     * @return {@code true} if the item is added to the sample
+     */
+    public synchronized boolean offer(Supplier<E> item) {
+        noOfItemsSeen++;
+        if (noOfSampledItems < sampleSize) {
+            reservoir[noOfSampledItems++] = item.get();
+            if (noOfSampledItems == sampleSize) {
+                largestKey = Math.exp(Math.log(nextRandom()) / sampleSize);
+                skip();
+            }
+            return true;
+        }
+        if (noOfItemsSeen < nextSelectedItem) {
+            return false;
+        }
+        reservoir[random.nextInt(sampleSize)] = item.get();
+        largestKey *= Math.exp(Math.log(nextRandom()) / sampleSize);
+        skip();
+        return true;
+    }
+
+    /**
+     * @return the items of the sample, in no particular order
+     */
+    public synchronized List<E> getSample() {
+        List<E> sample = new ArrayList<>(noOfSampledItems);
+        for (int i = 0; i < noOfSampledItems; i++) {
+            sample.add((E) reservoir[i]);
+        }
+        return sample;
+    }
+
+    /**
+     * @return the number of items offered to the sample since it was last cleared
+     */
+    public synchronized long getNoOfItemsSeen() {
+        return noOfItemsSeen;
+    }
+
+    /**
+     * Clears all the items of the sample.
+     */
+    public synchronized void clear() {
+        Arrays.fill(reservoir, null);
+        noOfSampledItems = 0;
+        noOfItemsSeen = 0;
+        nextSelectedItem = Long.MAX_VALUE;
+    }
+
+    /**
+     * Draw the number of items to be skipped before the next item is selected
+     */
+    private void skip() {
+        double skipLength = Math.floor(Math.log(nextRandom()) / Math.log(1 - largestKey));
+        nextSelectedItem = skipLength < Long.MAX_VALUE - noOfItemsSeen - 1 ?
+                noOfItemsSeen + (long) skipLength + 1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return a uniformly distributed random value in the range (0, 1]
+     */
+    private double nextRandom() {
+        return 1 - random.nextDouble();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.sample;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs Reservoir Sampling to emit a uniform random sample of a fixed number of events.
+ */
+@Extension(
+        name = "sample",
+        namespace = "approximate",
+        description = "This extension applies the `reservoir sampling` algorithm to down-sample a stream. It keeps " +
+                "a uniform random sample of at most 'sample.size' events using a fixed amount of memory, and " +
+                "emits the sample instead of the incoming events. The sample is emitted and restarted at the end " +
+                "of each batch of a batch window such as `window.timeBatch` or `window.lengthBatch`, and after " +
+                "every 'emit.every' events if it is specified. Hence the extension should be used with a batch " +
+                "window or with the 'emit.every' parameter. Every event of a batch has the same probability of " +
+                "being in the sample. The sampled events are emitted in the order of their timestamps, and the " +
+                "`EXPIRED` events are dropped.",
+        parameters = {
+                @Parameter(
+                        name = "sample.size",
+                        description = "The maximum number of events in each emitted sample.",
+                        type = {DataType.INT}
+                ),
+                @Parameter(
+                        name = "emit.every",
+                        description = "The number of incoming events after which the sample is emitted and " +
+                                "restarted. When it is `0`, the sample is emitted only at the end of the batches " +
+                                "of a batch window.",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "0"
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream ClickStream (userId string, url string);\n" +
+                                "from ClickStream#window.timeBatch(1 min)#approximate:sample(100)\n" +
+                                "select userId, url\n" +
+                                "insert into SampledClickStream;",
+                        description = "This query emits a uniform random sample of 100 clicks at the end of " +
+                                "each minute, or all the clicks of the minute if there are less than 100 clicks."
+                ),
+                @Example(
+                        syntax = "define stream ClickStream (userId string, url string);\n" +
+                                "from ClickStream#approximate:sample(10, 1000)\n" +
+                                "select userId, url\n" +
+                                "insert into SampledClickStream;",
+                        description = "This query emits a uniform random sample of 10 clicks out of every 1000 " +
+                                "clicks."
+                )
+        }
+)
+public class SampleExtension extends StreamProcessor<SampleExtension.ExtensionState> {
+    private long emitEvery;
+    private List<Attribute> attributeList = new ArrayList<>(0);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default value for emit every
+        final long defaultEmitEvery = 0;
+
+        emitEvery = defaultEmitEvery;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 1 || attributeExpressionExecutors.length == 2)) {
+            throw new SiddhiAppCreationException("1 or 2 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the sample function");
+        }
+
+        //expressionExecutors[0] --> sampleSize
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside sample function - " +
+                    "'sample.size' has to be a constant but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.INT) {
+            throw new SiddhiAppCreationException("The 1st parameter inside sample function - " +
+                    "'sample.size' should be of type Int but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        final int sampleSize = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+        if (sampleSize <= 0) {
+            throw new SiddhiAppCreationException("The 1st parameter inside sample function - " +
+                    "'sample.size' must be a positive value but found " + sampleSize);
+        }
+
+        //expressionExecutors[1] --> emitEvery
+        if (attributeExpressionExecutors.length > 1) {
+            if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside sample function - " +
+                        "'emit.every' has to be a constant but found " +
+                        this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[1].getReturnType() == Attribute.Type.LONG) {
+                emitEvery = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue())
+                        .longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 2nd parameter inside sample function - " +
+                        "'emit.every' should be of type Int or Long but found " +
+                        attributeExpressionExecutors[1].getReturnType());
+            }
+            if (emitEvery < 0) {
+                throw new SiddhiAppCreationException("The 2nd parameter inside sample function - " +
+                        "'emit.every' must be a non negative value but found " + emitEvery);
+            }
+        }
+
+        return () -> new ExtensionState(new ReservoirSample<>(sampleSize));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        List<StreamEvent> sampledEvents = new ArrayList<>();
+        synchronized (this) {
+            boolean batchEnded = false;
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+//                  the current events of the batch follow the reset event
+                    state.reservoirSample.clear();
+                    batchEnded = true;
+                    continue;
+                }
+                streamEventChunk.remove();
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+//                  only the selected events are cloned
+                    state.reservoirSample.offer(() -> streamEventCloner.copyStreamEvent(streamEvent));
+                    if (state.reservoirSample.getNoOfItemsSeen() == emitEvery) {
+                        emitSample(state.reservoirSample, sampledEvents);
+                    }
+                }
+            }
+            if (batchEnded) {
+                emitSample(state.reservoirSample, sampledEvents);
+            }
+        }
+        for (StreamEvent sampledEvent : sampledEvents) {
+            streamEventChunk.add(sampledEvent);
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    private void emitSample(ReservoirSample<StreamEvent> reservoirSample, List<StreamEvent> sampledEvents) {
+        List<StreamEvent> sample = reservoirSample.getSample();
+        sample.sort(Comparator.comparingLong(StreamEvent::getTimestamp));
+        sampledEvents.addAll(sample);
+        reservoirSample.clear();
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private ReservoirSample<StreamEvent> reservoirSample;
+
+        private ExtensionState(ReservoirSample<StreamEvent> reservoirSample) {
+            this.reservoirSample = reservoirSample;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (SampleExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("reservoirSample", reservoirSample);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (SampleExtension.this) {
+                reservoirSample = (ReservoirSample<StreamEvent>) state.get("reservoirSample");
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.sample;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * A data structure to keep a weighted random sample of a fixed number of items from a stream of unknown length,
+ * where the probability of an item being in the sample is proportional to its weight.
+ * Each item gets the random key u^(1 / weight), where u is uniformly distributed in (0, 1), and the items with
+ * the largest keys are kept in a min heap. The keys are compared in the log space as
+ * (log(weight) - log(-log(u))), so that the weights can grow exponentially without overflowing.
+ * The referred research paper - Weighted random sampling with a reservoir
+ * by Pavlos S. Efraimidis and Paul G. Spirakis.
+ * https://doi.org/10.1016/j.ipl.2005.11.003
+ *
+ * @param <E> is the type of the sampled items
+ */
+public class WeightedReservoirSample<E> implements Serializable {
+    private static final long serialVersionUID = 3598841457434707150L;
+
+    private int sampleSize;
+
+    //  min heap of the keys of the sampled items, the item with the smallest key is at the root
+    private double[] keys;
+    private Object[] reservoir;
+    private int noOfSampledItems;
+    private long noOfItemsSeen;
+
+    private Random random = new Random();
+
+    /**
+     * Create a new WeightedReservoirSample which keeps the given number of items
+     *
+     * @param sampleSize is the number of items kept in the sample
+     */
+    public WeightedReservoirSample(int sampleSize) {
+        if (sampleSize <= 0) {
+            throw new IllegalArgumentException("sampleSize must be a positive value but found " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        this.keys = new double[sampleSize];
+        this.reservoir = new Object[sampleSize];
+        clear();
+    }
+
+    /**
+     * Offers an item to the sample, the item is obtained from the supplier only if it is selected
+     *
+     * @param item      is the supplier of the item to be sampled
+     * @param logWeight is the natural logarithm of the weight of the item, an item whose weight is zero
+     *                  ({@code Double.NEGATIVE_INFINITY}) is never selected
+     * @return {@code true} if the item is added to the sample
+     */
+    public synchronized boolean offer(Supplier<E> item, double logWeight) {
+        noOfItemsSeen++;
+        if (Double.isNaN(logWeight) || logWeight == Double.NEGATIVE_INFINITY) {
+            return false;
+        }
+        double key = logWeight - Math.log(-Math.log(1 - random.nextDouble()));
+        if (noOfSampledItems < sampleSize) {
+            keys[noOfSampledItems] = key;
+            reservoir[noOfSampledItems] = item.get();
+            siftUp(noOfSampledItems++);
+            return true;
+        }
+        if (key <= keys[0]) {
+            return false;
+        }
+        keys[0] = key;
+        reservoir[0] = item.get();
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * @return the items of the sample, in no particular order
+     */
+    public synchronized List<E> getSample() {
+        List<E> sample = new ArrayList<>(noOfSampledItems);
+        for (int i = 0; i < noOfSampledItems; i++) {
+            sample.add((E) reservoir[i]);
+        }
+        return sample;
+    }
+
+    /**
+     * @return the number of items offered to the sample since it was last cleared
+     */
+    public synchronized long getNoOfItemsSeen() {
+        return noOfItemsSeen;
+    }
+
+    /**
+     * Clears all the items of the sample.
+     */
+    public synchronized void clear() {
+        Arrays.fill(reservoir, null);
+        noOfSampledItems = 0;
+        noOfItemsSeen = 0;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (keys[parent] <= keys[position]) {
+                return;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < noOfSampledItems && keys[left] < keys[smallest]) {
+                smallest = left;
+            }
+            if (right < noOfSampledItems && keys[right] < keys[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(smallest, position);
+            position = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        Object item = reservoir[i];
+        reservoir[i] = reservoir[j];
+        reservoir[j] = item;
+    }
+}
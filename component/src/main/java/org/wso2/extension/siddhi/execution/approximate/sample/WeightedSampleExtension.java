@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.sample;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs Weighted Reservoir Sampling to emit a weighted, optionally time biased, random sample of a fixed
+ * number of events.
+ */
+@Extension(
+        name = "weightedSample",
+        namespace = "approximate",
+        description = "This extension applies the `weighted reservoir sampling` algorithm to down-sample a stream. " +
+                "It keeps a random sample of at most 'sample.size' events using a fixed amount of memory, where " +
+                "the probability of an event being in the sample is proportional to its 'weight', and emits the " +
+                "sample instead of the incoming events. If a 'half.life' is given, the weight of an event is also " +
+                "doubled for each 'half.life' of its timestamp, so that the sample is biased towards the recent " +
+                "events. The events whose weight is null, zero or negative are never sampled. The sample is " +
+                "emitted and restarted at the end of each batch of a batch window such as `window.timeBatch` or " +
+                "`window.lengthBatch`, and after every 'emit.every' events if it is specified. The sampled events " +
+                "are emitted in the order of their timestamps, and the `EXPIRED` events are dropped.",
+        parameters = {
+                @Parameter(
+                        name = "sample.size",
+                        description = "The maximum number of events in each emitted sample.",
+                        type = {DataType.INT}
+                ),
+                @Parameter(
+                        name = "weight",
+                        description = "The attribute which holds the weight of the event.",
+                        type = {DataType.INT, DataType.LONG, DataType.DOUBLE, DataType.FLOAT}
+                ),
+                @Parameter(
+                        name = "emit.every",
+                        description = "The number of incoming events after which the sample is emitted and " +
+                                "restarted. When it is `0`, the sample is emitted only at the end of the batches " +
+                                "of a batch window.",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "0"
+                ),
+                @Parameter(
+                        name = "half.life",
+                        description = "The time period after which the weight of an event is half of the weight " +
+                                "of an event of the same 'weight' which arrives at that time. When it is `0`, the " +
+                                "sample is not biased by time.",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "0"
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream TransactionStream (transactionId string, amount double);\n" +
+                                "from TransactionStream#window.timeBatch(1 min)" +
+                                "#approximate:weightedSample(100, amount)\n" +
+                                "select transactionId, amount\n" +
+                                "insert into SampledTransactionStream;",
+                        description = "This query emits a sample of 100 transactions at the end of each minute, " +
+                                "where the probability of a transaction being sampled is proportional to its " +
+                                "amount."
+                ),
+                @Example(
+                        syntax = "define stream SensorStream (sensorId string, priority int);\n" +
+                                "from SensorStream#approximate:weightedSample(50, priority, 10000, 1 min)\n" +
+                                "select sensorId, priority\n" +
+                                "insert into SampledSensorStream;",
+                        description = "This query emits a sample of 50 readings out of every 10000 readings, " +
+                                "weighted by their priority and biased towards the readings of the last few " +
+                                "minutes, as the weight of a reading halves for each minute it is older than " +
+                                "another."
+                )
+        }
+)
+public class WeightedSampleExtension extends StreamProcessor<WeightedSampleExtension.ExtensionState> {
+    private ExpressionExecutor weightExecutor;
+    private long emitEvery;
+    private long halfLife;
+    private List<Attribute> attributeList = new ArrayList<>(0);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for emit every and half life
+        final long defaultEmitEvery = 0;
+        final long defaultHalfLife = 0;
+
+        emitEvery = defaultEmitEvery;
+        halfLife = defaultHalfLife;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length >= 2 && attributeExpressionExecutors.length <= 4)) {
+            throw new SiddhiAppCreationException("2, 3 or 4 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the weightedSample function");
+        }
+
+        //expressionExecutors[0] --> sampleSize
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside weightedSample function - " +
+                    "'sample.size' has to be a constant but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.INT) {
+            throw new SiddhiAppCreationException("The 1st parameter inside weightedSample function - " +
+                    "'sample.size' should be of type Int but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        final int sampleSize = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+        if (sampleSize <= 0) {
+            throw new SiddhiAppCreationException("The 1st parameter inside weightedSample function - " +
+                    "'sample.size' must be a positive value but found " + sampleSize);
+        }
+
+        //expressionExecutors[1] --> weight
+        if (!(attributeExpressionExecutors[1] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside weightedSample function - " +
+                    "'weight' has to be a variable but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        Attribute.Type weightType = attributeExpressionExecutors[1].getReturnType();
+        if (!(weightType == Attribute.Type.INT || weightType == Attribute.Type.LONG ||
+                weightType == Attribute.Type.DOUBLE || weightType == Attribute.Type.FLOAT)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside weightedSample function - " +
+                    "'weight' should be of type Int, Long, Double or Float but found " + weightType);
+        }
+        weightExecutor = attributeExpressionExecutors[1];
+
+        //expressionExecutors[2] --> emitEvery
+        if (attributeExpressionExecutors.length > 2) {
+            emitEvery = getNonNegativeConstant(attributeExpressionExecutors[2], "3rd", "emit.every");
+        }
+
+        //expressionExecutors[3] --> halfLife
+        if (attributeExpressionExecutors.length > 3) {
+            halfLife = getNonNegativeConstant(attributeExpressionExecutors[3], "4th", "half.life");
+        }
+
+        return () -> new ExtensionState(new WeightedReservoirSample<>(sampleSize));
+    }
+
+    private long getNonNegativeConstant(ExpressionExecutor expressionExecutor, String position, String name) {
+        if (!(expressionExecutor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The " + position + " parameter inside weightedSample function - " +
+                    "'" + name + "' has to be a constant but found " +
+                    expressionExecutor.getClass().getCanonicalName());
+        }
+        long value;
+        if (expressionExecutor.getReturnType() == Attribute.Type.INT ||
+                expressionExecutor.getReturnType() == Attribute.Type.LONG) {
+            value = ((Number) ((ConstantExpressionExecutor) expressionExecutor).getValue()).longValue();
+        } else {
+            throw new SiddhiAppCreationException("The " + position + " parameter inside weightedSample function - " +
+                    "'" + name + "' should be of type Int or Long but found " + expressionExecutor.getReturnType());
+        }
+        if (value < 0) {
+            throw new SiddhiAppCreationException("The " + position + " parameter inside weightedSample function - " +
+                    "'" + name + "' must be a non negative value but found " + value);
+        }
+        return value;
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        List<StreamEvent> sampledEvents = new ArrayList<>();
+        synchronized (this) {
+            boolean batchEnded = false;
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+//                  the current events of the batch follow the reset event
+                    state.weightedReservoirSample.clear();
+                    batchEnded = true;
+                    continue;
+                }
+                streamEventChunk.remove();
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    Object weight = weightExecutor.execute(streamEvent);
+                    double logWeight = weight == null ? Double.NEGATIVE_INFINITY :
+                            Math.log(((Number) weight).doubleValue());
+                    if (halfLife > 0) {
+//                      the weight doubles for each half life, which is added in the log space
+                        logWeight += streamEvent.getTimestamp() * Math.log(2) / halfLife;
+                    }
+//                  only the selected events are cloned
+                    state.weightedReservoirSample.offer(() -> streamEventCloner.copyStreamEvent(streamEvent),
+                            logWeight);
+                    if (state.weightedReservoirSample.getNoOfItemsSeen() == emitEvery) {
+                        emitSample(state.weightedReservoirSample, sampledEvents);
+                    }
+                }
+            }
+            if (batchEnded) {
+                emitSample(state.weightedReservoirSample, sampledEvents);
+            }
+        }
+        for (StreamEvent sampledEvent : sampledEvents) {
+            streamEventChunk.add(sampledEvent);
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    private void emitSample(WeightedReservoirSample<StreamEvent> weightedReservoirSample,
+                            List<StreamEvent> sampledEvents) {
+        List<StreamEvent> sample = weightedReservoirSample.getSample();
+        sample.sort(Comparator.comparingLong(StreamEvent::getTimestamp));
+        sampledEvents.addAll(sample);
+        weightedReservoirSample.clear();
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private WeightedReservoirSample<StreamEvent> weightedReservoirSample;
+
+        private ExtensionState(WeightedReservoirSample<StreamEvent> weightedReservoirSample) {
+            this.weightedReservoirSample = weightedReservoirSample;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (WeightedSampleExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("weightedReservoirSample", weightedReservoirSample);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (WeightedSampleExtension.this) {
+                weightedReservoirSample = (WeightedReservoirSample<StreamEvent>) state.get("weightedReservoirSample");
+            }
+        }
+    }
+}
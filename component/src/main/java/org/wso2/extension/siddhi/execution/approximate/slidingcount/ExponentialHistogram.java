@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.slidingcount;
+
+import java.io.Serializable;
+
+/**
+ * A probabilistic data structure to count the items which arrived within a sliding time window, using memory
+ * which is logarithmic in the count.
+ * The items are summarized in buckets whose sizes are powers of 2, and at most (k / 2 + 1) buckets of each
+ * size are kept, where k = 1 / relativeError. Only the oldest bucket can be partially outside the window.
+ * The referred research paper - Maintaining Stream Statistics over Sliding Windows
+ * by Mayur Datar, Aristides Gionis, Piotr Indyk and Rajeev Motwani.
+ * http://www-cs-students.stanford.edu/~datar/papers/sicomp_streams.pdf
+ */
+public class ExponentialHistogram implements Serializable {
+    private static final long serialVersionUID = -6530119620592311012L;
+
+    private static final int INITIAL_NO_OF_LEVELS = 4;
+    private static final int INITIAL_LEVEL_SIZE = 2;
+
+    private int maxBucketsPerLevel;
+
+    //  bucketTimestamps[i] is a ring buffer of the timestamps of the buckets of size 2^i, ordered from the oldest
+    //  to the newest, and all the buckets of a level are older than the buckets of the lower levels
+    private long[][] bucketTimestamps;
+    private int[] oldestPositions;
+    private int[] noOfBuckets;
+    private int noOfLevels;
+
+    private long totalCount;
+
+    /**
+     * @param maxBucketsPerLevel is the maximum number of buckets of each size, (k / 2 + 1)
+     */
+    public ExponentialHistogram(int maxBucketsPerLevel) {
+        this.maxBucketsPerLevel = maxBucketsPerLevel;
+        this.bucketTimestamps = new long[INITIAL_NO_OF_LEVELS][];
+        this.oldestPositions = new int[INITIAL_NO_OF_LEVELS];
+        this.noOfBuckets = new int[INITIAL_NO_OF_LEVELS];
+        this.noOfLevels = 0;
+    }
+
+    /**
+     * Adds an item which arrived at the given time, and merges the two oldest buckets of a size
+     * whenever there are too many buckets of that size
+     *
+     * @param timestamp is the arrival time of the item, which is not older than the previous items
+     */
+    public void insert(long timestamp) {
+        totalCount++;
+        long newTimestamp = timestamp;
+        for (int level = 0; ; level++) {
+            if (level == noOfLevels) {
+                addLevel();
+            }
+            if (noOfBuckets[level] == bucketTimestamps[level].length) {
+                growLevel(level);
+            }
+            long[] timestamps = bucketTimestamps[level];
+            timestamps[(oldestPositions[level] + noOfBuckets[level]) % timestamps.length] = newTimestamp;
+            noOfBuckets[level]++;
+            if (noOfBuckets[level] <= maxBucketsPerLevel) {
+                return;
+            }
+//          merge the two oldest buckets, the merged bucket gets the timestamp of the newer one
+            oldestPositions[level] = (oldestPositions[level] + 2) % timestamps.length;
+            noOfBuckets[level] -= 2;
+            newTimestamp = timestamps[(oldestPositions[level] + timestamps.length - 1) % timestamps.length];
+        }
+    }
+
+    /**
+     * Removes the buckets whose newest item arrived at or before the given time
+     *
+     * @param expiryTimestamp is the latest arrival time which is outside the window
+     */
+    public void expire(long expiryTimestamp) {
+        for (int level = noOfLevels - 1; level >= 0; level--) {
+            long[] timestamps = bucketTimestamps[level];
+            while (noOfBuckets[level] > 0 && timestamps[oldestPositions[level]] <= expiryTimestamp) {
+                oldestPositions[level] = (oldestPositions[level] + 1) % timestamps.length;
+                noOfBuckets[level]--;
+                totalCount -= 1L << level;
+            }
+            if (noOfBuckets[level] > 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Estimate the number of items within the window, assuming half of the oldest bucket is outside the window
+     *
+     * @return the approximate count
+     */
+    public long getCount() {
+        for (int level = noOfLevels - 1; level >= 0; level--) {
+            if (noOfBuckets[level] > 0) {
+                return totalCount - ((1L << level) / 2);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return {@code true} if there are no items within the window
+     */
+    public boolean isEmpty() {
+        return totalCount == 0;
+    }
+
+    private void addLevel() {
+        if (noOfLevels == bucketTimestamps.length) {
+            long[][] newBucketTimestamps = new long[noOfLevels * 2][];
+            int[] newOldestPositions = new int[noOfLevels * 2];
+            int[] newNoOfBuckets = new int[noOfLevels * 2];
+            System.arraycopy(bucketTimestamps, 0, newBucketTimestamps, 0, noOfLevels);
+            System.arraycopy(oldestPositions, 0, newOldestPositions, 0, noOfLevels);
+            System.arraycopy(noOfBuckets, 0, newNoOfBuckets, 0, noOfLevels);
+            bucketTimestamps = newBucketTimestamps;
+            oldestPositions = newOldestPositions;
+            noOfBuckets = newNoOfBuckets;
+        }
+        bucketTimestamps[noOfLevels] = new long[Math.min(INITIAL_LEVEL_SIZE, maxBucketsPerLevel + 1)];
+        noOfLevels++;
+    }
+
+    /**
+     * Grow the ring buffer of a level up to (maxBucketsPerLevel + 1) slots, which holds a bucket before merging
+     */
+    private void growLevel(int level) {
+        long[] timestamps = bucketTimestamps[level];
+        long[] newTimestamps = new long[Math.min(timestamps.length * 2, maxBucketsPerLevel + 1)];
+        for (int i = 0; i < noOfBuckets[level]; i++) {
+            newTimestamps[i] = timestamps[(oldestPositions[level] + i) % timestamps.length];
+        }
+        bucketTimestamps[level] = newTimestamps;
+        oldestPositions[level] = 0;
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.slidingcount;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs ECM-Sketch algorithm to get the approximate count(frequency) of events in a sliding time window.
+ */
+@Extension(
+        name = "slidingCount",
+        namespace = "approximate",
+        description = "This extension applies the `ECM-sketch` algorithm, a count-min sketch whose cells are " +
+                "exponential histograms, to calculate the approximate count i.e., the frequency of events that " +
+                "arrived within the last 'window.time', based on the given values for the 'relative error' and " +
+                "'confidence value'. Unlike `approximate:count`, it does not need a Siddhi window, as the " +
+                "events leave the sketch based on their timestamps. Hence the events are not buffered and the " +
+                "memory used is logarithmic in the number of events within the window.",
+        parameters = {
+                @Parameter(
+                        name = "value",
+                        description = "The value for which the count is derived.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "window.time",
+                        description = "The length of the sliding time window over which the events are counted.",
+                        type = {DataType.INT, DataType.LONG, DataType.TIME}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the count generated, expressed " +
+                                "as a value between 0 and 1. Lower the value specified, lower is the rate by which " +
+                                "the count can deviate from being perfectly correct. Note that you cannot specify " +
+                                "`1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the result can deviate from " +
+                                "the actual event count. Higher the value specified, higher is the possibility of " +
+                                "the amount of error in the count being no greater than the relative error " +
+                                "specified. Note that you cannot specify `1` or `0` as the value for this " +
+                                "parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "slidingCount",
+                        description = "This represents the approximate count of the value of the latest event " +
+                                "within the window.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "slidingCountLowerBound",
+                        description = "The lowest value in the range within which the most accurate count for the " +
+                                "attribute is included. This count range is based on the latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "slidingCountUpperBound",
+                        description = "The highest value in the range within which the most accurate count for the " +
+                                "attribute is included. This count range is based on the latest event.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream RequestStream (ip string);\n" +
+                                "from RequestStream#approximate:slidingCount(ip, 1 hour)\n" +
+                                "select ip, slidingCount, slidingCountLowerBound, slidingCountUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the count(frequency) of requests from each IP address " +
+                                "during the last hour, with a default relative error of 0.01 and a default " +
+                                "confidence of 0.99, without buffering the requests of the last hour."
+                ),
+                @Example(
+                        syntax = "define stream TransactionStream (userId int, amount double);\n" +
+                                "from TransactionStream#approximate:slidingCount(userId, 10 min, 0.05, 0.9)\n" +
+                                "select userId, slidingCount\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the number of transactions of each user during the " +
+                                "last 10 minutes. The counts generated are 90% guaranteed to deviate from the " +
+                                "actual count by only 5%."
+                )
+        }
+)
+public class SlidingCountExtension extends StreamProcessor<SlidingCountExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+        long windowTime;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 4)) {
+            throw new SiddhiAppCreationException("2 or 4 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the slidingCount function");
+        }
+
+        //expressionExecutors[0] --> value
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside slidingCount function - " +
+                    "'value' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> windowTime
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside slidingCount function - " +
+                    "'window.time' has to be a constant but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.INT ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.LONG) {
+            windowTime = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1])
+                    .getValue()).longValue();
+        } else {
+            throw new SiddhiAppCreationException("The 2nd parameter inside slidingCount function - " +
+                    "'window.time' should be of type Int or Long but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        if (windowTime <= 0) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside slidingCount function - " +
+                    "'window.time' must be a positive value but found " + windowTime);
+        }
+
+        //expressionExecutors[2] --> relativeError
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside slidingCount function - " +
+                        "'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside slidingCount function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside slidingCount function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        //expressionExecutors[3] --> confidence
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside slidingCount function - " +
+                        "'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside slidingCount function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside slidingCount function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+        final long sketchWindowTime = windowTime;
+
+        attributeList.add(new Attribute("slidingCount", Attribute.Type.LONG));
+        attributeList.add(new Attribute("slidingCountLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("slidingCountUpperBound", Attribute.Type.LONG));
+        return () -> new ExtensionState(new SlidingCountMinSketch<>(sketchRelativeError, sketchConfidence,
+                sketchWindowTime));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.slidingCountMinSketch.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0L, 0L, 0L});
+                    continue;
+                }
+                Object newData = valueExecutor.execute(streamEvent);
+                if (newData == null) {
+                    streamEventChunk.remove();
+                } else {
+                    long approximateCount;
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        approximateCount = state.slidingCountMinSketch.insert(newData, streamEvent.getTimestamp());
+                    } else {
+//                      the events leave the sketch based on their timestamps, hence the expired events of an
+//                      upstream window do not remove anything
+                        approximateCount = state.slidingCountMinSketch.getCount(newData,
+                                streamEvent.getTimestamp());
+                    }
+                    long[] confidenceInterval = state.slidingCountMinSketch.getConfidenceInterval(approximateCount);
+
+                    Object[] outputData = {approximateCount, confidenceInterval[0], confidenceInterval[1]};
+
+                    complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private SlidingCountMinSketch<Object> slidingCountMinSketch;
+
+        private ExtensionState(SlidingCountMinSketch<Object> slidingCountMinSketch) {
+            this.slidingCountMinSketch = slidingCountMinSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (SlidingCountExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("slidingCountMinSketch", slidingCountMinSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (SlidingCountExtension.this) {
+                slidingCountMinSketch = (SlidingCountMinSketch) state.get("slidingCountMinSketch");
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.slidingcount;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * A probabilistic data structure to keep count of different items within a sliding time window.
+ * It is a count min sketch whose cells are exponential histograms, hence the items do not have to be
+ * buffered to remove them when they leave the window.
+ * The relative error is shared equally between the count min sketch and the exponential histograms.
+ * The referred research paper - ECM-Sketch: Handling Distributed Data Streams with Sliding Windows
+ * by Odysseas Papapetrou, Minos Garofalakis and Antonios Deligiannakis.
+ * http://www.vldb.org/pvldb/vol5/p992_odysseaspapapetrou_vldb2012.pdf
+ *
+ * @param <E> is the type of data to be counted
+ */
+public class SlidingCountMinSketch<E> implements Serializable {
+    private static final long serialVersionUID = 4177407316862734861L;
+
+    private int depth;
+    private int width;
+    private int maxBucketsPerLevel;
+    private long windowLength;
+    private long currentTimestamp = Long.MIN_VALUE;
+
+    //  2D array of the histograms, a histogram is created when an item is counted in its cell
+    private ExponentialHistogram[][] histogramArray;
+    private ExponentialHistogram totalHistogram;
+
+    //  hash coefficients
+    private ArrayList<Integer> hashCoefficientsA;
+    private ArrayList<Integer> hashCoefficientsB;
+
+    //  Error factors of approximation
+    private double sketchRelativeError;
+    private double histogramRelativeError;
+
+    /**
+     * Instantiate the sliding count min sketch based on a given relative error, confidence and window length
+     *
+     * @param relativeError is a positive number less than 1 (e.g. 0.01)
+     * @param confidence    is a positive number less than 1 (e.g. 0.01)
+     *                      which is the probability of answers being within the relative error
+     * @param windowLength  is the length of the sliding window in milliseconds
+     */
+    public SlidingCountMinSketch(double relativeError, double confidence, long windowLength) {
+        if (!(relativeError < 1 && relativeError > 0) || !(confidence < 1 && confidence > 0)) {
+            throw new IllegalArgumentException("confidence and relativeError must be values in the range (0,1)");
+        }
+        this.windowLength = windowLength;
+        this.sketchRelativeError = relativeError / 2;
+        this.histogramRelativeError = relativeError / 2;
+
+//      depth = ln(1 / (1 - confidence))
+        this.depth = (int) Math.ceil(Math.log(1 / (1 - confidence)));
+//      width = e / relativeError
+        this.width = (int) Math.ceil(Math.E / sketchRelativeError);
+//      at most (k / 2 + 1) buckets of each size, where k = 1 / relativeError
+        this.maxBucketsPerLevel = (int) Math.ceil(1 / histogramRelativeError) / 2 + 1;
+
+        this.histogramArray = new ExponentialHistogram[depth][width];
+        this.totalHistogram = new ExponentialHistogram(maxBucketsPerLevel);
+
+//      create random hash coefficients
+//      using linear hash functions of the form (a*x+b)
+//      a,b are chosen independently for each hash function.
+        this.hashCoefficientsA = new ArrayList<>(depth);
+        this.hashCoefficientsB = new ArrayList<>(depth);
+        Random random = new Random(123);
+        for (int i = 0; i < depth; i++) {
+            hashCoefficientsA.add(random.nextInt(Integer.MAX_VALUE));
+            hashCoefficientsB.add(random.nextInt(Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Compute the cell position in a row of the histogram array for a given hash value
+     *
+     * @param hash is the integer hash value generated from some hash function
+     * @return an integer value in the range [0,width)
+     */
+    private int getArrayIndex(int hash) {
+        return Math.abs(hash % width);
+    }
+
+    /**
+     * Compute a set of different integer hash values for a given item
+     *
+     * @param item is the object for which the hash values are calculated
+     * @return an int array(of size {@code depth}) of hash values
+     */
+    private int[] getHashValues(E item) {
+        int[] hashValues = new int[depth];
+        int hash = MurmurHash.hash(item);
+        for (int i = 0; i < depth; i++) {
+            hashValues[i] = hashCoefficientsA.get(i) * hash + hashCoefficientsB.get(i);
+        }
+        return hashValues;
+    }
+
+    /**
+     * Adds an item which arrived at the given time to the sketch, and expires the items of the relevant cells
+     * which are outside the window.
+     * An item which arrives out of order is counted as if it arrived with the latest item.
+     *
+     * @param item      is the item to be inserted
+     * @param timestamp is the arrival time of the item in milliseconds
+     * @return the approximate count of the item within the window
+     */
+    public synchronized long insert(E item, long timestamp) {
+        advanceTime(timestamp);
+        long expiryTimestamp = currentTimestamp - windowLength;
+        totalHistogram.expire(expiryTimestamp);
+        totalHistogram.insert(currentTimestamp);
+
+        int[] hashValues = getHashValues(item);
+        long currentMin = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = getArrayIndex(hashValues[i]);
+            ExponentialHistogram histogram = histogramArray[i][index];
+            if (histogram == null) {
+                histogram = new ExponentialHistogram(maxBucketsPerLevel);
+                histogramArray[i][index] = histogram;
+            } else {
+                histogram.expire(expiryTimestamp);
+            }
+            histogram.insert(currentTimestamp);
+            currentMin = Math.min(currentMin, histogram.getCount());
+        }
+        return currentMin;
+    }
+
+    /**
+     * Calculate the count of an item within the window ending at the given time, without adding it
+     *
+     * @param item      is the item to be counted
+     * @param timestamp is the current time in milliseconds
+     * @return the approximate count of the item within the window
+     */
+    public synchronized long getCount(E item, long timestamp) {
+        advanceTime(timestamp);
+        long expiryTimestamp = currentTimestamp - windowLength;
+        totalHistogram.expire(expiryTimestamp);
+
+        int[] hashValues = getHashValues(item);
+        long currentMin = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int index = getArrayIndex(hashValues[i]);
+            ExponentialHistogram histogram = histogramArray[i][index];
+            if (histogram == null) {
+                return 0;
+            }
+            histogram.expire(expiryTimestamp);
+            if (histogram.isEmpty()) {
+//              release the memory of the cells which have no items within the window
+                histogramArray[i][index] = null;
+                return 0;
+            }
+            currentMin = Math.min(currentMin, histogram.getCount());
+        }
+        return currentMin;
+    }
+
+    /**
+     * Calculate the confidence interval of the approximate count
+     * [approximateCount - error, approximateCount + error]
+     * where error = totalNoOfItems * sketchRelativeError + approximateCount * histogramRelativeError
+     * and totalNoOfItems is the approximate number of items within the window
+     *
+     * @param count is the approximate count
+     * @return a long array which contains the lower bound and
+     * the upper bound of the confidence interval consecutively
+     */
+    public synchronized long[] getConfidenceInterval(long count) {
+        long error = (long) Math.ceil(totalHistogram.getCount() * sketchRelativeError +
+                count * histogramRelativeError);
+        if (count - error > 0) {
+            return new long[]{count - error, count + error};
+        } else {
+            return new long[]{0, count + error};
+        }
+    }
+
+    /**
+     * Clears the counts within the sketch.
+     */
+    public synchronized void clear() {
+        this.histogramArray = new ExponentialHistogram[depth][width];
+        this.totalHistogram = new ExponentialHistogram(maxBucketsPerLevel);
+        this.currentTimestamp = Long.MIN_VALUE;
+    }
+
+    private void advanceTime(long timestamp) {
+        if (timestamp > currentTimestamp) {
+            currentTimestamp = timestamp;
+        }
+    }
+}
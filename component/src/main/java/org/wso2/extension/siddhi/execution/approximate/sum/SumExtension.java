@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.sum;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.apache.log4j.Logger;
+import org.wso2.extension.siddhi.execution.approximate.count.CountMinSketch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performs Count-Min Sketch algorithm with weighted updates to get the approximate sum of weights per key.
+ */
+@Extension(
+        name = "sum",
+        namespace = "approximate",
+        description = "This extension applies the `count-min sketch` algorithm with weighted updates, in order to " +
+                "calculate the approximate sum of the weights of each key, based on the given values for the " +
+                "'relative error' and 'confidence value'. It uses a fixed amount of memory regardless of the " +
+                "number of keys, unlike `sum()` grouped by the key. The weights of the expired events are " +
+                "subtracted, hence it can be used with a Siddhi window. Only non negative weights are supported, " +
+                "and the events with a negative weight are dropped, with a warning logged for the first of them.",
+        parameters = {
+                @Parameter(
+                        name = "key",
+                        description = "The key for which the sum of weights is derived.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "weight",
+                        description = "The non negative weight added to the sum of the key. Amounts with a " +
+                                "fractional part can be summed by converting them to the smallest unit, " +
+                                "e.g. cents.",
+                        type = {DataType.INT, DataType.LONG}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the sum generated, expressed " +
+                                "as a fraction of the total weight of all the keys. Lower the value specified, " +
+                                "lower is the rate by which the sum can deviate from being perfectly correct. " +
+                                "Note that you cannot specify `1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the result can deviate from " +
+                                "the actual sum. Higher the value specified, higher is the possibility of the " +
+                                "amount of error in the sum being no greater than the relative error specified. " +
+                                "Note that you cannot specify `1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "sum",
+                        description = "This represents the approximate sum of the weights of the key of the " +
+                                "latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "sumLowerBound",
+                        description = "The lowest value in the range within which the most accurate sum for the " +
+                                "key is included. This sum range is based on the latest event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "sumUpperBound",
+                        description = "The highest value in the range within which the most accurate sum for the " +
+                                "key is included. This sum range is based on the latest event.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream TrafficStream (ip string, bytes long);\n" +
+                                "from TrafficStream#window.time(1 min)#approximate:sum(ip, bytes)\n" +
+                                "select ip, sum, sumLowerBound, sumUpperBound\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the number of bytes sent by each IP address during " +
+                                "the last minute, with a default relative error of 0.01 and a default confidence " +
+                                "of 0.99. The sums generated are 99% guaranteed to deviate from the actual sum by " +
+                                "no more than 1% of the total bytes sent during the last minute."
+                ),
+                @Example(
+                        syntax = "define stream PaymentStream (cardNo string, amountInCents long);\n" +
+                                "from PaymentStream#approximate:sum(cardNo, amountInCents, 0.001, 0.95)\n" +
+                                "select cardNo, sum as totalSpend\n" +
+                                "insert into OutputStream;",
+                        description = "This query generates the total spend of each card, which is 95% " +
+                                "guaranteed to deviate from the actual total by no more than 0.1% of the total " +
+                                "spend of all the cards."
+                )
+        }
+)
+public class SumExtension extends StreamProcessor<SumExtension.ExtensionState> {
+    private static final Logger LOG = Logger.getLogger(SumExtension.class);
+
+    private ExpressionExecutor keyExecutor;
+    private ExpressionExecutor weightExecutor;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+//  the dropped events are warned about only once per query, so that a stream of negative weights does not flood the log
+    private boolean negativeWeightWarned = false;
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 4)) {
+            throw new SiddhiAppCreationException("2 or 4 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the sum function");
+        }
+
+        //expressionExecutors[0] --> key
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside sum function - " +
+                    "'key' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        keyExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> weight
+        if (!(attributeExpressionExecutors[1] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside sum function - " +
+                    "'weight' has to be a variable but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (!(attributeExpressionExecutors[1].getReturnType() == Attribute.Type.INT ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.LONG)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside sum function - " +
+                    "'weight' should be of type Int or Long but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        weightExecutor = attributeExpressionExecutors[1];
+
+        //expressionExecutors[2] --> relativeError
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside sum function - " +
+                        "'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside sum function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside sum function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        //expressionExecutors[3] --> confidence
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside sum function - " +
+                        "'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside sum function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside sum function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+
+        attributeList.add(new Attribute("sum", Attribute.Type.LONG));
+        attributeList.add(new Attribute("sumLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("sumUpperBound", Attribute.Type.LONG));
+        return () -> new ExtensionState(new CountMinSketch<>(sketchRelativeError, sketchConfidence));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        long approximateSum = 0;
+        long[] confidenceInterval = new long[2];
+
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.countMinSketch.clear();
+                    approximateSum = 0;
+                    confidenceInterval = new long[2];
+                    complexEventPopulater.populateComplexEvent(streamEvent,
+                            new Object[]{approximateSum, confidenceInterval[0], confidenceInterval[1]});
+                    continue;
+                }
+                Object key = keyExecutor.execute(streamEvent);
+                Object weightData = weightExecutor.execute(streamEvent);
+                if (key == null || weightData == null) {
+                    streamEventChunk.remove();
+                    continue;
+                }
+                long weight = ((Number) weightData).longValue();
+//              an event with a negative weight is dropped both when it arrives and when it expires, so that the
+//              rest of the chunk is still processed and the sketch never holds its weight
+                if (weight < 0) {
+                    if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                        String message = "The 2nd parameter inside sum function - 'weight' must be a non negative " +
+                                "value but found " + weight + ", hence the event of the key '" + key + "' is dropped";
+                        if (!negativeWeightWarned) {
+                            LOG.warn(message + ", and the further events with a negative weight are dropped " +
+                                    "without a warning");
+                            negativeWeightWarned = true;
+                        } else if (LOG.isDebugEnabled()) {
+                            LOG.debug(message);
+                        }
+                    }
+                    streamEventChunk.remove();
+                    continue;
+                }
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    approximateSum = state.countMinSketch.insert(key, weight);
+                    confidenceInterval = state.countMinSketch.getConfidenceInterval(approximateSum);
+                } else if (streamEvent.getType().equals(StreamEvent.Type.EXPIRED)) {
+                    approximateSum = state.countMinSketch.remove(key, weight);
+                    confidenceInterval = state.countMinSketch.getConfidenceInterval(approximateSum);
+                }
+
+                Object[] outputData = {approximateSum, confidenceInterval[0], confidenceInterval[1]};
+
+                complexEventPopulater.populateComplexEvent(streamEvent, outputData);
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private CountMinSketch<Object> countMinSketch;
+
+        private ExtensionState(CountMinSketch<Object> countMinSketch) {
+            this.countMinSketch = countMinSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (SumExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("countMinSketch", countMinSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (SumExtension.this) {
+                countMinSketch = (CountMinSketch) state.get("countMinSketch");
+            }
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.superspreader;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects the sources which contact a large number of distinct destinations, using a count-min sketch of
+ * HyperLogLogs which does not keep any state per source.
+ */
+@Extension(
+        name = "superspreader",
+        namespace = "approximate",
+        description = "This extension detects superspreaders, i.e., the sources which contact at least " +
+                "'threshold' distinct destinations, such as the hosts which scan a network. It keeps a grid " +
+                "of small HyperLogLogs indexed like a `count-min sketch` by the source, hence it uses a fixed " +
+                "amount of memory regardless of the number of sources. The number of distinct destinations of " +
+                "a source is estimated from the cells of the source, excluding the expected share of the other " +
+                "sources of the cells. Only the events whose source is a superspreader are emitted. The " +
+                "destinations cannot be removed from the sketch, hence the expired events are dropped without " +
+                "affecting the counts, and the sketch is cleared only by the reset events of a batch window.",
+        parameters = {
+                @Parameter(
+                        name = "source",
+                        description = "The source of the event, e.g. the source IP address.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "destination",
+                        description = "The destination of the event, e.g. the destination IP address.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "threshold",
+                        description = "The minimum number of distinct destinations of a source for its events " +
+                                "to be emitted.",
+                        type = {DataType.INT, DataType.LONG}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error of the HyperLogLog of each cell, expressed as " +
+                                "a value between 0 and 0.26. Lower the value specified, more memory is used by " +
+                                "each cell.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.1"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the number of rows of the grid. Higher the value " +
+                                "specified, lower is the possibility of a source sharing its cells with a " +
+                                "superspreader in all the rows. Note that you cannot specify `1` or `0` as the " +
+                                "value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                ),
+                @Parameter(
+                        name = "width",
+                        description = "The number of cells in each row of the grid, which should be larger than " +
+                                "the number of superspreaders. Higher the value specified, lower is the share of " +
+                                "the other sources in the cells of a source, and more memory is used.",
+                        type = {DataType.INT},
+                        optional = true,
+                        defaultValue = "1024"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "spread",
+                        description = "The approximate number of distinct destinations of the source of the event.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "spreadLowerBound",
+                        description = "The lowest value in the range within which the most accurate number of " +
+                                "distinct destinations of the source is included.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "spreadUpperBound",
+                        description = "The highest value in the range within which the most accurate number of " +
+                                "distinct destinations of the source is included.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream ConnectionStream (sourceIp string, destinationIp string);\n" +
+                                "from ConnectionStream#window.timeBatch(1 min)" +
+                                "#approximate:superspreader(sourceIp, destinationIp, 500)\n" +
+                                "select sourceIp, spread\n" +
+                                "insert into ScannerStream;",
+                        description = "This query emits the connections of the source addresses which connected " +
+                                "to at least 500 distinct destination addresses within the current minute. The " +
+                                "grid has 1024 cells per row and 5 rows, i.e. a default confidence of 0.99, and " +
+                                "each cell is a HyperLogLog with a default relative error of 0.1."
+                )
+        }
+)
+public class SuperspreaderExtension extends StreamProcessor<SuperspreaderExtension.ExtensionState> {
+    private ExpressionExecutor sourceExecutor;
+    private ExpressionExecutor destinationExecutor;
+    private long threshold;
+    private List<Attribute> attributeList = new ArrayList<>(3);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error, confidence and width
+        final double defaultRelativeError = 0.1;
+        final double defaultConfidence = 0.99;
+        final int defaultWidth = 1024;
+
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+        int width = defaultWidth;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 3 || attributeExpressionExecutors.length == 5 ||
+                attributeExpressionExecutors.length == 6)) {
+            throw new SiddhiAppCreationException("3, 5 or 6 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the superspreader function");
+        }
+
+        //expressionExecutors[0] --> source
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside superspreader function - " +
+                    "'source' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        sourceExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> destination
+        if (!(attributeExpressionExecutors[1] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside superspreader function - " +
+                    "'destination' has to be a variable but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        destinationExecutor = attributeExpressionExecutors[1];
+
+        //expressionExecutors[2] --> threshold
+        if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside superspreader function - " +
+                    "'threshold' has to be a constant but found " +
+                    this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.INT ||
+                attributeExpressionExecutors[2].getReturnType() == Attribute.Type.LONG) {
+            threshold = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2]).getValue())
+                    .longValue();
+        } else {
+            throw new SiddhiAppCreationException("The 3rd parameter inside superspreader function - " +
+                    "'threshold' should be of type Integer or Long but found " +
+                    attributeExpressionExecutors[2].getReturnType());
+        }
+        if (threshold <= 0) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside superspreader function - " +
+                    "'threshold' must be a positive value but found " + threshold);
+        }
+
+        //expressionExecutors[3] --> relativeError
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside superspreader function - " +
+                        "'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside superspreader function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+//          a HyperLogLog needs at least 16 buckets, i.e. a relative error of at most 1.04 / sqrt(16)
+            if ((relativeError <= 0) || (relativeError > 0.26)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside superspreader function - " +
+                        "'relative.error' must be in the range of (0, 0.26] but found " + relativeError);
+            }
+        }
+
+        //expressionExecutors[4] --> confidence
+        if (attributeExpressionExecutors.length > 4) {
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside superspreader function - " +
+                        "'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside superspreader function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside superspreader function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        //expressionExecutors[5] --> width
+        if (attributeExpressionExecutors.length > 5) {
+            if (!(attributeExpressionExecutors[5] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 6th parameter inside superspreader function - " +
+                        "'width' has to be a constant but found " +
+                        this.attributeExpressionExecutors[5].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[5].getReturnType() == Attribute.Type.INT) {
+                width = (Integer) ((ConstantExpressionExecutor) attributeExpressionExecutors[5]).getValue();
+            } else {
+                throw new SiddhiAppCreationException("The 6th parameter inside superspreader function - " +
+                        "'width' should be of type Integer but found " +
+                        attributeExpressionExecutors[5].getReturnType());
+            }
+            if (width < 2) {
+                throw new SiddhiAppCreationException("The 6th parameter inside superspreader function - " +
+                        "'width' must be at least 2 but found " + width);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+        final int sketchWidth = width;
+
+        attributeList.add(new Attribute("spread", Attribute.Type.LONG));
+        attributeList.add(new Attribute("spreadLowerBound", Attribute.Type.LONG));
+        attributeList.add(new Attribute("spreadUpperBound", Attribute.Type.LONG));
+        return () -> new ExtensionState(new SuperspreaderSketch<>(sketchRelativeError, sketchConfidence,
+                sketchWidth));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.superspreaderSketch.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0L, 0L, 0L});
+                    continue;
+                }
+                Object source = sourceExecutor.execute(streamEvent);
+                Object destination = destinationExecutor.execute(streamEvent);
+                if (source == null || destination == null ||
+                        !streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    streamEventChunk.remove();
+                    continue;
+                }
+                long spread = state.superspreaderSketch.insert(source, destination);
+                if (spread < threshold) {
+                    streamEventChunk.remove();
+                    continue;
+                }
+                long[] confidenceInterval = state.superspreaderSketch.getConfidenceInterval(spread);
+                complexEventPopulater.populateComplexEvent(streamEvent,
+                        new Object[]{spread, confidenceInterval[0], confidenceInterval[1]});
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private SuperspreaderSketch<Object, Object> superspreaderSketch;
+
+        private ExtensionState(SuperspreaderSketch<Object, Object> superspreaderSketch) {
+            this.superspreaderSketch = superspreaderSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (SuperspreaderExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("superspreaderSketch", superspreaderSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (SuperspreaderExtension.this) {
+                superspreaderSketch = (SuperspreaderSketch<Object, Object>) state.get("superspreaderSketch");
+            }
+        }
+    }
+}
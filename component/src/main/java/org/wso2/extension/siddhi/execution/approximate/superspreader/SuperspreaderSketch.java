@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.superspreader;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.HyperLogLog;
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * A probabilistic data structure to calculate the number of distinct destinations of each source, for an
+ * unbounded number of sources, in a fixed amount of memory.
+ * It is a count min sketch whose cells are small HyperLogLogs. A (source, destination) pair is added to the
+ * cell of the source in each row, hence a cell counts the distinct pairs of all the sources hashed into it.
+ * The pairs of the other sources in a cell are noise, whose expected value is the distinct pairs of the rest
+ * of the row divided among the other cells. The noise is subtracted from each row, and the minimum over the
+ * rows is taken, as in the virtual HyperLogLog which shares registers among the sources.
+ * The referred research paper - Cardinality Estimation for Big Network Data
+ * by Qingjun Xiao, Shigang Chen, Min Chen and Yibei Ling.
+ *
+ * @param <K> is the type of the sources
+ * @param <E> is the type of the destinations
+ */
+public class SuperspreaderSketch<K, E> implements Serializable {
+    private static final long serialVersionUID = 2749157300866273016L;
+
+    private static final double STANDARD_ERROR = 1.04;
+
+    private int depth;
+    private int width;
+    private int lengthOfBucketId;
+    private int noOfBuckets;
+    private double estimationFactor;
+    private double relativeError;
+
+    //  the buckets of the HyperLogLog of cell (row, index) are at ((row * width + index) * noOfBuckets)
+    private byte[] countArray;
+    private double[] harmonicCountSums;
+    private int[] noOfZeroBuckets;
+    private long[] cellCardinalities;
+
+    //  the sum of the cell cardinalities of each row, which is the approximate number of distinct pairs
+    private long[] rowCardinalities;
+
+    //  hash coefficients
+    private ArrayList<Integer> hashCoefficientsA;
+    private ArrayList<Integer> hashCoefficientsB;
+
+    /**
+     * Instantiate the sketch based on the relative error of a cell, a confidence and the number of cells per row
+     *
+     * @param relativeError is the relative error of the HyperLogLog of a cell, in the range (0, 0.26]
+     * @param confidence    is a positive number less than 1, which determines the number of rows
+     * @param width         is the number of cells per row, which should be larger than the number of sources
+     *                      with a large number of destinations
+     */
+    public SuperspreaderSketch(double relativeError, double confidence, int width) {
+        if (!(relativeError > 0 && relativeError <= 0.26) || !(confidence < 1 && confidence > 0)) {
+            throw new IllegalArgumentException("relativeError must be in the range (0, 0.26] and confidence " +
+                    "must be in the range (0, 1)");
+        }
+        if (width < 2) {
+            throw new IllegalArgumentException("width must be at least 2 but found " + width);
+        }
+        this.relativeError = relativeError;
+        this.width = width;
+
+//      depth = ln(1 / (1 - confidence))
+        this.depth = (int) Math.ceil(Math.log(1 / (1 - confidence)));
+
+//      relativeError = STANDARD_ERROR / sqrt(noOfBuckets) = > noOfBuckets = (STANDARD_ERROR / relativeError) ^ 2
+        lengthOfBucketId = Math.max(4,
+                (int) Math.ceil(Math.log(Math.pow(STANDARD_ERROR / relativeError, 2)) / Math.log(2)));
+        noOfBuckets = 1 << lengthOfBucketId;
+        estimationFactor = HyperLogLog.getEstimationFactor(lengthOfBucketId, noOfBuckets);
+
+//      create random hash coefficients
+//      using linear hash functions of the form (a*x+b)
+//      a,b are chosen independently for each hash function.
+        this.hashCoefficientsA = new ArrayList<>(depth);
+        this.hashCoefficientsB = new ArrayList<>(depth);
+        Random random = new Random(123);
+        for (int i = 0; i < depth; i++) {
+            hashCoefficientsA.add(random.nextInt(Integer.MAX_VALUE));
+            hashCoefficientsB.add(random.nextInt(Integer.MAX_VALUE));
+        }
+        clear();
+    }
+
+    /**
+     * Adds a destination of a source to the sketch
+     *
+     * @param source      is the source
+     * @param destination is the destination
+     * @return the approximate number of distinct destinations of the source
+     */
+    public synchronized long insert(K source, E destination) {
+        int sourceHash = MurmurHash.hash(source);
+//      the hash of the pair, seeded by the source so that a destination is distinct for each source
+        int pairHash = MurmurHash.hash(destination, sourceHash);
+        int bucketId = pairHash >>> (Integer.SIZE - lengthOfBucketId);
+        int newLeadingZeroCount = Integer.numberOfLeadingZeros(pairHash << lengthOfBucketId) + 1;
+
+        for (int i = 0; i < depth; i++) {
+            int cell = i * width + getArrayIndex(hashCoefficientsA.get(i) * sourceHash + hashCoefficientsB.get(i));
+            int position = cell * noOfBuckets + bucketId;
+            int currentLeadingZeroCount = countArray[position];
+            if (currentLeadingZeroCount < newLeadingZeroCount) {
+                harmonicCountSums[cell] = harmonicCountSums[cell] - (1.0 / (1L << currentLeadingZeroCount))
+                        + (1.0 / (1L << newLeadingZeroCount));
+                if (currentLeadingZeroCount == 0) {
+                    noOfZeroBuckets[cell]--;
+                }
+                countArray[position] = (byte) newLeadingZeroCount;
+
+                long cellCardinality = HyperLogLog.estimateCardinality(noOfBuckets, estimationFactor,
+                        harmonicCountSums[cell], noOfZeroBuckets[cell]);
+                rowCardinalities[i] += cellCardinality - cellCardinalities[cell];
+                cellCardinalities[cell] = cellCardinality;
+            }
+        }
+        return getCardinality(sourceHash);
+    }
+
+    /**
+     * @param source is the source
+     * @return the approximate number of distinct destinations of the source
+     */
+    public synchronized long getCardinality(K source) {
+        return getCardinality(MurmurHash.hash(source));
+    }
+
+    /**
+     * Calculate the confidence interval of the approximate number of distinct destinations of a source,
+     * which is about twice the standard error of the HyperLogLog of its cell
+     *
+     * @param cardinality is the approximate number of distinct destinations of a source
+     * @return a long array which contains the lower bound and
+     * the upper bound of the confidence interval consecutively
+     */
+    public synchronized long[] getConfidenceInterval(long cardinality) {
+//      the cell of the source holds the pairs of the source and its share of the noise
+        long cellCardinality = cardinality + getExpectedNoise(cardinality);
+        long error = (long) Math.ceil(2 * relativeError * cellCardinality);
+        if (cardinality - error > 0) {
+            return new long[]{cardinality - error, cardinality + error};
+        } else {
+            return new long[]{0, cardinality + error};
+        }
+    }
+
+    /**
+     * Clears all the pairs within the sketch.
+     */
+    public synchronized void clear() {
+        this.countArray = new byte[depth * width * noOfBuckets];
+        this.harmonicCountSums = new double[depth * width];
+        this.noOfZeroBuckets = new int[depth * width];
+        this.cellCardinalities = new long[depth * width];
+        this.rowCardinalities = new long[depth];
+        for (int cell = 0; cell < depth * width; cell++) {
+            harmonicCountSums[cell] = noOfBuckets;
+            noOfZeroBuckets[cell] = noOfBuckets;
+        }
+    }
+
+    /**
+     * Subtract the expected noise from the cell of the source in each row, and take the minimum over the rows
+     * c - (N - c) / (width - 1), where c is the cardinality of the cell and N is the cardinality of the row
+     */
+    private long getCardinality(int sourceHash) {
+        long currentMin = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            int cell = i * width + getArrayIndex(hashCoefficientsA.get(i) * sourceHash + hashCoefficientsB.get(i));
+            long cellCardinality = cellCardinalities[cell];
+            long cardinality = (long) Math.ceil(cellCardinality -
+                    (double) (rowCardinalities[i] - cellCardinality) / (width - 1));
+            currentMin = Math.min(currentMin, cardinality);
+        }
+        return Math.max(currentMin, 0);
+    }
+
+    private long getExpectedNoise(long cardinality) {
+        long rowCardinality = Long.MAX_VALUE;
+        for (long cardinalityOfRow : rowCardinalities) {
+            rowCardinality = Math.min(rowCardinality, cardinalityOfRow);
+        }
+        return Math.max(0, (rowCardinality - cardinality) / (width - 1));
+    }
+
+    /**
+     * Compute the cell position in a row for a given hash value, from the high bits of the hash value since
+     * the low bits of (a*x+b) depend only on the low bits of x, which would map the sources colliding in a
+     * row of a power of 2 width to the same cells in all the rows
+     *
+     * @param hash is the integer hash value generated from some hash function
+     * @return an integer value in the range [0,width)
+     */
+    private int getArrayIndex(int hash) {
+        return (int) (((hash & 0xFFFFFFFFL) * width) >>> Integer.SIZE);
+    }
+}
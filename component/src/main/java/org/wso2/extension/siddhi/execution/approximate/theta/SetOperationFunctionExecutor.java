@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.theta;
+
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.function.FunctionExecutor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.SketchRegistry;
+
+/**
+ * Base class of the functions which calculate the distinctCount of a set operation between two named
+ * Theta Sketches populated by approximate:thetaSketch.
+ */
+abstract class SetOperationFunctionExecutor extends FunctionExecutor<State> {
+    private String sketchNameA;
+    private String sketchNameB;
+    private SiddhiAppContext siddhiAppContext;
+
+    @Override
+    protected StateFactory<State> init(ExpressionExecutor[] attributeExpressionExecutors, ConfigReader configReader,
+                                       SiddhiQueryContext siddhiQueryContext) {
+//       validate number of attributes
+        if (attributeExpressionExecutors.length != 2) {
+            throw new SiddhiAppCreationException("2 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the " + getFunctionName() +
+                    " function");
+        }
+
+        //expressionExecutors[0] --> sketchNameA
+        sketchNameA = getSketchName(attributeExpressionExecutors[0], "1st");
+
+        //expressionExecutors[1] --> sketchNameB
+        sketchNameB = getSketchName(attributeExpressionExecutors[1], "2nd");
+
+        siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+
+//      the function does not hold any state, the sketches are owned by the approximate:thetaSketch extensions
+        return null;
+    }
+
+    private String getSketchName(ExpressionExecutor expressionExecutor, String position) {
+        if (!(expressionExecutor instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The " + position + " parameter inside " + getFunctionName() +
+                    " function - 'sketch.name' has to be a constant but found " +
+                    expressionExecutor.getClass().getCanonicalName());
+        }
+        if (expressionExecutor.getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The " + position + " parameter inside " + getFunctionName() +
+                    " function - 'sketch.name' should be of type String but found " +
+                    expressionExecutor.getReturnType());
+        }
+        return (String) ((ConstantExpressionExecutor) expressionExecutor).getValue();
+    }
+
+    @Override
+    protected Object execute(Object[] data, State state) {
+//      the sketches are looked up on each call, as they may be registered after this function is initialized
+        return getCardinality(getSketch(sketchNameA), getSketch(sketchNameB));
+    }
+
+    @Override
+    protected Object execute(Object data, State state) {
+//      the function always has two parameters
+        return null;
+    }
+
+    @Override
+    public Attribute.Type getReturnType() {
+        return Attribute.Type.LONG;
+    }
+
+    private ThetaSketch<Object> getSketch(String sketchName) {
+        ThetaSketch<Object> thetaSketch = SketchRegistry.get(siddhiAppContext, sketchName, ThetaSketch.class);
+        if (thetaSketch == null) {
+            throw new SiddhiAppRuntimeException("No approximate:thetaSketch named '" + sketchName +
+                    "' is defined in the Siddhi app '" + siddhiAppContext.getName() + "'");
+        }
+        return thetaSketch;
+    }
+
+    /**
+     * @return the name of the function used in the error messages
+     */
+    protected abstract String getFunctionName();
+
+    /**
+     * Calculate the approximate distinctCount of the set operation
+     *
+     * @param sketchA is the sketch given as the 1st parameter
+     * @param sketchB is the sketch given as the 2nd parameter
+     * @return the approximate distinctCount
+     */
+    protected abstract long getCardinality(ThetaSketch<Object> sketchA, ThetaSketch<Object> sketchB);
+}
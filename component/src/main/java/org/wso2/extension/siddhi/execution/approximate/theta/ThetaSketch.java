@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.theta;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A probabilistic data structure to calculate the distinctCount of a set, which can be combined with other
+ * sketches to calculate the distinctCount of their union, intersection and difference.
+ * It keeps the hash values of the items which are smaller than a threshold theta, and theta is lowered
+ * whenever more than (2 * nominalEntries) hash values are kept, so that only the nominalEntries smallest
+ * hash values remain. The distinctCount is (number of kept hash values / theta).
+ * The referred research paper - Theta Sketch Framework
+ * by Anirban Dasgupta, Kevin J. Lang, Lee Rhodes and Justin Thaler.
+ * https://arxiv.org/pdf/1508.05891.pdf
+ *
+ * @param <E> is the type of objects in the set
+ */
+public class ThetaSketch<E> implements Serializable {
+    private static final long serialVersionUID = 6015282016585328418L;
+
+    private static final int SECOND_HASH_SEED = 0x1b873593;
+    private static final long EMPTY = 0;
+    private static final Object TIE_LOCK = new Object();
+
+    private int nominalEntries;
+
+    //  hash values are 63 bit positive values, theta = Long.MAX_VALUE means all the hash values are kept
+    private long theta;
+
+    //  open addressing hash set of the kept hash values
+    private long[] hashTable;
+    private int noOfEntries;
+
+    /**
+     * Create a new ThetaSketch which keeps the given number of hash values
+     *
+     * @param nominalEntries is the number of hash values kept, which gives a relative error of
+     *                       about 1 / sqrt(nominalEntries)
+     */
+    public ThetaSketch(int nominalEntries) {
+        if (nominalEntries < 16) {
+            throw new IllegalArgumentException("nominalEntries must be at least 16 but found " + nominalEntries);
+        }
+        this.nominalEntries = nominalEntries;
+        clear();
+    }
+
+    /**
+     * Adds a new item to the sketch
+     *
+     * @param item is the item to be inserted
+     */
+    public synchronized void addItem(E item) {
+        long hash = getHashValue(item);
+        if (hash >= theta) {
+            return;
+        }
+        int slot = getSlot(hash, hashTable.length);
+        while (hashTable[slot] != EMPTY) {
+            if (hashTable[slot] == hash) {
+                return;
+            }
+            slot = (slot + 1) & (hashTable.length - 1);
+        }
+        hashTable[slot] = hash;
+        noOfEntries++;
+        if (noOfEntries > 2 * nominalEntries) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @return the approximate number of distinct items added to the sketch
+     */
+    public synchronized long getCardinality() {
+        return estimate(noOfEntries, theta);
+    }
+
+    /**
+     * Clears all the items of the sketch.
+     */
+    public synchronized void clear() {
+        theta = Long.MAX_VALUE;
+//      the table holds at most (2 * nominalEntries + 1) hash values with a load factor below 0.5
+        hashTable = new long[Integer.highestOneBit(2 * nominalEntries) << 2];
+        noOfEntries = 0;
+    }
+
+    /**
+     * Replace the content of this sketch with the content of a sketch of the same size, so that the
+     * references held to this sketch see the restored content.
+     *
+     * @param sketch is the sketch from which the content is copied
+     */
+    public synchronized void restore(ThetaSketch<E> sketch) {
+        if (sketch.nominalEntries != nominalEntries) {
+            throw new IllegalArgumentException("a theta sketch of " + sketch.nominalEntries +
+                    " nominal entries cannot be restored into a theta sketch of " + nominalEntries +
+                    " nominal entries");
+        }
+        theta = sketch.theta;
+        hashTable = sketch.hashTable.clone();
+        noOfEntries = sketch.noOfEntries;
+    }
+
+    /**
+     * Calculate the approximate number of distinct items which are in either of the sketches
+     *
+     * @param sketchA is a sketch
+     * @param sketchB is the other sketch
+     * @param <E>     is the type of objects in the sets
+     * @return the approximate distinctCount of the union
+     */
+    public static <E> long getUnionCardinality(ThetaSketch<E> sketchA, ThetaSketch<E> sketchB) {
+        return combine(sketchA, sketchB, true, true);
+    }
+
+    /**
+     * Calculate the approximate number of distinct items which are in both of the sketches
+     *
+     * @param sketchA is a sketch
+     * @param sketchB is the other sketch
+     * @param <E>     is the type of objects in the sets
+     * @return the approximate distinctCount of the intersection
+     */
+    public static <E> long getIntersectionCardinality(ThetaSketch<E> sketchA, ThetaSketch<E> sketchB) {
+        return combine(sketchA, sketchB, true, false);
+    }
+
+    /**
+     * Calculate the approximate number of distinct items which are in the first sketch but not in the second
+     *
+     * @param sketchA is the sketch whose items are counted
+     * @param sketchB is the sketch whose items are excluded
+     * @param <E>     is the type of objects in the sets
+     * @return the approximate distinctCount of the difference
+     */
+    public static <E> long getDifferenceCardinality(ThetaSketch<E> sketchA, ThetaSketch<E> sketchB) {
+        return combine(sketchA, sketchB, false, false);
+    }
+
+    /**
+     * Count the hash values of sketchA below the common theta, based on whether they are in sketchB,
+     * and the hash values of sketchB below the common theta which are not in sketchA if it is a union
+     */
+    private static <E> long combine(ThetaSketch<E> sketchA, ThetaSketch<E> sketchB, boolean countCommon,
+                                    boolean countOthers) {
+//      lock the sketches in a consistent order to avoid deadlocks between concurrent calls
+        int identityHashA = System.identityHashCode(sketchA);
+        int identityHashB = System.identityHashCode(sketchB);
+        if (identityHashA == identityHashB && sketchA != sketchB) {
+            synchronized (TIE_LOCK) {
+                return combineInOrder(sketchA, sketchB, sketchA, sketchB, countCommon, countOthers);
+            }
+        }
+        return identityHashA <= identityHashB ?
+                combineInOrder(sketchA, sketchB, sketchA, sketchB, countCommon, countOthers) :
+                combineInOrder(sketchA, sketchB, sketchB, sketchA, countCommon, countOthers);
+    }
+
+    private static <E> long combineInOrder(ThetaSketch<E> sketchA, ThetaSketch<E> sketchB,
+                                           ThetaSketch<E> firstLock, ThetaSketch<E> secondLock,
+                                           boolean countCommon, boolean countOthers) {
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                long commonTheta = Math.min(sketchA.theta, sketchB.theta);
+                long count = 0;
+                for (long hash : sketchA.hashTable) {
+                    if (hash != EMPTY && hash < commonTheta) {
+                        boolean common = sketchB.contains(hash);
+                        if (common == countCommon || countOthers) {
+                            count++;
+                        }
+                    }
+                }
+                if (countOthers) {
+                    for (long hash : sketchB.hashTable) {
+                        if (hash != EMPTY && hash < commonTheta && !sketchA.contains(hash)) {
+                            count++;
+                        }
+                    }
+                }
+                return estimate(count, commonTheta);
+            }
+        }
+    }
+
+    private static long estimate(long count, long theta) {
+        if (theta == Long.MAX_VALUE) {
+            return count;
+        }
+        return Math.round(count * ((double) Long.MAX_VALUE / theta));
+    }
+
+    private boolean contains(long hash) {
+        int slot = getSlot(hash, hashTable.length);
+        while (hashTable[slot] != EMPTY) {
+            if (hashTable[slot] == hash) {
+                return true;
+            }
+            slot = (slot + 1) & (hashTable.length - 1);
+        }
+        return false;
+    }
+
+    /**
+     * Lower theta to the (nominalEntries + 1)th smallest hash value, and keep only the smaller hash values
+     */
+    private void rebuild() {
+        long[] hashes = new long[noOfEntries];
+        int i = 0;
+        for (long hash : hashTable) {
+            if (hash != EMPTY) {
+                hashes[i++] = hash;
+            }
+        }
+        Arrays.sort(hashes);
+        theta = hashes[nominalEntries];
+        Arrays.fill(hashTable, EMPTY);
+        for (i = 0; i < nominalEntries; i++) {
+            int slot = getSlot(hashes[i], hashTable.length);
+            while (hashTable[slot] != EMPTY) {
+                slot = (slot + 1) & (hashTable.length - 1);
+            }
+            hashTable[slot] = hashes[i];
+        }
+        noOfEntries = nominalEntries;
+    }
+
+    private static int getSlot(long hash, int tableLength) {
+//      the low bits of the hash value are uniformly distributed
+        return (int) hash & (tableLength - 1);
+    }
+
+    /**
+     * Compute a 63 bit positive hash value, which is never {@code EMPTY}, for a given item
+     */
+    private long getHashValue(E item) {
+        long hash = (((long) MurmurHash.hash(item) << 32) | (MurmurHash.hash(item, SECOND_HASH_SEED) & 0xFFFFFFFFL))
+                >>> 1;
+        return hash == EMPTY ? 1 : hash;
+    }
+}
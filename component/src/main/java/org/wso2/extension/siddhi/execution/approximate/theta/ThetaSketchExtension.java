@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.theta;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+import org.wso2.extension.siddhi.execution.approximate.util.SketchRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Populates a named Theta Sketch, which can be combined with other theta sketches using
+ * approximate:intersectionCount, approximate:differenceCount and approximate:unionCount.
+ */
+@Extension(
+        name = "thetaSketch",
+        namespace = "approximate",
+        description = "This extension populates a named `theta sketch` with the values of a stream, so that the " +
+                "number of distinct values in the intersection, difference or union of two such sketches can be " +
+                "calculated from any query of the Siddhi app using the `approximate:intersectionCount`, " +
+                "`approximate:differenceCount` and `approximate:unionCount` functions. This replaces the joins " +
+                "between the streams, and the sketch uses a fixed amount of memory regardless of the number of " +
+                "distinct values. The values of the expired events are not removed from the sketch, hence use it " +
+                "with a batch window such as `window.timeBatch` to restart the sketch periodically. The sketch is " +
+                "shared by the whole Siddhi app, including all the partitions of the query.",
+        parameters = {
+                @Parameter(
+                        name = "sketch.name",
+                        description = "The name of the sketch, which is used to refer to it from the set " +
+                                "operation functions. It should be unique within the Siddhi app.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "value",
+                        description = "The value which is added to the sketch.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "nominal.entries",
+                        description = "The number of hash values kept by the sketch. The relative error of the " +
+                                "distinct counts is about 1 / sqrt(nominal.entries) of the union of the two " +
+                                "sketches, and the sketch uses at most about 64 bytes per nominal entry. " +
+                                "It should be at least 16, and the sketches which are combined should have the " +
+                                "same number of nominal entries for the best accuracy.",
+                        type = {DataType.INT, DataType.LONG},
+                        optional = true,
+                        defaultValue = "4096"
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream WebVisitStream (userId string);\n" +
+                                "define stream MobileVisitStream (userId string);\n" +
+                                "define stream TriggerStream (triggerId string);\n" +
+                                "from WebVisitStream#window.timeBatch(1 hour)" +
+                                "#approximate:thetaSketch('web', userId)\n" +
+                                "insert into WebLogStream;\n" +
+                                "from MobileVisitStream#window.timeBatch(1 hour)" +
+                                "#approximate:thetaSketch('mobile', userId)\n" +
+                                "insert into MobileLogStream;\n" +
+                                "from TriggerStream\n" +
+                                "select approximate:intersectionCount('web', 'mobile') as usersOnBoth, " +
+                                "approximate:differenceCount('web', 'mobile') as webOnlyUsers\n" +
+                                "insert into OutputStream;",
+                        description = "The first two queries keep the ids of the users who visited through the " +
+                                "web and through the mobile app during the current hour in the sketches named " +
+                                "'web' and 'mobile'. The third query calculates the approximate number of users " +
+                                "who visited through both, and through the web but not the mobile app."
+                )
+        }
+)
+public class ThetaSketchExtension extends StreamProcessor<ThetaSketchExtension.ExtensionState> {
+    private ExpressionExecutor valueExecutor;
+    private String sketchName;
+    private SiddhiAppContext siddhiAppContext;
+    private ThetaSketch<Object> thetaSketch;
+    private List<Attribute> attributeList = new ArrayList<>(0);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default value for nominal entries
+        final long defaultNominalEntries = 4096;
+
+        long nominalEntries = defaultNominalEntries;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 2 || attributeExpressionExecutors.length == 3)) {
+            throw new SiddhiAppCreationException("2 or 3 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the thetaSketch function");
+        }
+
+        //expressionExecutors[0] --> sketchName
+        if (!(attributeExpressionExecutors[0] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside thetaSketch function - " +
+                    "'sketch.name' has to be a constant but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[0].getReturnType() != Attribute.Type.STRING) {
+            throw new SiddhiAppCreationException("The 1st parameter inside thetaSketch function - " +
+                    "'sketch.name' should be of type String but found " +
+                    attributeExpressionExecutors[0].getReturnType());
+        }
+        sketchName = (String) ((ConstantExpressionExecutor) attributeExpressionExecutors[0]).getValue();
+
+        //expressionExecutors[1] --> value
+        if (!(attributeExpressionExecutors[1] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside thetaSketch function - " +
+                    "'value' has to be a variable but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        valueExecutor = attributeExpressionExecutors[1];
+
+        //expressionExecutors[2] --> nominalEntries
+        if (attributeExpressionExecutors.length > 2) {
+            if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside thetaSketch function - " +
+                        "'nominal.entries' has to be a constant but found " +
+                        this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.INT ||
+                    attributeExpressionExecutors[2].getReturnType() == Attribute.Type.LONG) {
+                nominalEntries = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2])
+                        .getValue()).longValue();
+            } else {
+                throw new SiddhiAppCreationException("The 3rd parameter inside thetaSketch function - " +
+                        "'nominal.entries' should be of type Int or Long but found " +
+                        attributeExpressionExecutors[2].getReturnType());
+            }
+            if (nominalEntries < 16 || nominalEntries > (1 << 26)) {
+                throw new SiddhiAppCreationException("The 3rd parameter inside thetaSketch function - " +
+                        "'nominal.entries' must be in the range of [16, " + (1 << 26) + "] but found " +
+                        nominalEntries);
+            }
+        }
+
+        thetaSketch = new ThetaSketch<>((int) nominalEntries);
+        siddhiAppContext = siddhiQueryContext.getSiddhiAppContext();
+        SketchRegistry.declare(siddhiAppContext, sketchName);
+
+        return () -> new ExtensionState(thetaSketch);
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.thetaSketch.clear();
+                    continue;
+                }
+//              the values of the expired events cannot be removed from a theta sketch
+                if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    Object newData = valueExecutor.execute(streamEvent);
+                    if (newData != null) {
+                        state.thetaSketch.addItem(newData);
+                    }
+                }
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() {
+        SketchRegistry.register(siddhiAppContext, sketchName, thetaSketch);
+    }
+
+    @Override
+    public void stop() {
+        SketchRegistry.unregister(siddhiAppContext, sketchName);
+    }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private final ThetaSketch<Object> thetaSketch;
+
+        private ExtensionState(ThetaSketch<Object> thetaSketch) {
+            this.thetaSketch = thetaSketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (ThetaSketchExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("thetaSketch", thetaSketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (ThetaSketchExtension.this) {
+//              the sketch is shared with the set operation functions, hence it is restored in place
+                thetaSketch.restore((ThetaSketch<Object>) state.get("thetaSketch"));
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.theta;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+
+/**
+ * Calculates the distinctCount of the union of two named Theta Sketches.
+ */
+@Extension(
+        name = "unionCount",
+        namespace = "approximate",
+        description = "This function calculates the approximate number of distinct values which are in either " +
+                "of the `theta sketches` of the given names, which are populated by the " +
+                "`approximate:thetaSketch` extension in the same Siddhi app.",
+        parameters = {
+                @Parameter(
+                        name = "sketch.name",
+                        description = "The name of a sketch given in the `approximate:thetaSketch` extension.",
+                        type = {DataType.STRING}
+                ),
+                @Parameter(
+                        name = "other.sketch.name",
+                        description = "The name of the other sketch given in the `approximate:thetaSketch` " +
+                                "extension.",
+                        type = {DataType.STRING}
+                )
+        },
+        returnAttributes = @ReturnAttribute(
+                description = "The approximate number of distinct values which are in either of the sketches.",
+                type = {DataType.LONG}
+        ),
+        examples = {
+                @Example(
+                        syntax = "define stream WebVisitStream (userId string);\n" +
+                                "define stream MobileVisitStream (userId string);\n" +
+                                "define stream TriggerStream (triggerId string);\n" +
+                                "from WebVisitStream#approximate:thetaSketch('web', userId)\n" +
+                                "insert into WebLogStream;\n" +
+                                "from MobileVisitStream#approximate:thetaSketch('mobile', userId)\n" +
+                                "insert into MobileLogStream;\n" +
+                                "from TriggerStream\n" +
+                                "select approximate:unionCount('web', 'mobile') as totalUsers\n" +
+                                "insert into OutputStream;",
+                        description = "The third query calculates the approximate number of users who visited " +
+                                "through either the web or the mobile app."
+                )
+        }
+)
+public class UnionCountExtension extends SetOperationFunctionExecutor {
+
+    @Override
+    protected String getFunctionName() {
+        return "unionCount";
+    }
+
+    @Override
+    protected long getCardinality(ThetaSketch<Object> sketchA, ThetaSketch<Object> sketchB) {
+        return ThetaSketch.getUnionCardinality(sketchA, sketchB);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.trending;
+
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.MurmurHash;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A probabilistic data structure to detect the items whose counts changed the most between two consecutive
+ * time panes.
+ * It keeps a k-ary sketch of the counts of the current pane and of the previous pane, with the same hash
+ * functions. A k-ary sketch is a count min sketch whose estimate of a row is unbiased, as the expected share
+ * of the other items, (sum - v) / (width - 1), is subtracted from the cell value v of the item, and the median
+ * over the rows is taken. Since the sketches are linear, the change of an item is estimated from the difference
+ * of the cells of the two panes.
+ * The referred research paper - Sketch-based Change Detection: Methods, Evaluation, and Applications
+ * by Balachander Krishnamurthy, Subhabrata Sen, Yin Zhang and Yan Chen.
+ * http://conferences.sigcomm.org/imc/2003/papers/p234-krishnamurthy.pdf
+ *
+ * @param <E> is the type of data to be counted
+ */
+public class KarySketch<E> implements Serializable {
+    private static final long serialVersionUID = -1873069587442513640L;
+
+    private int depth;
+    private int width;
+    private long paneLength;
+    private long currentPane = Long.MIN_VALUE;
+
+    //  the counts of the current and the previous panes, the arrays are swapped when a new pane starts
+    private long[][] currentCountArray;
+    private long[][] previousCountArray;
+    private long currentTotal;
+    private long previousTotal;
+
+    //  hash coefficients
+    private ArrayList<Integer> hashCoefficientsA;
+    private ArrayList<Integer> hashCoefficientsB;
+
+    //  Error factor of approximation
+    private double relativeError;
+
+    /**
+     * Instantiate the k-ary sketch based on a given relative error, confidence and pane length
+     *
+     * @param relativeError is a positive number less than 1 (e.g. 0.01)
+     * @param confidence    is a positive number less than 1 (e.g. 0.01)
+     *                      which is the probability of answers being within the relative error
+     * @param paneLength    is the length of a pane in milliseconds
+     */
+    public KarySketch(double relativeError, double confidence, long paneLength) {
+        if (!(relativeError < 1 && relativeError > 0) || !(confidence < 1 && confidence > 0)) {
+            throw new IllegalArgumentException("confidence and relativeError must be values in the range (0,1)");
+        }
+        if (paneLength <= 0) {
+            throw new IllegalArgumentException("paneLength must be positive but found " + paneLength);
+        }
+        this.relativeError = relativeError;
+        this.paneLength = paneLength;
+
+//      depth = ln(1 / (1 - confidence))
+        this.depth = (int) Math.ceil(Math.log(1 / (1 - confidence)));
+//      width = e / relativeError
+        this.width = Math.max(2, (int) Math.ceil(Math.E / relativeError));
+
+        this.currentCountArray = new long[depth][width];
+        this.previousCountArray = new long[depth][width];
+
+//      create random hash coefficients
+//      using linear hash functions of the form (a*x+b)
+//      a,b are chosen independently for each hash function.
+        this.hashCoefficientsA = new ArrayList<>(depth);
+        this.hashCoefficientsB = new ArrayList<>(depth);
+        Random random = new Random(123);
+        for (int i = 0; i < depth; i++) {
+            hashCoefficientsA.add(random.nextInt(Integer.MAX_VALUE));
+            hashCoefficientsB.add(random.nextInt(Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Compute the cell position in a row of the count arrays for a given hash value
+     *
+     * @param hash is the integer hash value generated from some hash function
+     * @return an integer value in the range [0,width)
+     */
+    private int getArrayIndex(int hash) {
+        return Math.abs(hash % width);
+    }
+
+    /**
+     * Compute a set of different integer hash values for a given item
+     *
+     * @param item is the object for which the hash values are calculated
+     * @return an int array(of size {@code depth}) of hash values
+     */
+    private int[] getHashValues(E item) {
+        int[] hashValues = new int[depth];
+        int hash = MurmurHash.hash(item);
+        for (int i = 0; i < depth; i++) {
+            hashValues[i] = hashCoefficientsA.get(i) * hash + hashCoefficientsB.get(i);
+        }
+        return hashValues;
+    }
+
+    /**
+     * Adds an item which arrived at the given time to the pane of the time, starting a new pane if needed.
+     * An item which arrives out of order is counted in the current pane.
+     *
+     * @param item      is the item to be inserted
+     * @param timestamp is the arrival time of the item in milliseconds
+     * @return a long array which contains the approximate count of the item in the current pane, its
+     * approximate count in the previous pane and the approximate change of its count consecutively
+     */
+    public synchronized long[] insert(E item, long timestamp) {
+        advancePane(timestamp);
+        currentTotal++;
+
+        int[] hashValues = getHashValues(item);
+        long[] currentEstimates = new long[depth];
+        long[] previousEstimates = new long[depth];
+        long[] changeEstimates = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            int index = getArrayIndex(hashValues[i]);
+            currentCountArray[i][index]++;
+            long currentCount = currentCountArray[i][index];
+            long previousCount = previousCountArray[i][index];
+            currentEstimates[i] = estimate(currentCount, currentTotal);
+            previousEstimates[i] = estimate(previousCount, previousTotal);
+            changeEstimates[i] = estimate(currentCount - previousCount, currentTotal - previousTotal);
+        }
+        return new long[]{Math.max(0, median(currentEstimates)), Math.max(0, median(previousEstimates)),
+                median(changeEstimates)};
+    }
+
+    /**
+     * Calculate the error of the approximate change of a count, which is
+     * (totalNoOfItemsOfBothPanes * relativeError)
+     *
+     * @return the error of the approximate change
+     */
+    public synchronized long getChangeError() {
+        return (long) Math.ceil((currentTotal + previousTotal) * relativeError);
+    }
+
+    /**
+     * Clears the counts of both the panes.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < depth; i++) {
+            Arrays.fill(currentCountArray[i], 0);
+            Arrays.fill(previousCountArray[i], 0);
+        }
+        currentTotal = 0;
+        previousTotal = 0;
+        currentPane = Long.MIN_VALUE;
+    }
+
+    /**
+     * Make the current pane the previous pane when the next pane starts, and clear both the panes
+     * when a whole pane passed without any items
+     */
+    private void advancePane(long timestamp) {
+        long pane = Math.floorDiv(timestamp, paneLength);
+        if (pane <= currentPane) {
+            return;
+        }
+        if (currentPane != Long.MIN_VALUE && pane == currentPane + 1) {
+            long[][] countArray = previousCountArray;
+            previousCountArray = currentCountArray;
+            previousTotal = currentTotal;
+            currentCountArray = countArray;
+        } else {
+            for (int i = 0; i < depth; i++) {
+                Arrays.fill(previousCountArray[i], 0);
+            }
+            previousTotal = 0;
+        }
+        for (int i = 0; i < depth; i++) {
+            Arrays.fill(currentCountArray[i], 0);
+        }
+        currentTotal = 0;
+        currentPane = pane;
+    }
+
+    /**
+     * Estimate the count of an item from a row, excluding the expected share of the other items of the row
+     * (v - sum / width) / (1 - 1 / width)
+     */
+    private long estimate(long cellValue, long sum) {
+        return Math.round((cellValue - (double) sum / width) / (1 - 1.0 / width));
+    }
+
+    private static long median(long[] estimates) {
+        Arrays.sort(estimates);
+        int middle = estimates.length / 2;
+        if (estimates.length % 2 == 0) {
+            return (estimates[middle - 1] + estimates[middle]) / 2;
+        }
+        return estimates[middle];
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.trending;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.ReturnAttribute;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.MetaStreamEvent;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.event.stream.holder.StreamEventClonerHolder;
+import io.siddhi.core.event.stream.populater.ComplexEventPopulater;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.executor.ConstantExpressionExecutor;
+import io.siddhi.core.executor.ExpressionExecutor;
+import io.siddhi.core.executor.VariableExpressionExecutor;
+import io.siddhi.core.query.processor.ProcessingMode;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.query.processor.stream.StreamProcessor;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.query.api.definition.AbstractDefinition;
+import io.siddhi.query.api.definition.Attribute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects the keys whose count changed the most between the current and the previous time panes, using
+ * k-ary sketches of the two panes.
+ */
+@Extension(
+        name = "trending",
+        namespace = "approximate",
+        description = "This extension detects heavy changes, i.e., the keys whose number of events in the current " +
+                "time pane differs from their number of events in the previous time pane by at least 'threshold'. " +
+                "The time is divided into panes of 'interval' milliseconds based on the event timestamps, and " +
+                "the counts of the current and the previous panes are kept in `k-ary sketches`, which use a fixed " +
+                "amount of memory regardless of the number of keys. An event is emitted with the counts of its " +
+                "key when the change of the count of its key reaches the threshold, and the other events are " +
+                "dropped. The extension does not need a window, hence the expired events are dropped as well.",
+        parameters = {
+                @Parameter(
+                        name = "key",
+                        description = "The key whose count is compared between the panes.",
+                        type = {DataType.INT, DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.STRING,
+                                DataType.BOOL, DataType.TIME, DataType.OBJECT}
+                ),
+                @Parameter(
+                        name = "interval",
+                        description = "The length of a time pane in milliseconds.",
+                        type = {DataType.INT, DataType.LONG, DataType.TIME}
+                ),
+                @Parameter(
+                        name = "threshold",
+                        description = "The minimum absolute change of the count of a key between the previous " +
+                                "pane and the current pane for its events to be emitted.",
+                        type = {DataType.INT, DataType.LONG}
+                ),
+                @Parameter(
+                        name = "relative.error",
+                        description = "This is the relative error to be allowed for the counts and the changes, " +
+                                "expressed as a fraction of the number of events of both the panes. Lower the " +
+                                "value specified, more memory is used by the sketches. Note that you cannot " +
+                                "specify `1` or `0` as the value for this parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.01"
+                ),
+                @Parameter(
+                        name = "confidence",
+                        description = "This value determines the rate by which the counts can deviate from " +
+                                "the actual counts. Higher the value specified, higher is the possibility of " +
+                                "the amount of error in the counts being no greater than the relative error " +
+                                "specified. Note that you cannot specify `1` or `0` as the value for this " +
+                                "parameter.",
+                        type = {DataType.DOUBLE, DataType.FLOAT},
+                        optional = true,
+                        defaultValue = "0.99"
+                )
+        },
+        returnAttributes = {
+                @ReturnAttribute(
+                        name = "currentCount",
+                        description = "The approximate number of events of the key in the current pane.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "previousCount",
+                        description = "The approximate number of events of the key in the previous pane.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "change",
+                        description = "The approximate change of the number of events of the key, i.e. " +
+                                "currentCount - previousCount, which is negative when the key is declining.",
+                        type = {DataType.LONG}
+                ),
+                @ReturnAttribute(
+                        name = "changeError",
+                        description = "The maximum error of the approximate change, based on the number of " +
+                                "events of both the panes.",
+                        type = {DataType.LONG}
+                )
+        },
+        examples = {
+                @Example(
+                        syntax = "define stream SearchStream (term string);\n" +
+                                "from SearchStream#approximate:trending(term, 1 min, 100)\n" +
+                                "select term, currentCount, previousCount, change\n" +
+                                "insert into TrendingStream;",
+                        description = "This query emits the search terms which were searched at least 100 " +
+                                "times more, or less, in the current minute than in the previous minute. The " +
+                                "counts are calculated with a default relative error of 0.01 and a default " +
+                                "confidence of 0.99."
+                )
+        }
+)
+public class TrendingExtension extends StreamProcessor<TrendingExtension.ExtensionState> {
+    private ExpressionExecutor keyExecutor;
+    private long threshold;
+    private List<Attribute> attributeList = new ArrayList<>(4);
+
+    @Override
+    protected StateFactory<ExtensionState> init(MetaStreamEvent metaStreamEvent, AbstractDefinition inputDefinition,
+                                                ExpressionExecutor[] attributeExpressionExecutors,
+                                                ConfigReader configReader,
+                                                StreamEventClonerHolder streamEventClonerHolder,
+                                                boolean outputExpectsExpiredEvents, boolean findToBeExecuted,
+                                                SiddhiQueryContext siddhiQueryContext) {
+//      default values for relative error and confidence
+        final double defaultRelativeError = 0.01;
+        final double defaultConfidence = 0.99;
+
+        long interval;
+        double relativeError = defaultRelativeError;
+        double confidence = defaultConfidence;
+
+//       validate number of attributes
+        if (!(attributeExpressionExecutors.length == 3 || attributeExpressionExecutors.length == 5)) {
+            throw new SiddhiAppCreationException("3 or 5 attributes are expected but " +
+                    attributeExpressionExecutors.length + " attributes are found inside the trending function");
+        }
+
+        //expressionExecutors[0] --> key
+        if (!(attributeExpressionExecutors[0] instanceof VariableExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 1st parameter inside trending function - " +
+                    "'key' has to be a variable but found " +
+                    this.attributeExpressionExecutors[0].getClass().getCanonicalName());
+        }
+        keyExecutor = attributeExpressionExecutors[0];
+
+        //expressionExecutors[1] --> interval
+        if (!(attributeExpressionExecutors[1] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside trending function - " +
+                    "'interval' has to be a constant but found " +
+                    this.attributeExpressionExecutors[1].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[1].getReturnType() == Attribute.Type.INT ||
+                attributeExpressionExecutors[1].getReturnType() == Attribute.Type.LONG) {
+            interval = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[1]).getValue())
+                    .longValue();
+        } else {
+            throw new SiddhiAppCreationException("The 2nd parameter inside trending function - " +
+                    "'interval' should be of type Integer, Long or Time but found " +
+                    attributeExpressionExecutors[1].getReturnType());
+        }
+        if (interval <= 0) {
+            throw new SiddhiAppCreationException("The 2nd parameter inside trending function - " +
+                    "'interval' must be a positive value but found " + interval);
+        }
+
+        //expressionExecutors[2] --> threshold
+        if (!(attributeExpressionExecutors[2] instanceof ConstantExpressionExecutor)) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside trending function - " +
+                    "'threshold' has to be a constant but found " +
+                    this.attributeExpressionExecutors[2].getClass().getCanonicalName());
+        }
+        if (attributeExpressionExecutors[2].getReturnType() == Attribute.Type.INT ||
+                attributeExpressionExecutors[2].getReturnType() == Attribute.Type.LONG) {
+            threshold = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[2]).getValue())
+                    .longValue();
+        } else {
+            throw new SiddhiAppCreationException("The 3rd parameter inside trending function - " +
+                    "'threshold' should be of type Integer or Long but found " +
+                    attributeExpressionExecutors[2].getReturnType());
+        }
+        if (threshold <= 0) {
+            throw new SiddhiAppCreationException("The 3rd parameter inside trending function - " +
+                    "'threshold' must be a positive value but found " + threshold);
+        }
+
+        //expressionExecutors[3] --> relativeError
+        if (attributeExpressionExecutors.length > 3) {
+            if (!(attributeExpressionExecutors[3] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside trending function - " +
+                        "'relative.error' has to be a constant but found " +
+                        this.attributeExpressionExecutors[3].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[3].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[3].getReturnType() == Attribute.Type.FLOAT) {
+                relativeError = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[3])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 4th parameter inside trending function - " +
+                        "'relative.error' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[3].getReturnType());
+            }
+            if ((relativeError <= 0) || (relativeError >= 1)) {
+                throw new SiddhiAppCreationException("The 4th parameter inside trending function - " +
+                        "'relative.error' must be in the range of (0, 1) but found " + relativeError);
+            }
+        }
+
+        //expressionExecutors[4] --> confidence
+        if (attributeExpressionExecutors.length > 4) {
+            if (!(attributeExpressionExecutors[4] instanceof ConstantExpressionExecutor)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside trending function - " +
+                        "'confidence' has to be a constant but found " +
+                        this.attributeExpressionExecutors[4].getClass().getCanonicalName());
+            }
+            if (attributeExpressionExecutors[4].getReturnType() == Attribute.Type.DOUBLE ||
+                    attributeExpressionExecutors[4].getReturnType() == Attribute.Type.FLOAT) {
+                confidence = ((Number) ((ConstantExpressionExecutor) attributeExpressionExecutors[4])
+                        .getValue()).doubleValue();
+            } else {
+                throw new SiddhiAppCreationException("The 5th parameter inside trending function - " +
+                        "'confidence' should be of type Double or Float but found " +
+                        attributeExpressionExecutors[4].getReturnType());
+            }
+            if ((confidence <= 0) || (confidence >= 1)) {
+                throw new SiddhiAppCreationException("The 5th parameter inside trending function - " +
+                        "'confidence' must be in the range of (0, 1) but found " + confidence);
+            }
+        }
+
+        final double sketchRelativeError = relativeError;
+        final double sketchConfidence = confidence;
+        final long sketchInterval = interval;
+
+        attributeList.add(new Attribute("currentCount", Attribute.Type.LONG));
+        attributeList.add(new Attribute("previousCount", Attribute.Type.LONG));
+        attributeList.add(new Attribute("change", Attribute.Type.LONG));
+        attributeList.add(new Attribute("changeError", Attribute.Type.LONG));
+        return () -> new ExtensionState(new KarySketch<>(sketchRelativeError, sketchConfidence, sketchInterval));
+    }
+
+    @Override
+    protected void process(ComplexEventChunk<StreamEvent> streamEventChunk, Processor nextProcessor,
+                           StreamEventCloner streamEventCloner, ComplexEventPopulater complexEventPopulater,
+                           ExtensionState state) {
+        synchronized (this) {
+            while (streamEventChunk.hasNext()) {
+                StreamEvent streamEvent = streamEventChunk.next();
+                if (streamEvent.getType().equals(StreamEvent.Type.RESET)) {
+                    state.karySketch.clear();
+                    complexEventPopulater.populateComplexEvent(streamEvent, new Object[]{0L, 0L, 0L, 0L});
+                    continue;
+                }
+                Object key = keyExecutor.execute(streamEvent);
+                if (key == null || !streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+                    streamEventChunk.remove();
+                    continue;
+                }
+                long[] counts = state.karySketch.insert(key, streamEvent.getTimestamp());
+                if (Math.abs(counts[2]) < threshold) {
+                    streamEventChunk.remove();
+                    continue;
+                }
+                complexEventPopulater.populateComplexEvent(streamEvent,
+                        new Object[]{counts[0], counts[1], counts[2], state.karySketch.getChangeError()});
+            }
+        }
+        nextProcessor.process(streamEventChunk);
+    }
+
+    @Override
+    public void start() { }
+
+    @Override
+    public void stop() { }
+
+    @Override
+    public List<Attribute> getReturnAttributes() {
+        return attributeList;
+    }
+
+    @Override
+    public ProcessingMode getProcessingMode() {
+        return ProcessingMode.BATCH;
+    }
+
+    class ExtensionState extends State {
+        private KarySketch<Object> karySketch;
+
+        private ExtensionState(KarySketch<Object> karySketch) {
+            this.karySketch = karySketch;
+        }
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            synchronized (TrendingExtension.this) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("karySketch", karySketch);
+                return map;
+            }
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            synchronized (TrendingExtension.this) {
+                karySketch = (KarySketch<Object>) state.get("karySketch");
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.util;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves the states of a processor, which have not been used for a configured idle time, to spill files and
+ * frees their sketches, so that the heap does not grow with the partition keys which went idle.
+ * A state is spilled by writing its snapshot to a compressed file and restoring it with an empty snapshot,
+ * and is reloaded from the file by restoring the written snapshot when it is used again.
+ * The states are checked for idleness while the other states are used, hence no thread is needed.
+ * A state is acquired while it is processed or its snapshot is taken, and is never spilled until it is released.
+ * It is spilled while holding its lock, hence the processors lock a state only after acquiring it, so that the
+ * spiller and the processors always take the locks in the same order.
+ */
+public final class IdleStateSpiller {
+    /**
+     * The system parameter of the idle time, in milliseconds, after which the state of a partition key is spilled
+     */
+    public static final String IDLE_STATE_TTL = "idle.state.ttl";
+
+    /**
+     * The system parameter of the directory into which the idle states are spilled
+     */
+    public static final String SPILL_DIRECTORY = "spill.directory";
+
+    private final long idleStateTtl;
+    private final File spillDirectory;
+
+    private final Map<State, Long> lastUsedTimes = new IdentityHashMap<>();
+    private final Map<State, File> spillFiles = new IdentityHashMap<>();
+    private final Map<State, Integer> acquiredStates = new IdentityHashMap<>();
+    private long lastCheckedTime = -1;
+
+    /**
+     * @param idleStateTtl   is the idle time in milliseconds after which a state is spilled
+     * @param spillDirectory is the directory into which the states are spilled
+     */
+    public IdleStateSpiller(long idleStateTtl, File spillDirectory) {
+        this.idleStateTtl = idleStateTtl;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Create a spiller from the system parameters of an extension
+     *
+     * @param configReader is the config reader of the extension
+     * @param functionName is the name of the extension, which is used in the error messages
+     * @return the spiller, or {@code null} if the idle states are not to be spilled
+     * @throws SiddhiAppCreationException if the system parameters are invalid
+     */
+    public static IdleStateSpiller create(ConfigReader configReader, String functionName) {
+        String idleStateTtl = configReader.readConfig(IDLE_STATE_TTL, "0");
+        long ttl;
+        try {
+            ttl = Long.parseLong(idleStateTtl.trim());
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppCreationException("The system parameter '" + IDLE_STATE_TTL + "' of the " +
+                    functionName + " function should be a number of milliseconds but found " + idleStateTtl, e);
+        }
+        if (ttl <= 0) {
+            return null;
+        }
+        File spillDirectory = new File(configReader.readConfig(SPILL_DIRECTORY,
+                System.getProperty("java.io.tmpdir")));
+        if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            throw new SiddhiAppCreationException("The system parameter '" + SPILL_DIRECTORY + "' of the " +
+                    functionName + " function should be a writable directory but found " + spillDirectory);
+        }
+        return new IdleStateSpiller(ttl, spillDirectory);
+    }
+
+    /**
+     * Acquire a state as used, reloading it if it was spilled, and spill the other states which are idle.
+     * The state must be released once it is processed.
+     *
+     * @param state       is the state to be used
+     * @param currentTime is the current time of the Siddhi app
+     */
+    public synchronized void use(State state, long currentTime) {
+        acquire(state);
+        lastUsedTimes.put(state, currentTime);
+        if (lastCheckedTime < 0) {
+            lastCheckedTime = currentTime;
+        } else if (currentTime - lastCheckedTime >= idleStateTtl) {
+            Iterator<Map.Entry<State, Long>> iterator = lastUsedTimes.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<State, Long> entry = iterator.next();
+//              a state which is being processed by another thread is spilled once it is idle again
+                if (currentTime - entry.getValue() >= idleStateTtl && !acquiredStates.containsKey(entry.getKey())) {
+                    spill(entry.getKey());
+                    iterator.remove();
+                }
+            }
+            lastCheckedTime = currentTime;
+        }
+    }
+
+    /**
+     * Acquire a state, reloading it if it was spilled, such as before taking its snapshot, so that it is not
+     * spilled until it is released
+     *
+     * @param state is the state to be acquired
+     */
+    public synchronized void acquire(State state) {
+        load(state);
+        acquiredStates.merge(state, 1, Integer::sum);
+    }
+
+    /**
+     * Acquire a state unless it is spilled, such as for a timer event, which neither keeps the state in use nor
+     * reloads it, as a spilled state has nothing to emit
+     *
+     * @param state is the state to be acquired
+     * @return whether the state is acquired, in which case it must be released once it is processed
+     */
+    public synchronized boolean acquireIfNotSpilled(State state) {
+        if (spillFiles.containsKey(state)) {
+            return false;
+        }
+        acquiredStates.merge(state, 1, Integer::sum);
+        return true;
+    }
+
+    /**
+     * Release a state acquired by {@link #acquire(State)} or {@link #use(State, long)}, so that it can be spilled
+     * once it is idle
+     *
+     * @param state is the state to be released
+     */
+    public synchronized void release(State state) {
+        acquiredStates.computeIfPresent(state, (acquiredState, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void load(State state) {
+        File spillFile = spillFiles.remove(state);
+        if (spillFile == null) {
+            return;
+        }
+        Map<String, Object> snapshot;
+        try (ObjectInputStream inputStream = new ObjectInputStream(new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(spillFile))))) {
+            snapshot = (Map<String, Object>) inputStream.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SiddhiAppRuntimeException("Failed to reload the idle state spilled to " + spillFile, e);
+        }
+        state.restore(snapshot);
+//      the reloaded state is spilled again if it stays idle
+        lastUsedTimes.put(state, lastCheckedTime);
+        if (!spillFile.delete()) {
+            spillFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * Forget the spill file of a state, such as when the state is restored from a snapshot of the Siddhi app
+     *
+     * @param state is the state whose spill file is no longer valid
+     */
+    public synchronized void forget(State state) {
+        File spillFile = spillFiles.remove(state);
+        if (spillFile != null && !spillFile.delete()) {
+            spillFile.deleteOnExit();
+        }
+    }
+
+    private void spill(State state) {
+        File spillFile;
+        synchronized (state) {
+            try {
+                spillFile = File.createTempFile("siddhi-approximate-", ".spill", spillDirectory);
+                try (ObjectOutputStream outputStream = new ObjectOutputStream(new GZIPOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(spillFile))))) {
+                    outputStream.writeObject(new HashMap<>(state.snapshot()));
+                }
+            } catch (IOException e) {
+                throw new SiddhiAppRuntimeException("Failed to spill an idle state to " + spillDirectory, e);
+            }
+            state.restore(new HashMap<>());
+        }
+        spillFiles.put(state, spillFile);
+    }
+
+    /**
+     * Delete the spill files, which are no longer needed once the Siddhi app is shut down
+     */
+    public synchronized void clear() {
+        for (File spillFile : spillFiles.values()) {
+            if (!spillFile.delete()) {
+                spillFile.deleteOnExit();
+            }
+        }
+        spillFiles.clear();
+        lastUsedTimes.clear();
+        acquiredStates.clear();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.util;
+
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.util.config.ConfigReader;
+import org.apache.log4j.Logger;
+import org.wso2.extension.siddhi.execution.approximate.count.CountMinSketch;
+import org.wso2.extension.siddhi.execution.approximate.distinctcount.HyperLogLog;
+
+/**
+ * Bounds the memory of the sketch of each state of a processor, so that a relative error which is too low cannot
+ * allocate more than a configured number of bytes per partition key.
+ * When the sketch of the requested relative error does not fit in the budget, the lowest relative error which fits
+ * is used instead, and the resulting error bounds are logged when the processor is created.
+ */
+public final class MemoryBudget {
+    /**
+     * The system parameter of the maximum size, in bytes, of the sketch of a state
+     */
+    public static final String MEMORY_BUDGET = "memory.budget";
+
+    private static final Logger LOG = Logger.getLogger(MemoryBudget.class);
+
+    private MemoryBudget() {
+    }
+
+    /**
+     * Read the memory budget from the system parameters of an extension
+     *
+     * @param configReader is the config reader of the extension
+     * @param functionName is the name of the extension, which is used in the error messages
+     * @return the memory budget in bytes, or 0 if the memory is not bounded
+     * @throws SiddhiAppCreationException if the system parameter is invalid
+     */
+    public static long read(ConfigReader configReader, String functionName) {
+        String memoryBudget = configReader.readConfig(MEMORY_BUDGET, "0");
+        long budget;
+        try {
+            budget = Long.parseLong(memoryBudget.trim());
+        } catch (NumberFormatException e) {
+            throw new SiddhiAppCreationException("The system parameter '" + MEMORY_BUDGET + "' of the " +
+                    functionName + " function should be a number of bytes but found " + memoryBudget, e);
+        }
+        if (budget < 0) {
+            throw new SiddhiAppCreationException("The system parameter '" + MEMORY_BUDGET + "' of the " +
+                    functionName + " function must be a positive value but found " + budget);
+        }
+        return budget;
+    }
+
+    /**
+     * Fit the count-min sketch of a processor in its memory budget
+     *
+     * @param configReader  is the config reader of the extension
+     * @param functionName  is the name of the extension, which is used in the messages
+     * @param relativeError is the requested relative error
+     * @param confidence    is the confidence of the count-min sketch
+     * @return the requested relative error if the sketch fits in the budget, or else the lowest one which fits
+     * @throws SiddhiAppCreationException if the budget cannot hold a count-min sketch with the given confidence
+     */
+    public static double fitCountMinSketch(ConfigReader configReader, String functionName, double relativeError,
+                                           double confidence) {
+        long budget = read(configReader, functionName);
+        if (budget == 0) {
+            return relativeError;
+        }
+        double fittedRelativeError = relativeError;
+        long memorySize = CountMinSketch.getMemorySize(relativeError, confidence);
+        if (memorySize > budget) {
+            try {
+                fittedRelativeError = CountMinSketch.getRelativeError(budget, confidence);
+            } catch (IllegalArgumentException e) {
+                throw new SiddhiAppCreationException("The system parameter '" + MEMORY_BUDGET + "' of the " +
+                        functionName + " function is too small, as " + e.getMessage(), e);
+            }
+            LOG.warn("The relative error of " + relativeError + " of the " + functionName + " function needs a " +
+                    "count-min sketch of " + memorySize + " bytes, which exceeds the memory budget of " + budget +
+                    " bytes, hence the relative error is raised to " + fittedRelativeError);
+            memorySize = CountMinSketch.getMemorySize(fittedRelativeError, confidence);
+        }
+        LOG.info("The count-min sketch of each state of the " + functionName + " function takes " + memorySize +
+                " bytes out of the memory budget of " + budget + " bytes, and its counts deviate by at most " +
+                fittedRelativeError + " of the total count with a confidence of " + confidence);
+        return fittedRelativeError;
+    }
+
+    /**
+     * Fit the HyperLogLog of a processor in its memory budget
+     *
+     * @param configReader      is the config reader of the extension
+     * @param functionName      is the name of the extension, which is used in the messages
+     * @param relativeError     is the requested relative error
+     * @param confidence        is the confidence of the HyperLogLog
+     * @param pastCountsEnabled is whether the HyperLogLog keeps the past counts of its buckets
+     * @return the requested relative error if the HyperLogLog fits in the budget, or else the lowest one which fits
+     * @throws SiddhiAppCreationException if the budget cannot hold the minimum number of buckets of a HyperLogLog
+     */
+    public static double fitHyperLogLog(ConfigReader configReader, String functionName, double relativeError,
+                                        double confidence, boolean pastCountsEnabled) {
+        long budget = read(configReader, functionName);
+        if (budget == 0) {
+            return relativeError;
+        }
+        double fittedRelativeError = relativeError;
+        long memorySize = HyperLogLog.getMemorySize(relativeError, pastCountsEnabled);
+        if (memorySize > budget) {
+            try {
+                fittedRelativeError = HyperLogLog.getRelativeError(budget, pastCountsEnabled);
+            } catch (IllegalArgumentException e) {
+                throw new SiddhiAppCreationException("The system parameter '" + MEMORY_BUDGET + "' of the " +
+                        functionName + " function is too small, as " + e.getMessage(), e);
+            }
+            LOG.warn("The relative error of " + relativeError + " of the " + functionName + " function needs a " +
+                    "HyperLogLog of " + memorySize + " bytes, which exceeds the memory budget of " + budget +
+                    " bytes, hence the relative error is raised to " + fittedRelativeError);
+            memorySize = HyperLogLog.getMemorySize(fittedRelativeError, pastCountsEnabled);
+        }
+        LOG.info("The HyperLogLog of each state of the " + functionName + " function takes " + memorySize +
+                " bytes out of the memory budget of " + budget + " bytes, and its distinct counts are calculated " +
+                "with a relative error of " + fittedRelativeError + " and a confidence of " + confidence);
+        return fittedRelativeError;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.util;
+
+import io.siddhi.core.config.SiddhiQueryContext;
+import io.siddhi.core.event.ComplexEventChunk;
+import io.siddhi.core.event.stream.StreamEvent;
+import io.siddhi.core.event.stream.StreamEventCloner;
+import io.siddhi.core.query.input.stream.single.EntryValveProcessor;
+import io.siddhi.core.query.processor.Processor;
+import io.siddhi.core.util.Scheduler;
+import io.siddhi.core.util.parser.SchedulerParser;
+
+import java.io.Serializable;
+
+/**
+ * Emits a summary event of a processor once per interval, instead of decorating each input event. The summary is
+ * a copy of the latest input event of the state, at the time of the emission, which the processor populates with
+ * its current result.
+ * The emitter has a scheduler of its own, whose entry valve is placed just before the processor, since the timer
+ * events of the scheduler of the query enter before the windows of the query, which drop them or keep them as
+ * events of the window. The processor returns this scheduler as its scheduler, so that it is initialized with the
+ * lock of the query, and the entry valve holds the thread barrier of the Siddhi app as the input events do.
+ * The emissions of a state start with its first event, and stop once the state is spilled by the idle state
+ * spiller, until its next event arrives, hence a spilled state neither holds a timer nor is reloaded by one.
+ */
+public final class PeriodicEmitter {
+    private final long emitInterval;
+    private final boolean suppressInput;
+    private final Scheduler scheduler;
+
+    /**
+     * @param emitInterval       is the interval in milliseconds between two summary events
+     * @param suppressInput      is whether the input events are dropped, so that only the summary events are emitted
+     * @param processor          is the processor which emits the summary events for its timer events
+     * @param siddhiQueryContext is the context of the query of the processor
+     */
+    public PeriodicEmitter(long emitInterval, boolean suppressInput, Processor processor,
+                           SiddhiQueryContext siddhiQueryContext) {
+        this.emitInterval = emitInterval;
+        this.suppressInput = suppressInput;
+        EntryValveProcessor entryValveProcessor = new EntryValveProcessor(siddhiQueryContext.getSiddhiAppContext());
+        entryValveProcessor.setNextProcessor(processor);
+        this.scheduler = SchedulerParser.parse(entryValveProcessor, siddhiQueryContext);
+    }
+
+    public boolean isSuppressInput() {
+        return suppressInput;
+    }
+
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Check whether a chunk is a timer event of the scheduler, which is sent on its own
+     *
+     * @param streamEventChunk is the chunk to be processed
+     * @return whether the chunk holds only a timer event
+     */
+    public static boolean isTimerEventChunk(ComplexEventChunk<StreamEvent> streamEventChunk) {
+        StreamEvent firstEvent = streamEventChunk.getFirst();
+        return firstEvent != null && firstEvent.getNext() == null &&
+                firstEvent.getType().equals(StreamEvent.Type.TIMER);
+    }
+
+    /**
+     * Keep a copy of a current event as the latest event of a state, and schedule the next emission of the state
+     * unless it is already scheduled
+     *
+     * @param streamEvent       is the input event
+     * @param streamEventCloner is the cloner of the input events
+     * @param emission          is the emission of the state
+     */
+    public void record(StreamEvent streamEvent, StreamEventCloner streamEventCloner, Emission emission) {
+        if (streamEvent.getType().equals(StreamEvent.Type.CURRENT)) {
+            emission.latestEvent = streamEventCloner.copyStreamEvent(streamEvent);
+        }
+        if (!emission.scheduled) {
+            schedule(emission, streamEvent.getTimestamp());
+        }
+    }
+
+    /**
+     * Schedule the emissions of a restored state, which has no timer of its own after the restore
+     *
+     * @param emission    is the restored emission of the state
+     * @param currentTime is the current time of the Siddhi app
+     */
+    public void restore(Emission emission, long currentTime) {
+        if (emission.latestEvent != null && !emission.scheduled) {
+            schedule(emission, currentTime);
+        }
+    }
+
+    private void schedule(Emission emission, long time) {
+        emission.nextEmitTime = time + emitInterval;
+        emission.scheduled = true;
+        scheduler.notifyAt(emission.nextEmitTime);
+    }
+
+    /**
+     * Create the summary event of a state for a timer event, and schedule the next emission of the state
+     *
+     * @param timerEvent        is the timer event
+     * @param streamEventCloner is the cloner of the input events
+     * @param emission          is the emission of the state
+     * @return the summary event to be populated, or {@code null} if no emission of the state is due
+     */
+    public StreamEvent emit(StreamEvent timerEvent, StreamEventCloner streamEventCloner, Emission emission) {
+        if (emission.latestEvent == null || !emission.scheduled ||
+                timerEvent.getTimestamp() < emission.nextEmitTime) {
+            return null;
+        }
+        schedule(emission, timerEvent.getTimestamp());
+
+        StreamEvent summaryEvent = streamEventCloner.copyStreamEvent(emission.latestEvent);
+        summaryEvent.setType(StreamEvent.Type.CURRENT);
+        summaryEvent.setTimestamp(timerEvent.getTimestamp());
+        return summaryEvent;
+    }
+
+    /**
+     * The latest input event of a state, which is snapshotted with the state, and its scheduled emission, which
+     * is scheduled again once the state is restored
+     */
+    public static final class Emission implements Serializable {
+        private static final long serialVersionUID = 8819096373871165311L;
+
+        private StreamEvent latestEvent;
+        private transient long nextEmitTime;
+        private transient boolean scheduled;
+    }
+}
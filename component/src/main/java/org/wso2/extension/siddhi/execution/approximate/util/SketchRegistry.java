@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.extension.siddhi.execution.approximate.util;
+
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.exception.SiddhiAppRuntimeException;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of named sketches, scoped to a Siddhi app, so that a sketch populated by one query
+ * can be looked up from other queries of the same app.
+ * The sketches are keyed by the identity of the {@link SiddhiAppContext} that registered them, hence the apps of
+ * the same name, which are run by different Siddhi managers in the same JVM, do not see each other's sketches.
+ * The name of a sketch is declared when its processor is created, so that a duplicate name fails the creation of
+ * the app, while the sketch itself is registered only while its processor is started. The contexts are held
+ * weakly, hence an app whose creation fails after a name is declared is not retained.
+ */
+public final class SketchRegistry {
+    private static final Map<AppKey, Set<String>> DECLARED_NAMES = new ConcurrentHashMap<>();
+    private static final Map<AppKey, Map<String, Object>> REGISTRY = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<SiddhiAppContext> COLLECTED_APPS = new ReferenceQueue<>();
+
+    private SketchRegistry() {
+    }
+
+    /**
+     * Declare the name of a sketch within the given Siddhi app, when the processor which owns the sketch is created
+     *
+     * @param siddhiAppContext is the context of the Siddhi app which owns the sketch
+     * @param name             is the name of the sketch
+     * @throws SiddhiAppCreationException if a sketch with the same name is already declared in the same app
+     */
+    public static void declare(SiddhiAppContext siddhiAppContext, String name) {
+        purge();
+        Set<String> names = DECLARED_NAMES.computeIfAbsent(new AppKey(siddhiAppContext, COLLECTED_APPS),
+                appKey -> ConcurrentHashMap.newKeySet());
+        if (!names.add(name)) {
+            throw new SiddhiAppCreationException("An approximate sketch named '" + name + "' is already " +
+                    "defined in the Siddhi app '" + siddhiAppContext.getName() + "'");
+        }
+    }
+
+    /**
+     * Register a sketch under its declared name within the given Siddhi app, when the processor which owns the
+     * sketch is started
+     *
+     * @param siddhiAppContext is the context of the Siddhi app which owns the sketch
+     * @param name             is the name of the sketch
+     * @param sketch           is the sketch to be registered
+     */
+    public static void register(SiddhiAppContext siddhiAppContext, String name, Object sketch) {
+        purge();
+        REGISTRY.computeIfAbsent(new AppKey(siddhiAppContext, COLLECTED_APPS), appKey -> new ConcurrentHashMap<>())
+                .put(name, sketch);
+    }
+
+    /**
+     * Remove the sketch registered under a name by the given Siddhi app, when the processor which owns the sketch
+     * is stopped
+     *
+     * @param siddhiAppContext is the context of the Siddhi app which owns the sketch
+     * @param name             is the name of the sketch
+     */
+    public static void unregister(SiddhiAppContext siddhiAppContext, String name) {
+//      the sketches of an app are dropped with its last sketch
+        REGISTRY.computeIfPresent(new AppKey(siddhiAppContext, null), (appKey, sketches) -> {
+            sketches.remove(name);
+            return sketches.isEmpty() ? null : sketches;
+        });
+    }
+
+    /**
+     * Look up the sketch registered under a name within the given Siddhi app
+     *
+     * @param siddhiAppContext is the context of the Siddhi app which owns the sketch
+     * @param name             is the name of the sketch
+     * @param type             is the expected type of the sketch
+     * @param <T>              is the expected type of the sketch
+     * @return the sketch, or {@code null} if there is no sketch registered under the name
+     * @throws SiddhiAppRuntimeException if the sketch registered under the name is not of the expected type
+     */
+    public static <T> T get(SiddhiAppContext siddhiAppContext, String name, Class<T> type) {
+        Map<String, Object> sketches = REGISTRY.get(new AppKey(siddhiAppContext, null));
+        if (sketches == null) {
+            return null;
+        }
+        Object sketch = sketches.get(name);
+        if (sketch == null) {
+            return null;
+        }
+        if (!type.isInstance(sketch)) {
+            throw new SiddhiAppRuntimeException("The approximate sketch named '" + name + "' is a " +
+                    sketch.getClass().getSimpleName() + " but a " + type.getSimpleName() + " is expected");
+        }
+        return type.cast(sketch);
+    }
+
+    /**
+     * Drop the names and the sketches of the Siddhi apps whose contexts are collected
+     */
+    private static void purge() {
+        Reference<? extends SiddhiAppContext> collectedApp;
+        while ((collectedApp = COLLECTED_APPS.poll()) != null) {
+            DECLARED_NAMES.remove(collectedApp);
+            REGISTRY.remove(collectedApp);
+        }
+    }
+
+    /**
+     * A key which holds the context of a Siddhi app weakly, and compares the contexts by identity
+     */
+    private static final class AppKey extends WeakReference<SiddhiAppContext> {
+        private final int hashCode;
+
+        private AppKey(SiddhiAppContext siddhiAppContext, ReferenceQueue<SiddhiAppContext> queue) {
+            super(siddhiAppContext, queue);
+            this.hashCode = System.identityHashCode(siddhiAppContext);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+//          a collected key is only equal to itself, so that it can still be removed once it is enqueued
+            if (o == this) {
+                return true;
+            }
+            SiddhiAppContext siddhiAppContext = get();
+            return o instanceof AppKey && siddhiAppContext != null && ((AppKey) o).get() == siddhiAppContext;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CountMinSketchAggregatorTestCase {
+    private static final Logger LOG = Logger.getLogger(CountMinSketchAggregatorTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateCountMinSketch_1() throws InterruptedException {
+        final int windowLength = 500;
+        final int noOfDistinctValues = 10;
+        final int totalNoOfEvents = 2000;
+
+        LOG.info("Approximate Count Min Sketch Aggregator Test Case - for Siddhi length window");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ") " +
+                "select number, approximate:frequencyOf(approximate:countMinSketch(number), number) as count " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int noOfEvents = totalEventsArrived.incrementAndGet();
+//                  the exact count of each value within the window
+                    long exactCount = (Math.min(noOfEvents, windowLength) + noOfDistinctValues - 1) /
+                            noOfDistinctValues;
+                    long count = (long) event.getData(1);
+                    if (count >= exactCount && count <= exactCount + windowLength * 0.01) {
+                        validEventsArrived.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < totalNoOfEvents; i++) {
+            inputHandler.send(new Object[]{i % noOfDistinctValues});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalNoOfEvents, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), totalNoOfEvents);
+        Assert.assertTrue((double) validEventsArrived.get() / totalNoOfEvents >= 0.99);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCountMinSketch_2() throws InterruptedException {
+        final long startTime = 1496289950000L;
+
+        LOG.info("Approximate Count Min Sketch Aggregator Test Case - inside an incremental aggregation");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, timestamp long);";
+        String aggregation = ("define aggregation ipAggregation " +
+                "from inputStream " +
+                "select approximate:countMinSketch(ip) as ipCounts " +
+                "aggregate by timestamp every sec ... min;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + aggregation);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      the ip 10.0.0.1 sends (second + 1) * 10 requests in each second, among 1000 requests of other ips
+        for (int second = 0; second < 3; second++) {
+            for (int i = 0; i < 1000; i++) {
+                String ip = i < (second + 1) * 10 ? "10.0.0.1" : "10.0.1." + i;
+                inputHandler.send(new Object[]{ip, startTime + second * 1000 + i});
+            }
+        }
+
+        Event[] events = siddhiAppRuntime.query("from ipAggregation " +
+                "within " + (startTime - 60000) + "L, " + (startTime + 60000) + "L per \"seconds\" " +
+                "select AGG_TIMESTAMP, approximate:frequencyOf(ipCounts, '10.0.0.1') as count " +
+                "order by AGG_TIMESTAMP;");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 3);
+        for (int second = 0; second < 3; second++) {
+            long count = (long) events[second].getData(1);
+            Assert.assertTrue(count >= (second + 1) * 10 && count <= (second + 1) * 10 + 1000 * 0.01);
+        }
+
+//      the sketches of the seconds are added for the minute
+        events = siddhiAppRuntime.query("from ipAggregation " +
+                "within " + (startTime - 60000) + "L, " + (startTime + 60000) + "L per \"minutes\" " +
+                "select approximate:frequencyOf(ipCounts, '10.0.0.1') as count;");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 1);
+        long count = (long) events[0].getData(0);
+        Assert.assertTrue(count >= 60 && count <= 60 + 3000 * 0.01);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCountMinSketch_3() throws InterruptedException {
+        LOG.info("Approximate Count Min Sketch Aggregator Test Case - to check the number of parameters " +
+                "passed to the countMinSketch function are 1 or 3");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.lengthBatch(10) " +
+                "select approximate:countMinSketch(ip, 0.01) as ipCounts " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("1 or 3 attributes are expected but 2 " +
+                    "attributes are found inside the countMinSketch function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCountMinSketch_4() throws InterruptedException {
+        LOG.info("Approximate Count Min Sketch Aggregator Test Case - the state of a group is released once all " +
+                "the values of the group expired from the window");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, region string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(10) " +
+                "select region, approximate:frequencyOf(approximate:countMinSketch(ip, 0.1, 0.9), ip) as count " +
+                "group by region " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 10; i++) {
+            inputHandler.send(new Object[]{"10.0.0." + i, "region-" + i});
+        }
+        int snapshotSizeOfWindow = siddhiAppRuntime.snapshot().length;
+//      each region appears once, hence only the 10 regions in the window keep a state
+        for (int i = 10; i < 1010; i++) {
+            inputHandler.send(new Object[]{"10.0.0." + i, "region-" + i});
+        }
+        int snapshotSizeAfterExpiry = siddhiAppRuntime.snapshot().length;
+
+        SiddhiTestHelper.waitForEvents(200, 1010, totalEventsArrived, 60000);
+        Assert.assertTrue(snapshotSizeAfterExpiry < 2 * snapshotSizeOfWindow);
+
+        siddhiAppRuntime.shutdown();
+    }
+}
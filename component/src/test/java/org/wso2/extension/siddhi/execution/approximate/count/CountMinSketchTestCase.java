@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+public class CountMinSketchTestCase {
+    private static final Logger LOG = Logger.getLogger(CountMinSketchTestCase.class);
+    private final double relativeError = 0.01;
+    private final double confidence = 0.99;
+//  the count array of a sketch of the above relative error and confidence has 5 x 272 cells
+    private final int countArraySize = 5 * 272 * Long.BYTES;
+
+    @Test
+    public void testCountMinSketch_1() {
+        LOG.info("Count Min Sketch Test Case - the counts are read and removed before the first item is inserted");
+        CountMinSketch<String> countMinSketch = new CountMinSketch<>(relativeError, confidence);
+
+        Assert.assertEquals(countMinSketch.getCount("ip-0"), 0L);
+        Assert.assertEquals(countMinSketch.remove("ip-0"), 0L);
+        Assert.assertEquals(countMinSketch.getConfidenceInterval(0), new long[]{0, 0});
+
+//      the remove before the first insert does not make the counts negative
+        Assert.assertEquals(countMinSketch.insert("ip-0"), 1L);
+        Assert.assertEquals(countMinSketch.getConfidenceInterval(1), new long[]{1, 1});
+    }
+
+    @Test
+    public void testCountMinSketch_2() {
+        LOG.info("Count Min Sketch Test Case - a sketch into which no item is inserted is merged, subtracted " +
+                "and restored");
+        CountMinSketch<String> countMinSketch = new CountMinSketch<>(relativeError, confidence);
+        countMinSketch.insert("ip-0", 3);
+
+        countMinSketch.merge(new CountMinSketch<>(relativeError, confidence));
+        countMinSketch.subtract(new CountMinSketch<>(relativeError, confidence));
+        Assert.assertEquals(countMinSketch.getCount("ip-0"), 3L);
+
+        CountMinSketch<String> mergedCountMinSketch = new CountMinSketch<>(relativeError, confidence);
+        mergedCountMinSketch.merge(countMinSketch);
+        Assert.assertEquals(mergedCountMinSketch.getCount("ip-0"), 3L);
+
+        countMinSketch.restore(new CountMinSketch<>(relativeError, confidence));
+        Assert.assertEquals(countMinSketch.getCount("ip-0"), 0L);
+        Assert.assertEquals(countMinSketch.getConfidenceInterval(0), new long[]{0, 0});
+    }
+
+    @Test
+    public void testCountMinSketch_3() throws IOException {
+        LOG.info("Count Min Sketch Test Case - clear zeroes the counts and keeps the count array");
+        CountMinSketch<String> countMinSketch = new CountMinSketch<>(relativeError, confidence);
+        int unallocatedSize = getSerializedSize(countMinSketch);
+        for (int i = 0; i < 1000; i++) {
+            countMinSketch.insert("ip-" + (i % 10));
+        }
+
+        countMinSketch.clear();
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(countMinSketch.getCount("ip-" + i), 0L);
+        }
+        Assert.assertTrue(getSerializedSize(countMinSketch) >= unallocatedSize + countArraySize);
+        Assert.assertEquals(countMinSketch.insert("ip-0"), 1L);
+    }
+
+    @Test
+    public void testCountMinSketch_4() throws IOException {
+        LOG.info("Decaying Count Min Sketch Test Case - the weight array is allocated when the first item is " +
+                "inserted, and kept when the sketch is cleared");
+        DecayingCountMinSketch<String> countMinSketch = new DecayingCountMinSketch<>(relativeError, confidence,
+                1000);
+        int unallocatedSize = getSerializedSize(countMinSketch);
+        Assert.assertEquals(countMinSketch.getCount("ip-0", 0), 0.0);
+        Assert.assertTrue(getSerializedSize(countMinSketch) < unallocatedSize + countArraySize);
+
+        Assert.assertEquals(countMinSketch.insert("ip-0", 0), 1.0, 0.000001);
+        countMinSketch.clear();
+
+        Assert.assertEquals(countMinSketch.getCount("ip-0", 0), 0.0);
+        Assert.assertTrue(getSerializedSize(countMinSketch) >= unallocatedSize + countArraySize);
+    }
+
+    private static int getSerializedSize(Object sketch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sketch);
+        }
+        return bytes.size();
+    }
+}
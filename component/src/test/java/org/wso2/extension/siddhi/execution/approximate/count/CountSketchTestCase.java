@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CountSketchTestCase {
+    private static final Logger LOG = Logger.getLogger(CountSketchTestCase.class);
+    private final int windowLength = 1000;
+    private final int noOfKeys = 10;
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateCountSketch_1() throws InterruptedException {
+        LOG.info("Approximate Count Sketch Test Case - the counts of the values in a window are read by " +
+                "approximate:countOf in another query");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string); " +
+                "define stream checkStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#window.length(" + windowLength + ")#approximate:countSketch('ipFreq', ip) " +
+                "select * " +
+                "insert into requestLogStream; " +
+                "@info(name = 'query2') " +
+                "from checkStream " +
+                "select ip, approximate:countOf('ipFreq', ip) as requests " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        AtomicInteger validCountsArrived = new AtomicInteger(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    long count = (Long) event.getData(1);
+//                  only the last 1000 requests are in the window, 100 per ip
+                    long actualCount = ((String) event.getData(0)).startsWith("ip-") ? 100 : 0;
+                    if (count >= actualCount && count <= actualCount + 0.01 * windowLength) {
+                        validCountsArrived.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler requestHandler = siddhiAppRuntime.getInputHandler("requestStream");
+        InputHandler checkHandler = siddhiAppRuntime.getInputHandler("checkStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 2 * windowLength; i++) {
+            requestHandler.send(new Object[]{"ip-" + (i % noOfKeys)});
+        }
+        for (int i = 0; i < noOfKeys; i++) {
+            checkHandler.send(new Object[]{"ip-" + i});
+            checkHandler.send(new Object[]{"unknown-" + i});
+        }
+
+        Assert.assertEquals(totalEventsArrived.get(), 2 * noOfKeys);
+        Assert.assertEquals(validCountsArrived.get(), 2 * noOfKeys);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCountSketch_2() throws InterruptedException {
+        LOG.info("Approximate Count Sketch Test Case - approximate:countOf does not output events when no sketch " +
+                "of the given name is defined");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string); " +
+                "define stream checkStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#approximate:countSketch('ipFreq', ip) " +
+                "select * " +
+                "insert into requestLogStream; " +
+                "@info(name = 'query2') " +
+                "from checkStream " +
+                "select ip, approximate:countOf('ipFrequency', ip) as requests " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        InputHandler requestHandler = siddhiAppRuntime.getInputHandler("requestStream");
+        InputHandler checkHandler = siddhiAppRuntime.getInputHandler("checkStream");
+        siddhiAppRuntime.start();
+
+        requestHandler.send(new Object[]{"ip-0"});
+        checkHandler.send(new Object[]{"ip-0"});
+
+        Assert.assertEquals(totalEventsArrived.get(), 0);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCountSketch_3() throws InterruptedException {
+        LOG.info("Approximate Count Sketch Test Case - to validate the 3rd parameter inside countSketch " +
+                "function is in the range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#approximate:countSketch('ipFreq', ip, 1.5, 0.99) " +
+                "select * " +
+                "insert into requestLogStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside countSketch " +
+                    "function - 'relative.error' must be in the range of (0, 1) but found 1.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCountSketch_4() throws InterruptedException {
+        LOG.info("Approximate Count Sketch Test Case - to validate the countSketch function cannot be used " +
+                "inside a partition");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (tenant string, ip string);";
+        String query = ("partition with (tenant of requestStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from requestStream#approximate:countSketch('ipFreq', ip) " +
+                "select * " +
+                "insert into requestLogStream; " +
+                "end;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The countSketch function cannot be used " +
+                    "inside a partition"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
+
@@ -25,11 +25,20 @@ import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.stream.input.InputHandler;
 import io.siddhi.core.stream.output.StreamCallback;
 import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
 import org.apache.log4j.Logger;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -117,7 +126,7 @@ public class CountTestCase {
         final int windowLength = 1000;
 
         LOG.info("Approximate Count Test Case - to check the number of parameters " +
-                "passed to the count functions are not 1 or 3");
+                "passed to the count functions are not 1, 3, 4, 5 or 6");
         SiddhiManager siddhiManager = new SiddhiManager();
 
         String inStreamDefinition = "define stream inputStream (number int);";
@@ -132,8 +141,8 @@ public class CountTestCase {
         } catch (Exception e) {
             exceptionOccurred = true;
             Assert.assertTrue(e instanceof SiddhiAppCreationException);
-            Assert.assertTrue(e.getCause().getMessage().contains("1 or 3 attributes are expected but 2 attributes" +
-                    " are found inside the count function"));
+            Assert.assertTrue(e.getCause().getMessage().contains("1, 3, 4, 5 or 6 attributes are expected but 2 " +
+                    "attributes are found inside the count function"));
         }
         Assert.assertEquals(true, exceptionOccurred);
     }
@@ -480,5 +489,595 @@ public class CountTestCase {
 
         siddhiAppRuntime.shutdown();
     }
+
+    @Test
+    public void testApproximateCount_13() throws InterruptedException {
+        final double confidence = 0.99;
+        final double relativeError = 0.01;
+        final long halfLife = 1000;
+
+        LOG.info("Approximate Count Test Case - for decayed counts without a window - " +
+                "a specified relative error(" + relativeError + "), a confidence(" + confidence + ") and " +
+                "a half life(" + halfLife + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:count(ip, " + relativeError + ", " + confidence + ", " +
+                halfLife + ") " +
+                "select ip, count " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Double> counts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    counts.add((Double) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(0, new Object[]{"a"});
+        inputHandler.send(0, new Object[]{"a"});
+//      the two events of the first second weigh half as much after a half life
+        inputHandler.send(1000, new Object[]{"a"});
+        inputHandler.send(3000, new Object[]{"a"});
+
+        SiddhiTestHelper.waitForEvents(200, 4, totalEventsArrived, 60000);
+        Assert.assertEquals(counts.get(0), 1.0, 1e-9);
+        Assert.assertEquals(counts.get(1), 2.0, 1e-9);
+        Assert.assertEquals(counts.get(2), 2.0, 1e-9);
+        Assert.assertEquals(counts.get(3), 1.5, 1e-9);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCount_14() throws InterruptedException {
+        final long halfLife = 100;
+        final long timeBetweenEvents = 10;
+
+        LOG.info("Approximate Count Test Case - the decayed counts do not overflow over many half lives");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:count(number, 0.01, 0.99, " + halfLife + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+//      an event every 10 milliseconds reaches a steady decayed count of 1 / (1 - 2^(-10 / 100))
+        final double steadyCount = 1 / (1 - Math.pow(2, -(double) timeBetweenEvents / halfLife));
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int eventNo = totalEventsArrived.getAndIncrement();
+                    double count = (Double) event.getData(1);
+                    if (!Double.isNaN(count) && !Double.isInfinite(count) &&
+                            (eventNo < 1000 || Math.abs(count - steadyCount) < 1e-6)) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      spans 2000 half lives, far beyond the range of the forward decayed weights without rescaling
+        for (int noOfEvents = 0; noOfEvents < 20000; noOfEvents++) {
+            inputHandler.send(noOfEvents * timeBetweenEvents, new Object[]{1});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 20000, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 20000);
+        Assert.assertEquals(validEvents.get(), 20000);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCount_15() throws InterruptedException {
+        LOG.info("Approximate Count Test Case - to validate the 4th parameter inside count function " +
+                "is a non negative value");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:count(number, 0.01, 0.99, -5) " +
+                "select * " +
+                "insert into outputStream;");
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 4th parameter inside count function - " +
+                    "'half.life' must be a non negative value, where 0 keeps the counts undecayed, but found -5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCount_16() throws InterruptedException {
+        LOG.info("Approximate Count Test Case - for a partitioned query, where each partition key has to be " +
+                "counted separately");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tenant string, number int);";
+        String query = ("partition with (tenant of inputStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:count(number) " +
+                "select tenant, count " +
+                "insert into outputStream; " +
+                "end;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final List<Long> tenantBCounts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    if ("B".equals(event.getData(0))) {
+                        tenantBCounts.add((Long) event.getData(1));
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < 10; noOfEvents++) {
+            inputHandler.send(new Object[]{"A", 7});
+        }
+        inputHandler.send(new Object[]{"B", 7});
+        inputHandler.send(new Object[]{"B", 7});
+
+        SiddhiTestHelper.waitForEvents(200, 12, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 12);
+        Assert.assertEquals(tenantBCounts.size(), 2);
+        Assert.assertEquals(tenantBCounts.get(0).longValue(), 1L);
+        Assert.assertEquals(tenantBCounts.get(1).longValue(), 2L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCount_17() throws Exception {
+        LOG.info("Approximate Count Test Case - for a partitioned query, where the sketch of an idle partition " +
+                "key is spilled to a file and reloaded when the partition key receives an event again");
+        File spillDirectory = Files.createTempDirectory("count-spill").toFile();
+        Map<String, String> extensionConfigs = new HashMap<>();
+        extensionConfigs.put("approximate.count.idle.state.ttl", "100");
+        extensionConfigs.put("approximate.count.spill.directory", spillDirectory.getAbsolutePath());
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(extensionConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (tenant string, number int);";
+        String query = ("partition with (tenant of inputStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:count(number) " +
+                "select tenant, count " +
+                "insert into outputStream; " +
+                "end;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final List<Long> tenantACounts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    if ("A".equals(event.getData(0))) {
+                        tenantACounts.add((Long) event.getData(1));
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{"A", 7});
+        inputHandler.send(new Object[]{"A", 7});
+        Thread.sleep(300);
+//      the sketch of tenant A has been idle longer than the idle state TTL, hence it is spilled
+        inputHandler.send(new Object[]{"B", 7});
+        Thread.sleep(300);
+        inputHandler.send(new Object[]{"B", 7});
+        Assert.assertEquals(spillDirectory.listFiles().length, 1);
+        inputHandler.send(new Object[]{"A", 7});
+        Assert.assertEquals(spillDirectory.listFiles().length, 0);
+
+        SiddhiTestHelper.waitForEvents(200, 5, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 5);
+        Assert.assertEquals(tenantACounts.size(), 3);
+        Assert.assertEquals(tenantACounts.get(2).longValue(), 3L);
+
+        siddhiAppRuntime.shutdown();
+        Assert.assertTrue(spillDirectory.delete());
+    }
+
+    @Test
+    public void testApproximateCount_18() throws InterruptedException {
+        final int windowLength = 1000;
+        final int noOfValues = 10;
+
+        LOG.info("Approximate Count Test Case - for an emit interval, where only the summary events of the " +
+                "latest event are emitted");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")" +
+                "#approximate:count(ip, 0.01, 0.99, 0, 500, true) " +
+                "select ip, count, countLowerBound, countUpperBound " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final AtomicInteger validSummaries = new AtomicInteger(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+//                  the latest event is of ip-9, which arrived 100 times within the window
+                    long count = (Long) event.getData(1);
+                    if ("ip-9".equals(event.getData(0)) && count >= 100 && count <= 100 + 0.01 * windowLength &&
+                            (Long) event.getData(2) <= count && (Long) event.getData(3) >= count) {
+                        validSummaries.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < 2 * windowLength; noOfEvents++) {
+            inputHandler.send(new Object[]{"ip-" + (noOfEvents % noOfValues)});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 2, totalEventsArrived, 60000);
+        siddhiAppRuntime.shutdown();
+
+//      the input events would have been emitted with lower counts, had they not been suppressed
+        Assert.assertTrue(totalEventsArrived.get() >= 2);
+        Assert.assertEquals(validSummaries.get(), totalEventsArrived.get());
+    }
+
+    @Test
+    public void testApproximateCount_19() throws InterruptedException {
+        LOG.info("Approximate Count Test Case - to validate the 5th parameter inside count function is a " +
+                "positive value");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(1000)#approximate:count(number, 0.01, 0.99, 0, 0) " +
+                "select count, countLowerBound, countUpperBound " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 5th parameter inside count function - " +
+                    "'emit.interval' must be a positive value but found 0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCount_20() throws InterruptedException {
+        LOG.info("Approximate Count Test Case - the relative error is raised to fit the count-min sketch in the " +
+                "memory budget");
+        Map<String, String> extensionConfigs = new HashMap<>();
+//      a relative error of 0.001 needs 108760 bytes, while 1000 bytes allow a relative error of about 0.109
+        extensionConfigs.put("approximate.count.memory.budget", "1000");
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(extensionConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:count(number, 0.001, 0.99) " +
+                "select count, countLowerBound, countUpperBound " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final AtomicLong lastCount = new AtomicLong();
+        final AtomicLong lastCountUpperBound = new AtomicLong();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    lastCount.set((Long) event.getData(0));
+                    lastCountUpperBound.set((Long) event.getData(2));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 100; i++) {
+            inputHandler.send(new Object[]{i % 10});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 100, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 100);
+        Assert.assertTrue(lastCount.get() >= 10);
+//      the error bound of the 100 counted events follows the raised relative error
+        Assert.assertEquals(lastCountUpperBound.get() - lastCount.get(), 10L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCount_21() throws InterruptedException {
+        LOG.info("Approximate Count Test Case - for an emit interval after a time window, where the summary " +
+                "events are emitted although the window drops the timer events of the query");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.time(1 sec)" +
+                "#approximate:count(ip, 0.01, 0.99, 0, 100, true) " +
+                "select ip, count, countLowerBound, countUpperBound " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final List<Long> counts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    synchronized (counts) {
+                        counts.add((Long) event.getData(1));
+                    }
+                    totalEventsArrived.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < 5; noOfEvents++) {
+            inputHandler.send(new Object[]{"ip-1"});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 2, totalEventsArrived, 60000);
+        siddhiAppRuntime.shutdown();
+
+        Assert.assertTrue(totalEventsArrived.get() >= 2);
+        synchronized (counts) {
+            Assert.assertEquals(counts.get(0).longValue(), 5L);
+        }
+    }
+
+    @Test
+    public void testApproximateCount_22() throws InterruptedException {
+        final int windowLength = 3;
+
+        LOG.info("Approximate Count Test Case - for an emit interval after a length window, where the window " +
+                "still holds the latest " + windowLength + " input events while the summary events are emitted");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")" +
+                "#approximate:count(ip, 0.01, 0.99, 0, 50) " +
+                "select ip, count " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final AtomicLong maxCount = new AtomicLong(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    maxCount.accumulateAndGet((Long) event.getData(1), Math::max);
+                    totalEventsArrived.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      several summary events are emitted between two input events, none of which is kept by the window
+        for (int noOfEvents = 0; noOfEvents < windowLength; noOfEvents++) {
+            inputHandler.send(new Object[]{"ip-1"});
+            Thread.sleep(300);
+        }
+        siddhiAppRuntime.shutdown();
+
+        Assert.assertTrue(totalEventsArrived.get() > windowLength);
+        Assert.assertEquals(maxCount.get(), windowLength);
+    }
+
+    @Test
+    public void testApproximateCount_23() throws InterruptedException {
+        final int noOfEvents = 2000;
+
+        LOG.info("Approximate Count Test Case - for an emit interval, where the summary events are emitted while " +
+                "the input events are flowing, one at a time through the selector of the query");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:count(ip, 0.01, 0.99, 0, 5) " +
+                "select ip, count, count() as outputs " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final Set<Long> outputs = new HashSet<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    synchronized (outputs) {
+                        outputs.add((Long) event.getData(2));
+                    }
+                    totalEventsArrived.incrementAndGet();
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int eventNo = 0; eventNo < noOfEvents; eventNo++) {
+            inputHandler.send(new Object[]{"ip-" + (eventNo % 10)});
+            if (eventNo % 20 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        siddhiAppRuntime.shutdown();
+
+//      an aggregation updated by the timer and the input at the same time would give two outputs the same value
+        Assert.assertTrue(totalEventsArrived.get() > noOfEvents);
+        synchronized (outputs) {
+            Assert.assertEquals(outputs.size(), totalEventsArrived.get());
+        }
+    }
+
+    @Test
+    public void testApproximateCount_24() throws Exception {
+        LOG.info("Approximate Count Test Case - for an emit interval in a partitioned query, where the emissions " +
+                "of a spilled partition key stop without reloading it, and start again with its next event");
+        File spillDirectory = Files.createTempDirectory("count-spill").toFile();
+        Map<String, String> extensionConfigs = new HashMap<>();
+        extensionConfigs.put("approximate.count.idle.state.ttl", "100");
+        extensionConfigs.put("approximate.count.spill.directory", spillDirectory.getAbsolutePath());
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(extensionConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (tenant string, number int);";
+        String query = ("partition with (tenant of inputStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from inputStream#approximate:count(number, 0.01, 0.99, 0, 400, true) " +
+                "select tenant, count " +
+                "insert into outputStream; " +
+                "end;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final AtomicInteger tenantASummaries = new AtomicInteger(0);
+        final AtomicLong tenantACount = new AtomicLong(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    if ("A".equals(event.getData(0))) {
+                        tenantACount.set((Long) event.getData(1));
+                        tenantASummaries.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{"A", 7});
+        Thread.sleep(200);
+//      the sketch of tenant A has been idle longer than the idle state TTL, hence it is spilled before its emission
+        inputHandler.send(new Object[]{"B", 7});
+        Assert.assertEquals(spillDirectory.listFiles().length, 1);
+        Thread.sleep(400);
+        Assert.assertEquals(spillDirectory.listFiles().length, 1);
+        Assert.assertEquals(tenantASummaries.get(), 0);
+
+        inputHandler.send(new Object[]{"A", 7});
+        SiddhiTestHelper.waitForEvents(200, 1, tenantASummaries, 60000);
+        Assert.assertEquals(tenantACount.get(), 2L);
+
+        siddhiAppRuntime.shutdown();
+        Assert.assertTrue(spillDirectory.delete());
+    }
+
+    @Test
+    public void testApproximateCount_25() throws Exception {
+        LOG.info("Approximate Count Test Case - for an emit interval, where the emissions start again once the " +
+                "Siddhi app is restored, without waiting for the next input event");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String siddhiApp = "@App:name('CountEmission') " +
+                "define stream inputStream (ip string); " +
+                "@info(name = 'query1') " +
+                "from inputStream#approximate:count(ip, 0.01, 0.99, 0, 100, true) " +
+                "select ip, count " +
+                "insert into outputStream;";
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < 3; noOfEvents++) {
+            inputHandler.send(new Object[]{"ip-1"});
+        }
+        SiddhiTestHelper.waitForEvents(200, 1, totalEventsArrived, 60000);
+        byte[] snapshot = siddhiAppRuntime.snapshot();
+        siddhiAppRuntime.shutdown();
+
+        final AtomicInteger restoredSummaries = new AtomicInteger(0);
+        final AtomicLong restoredCount = new AtomicLong(0);
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    restoredCount.set((Long) event.getData(1));
+                    restoredSummaries.incrementAndGet();
+                }
+            }
+        });
+        siddhiAppRuntime.start();
+        siddhiAppRuntime.restore(snapshot);
+
+        SiddhiTestHelper.waitForEvents(200, 1, restoredSummaries, 60000);
+        siddhiAppRuntime.shutdown();
+
+        Assert.assertTrue(restoredSummaries.get() >= 1);
+        Assert.assertEquals(restoredCount.get(), 3L);
+    }
 }
 
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PartitionedCountTestCase {
+    private static final Logger LOG = Logger.getLogger(PartitionedCountTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximatePartitionedCount_1() throws InterruptedException {
+        final int windowLength = 50;
+        final int noOfTenants = 20;
+        final int noOfUniqueEvents = 10;
+        final int totalEventsSent = 4000;
+
+        LOG.info("Approximate Partitioned Count Test Case - for a Siddhi length window inside a partition, " +
+                "where the counts of each partition key are kept apart in the shared sketch");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tenant string, number int);";
+        String query = ("partition with (tenant of inputStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")#approximate:partitionedCount(number) " +
+                "select tenant, number, count, countLowerBound, countUpperBound " +
+                "insert into outputStream; " +
+                "end;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+//      the exact counts of each tenant are recalculated from the events within its window
+        final Map<String, Queue<Integer>> windows = new HashMap<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    String tenant = (String) event.getData(0);
+                    int number = (Integer) event.getData(1);
+                    Queue<Integer> window = windows.computeIfAbsent(tenant, key -> new LinkedList<>());
+                    window.add(number);
+                    if (window.size() > windowLength) {
+                        window.remove();
+                    }
+                    long exactCount = window.stream().filter(value -> value == number).count();
+
+                    long count = (Long) event.getData(2);
+                    long lowerBound = (Long) event.getData(3);
+                    long upperBound = (Long) event.getData(4);
+                    if (count >= exactCount && exactCount >= lowerBound && exactCount <= upperBound) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      each tenant sees the values with a different frequency, so that mixing the partitions changes the counts
+        for (int noOfEvents = 0; noOfEvents < totalEventsSent; noOfEvents++) {
+            int tenant = noOfEvents % noOfTenants;
+            int number = (noOfEvents / noOfTenants) % (noOfUniqueEvents - tenant % 5);
+            inputHandler.send(new Object[]{"tenant" + tenant, number});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), totalEventsSent);
+        Assert.assertTrue((double) validEvents.get() / totalEventsArrived.get() >= 0.99);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximatePartitionedCount_2() throws InterruptedException {
+        LOG.info("Approximate Partitioned Count Test Case - to check the number of parameters " +
+                "passed to the partitionedCount function are not 1 or 3");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (tenant string, number int);";
+        String query = ("partition with (tenant of inputStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from inputStream#window.length(50)#approximate:partitionedCount(number, 0.001) " +
+                "select * " +
+                "insert into outputStream; " +
+                "end;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("1 or 3 attributes are expected but 2 " +
+                    "attributes are found inside the partitionedCount function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
+
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.count;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimeSlicedCountTestCase {
+    private static final Logger LOG = Logger.getLogger(TimeSlicedCountTestCase.class);
+    private final int totalEventsSent = 5000;
+    private final int noOfUniqueEvents = 50;
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateTimeSlicedCount_1() throws InterruptedException {
+        final long windowTime = 10000;
+        final int noOfPanes = 10;
+        final long timeBetweenEvents = 10;
+        final double confidence = 0.9;
+        final double relativeError = 0.05;
+
+        LOG.info("Approximate Time Sliced Count Test Case - for a sliding window of " + windowTime +
+                " milliseconds in " + noOfPanes + " panes - a specified relative error(" + relativeError +
+                ") and a confidence(" + confidence + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:timeSlicedCount(number, " + windowTime + ", " + noOfPanes + ", " +
+                relativeError + ", " + confidence + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int eventNo = totalEventsArrived.getAndIncrement();
+
+//                  the window holds the current pane and the previous noOfPanes panes
+                    long paneLength = windowTime / noOfPanes;
+                    long timestamp = eventNo * timeBetweenEvents;
+                    long windowStart = (timestamp / paneLength - noOfPanes) * paneLength;
+                    long exactCount = 0;
+                    for (int i = 0; i <= eventNo; i++) {
+                        if (i * timeBetweenEvents >= windowStart &&
+                                i % noOfUniqueEvents == eventNo % noOfUniqueEvents) {
+                            exactCount++;
+                        }
+                    }
+
+                    if (exactCount >= (long) event.getData(2) && exactCount <= (long) event.getData(3)) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalEventsSent; noOfEvents++) {
+            inputHandler.send(noOfEvents * timeBetweenEvents, new Object[]{noOfEvents % noOfUniqueEvents});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+        Assert.assertTrue((double) validEvents.get() / totalEventsArrived.get() >= confidence);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateTimeSlicedCount_2() throws InterruptedException {
+        LOG.info("Approximate Time Sliced Count Test Case - the events of the panes which left the window are not " +
+                "counted");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:timeSlicedCount(ip, 1 sec, 2) " +
+                "select ip, timeSlicedCount " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Long> counts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    counts.add((Long) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      the panes are [1000, 1500), [1500, 2000) and so on, and the window holds the current pane and the previous
+//      2 panes, hence the event at 1000 is still counted at 2100, while it is one pane older than the window
+        inputHandler.send(1000, new Object[]{"a"});
+        inputHandler.send(1400, new Object[]{"a"});
+        inputHandler.send(1600, new Object[]{"a"});
+        inputHandler.send(2100, new Object[]{"a"});
+        inputHandler.send(2600, new Object[]{"a"});
+        inputHandler.send(5000, new Object[]{"a"});
+
+        SiddhiTestHelper.waitForEvents(200, 6, totalEventsArrived, 60000);
+        Assert.assertEquals(counts.size(), 6);
+        Assert.assertEquals(counts.get(0).longValue(), 1L);
+        Assert.assertEquals(counts.get(1).longValue(), 2L);
+        Assert.assertEquals(counts.get(2).longValue(), 3L);
+        Assert.assertEquals(counts.get(3).longValue(), 4L);
+        Assert.assertEquals(counts.get(4).longValue(), 3L);
+        Assert.assertEquals(counts.get(5).longValue(), 1L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateTimeSlicedCount_3() throws InterruptedException {
+        LOG.info("Approximate Time Sliced Count Test Case - to validate the 3rd parameter inside " +
+                "timeSlicedCount function is a positive value");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:timeSlicedCount(number, 1 min, 0) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside timeSlicedCount " +
+                    "function - 'no.of.panes' must be a positive value but found 0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
+
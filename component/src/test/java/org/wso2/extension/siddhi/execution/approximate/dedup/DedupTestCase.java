@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.dedup;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DedupTestCase {
+    private static final Logger LOG = Logger.getLogger(DedupTestCase.class);
+    private final int noOfUniqueEvents = 1000;
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateDedup_1() throws InterruptedException {
+        final double falsePositiveRate = 0.01;
+
+        LOG.info("Approximate Dedup Test Case - replayed events are dropped with a " +
+                "false positive rate(" + falsePositiveRate + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (id string, value int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:dedup(id, " + falsePositiveRate + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        AtomicInteger firstPassArrived = new AtomicInteger(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    if ((int) event.getData(1) == 0) {
+                        firstPassArrived.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      send every id twice, the second pass replays the ids of the first pass
+        for (int pass = 0; pass < 2; pass++) {
+            for (int noOfEvents = 0; noOfEvents < noOfUniqueEvents; noOfEvents++) {
+                inputHandler.send(new Object[]{"id-" + noOfEvents, pass});
+            }
+        }
+
+        Assert.assertTrue(firstPassArrived.get() >= noOfUniqueEvents * (1 - 5 * falsePositiveRate));
+        Assert.assertEquals(firstPassArrived.get(), totalEventsArrived.get());
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateDedup_2() throws InterruptedException {
+        LOG.info("Approximate Dedup Test Case - old ids are forgotten when the memory budget is small");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (id long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:dedup(id, 0.01, 64) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (long noOfEvents = 0; noOfEvents < 100 * noOfUniqueEvents; noOfEvents++) {
+            inputHandler.send(new Object[]{noOfEvents});
+        }
+//      the filter of 256 cells can not remember 100000 ids, but the new ids are still mostly emitted
+        int arrivedBeforeReplay = totalEventsArrived.get();
+        Assert.assertTrue(arrivedBeforeReplay >= 100 * noOfUniqueEvents * 0.9);
+
+        inputHandler.send(new Object[]{0L});
+        Assert.assertEquals(arrivedBeforeReplay + 1, totalEventsArrived.get());
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateDedup_3() throws InterruptedException {
+        LOG.info("Approximate Dedup Test Case - to check the number of parameters " +
+                "passed to the dedup function are not more than 3");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (id string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:dedup(id, 0.01, 1024, 5) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("1, 2 or 3 attributes are expected but 4 " +
+                    "attributes are found inside the dedup function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateDedup_4() throws InterruptedException {
+        LOG.info("Approximate Dedup Test Case - to validate the 2nd parameter inside dedup function is in the " +
+                "range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (id string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:dedup(id, 1.0) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside dedup function - " +
+                    "'false.positive.rate' must be in the range of (0, 1) but found 1.0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateDedup_5() throws InterruptedException {
+        LOG.info("Approximate Dedup Test Case - to validate the 3rd parameter inside dedup function is an " +
+                "int or a long");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (id string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:dedup(id, 0.01, 1024.0) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside dedup function - " +
+                    "'memory.budget' should be of type Int or Long but found DOUBLE"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DistinctCountAggTestCase {
+    private static final Logger LOG = Logger.getLogger(DistinctCountAggTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateDistinctCountAgg_1() throws InterruptedException {
+        final int windowLength = 1000;
+        final int totalNoOfEvents = 5000;
+        final double relativeError = 0.02;
+
+        LOG.info("Approximate Distinct Count Aggregator Test Case - for Siddhi length window with group by");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, region string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ") " +
+                "select region, approximate:distinctCountAgg(ip, " + relativeError + ") as distinctCount " +
+                "group by region " +
+                "insert into outputStream;");
+
+        Map<String, Integer> noOfEventsOfRegion = new HashMap<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+//                  each event has a distinct ip, and the window holds windowLength / 2 events of each region
+                    String region = (String) event.getData(0);
+                    int noOfEvents = noOfEventsOfRegion.merge(region, 1, Integer::sum);
+                    long exactCount = Math.min(noOfEvents, windowLength / 2);
+                    long distinctCount = (long) event.getData(1);
+                    if (Math.abs(distinctCount - exactCount) <= 3 * relativeError * exactCount) {
+                        validEventsArrived.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < totalNoOfEvents; i++) {
+            inputHandler.send(new Object[]{"10.0." + i, i % 2 == 0 ? "east" : "west"});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalNoOfEvents, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), totalNoOfEvents);
+        Assert.assertTrue((double) validEventsArrived.get() / totalNoOfEvents >= 0.95);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateDistinctCountAgg_2() throws InterruptedException {
+        LOG.info("Approximate Distinct Count Aggregator Test Case - to validate the 2nd parameter inside " +
+                "distinctCountAgg function is a constant");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, error double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(10) " +
+                "select approximate:distinctCountAgg(ip, error) as distinctCount " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside distinctCountAgg " +
+                    "function - 'relative.error' has to be a constant but found " +
+                    "io.siddhi.core.executor.VariableExpressionExecutor"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateDistinctCountAgg_3() throws InterruptedException {
+        LOG.info("Approximate Distinct Count Aggregator Test Case - the state of a group is released once all the " +
+                "values of the group expired from the window");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, region string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(10) " +
+                "select region, approximate:distinctCountAgg(ip, 0.26) as distinctCount " +
+                "group by region " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 10; i++) {
+            inputHandler.send(new Object[]{"10.0.0." + i, "region-" + i});
+        }
+        int snapshotSizeOfWindow = siddhiAppRuntime.snapshot().length;
+//      each region appears once, hence only the 10 regions in the window keep a state
+        for (int i = 10; i < 1010; i++) {
+            inputHandler.send(new Object[]{"10.0.0." + i, "region-" + i});
+        }
+        int snapshotSizeAfterExpiry = siddhiAppRuntime.snapshot().length;
+
+        SiddhiTestHelper.waitForEvents(200, 1010, totalEventsArrived, 60000);
+        Assert.assertTrue(snapshotSizeAfterExpiry < 2 * snapshotSizeOfWindow);
+
+        siddhiAppRuntime.shutdown();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DistinctCountSketchTestCase {
+    private static final Logger LOG = Logger.getLogger(DistinctCountSketchTestCase.class);
+    private final int windowLength = 1000;
+    private final double relativeError = 0.01;
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateDistinctCountSketch_1() throws InterruptedException {
+        LOG.info("Approximate Distinct Count Sketch Test Case - the distinct count of the values in a window is " +
+                "read by approximate:cardinalityOf in another query");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string); " +
+                "define stream triggerStream (triggerId int);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#window.length(" + windowLength + ")" +
+                "#approximate:distinctCountSketch('ips', ip, " + relativeError + ", 0.99) " +
+                "select * " +
+                "insert into requestLogStream; " +
+                "@info(name = 'query2') " +
+                "from triggerStream " +
+                "select triggerId, approximate:cardinalityOf('ips') as distinctIps " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Long> distinctCounts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    distinctCounts.add((Long) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler requestHandler = siddhiAppRuntime.getInputHandler("requestStream");
+        InputHandler triggerHandler = siddhiAppRuntime.getInputHandler("triggerStream");
+        siddhiAppRuntime.start();
+
+        triggerHandler.send(new Object[]{0});
+//      each ip is sent twice, so that the window holds 500 distinct ips once it is full
+        for (int i = 0; i < 2 * windowLength; i++) {
+            requestHandler.send(new Object[]{"ip-" + (i / 2)});
+        }
+        triggerHandler.send(new Object[]{1});
+
+        Assert.assertEquals(totalEventsArrived.get(), 2);
+        Assert.assertEquals(distinctCounts.get(0).longValue(), 0L);
+        long actualCount = windowLength / 2;
+        long[] confidenceInterval = HyperLogLog.getConfidenceInterval(distinctCounts.get(1), relativeError, 0.99);
+        Assert.assertTrue(actualCount >= confidenceInterval[0] && actualCount <= confidenceInterval[1]);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateDistinctCountSketch_2() throws InterruptedException {
+        LOG.info("Approximate Distinct Count Sketch Test Case - to validate the 4th parameter inside " +
+                "distinctCountSketch function is one of the supported confidences");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#approximate:distinctCountSketch('ips', ip, 0.01, 0.5) " +
+                "select * " +
+                "insert into requestLogStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 4th parameter inside distinctCountSketch " +
+                    "function - 'confidence' must be a value from 0.65, 0.95 and 0.99 but found 0.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateDistinctCountSketch_3() throws InterruptedException {
+        LOG.info("Approximate Distinct Count Sketch Test Case - to validate the distinctCountSketch function " +
+                "cannot be used inside a partition");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (tenant string, ip string);";
+        String query = ("partition with (tenant of requestStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from requestStream#approximate:distinctCountSketch('uniqueIps', ip) " +
+                "select * " +
+                "insert into requestLogStream; " +
+                "end;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The distinctCountSketch function cannot be " +
+                    "used inside a partition"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
+
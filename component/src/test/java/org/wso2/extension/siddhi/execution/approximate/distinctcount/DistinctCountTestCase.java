@@ -25,11 +25,18 @@ import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.stream.input.InputHandler;
 import io.siddhi.core.stream.output.StreamCallback;
 import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
 import org.apache.log4j.Logger;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class DistinctCountTestCase {
@@ -411,7 +418,7 @@ public class DistinctCountTestCase {
         final int windowLength = 500;
 
         LOG.info("Approximate Distinct Count Test Case - to check the number of parameters passed " +
-                "to the distinctCount function are not 1 or 3");
+                "to the distinctCount function are not 1, 3, 4, 5 or 6");
         SiddhiManager siddhiManager = new SiddhiManager();
 
         String inStreamDefinition = "define stream inputStream (number int);";
@@ -425,8 +432,8 @@ public class DistinctCountTestCase {
         } catch (Exception e) {
             exceptionOccurred = true;
             Assert.assertTrue(e instanceof SiddhiAppCreationException);
-            Assert.assertTrue(e.getCause().getMessage().contains("1 or 3 attributes are expected but 2 attributes" +
-                    " are found inside the distinctCount function"));
+            Assert.assertTrue(e.getCause().getMessage().contains("1, 3, 4, 5 or 6 attributes are expected but 2 " +
+                    "attributes are found inside the distinctCount function"));
         }
         Assert.assertEquals(true, exceptionOccurred);
     }
@@ -611,5 +618,309 @@ public class DistinctCountTestCase {
         }
         Assert.assertEquals(true, exceptionOccurred);
     }
+
+    @Test
+    public void testApproximateCardinality_12() throws InterruptedException {
+        final int windowLength = 500;
+        final AtomicInteger exactCount = new AtomicInteger(0);
+
+        LOG.info("Approximate Distinct Count Test Case - for Siddhi length window - exact bitmap");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")" +
+                "#approximate:distinctCount(number, 0.01, 0.95, true) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalCount.incrementAndGet();
+                    long exactCardinality = Math.min(totalCount.get(), windowLength);
+                    if ((long) event.getData(1) == exactCardinality && (long) event.getData(2) == exactCardinality
+                            && (long) event.getData(3) == exactCardinality) {
+                        exactCount.incrementAndGet();
+                    }
+                }
+                eventArrived = true;
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalNoOfEvents; noOfEvents++) {
+            inputHandler.send(new Object[]{noOfEvents});
+        }
+        SiddhiTestHelper.waitForEvents(200, totalNoOfEvents, totalCount, 60000);
+        Assert.assertEquals(totalNoOfEvents, totalCount.get());
+        Assert.assertTrue(eventArrived);
+//      the bitmap of a window of 500 values stays smaller than the HyperLogLog, hence the counts are exact
+        Assert.assertEquals(totalNoOfEvents, exactCount.get());
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCardinality_13() throws InterruptedException {
+        final int windowLength = 1000;
+        final AtomicInteger exactCount = new AtomicInteger(0);
+
+        LOG.info("Approximate Distinct Count Test Case - for Siddhi length window - exact bitmap switched to " +
+                "HyperLogLog");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")" +
+                "#approximate:distinctCount(number, 0.1, 0.95, true) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalCount.incrementAndGet();
+                    if ((long) event.getData(1) == totalCount.get() && (long) event.getData(2) == totalCount.get()
+                            && (long) event.getData(3) == totalCount.get()) {
+                        exactCount.incrementAndGet();
+                    }
+                }
+                eventArrived = true;
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < windowLength; noOfEvents++) {
+            inputHandler.send(new Object[]{(long) noOfEvents});
+        }
+        SiddhiTestHelper.waitForEvents(200, windowLength, totalCount, 60000);
+        Assert.assertEquals(windowLength, totalCount.get());
+        Assert.assertTrue(eventArrived);
+//      the bitmap becomes larger than the 128 buckets of the HyperLogLog after about 80 values
+        Assert.assertTrue(exactCount.get() > 50);
+        Assert.assertTrue(exactCount.get() < 100);
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCardinality_14() throws InterruptedException {
+        LOG.info("Approximate Distinct Count Test Case - to validate the 1st parameter inside distinctCount " +
+                "function is an integer when the exact bitmap is used");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:distinctCount(number, 0.01, 0.95, true) " +
+                "select * " +
+                "insert into outputStream;");
+        boolean exceptionOccurred = false;
+        try {
+            SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 1st parameter inside distinctCount function - " +
+                    "'value' should be of type Integer or Long when 'exact.bitmap' is true but found STRING"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCardinality_15() throws InterruptedException {
+        final double relativeError = 0.01;
+        final double confidence = 0.95;
+
+        LOG.info("Approximate Distinct Count Test Case - for an emit interval, where the summary events are " +
+                "emitted along with the input events");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + totalNoOfEvents + ")" +
+                "#approximate:distinctCount(number, " + relativeError + ", " + confidence + ", false, 500) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final AtomicInteger validSummaries = new AtomicInteger(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+//                  the events after the input events are the summaries of all the distinct values
+                    if (totalCount.incrementAndGet() > totalNoOfEvents) {
+                        long distinctCount = (Long) event.getData(1);
+                        if (Math.abs(distinctCount - totalNoOfEvents) <= totalNoOfEvents * relativeError &&
+                                (Long) event.getData(2) <= distinctCount && (Long) event.getData(3) >= distinctCount) {
+                            validSummaries.incrementAndGet();
+                        }
+                    }
+                }
+                eventArrived = true;
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalNoOfEvents; noOfEvents++) {
+            inputHandler.send(new Object[]{noOfEvents});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalNoOfEvents + 2, totalCount, 60000);
+        siddhiAppRuntime.shutdown();
+
+        Assert.assertTrue(eventArrived);
+        Assert.assertTrue(totalCount.get() >= totalNoOfEvents + 2);
+        Assert.assertEquals(validSummaries.get(), totalCount.get() - totalNoOfEvents);
+    }
+
+    @Test
+    public void testApproximateCardinality_16() {
+        LOG.info("Approximate Cardinality Test Case - to validate the memory budget can hold the buckets of " +
+                "a HyperLogLog with their past counts");
+        Map<String, String> extensionConfigs = new HashMap<>();
+//      1000 bytes hold the counts of 250 buckets, but the past counts of only 9 buckets
+        extensionConfigs.put("approximate.distinctCount.memory.budget", "1000");
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(extensionConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(1000)#approximate:distinctCount(number) " +
+                "select distinctCount " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The system parameter 'memory.budget' of the " +
+                    "distinctCount function is too small, as a memory budget of 1000 bytes cannot hold the 16 " +
+                    "buckets of a HyperLogLog with their past counts"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCardinality_17() throws Exception {
+        LOG.info("Approximate Cardinality Test Case - for a partitioned query, where the sketch of an idle " +
+                "partition key is spilled to a file and reloaded when the partition key receives an event again");
+        File spillDirectory = Files.createTempDirectory("distinctCount-spill").toFile();
+        Map<String, String> extensionConfigs = new HashMap<>();
+        extensionConfigs.put("approximate.distinctCount.idle.state.ttl", "100");
+        extensionConfigs.put("approximate.distinctCount.spill.directory", spillDirectory.getAbsolutePath());
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(extensionConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (tenant string, number int);";
+        String query = ("partition with (tenant of inputStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:distinctCount(number) " +
+                "select tenant, distinctCount " +
+                "insert into outputStream; " +
+                "end;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final List<Long> tenantADistinctCounts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalCount.incrementAndGet();
+                    if ("A".equals(event.getData(0))) {
+                        tenantADistinctCounts.add((Long) event.getData(1));
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{"A", 7});
+        inputHandler.send(new Object[]{"A", 8});
+        Thread.sleep(300);
+//      the sketch of tenant A has been idle longer than the idle state TTL, hence it is spilled
+        inputHandler.send(new Object[]{"B", 7});
+        Thread.sleep(300);
+        inputHandler.send(new Object[]{"B", 7});
+        Assert.assertEquals(spillDirectory.listFiles().length, 1);
+        inputHandler.send(new Object[]{"A", 9});
+        Assert.assertEquals(spillDirectory.listFiles().length, 0);
+
+        SiddhiTestHelper.waitForEvents(200, 5, totalCount, 60000);
+        Assert.assertEquals(totalCount.get(), 5);
+        Assert.assertEquals(tenantADistinctCounts.size(), 3);
+        Assert.assertEquals(tenantADistinctCounts.get(2).longValue(), 3L);
+
+        siddhiAppRuntime.shutdown();
+        Assert.assertTrue(spillDirectory.delete());
+    }
+
+    @Test
+    public void testApproximateCardinality_18() throws InterruptedException {
+        final int noOfValues = 10;
+
+        LOG.info("Approximate Distinct Count Test Case - for an emit interval after a time window, where the " +
+                "summary events are emitted although the window drops the timer events of the query");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.time(1 sec)" +
+                "#approximate:distinctCount(number, 0.01, 0.95, false, 100, true) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final List<Long> distinctCounts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    synchronized (distinctCounts) {
+                        distinctCounts.add((Long) event.getData(1));
+                    }
+                    totalCount.incrementAndGet();
+                }
+                eventArrived = true;
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < noOfValues; noOfEvents++) {
+            inputHandler.send(new Object[]{noOfEvents});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 2, totalCount, 60000);
+        siddhiAppRuntime.shutdown();
+
+        Assert.assertTrue(eventArrived);
+        Assert.assertTrue(totalCount.get() >= 2);
+        synchronized (distinctCounts) {
+            Assert.assertTrue(Math.abs(distinctCounts.get(0) - noOfValues) <= 1);
+        }
+    }
 }
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HyperLogLogAggregatorTestCase {
+    private static final Logger LOG = Logger.getLogger(HyperLogLogAggregatorTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateHyperLogLog_1() throws InterruptedException {
+        LOG.info("Approximate HyperLogLog Aggregator Test Case - merging the HyperLogLogs of batches");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        List<Object[]> results = new ArrayList<>();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.lengthBatch(1000) " +
+                "select approximate:hyperLogLog(ip) as ipSketch " +
+                "insert into sketchStream; " +
+                "@info(name = 'query2') " +
+                "from sketchStream#window.lengthBatch(4) " +
+                "select approximate:cardinality(approximate:hyperLogLog(ipSketch)) as distinctCount " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      each batch of 1000 events has 1000 distinct ips, half of which are in the next batch as well
+        for (int batch = 0; batch < 4; batch++) {
+            for (int i = 0; i < 1000; i++) {
+                inputHandler.send(new Object[]{"10.0." + (batch * 500 + i)});
+            }
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 1, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 1);
+        long distinctCount = (long) results.get(0)[0];
+//      4 standard errors of a HyperLogLog of 0.01 relative error
+        Assert.assertTrue(Math.abs(distinctCount - 2500) <= 2500 * 0.04);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateHyperLogLog_2() throws InterruptedException {
+        final long startTime = 1496289950000L;
+
+        LOG.info("Approximate HyperLogLog Aggregator Test Case - inside an incremental aggregation");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, timestamp long);";
+        String aggregation = ("define aggregation ipAggregation " +
+                "from inputStream " +
+                "select approximate:hyperLogLog(ip) as ipSketch " +
+                "aggregate by timestamp every sec ... min;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + aggregation);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      each second has 2000 distinct ips, half of which are in the next second as well
+        for (int second = 0; second < 3; second++) {
+            for (int i = 0; i < 2000; i++) {
+                inputHandler.send(new Object[]{"10.0." + (second * 1000 + i), startTime + second * 1000 + i % 1000});
+            }
+        }
+
+        Event[] events = siddhiAppRuntime.query("from ipAggregation " +
+                "within " + (startTime - 60000) + "L, " + (startTime + 60000) + "L per \"seconds\" " +
+                "select AGG_TIMESTAMP, approximate:cardinality(ipSketch) as distinctCount " +
+                "order by AGG_TIMESTAMP;");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 3);
+        for (Event event : events) {
+            Assert.assertTrue(Math.abs((long) event.getData(1) - 2000) <= 2000 * 0.04);
+        }
+
+//      the HyperLogLogs of the seconds are merged for the minute
+        events = siddhiAppRuntime.query("from ipAggregation " +
+                "within " + (startTime - 60000) + "L, " + (startTime + 60000) + "L per \"minutes\" " +
+                "select approximate:cardinality(ipSketch) as distinctCount;");
+        Assert.assertNotNull(events);
+        Assert.assertEquals(events.length, 1);
+        Assert.assertTrue(Math.abs((long) events[0].getData(0) - 4000) <= 4000 * 0.04);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateHyperLogLog_3() throws InterruptedException {
+        LOG.info("Approximate HyperLogLog Aggregator Test Case - to validate the 2nd parameter inside hyperLogLog " +
+                "function is in the range (0, 0.26]");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.lengthBatch(10) " +
+                "select approximate:hyperLogLog(ip, 0.5) as ipSketch " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside hyperLogLog function - " +
+                    "'relative.error' must be in the range of (0, 0.26] but found 0.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateHyperLogLog_4() throws InterruptedException {
+        LOG.info("Approximate HyperLogLog Aggregator Test Case - the state of a group is released once the " +
+                "HyperLogLog of the group is reset by the batch window");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, region string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.lengthBatch(10) " +
+                "select region, approximate:cardinality(approximate:hyperLogLog(ip, 0.26)) as distinctCount " +
+                "group by region " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 10; i++) {
+            inputHandler.send(new Object[]{"10.0.0." + i, "region-" + i});
+        }
+        int snapshotSizeOfBatch = siddhiAppRuntime.snapshot().length;
+//      each region appears once, hence only the regions of the current batch keep a state
+        for (int i = 10; i < 1010; i++) {
+            inputHandler.send(new Object[]{"10.0.0." + i, "region-" + i});
+        }
+        int snapshotSizeAfterReset = siddhiAppRuntime.snapshot().length;
+
+        SiddhiTestHelper.waitForEvents(200, 1010, totalEventsArrived, 60000);
+        Assert.assertTrue(snapshotSizeAfterReset < 2 * snapshotSizeOfBatch);
+
+        siddhiAppRuntime.shutdown();
+    }
+}
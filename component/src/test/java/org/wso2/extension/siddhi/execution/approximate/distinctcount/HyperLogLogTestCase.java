@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+public class HyperLogLogTestCase {
+    private static final Logger LOG = Logger.getLogger(HyperLogLogTestCase.class);
+    private final double relativeError = 0.01;
+    private final double confidence = 0.95;
+//  a HyperLogLog of the above relative error has 16384 int buckets
+    private final int countArraySize = 16384 * Integer.BYTES;
+
+    @Test
+    public void testHyperLogLog_1() {
+        LOG.info("HyperLogLog Test Case - the distinct count is read and the items are removed before the first " +
+                "item is added");
+        HyperLogLog<String> hyperLogLog = new HyperLogLog<>(relativeError, confidence, true);
+
+        Assert.assertTrue(hyperLogLog.isEmpty());
+        Assert.assertEquals(hyperLogLog.getCardinality(), 0L);
+        hyperLogLog.removeItem("ip-0");
+        Assert.assertTrue(hyperLogLog.isEmpty());
+        Assert.assertEquals(hyperLogLog.getCardinality(), 0L);
+        Assert.assertEquals(hyperLogLog.getConfidenceInterval(), new long[]{0, 0});
+
+        hyperLogLog.addItem("ip-0");
+        Assert.assertFalse(hyperLogLog.isEmpty());
+        Assert.assertEquals(hyperLogLog.getCardinality(), 1L);
+    }
+
+    @Test
+    public void testHyperLogLog_2() {
+        LOG.info("HyperLogLog Test Case - a HyperLogLog into which no item is added is merged and restored");
+        HyperLogLog<String> hyperLogLog = new HyperLogLog<>(relativeError, confidence, false);
+        for (int i = 0; i < 1000; i++) {
+            hyperLogLog.addItem("ip-" + i);
+        }
+        long cardinality = hyperLogLog.getCardinality();
+
+        hyperLogLog.merge(new HyperLogLog<>(relativeError, confidence, false));
+        Assert.assertEquals(hyperLogLog.getCardinality(), cardinality);
+
+        HyperLogLog<String> mergedHyperLogLog = new HyperLogLog<>(relativeError, confidence, false);
+        mergedHyperLogLog.merge(hyperLogLog);
+        Assert.assertEquals(mergedHyperLogLog.getCardinality(), cardinality);
+
+        hyperLogLog.restore(new HyperLogLog<>(relativeError, confidence, false));
+        Assert.assertTrue(hyperLogLog.isEmpty());
+        Assert.assertEquals(hyperLogLog.getCardinality(), 0L);
+    }
+
+    @Test
+    public void testHyperLogLog_3() throws IOException {
+        LOG.info("HyperLogLog Test Case - clear zeroes the buckets and keeps the arrays");
+        HyperLogLog<String> hyperLogLog = new HyperLogLog<>(relativeError, confidence, true);
+        int unallocatedSize = getSerializedSize(hyperLogLog);
+        for (int i = 0; i < 1000; i++) {
+            hyperLogLog.addItem("ip-" + i);
+        }
+
+        hyperLogLog.clear();
+
+        Assert.assertTrue(hyperLogLog.isEmpty());
+        Assert.assertEquals(hyperLogLog.getCardinality(), 0L);
+        Assert.assertTrue(getSerializedSize(hyperLogLog) >= unallocatedSize + countArraySize);
+        hyperLogLog.addItem("ip-0");
+        Assert.assertEquals(hyperLogLog.getCardinality(), 1L);
+    }
+
+    @Test
+    public void testHyperLogLog_4() {
+        LOG.info("HyperLogLog Test Case - the HyperLogLog is empty once all the added items are removed");
+        HyperLogLog<String> hyperLogLog = new HyperLogLog<>(relativeError, confidence, true);
+        for (int i = 0; i < 100; i++) {
+            hyperLogLog.addItem("ip-" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(hyperLogLog.isEmpty());
+            hyperLogLog.removeItem("ip-" + i);
+        }
+        Assert.assertTrue(hyperLogLog.isEmpty());
+        Assert.assertEquals(hyperLogLog.getCardinality(), 0L);
+    }
+
+    private static int getSerializedSize(Object sketch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(sketch);
+        }
+        return bytes.size();
+    }
+}
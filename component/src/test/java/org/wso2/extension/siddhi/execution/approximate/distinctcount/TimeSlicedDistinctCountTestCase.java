@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcount;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimeSlicedDistinctCountTestCase {
+    private static final Logger LOG = Logger.getLogger(TimeSlicedDistinctCountTestCase.class);
+    private final int totalEventsSent = 5000;
+    private final int noOfUniqueEvents = 3000;
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateTimeSlicedDistinctCount_1() throws InterruptedException {
+        final long windowTime = 10000;
+        final int noOfPanes = 10;
+        final long timeBetweenEvents = 10;
+        final double confidence = 0.99;
+        final double relativeError = 0.05;
+
+        LOG.info("Approximate Time Sliced Distinct Count Test Case - for a sliding window of " + windowTime +
+                " milliseconds in " + noOfPanes + " panes - a specified relative error(" + relativeError +
+                ") and a confidence(" + confidence + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:timeSlicedDistinctCount(number, " + windowTime + ", " + noOfPanes +
+                ", " + relativeError + ", " + confidence + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int eventNo = totalEventsArrived.getAndIncrement();
+
+//                  the window holds the events of the current pane and the previous noOfPanes panes, whose
+//                  values are consecutive
+                    long paneLength = windowTime / noOfPanes;
+                    long timestamp = eventNo * timeBetweenEvents;
+                    long windowStart = Math.max(0, (timestamp / paneLength - noOfPanes) * paneLength);
+                    long noOfEventsInWindow = eventNo - windowStart / timeBetweenEvents + 1;
+                    long exactDistinctCount = Math.min(noOfEventsInWindow, noOfUniqueEvents);
+
+                    if (exactDistinctCount >= (long) event.getData(2) &&
+                            exactDistinctCount <= (long) event.getData(3)) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalEventsSent; noOfEvents++) {
+            inputHandler.send(noOfEvents * timeBetweenEvents, new Object[]{noOfEvents % noOfUniqueEvents});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+        Assert.assertTrue((double) validEvents.get() / totalEventsArrived.get() >= confidence);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateTimeSlicedDistinctCount_2() throws InterruptedException {
+        LOG.info("Approximate Time Sliced Distinct Count Test Case - the values of the panes which left the " +
+                "window are not counted");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:timeSlicedDistinctCount(ip, 1 sec, 2) " +
+                "select ip, timeSlicedDistinctCount " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Long> distinctCounts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    distinctCounts.add((Long) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      the panes are [1000, 1500), [1500, 2000) and so on, and the window holds the current pane and the previous
+//      2 panes, hence the value at 1000 is still counted at 2100, while it is one pane older than the window
+        inputHandler.send(1000, new Object[]{"a"});
+        inputHandler.send(1400, new Object[]{"b"});
+        inputHandler.send(1600, new Object[]{"c"});
+        inputHandler.send(2100, new Object[]{"c"});
+        inputHandler.send(2600, new Object[]{"c"});
+        inputHandler.send(5000, new Object[]{"a"});
+
+        SiddhiTestHelper.waitForEvents(200, 6, totalEventsArrived, 60000);
+        Assert.assertEquals(distinctCounts.size(), 6);
+        Assert.assertEquals(distinctCounts.get(0).longValue(), 1L);
+        Assert.assertEquals(distinctCounts.get(1).longValue(), 2L);
+        Assert.assertEquals(distinctCounts.get(2).longValue(), 3L);
+        Assert.assertEquals(distinctCounts.get(3).longValue(), 3L);
+        Assert.assertEquals(distinctCounts.get(4).longValue(), 1L);
+        Assert.assertEquals(distinctCounts.get(5).longValue(), 1L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateTimeSlicedDistinctCount_3() throws InterruptedException {
+        LOG.info("Approximate Time Sliced Distinct Count Test Case - to validate the 4th parameter inside " +
+                "timeSlicedDistinctCount function is in the range of (0, 0.26]");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:timeSlicedDistinctCount(number, 1 min, 6, 0.5, 0.95) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 4th parameter inside " +
+                    "timeSlicedDistinctCount function - 'relative.error' must be in the range of (0, 0.26] but " +
+                    "found 0.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
+
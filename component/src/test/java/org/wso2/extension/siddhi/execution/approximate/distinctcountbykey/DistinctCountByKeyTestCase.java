@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.distinctcountbykey;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DistinctCountByKeyTestCase {
+    private static final Logger LOG = Logger.getLogger(DistinctCountByKeyTestCase.class);
+    private final int noOfKeys = 10;
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateDistinctCountByKey_1() throws InterruptedException {
+        final double relativeError = 0.05;
+
+        LOG.info("Approximate Distinct Count By Key Test Case - the distinct count of each key is within the " +
+                "relative error(" + relativeError + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (source string, destination long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountByKey(source, destination, " + relativeError +
+                ", 0.99) " +
+                "select source, distinctCountByKey, distinctCountByKeyLowerBound, distinctCountByKeyUpperBound " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        Map<String, Long> lastCounts = new ConcurrentHashMap<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    lastCounts.put((String) event.getData(0), (Long) event.getData(1));
+                    Assert.assertTrue((Long) event.getData(2) <= (Long) event.getData(1));
+                    Assert.assertTrue((Long) event.getData(3) >= (Long) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      the source i contacts (i + 1) * 500 distinct destinations, each destination twice
+        int noOfEvents = 0;
+        for (int key = 0; key < noOfKeys; key++) {
+            for (int pass = 0; pass < 2; pass++) {
+                for (long destination = 0; destination < (key + 1) * 500; destination++) {
+                    inputHandler.send(new Object[]{"source-" + key, destination});
+                    noOfEvents++;
+                }
+            }
+        }
+
+        Assert.assertEquals(totalEventsArrived.get(), noOfEvents);
+        for (int key = 0; key < noOfKeys; key++) {
+            long actualCount = (key + 1) * 500;
+            long estimatedCount = lastCounts.get("source-" + key);
+            Assert.assertTrue(Math.abs(estimatedCount - actualCount) <= actualCount * relativeError * 3);
+        }
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateDistinctCountByKey_2() throws InterruptedException {
+        LOG.info("Approximate Distinct Count By Key Test Case - the least recently seen key is forgotten when " +
+                "the number of keys exceeds max.keys");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (source string, destination int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountByKey(source, destination, 0.05, 0.95, 2) " +
+                "select source, distinctCountByKey " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        Map<String, Long> lastCounts = new ConcurrentHashMap<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    lastCounts.put((String) event.getData(0), (Long) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{"a", 1});
+        inputHandler.send(new Object[]{"a", 2});
+        inputHandler.send(new Object[]{"b", 1});
+        inputHandler.send(new Object[]{"b", 2});
+        inputHandler.send(new Object[]{"a", 3});
+//      'b' is the least recently seen key, hence it is forgotten to track 'c'
+        inputHandler.send(new Object[]{"c", 1});
+        inputHandler.send(new Object[]{"a", 4});
+        inputHandler.send(new Object[]{"b", 3});
+
+        Assert.assertEquals(totalEventsArrived.get(), 8);
+        Assert.assertEquals(lastCounts.get("a").longValue(), 4L);
+        Assert.assertEquals(lastCounts.get("c").longValue(), 1L);
+        Assert.assertEquals(lastCounts.get("b").longValue(), 1L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateDistinctCountByKey_3() throws InterruptedException {
+        LOG.info("Approximate Distinct Count By Key Test Case - to check the number of parameters " +
+                "passed to the distinctCountByKey function are 2, 4 or 5");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (source string, destination string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountByKey(source, destination, 0.05) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("2, 4 or 5 attributes are expected but 3 " +
+                    "attributes are found inside the distinctCountByKey function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateDistinctCountByKey_4() throws InterruptedException {
+        LOG.info("Approximate Distinct Count By Key Test Case - to validate the 3rd parameter inside " +
+                "distinctCountByKey function is supported");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (source string, destination string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountByKey(source, destination, 0.001, 0.95) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside distinctCountByKey " +
+                    "function - 'relative.error' is not supported"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateDistinctCountByKey_5() throws InterruptedException {
+        LOG.info("Approximate Distinct Count By Key Test Case - to validate the 5th parameter inside " +
+                "distinctCountByKey function is positive");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (source string, destination string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountByKey(source, destination, 0.05, 0.95, 0) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 5th parameter inside distinctCountByKey " +
+                    "function - 'max.keys' must be in the range of [1, 536870911] but found 0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
@@ -25,11 +25,18 @@ import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.stream.input.InputHandler;
 import io.siddhi.core.stream.output.StreamCallback;
 import io.siddhi.core.util.SiddhiTestHelper;
+import io.siddhi.core.util.config.InMemoryConfigManager;
 import org.apache.log4j.Logger;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class DistinctCountEverTestCase {
@@ -350,7 +357,7 @@ public class DistinctCountEverTestCase {
     @Test
     public void testApproximateCardinality_4() throws InterruptedException {
         LOG.info("Approximate Distinct Count Ever Test Case - to check the number of parameters passed " +
-                "to the distinctCountEver function are not 1 or 3");
+                "to the distinctCountEver function are not 1, 3, 4, 5 or 6");
         SiddhiManager siddhiManager = new SiddhiManager();
 
         String inStreamDefinition = "define stream inputStream (number int);";
@@ -365,8 +372,8 @@ public class DistinctCountEverTestCase {
         } catch (Exception e) {
             exceptionOccurred = true;
             Assert.assertTrue(e instanceof SiddhiAppCreationException);
-            Assert.assertTrue(e.getCause().getMessage().contains("1 or 3 attributes are expected but 2 attributes" +
-                    " are found inside the distinctCountEver function"));
+            Assert.assertTrue(e.getCause().getMessage().contains("1, 3, 4, 5 or 6 attributes are expected but 2 " +
+                    "attributes are found inside the distinctCountEver function"));
         }
         Assert.assertEquals(true, exceptionOccurred);
     }
@@ -541,5 +548,206 @@ public class DistinctCountEverTestCase {
         }
         Assert.assertEquals(true, exceptionOccurred);
     }
+
+    @Test
+    public void testApproximateCardinality_12() throws InterruptedException {
+        final int noOfDistinctValues = 300;
+        final AtomicInteger exactCount = new AtomicInteger(0);
+
+        LOG.info("Approximate Distinct Count Ever Test Case - exact bitmap");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountEver(number, 0.01, 0.95, true) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalCount.incrementAndGet();
+                    long exactCardinality = Math.min(totalCount.get(), noOfDistinctValues);
+                    if ((long) event.getData(1) == exactCardinality && (long) event.getData(2) == exactCardinality
+                            && (long) event.getData(3) == exactCardinality) {
+                        exactCount.incrementAndGet();
+                    }
+                }
+                eventArrived = true;
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalNoOfEvents; noOfEvents++) {
+            inputHandler.send(new Object[]{noOfEvents % noOfDistinctValues});
+        }
+        SiddhiTestHelper.waitForEvents(200, totalNoOfEvents, totalCount, 60000);
+        Assert.assertEquals(totalNoOfEvents, totalCount.get());
+        Assert.assertTrue(eventArrived);
+        Assert.assertEquals(totalNoOfEvents, exactCount.get());
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCardinality_13() throws InterruptedException {
+        LOG.info("Approximate Distinct Count Ever Test Case - to validate the 4th parameter inside " +
+                "distinctCountEver function is a bool");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountEver(number, 0.01, 0.95, 1) " +
+                "select * " +
+                "insert into outputStream;");
+        boolean exceptionOccurred = false;
+        try {
+            SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 4th parameter inside distinctCountEver " +
+                    "function - 'exact.bitmap' should be of type Bool but found INT"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCardinality_14() throws InterruptedException {
+        final int noOfDistinctValues = 300;
+        final AtomicInteger exactCount = new AtomicInteger(0);
+
+        LOG.info("Approximate Distinct Count Ever Test Case - for an emit interval, where only the summary events " +
+                "are emitted");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountEver(number, 0.01, 0.95, true, 500, true) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalCount.incrementAndGet();
+                    if ((long) event.getData(1) == noOfDistinctValues && (long) event.getData(2) == noOfDistinctValues
+                            && (long) event.getData(3) == noOfDistinctValues) {
+                        exactCount.incrementAndGet();
+                    }
+                }
+                eventArrived = true;
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalNoOfEvents; noOfEvents++) {
+            inputHandler.send(new Object[]{noOfEvents % noOfDistinctValues});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 2, totalCount, 60000);
+        siddhiAppRuntime.shutdown();
+
+        Assert.assertTrue(eventArrived);
+        Assert.assertTrue(totalCount.get() >= 2);
+        Assert.assertEquals(exactCount.get(), totalCount.get());
+    }
+
+    @Test
+    public void testApproximateCardinality_15() throws Exception {
+        LOG.info("Approximate Cardinality Test Case - for a partitioned query, where the sketch of an idle " +
+                "partition key is spilled to a file and reloaded when the partition key receives an event again");
+        File spillDirectory = Files.createTempDirectory("distinctCountEver-spill").toFile();
+        Map<String, String> extensionConfigs = new HashMap<>();
+        extensionConfigs.put("approximate.distinctCountEver.idle.state.ttl", "100");
+        extensionConfigs.put("approximate.distinctCountEver.spill.directory", spillDirectory.getAbsolutePath());
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(extensionConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (tenant string, number int);";
+        String query = ("partition with (tenant of inputStream) " +
+                "begin " +
+                "@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountEver(number) " +
+                "select tenant, distinctCountEver " +
+                "insert into outputStream; " +
+                "end;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final List<Long> tenantADistinctCounts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalCount.incrementAndGet();
+                    if ("A".equals(event.getData(0))) {
+                        tenantADistinctCounts.add((Long) event.getData(1));
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{"A", 7});
+        inputHandler.send(new Object[]{"A", 8});
+        Thread.sleep(300);
+//      the sketch of tenant A has been idle longer than the idle state TTL, hence it is spilled
+        inputHandler.send(new Object[]{"B", 7});
+        Thread.sleep(300);
+        inputHandler.send(new Object[]{"B", 7});
+        Assert.assertEquals(spillDirectory.listFiles().length, 1);
+        inputHandler.send(new Object[]{"A", 9});
+        Assert.assertEquals(spillDirectory.listFiles().length, 0);
+
+        SiddhiTestHelper.waitForEvents(200, 5, totalCount, 60000);
+        Assert.assertEquals(totalCount.get(), 5);
+        Assert.assertEquals(tenantADistinctCounts.size(), 3);
+        Assert.assertEquals(tenantADistinctCounts.get(2).longValue(), 3L);
+
+        siddhiAppRuntime.shutdown();
+        Assert.assertTrue(spillDirectory.delete());
+    }
+
+    @Test
+    public void testApproximateCardinality_16() {
+        LOG.info("Approximate Cardinality Test Case - to validate the memory budget can hold the buckets of " +
+                "a HyperLogLog");
+        Map<String, String> extensionConfigs = new HashMap<>();
+        extensionConfigs.put("approximate.distinctCountEver.memory.budget", "32");
+
+        SiddhiManager siddhiManager = new SiddhiManager();
+        siddhiManager.setConfigManager(new InMemoryConfigManager(extensionConfigs, null));
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:distinctCountEver(number) " +
+                "select distinctCountEver " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The system parameter 'memory.budget' of the " +
+                    "distinctCountEver function is too small, as a memory budget of 32 bytes cannot hold the 16 " +
+                    "buckets of a HyperLogLog"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
 }
 
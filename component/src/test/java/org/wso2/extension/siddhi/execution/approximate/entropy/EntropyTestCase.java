@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.entropy;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EntropyTestCase {
+    private static final Logger LOG = Logger.getLogger(EntropyTestCase.class);
+    private final int totalEventsSent = 3000;
+    private final int windowLength = 1000;
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+    private volatile double lastEntropy;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    private double getExactEntropy(Map<Object, Integer> counts, int totalCount) {
+        double entropy = 0;
+        for (int count : counts.values()) {
+            double probability = (double) count / totalCount;
+            entropy -= probability * Math.log(probability) / Math.log(2);
+        }
+        return entropy;
+    }
+
+    @Test
+    public void testApproximateEntropy_1() throws InterruptedException {
+        final double confidence = 0.95;
+
+        LOG.info("Approximate Entropy Test Case - for a length window of " + windowLength + " events, " +
+                "whose distribution changes from 100 equally likely values to 4 equally likely values");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")#approximate:entropy(number) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        Deque<Object> window = new ArrayDeque<>();
+        Map<Object, Integer> counts = new HashMap<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+
+//                  keep the exact counts of the values within the window
+                    window.add(event.getData(0));
+                    counts.merge(event.getData(0), 1, Integer::sum);
+                    if (window.size() > windowLength) {
+                        counts.computeIfPresent(window.poll(), (value, count) -> count > 1 ? count - 1 : null);
+                    }
+                    double exactEntropy = getExactEntropy(counts, window.size());
+
+                    if (exactEntropy >= (double) event.getData(2) - 1e-9 &&
+                            exactEntropy <= (double) event.getData(3) + 1e-9) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < totalEventsSent; i++) {
+            inputHandler.send(new Object[]{i < totalEventsSent / 2 ? i % 100 : i % 4});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+        Assert.assertTrue((double) validEvents.get() / totalEventsArrived.get() >= confidence);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateEntropy_2() throws InterruptedException {
+        LOG.info("Approximate Entropy Test Case - the values of the expired events are removed");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:entropy(ip) " +
+                "select entropy " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    lastEntropy = (double) event.getData(0);
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      100 distinct ips followed by a single ip which fills the window
+        for (int i = 0; i < 500; i++) {
+            inputHandler.send(new Object[]{"ip" + (i % 100)});
+        }
+        for (int i = 0; i < 500; i++) {
+            inputHandler.send(new Object[]{"ip0"});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 1000, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 1000);
+        Assert.assertTrue(lastEntropy <= 0.25);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateEntropy_3() throws InterruptedException {
+        LOG.info("Approximate Entropy Test Case - to check the number of parameters " +
+                "passed to the entropy function are 1 or 3");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:entropy(number, 0.1) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("1 or 3 attributes are expected but 2 " +
+                    "attributes are found inside the entropy function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateEntropy_4() throws InterruptedException {
+        LOG.info("Approximate Entropy Test Case - to validate the 2nd parameter inside entropy " +
+                "function is in the range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:entropy(number, 1.5, 0.95) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside entropy " +
+                    "function - 'absolute.error' must be in the range of (0, 1) but found 1.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateEntropy_5() throws InterruptedException {
+        LOG.info("Approximate Entropy Test Case - to validate the 3rd parameter inside entropy " +
+                "function is a constant");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int, confidence double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:entropy(number, 0.1, confidence) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside entropy " +
+                    "function - 'confidence' has to be a constant"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
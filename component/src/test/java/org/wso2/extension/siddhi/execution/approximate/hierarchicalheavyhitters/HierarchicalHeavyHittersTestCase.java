@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.hierarchicalheavyhitters;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HierarchicalHeavyHittersTestCase {
+    private static final Logger LOG = Logger.getLogger(HierarchicalHeavyHittersTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateHierarchicalHeavyHitters_1() throws InterruptedException {
+        LOG.info("Approximate Hierarchical Heavy Hitters Test Case - an attack spread across the addresses of " +
+                "a /24 prefix is detected, while none of the addresses is a heavy hitter by itself");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (id int, ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(1000)#approximate:hierarchicalHeavyHitters(ip, 0.1) " +
+                "select id, prefix, prefixLength, discountedCount " +
+                "insert into outputStream;");
+
+        List<Object[]> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      30% of the events are from 100 addresses of 10.1.2.0/24, the rest are spread across 200 /8 prefixes
+        int noOfAttackEvents = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (i % 10 < 3) {
+                inputHandler.send(new Object[]{i, "10.1.2." + (i % 100)});
+                if (i >= 500) {
+                    noOfAttackEvents++;
+                }
+            } else {
+                inputHandler.send(new Object[]{i, (20 + i % 200) + "." + (i % 7) + "." + (i % 11) + "." + (i % 13)});
+            }
+        }
+
+        SiddhiTestHelper.waitForEvents(200, noOfAttackEvents, totalEventsArrived, 60000);
+
+//      once enough events have arrived, only the attacked prefix is emitted for the attack events
+        int noOfAttackPrefixes = 0;
+        for (Object[] result : results) {
+            if ((int) result[0] >= 500) {
+                Assert.assertEquals(result[1], "10.1.2.0/24");
+                Assert.assertEquals(result[2], 24);
+                noOfAttackPrefixes++;
+            }
+        }
+        Assert.assertEquals(noOfAttackPrefixes, noOfAttackEvents);
+//      the discounted count of the prefix is within the default relative error (0.01) of the window length
+        Assert.assertTrue(Math.abs((long) results.get(results.size() - 1)[3] - 300) <= 10);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateHierarchicalHeavyHitters_2() throws InterruptedException {
+        LOG.info("Approximate Hierarchical Heavy Hitters Test Case - a heavy address and its heavy /24 prefix " +
+                "are emitted with their discounted counts, and the expired events are removed");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (id int, ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(10)#approximate:hierarchicalHeavyHitters(ip, 0.3) " +
+                "select id, prefix, prefixCount, discountedCount " +
+                "insert into outputStream;");
+
+        List<Object[]> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      the window ends with 4 events from 1.2.3.4, 3 events from other addresses of 1.2.3.0/24 and 3 events
+//      from other prefixes, after 10 events from 5.5.5.5 have expired
+        for (int i = 0; i < 10; i++) {
+            inputHandler.send(new Object[]{i, "5.5.5.5"});
+        }
+        String[] ips = {"1.2.3.4", "7.7.7.7", "1.2.3.10", "1.2.3.4", "8.8.8.8", "1.2.3.11", "1.2.3.4",
+                "9.9.9.9", "1.2.3.12", "1.2.3.4"};
+        for (int i = 0; i < ips.length; i++) {
+            inputHandler.send(new Object[]{10 + i, ips[i]});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 12, totalEventsArrived, 60000);
+        Object[] lastAddressResult = results.get(results.size() - 2);
+        Object[] lastNetworkResult = results.get(results.size() - 1);
+        Assert.assertEquals(lastAddressResult[0], 19);
+        Assert.assertEquals(lastAddressResult[1], "1.2.3.4/32");
+        Assert.assertEquals(lastAddressResult[2], 4L);
+        Assert.assertEquals(lastAddressResult[3], 4L);
+        Assert.assertEquals(lastNetworkResult[0], 19);
+        Assert.assertEquals(lastNetworkResult[1], "1.2.3.0/24");
+        Assert.assertEquals(lastNetworkResult[2], 7L);
+        Assert.assertEquals(lastNetworkResult[3], 3L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateHierarchicalHeavyHitters_3() throws InterruptedException {
+        LOG.info("Approximate Hierarchical Heavy Hitters Test Case - to check the number of parameters " +
+                "passed to the hierarchicalHeavyHitters function are 2 or 4");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:hierarchicalHeavyHitters(ip) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("2 or 4 attributes are expected but 1 " +
+                    "attributes are found inside the hierarchicalHeavyHitters function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateHierarchicalHeavyHitters_4() throws InterruptedException {
+        LOG.info("Approximate Hierarchical Heavy Hitters Test Case - to validate the 2nd parameter inside " +
+                "hierarchicalHeavyHitters function is in the range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:hierarchicalHeavyHitters(ip, 1.5) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside " +
+                    "hierarchicalHeavyHitters function - 'threshold' must be in the range of (0, 1) but found 1.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateHierarchicalHeavyHitters_5() throws InterruptedException {
+        LOG.info("Approximate Hierarchical Heavy Hitters Test Case - to validate the 3rd parameter inside " +
+                "hierarchicalHeavyHitters function is less than the threshold");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:hierarchicalHeavyHitters(ip, 0.1, 0.2, 0.99) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside " +
+                    "hierarchicalHeavyHitters function - 'relative.error' must be in the range of (0, 0.1) but " +
+                    "found 0.2"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
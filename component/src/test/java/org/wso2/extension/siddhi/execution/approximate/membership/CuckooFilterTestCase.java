@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.membership;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CuckooFilterTestCase {
+    private static final Logger LOG = Logger.getLogger(CuckooFilterTestCase.class);
+    private final int noOfMembers = 1000;
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateCuckooFilter_1() throws InterruptedException {
+        LOG.info("Approximate Cuckoo Filter Test Case - the values added by one query are found by " +
+                "approximate:contains in another query");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream blockedStream (userId string); " +
+                "define stream loginStream (userId string);";
+        String query = ("@info(name = 'query1') " +
+                "from blockedStream#approximate:cuckooFilter('blockList', userId, 10000) " +
+                "select * " +
+                "insert into blockedLogStream; " +
+                "@info(name = 'query2') " +
+                "from loginStream[approximate:contains('blockList', userId)] " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        AtomicInteger membersArrived = new AtomicInteger(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    if (((String) event.getData(0)).startsWith("blocked-")) {
+                        membersArrived.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler blockedHandler = siddhiAppRuntime.getInputHandler("blockedStream");
+        InputHandler loginHandler = siddhiAppRuntime.getInputHandler("loginStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < noOfMembers; i++) {
+            blockedHandler.send(new Object[]{"blocked-" + i});
+        }
+        for (int i = 0; i < noOfMembers; i++) {
+            loginHandler.send(new Object[]{"blocked-" + i});
+            loginHandler.send(new Object[]{"allowed-" + i});
+        }
+
+//      a cuckoo filter has no false negatives
+        Assert.assertEquals(membersArrived.get(), noOfMembers);
+        Assert.assertTrue(totalEventsArrived.get() - membersArrived.get() <= 5);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCuckooFilter_2() throws InterruptedException {
+        LOG.info("Approximate Cuckoo Filter Test Case - the values expired from a window are removed " +
+                "from the filter");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream sessionStream (sessionId long); " +
+                "define stream checkStream (sessionId long);";
+        String query = ("@info(name = 'query1') " +
+                "from sessionStream#window.length(" + noOfMembers + ")" +
+                "#approximate:cuckooFilter('activeSessions', sessionId) " +
+                "select * " +
+                "insert into sessionLogStream; " +
+                "@info(name = 'query2') " +
+                "from checkStream " +
+                "select sessionId, approximate:contains('activeSessions', sessionId) as isActive " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        AtomicInteger activeArrived = new AtomicInteger(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    if ((Boolean) event.getData(1)) {
+                        activeArrived.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler sessionHandler = siddhiAppRuntime.getInputHandler("sessionStream");
+        InputHandler checkHandler = siddhiAppRuntime.getInputHandler("checkStream");
+        siddhiAppRuntime.start();
+
+        for (long i = 0; i < 2 * noOfMembers; i++) {
+            sessionHandler.send(new Object[]{i});
+        }
+//      only the last 1000 sessions are in the window
+        for (long i = 0; i < noOfMembers; i++) {
+            checkHandler.send(new Object[]{i});
+        }
+        Assert.assertEquals(totalEventsArrived.get(), noOfMembers);
+        Assert.assertTrue(activeArrived.get() <= 5);
+
+        for (long i = noOfMembers; i < 2 * noOfMembers; i++) {
+            checkHandler.send(new Object[]{i});
+        }
+        Assert.assertEquals(totalEventsArrived.get(), 2 * noOfMembers);
+        Assert.assertTrue(activeArrived.get() >= noOfMembers);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateCuckooFilter_3() throws InterruptedException {
+        LOG.info("Approximate Cuckoo Filter Test Case - to check that the filter names are unique within " +
+                "a Siddhi app");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (userId string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:cuckooFilter('blockList', userId) " +
+                "select * " +
+                "insert into outputStream1; " +
+                "@info(name = 'query2') " +
+                "from inputStream#approximate:cuckooFilter('blockList', userId) " +
+                "select * " +
+                "insert into outputStream2;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("An approximate sketch named 'blockList' is " +
+                    "already defined in the Siddhi app"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCuckooFilter_4() throws InterruptedException {
+        LOG.info("Approximate Cuckoo Filter Test Case - to validate the 1st parameter inside cuckooFilter " +
+                "function is a string");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (userId string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:cuckooFilter(5, userId) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 1st parameter inside cuckooFilter " +
+                    "function - 'filter.name' should be of type String but found INT"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCuckooFilter_5() throws InterruptedException {
+        LOG.info("Approximate Cuckoo Filter Test Case - to check the number of parameters " +
+                "passed to the contains function are 2");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (userId string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream[approximate:contains('blockList')] " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("2 attributes are expected but 1 " +
+                    "attributes are found inside the contains function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateCuckooFilter_6() throws InterruptedException {
+        LOG.info("Approximate Cuckoo Filter Test Case - the filters of two Siddhi apps of the same name, which " +
+                "are run by different Siddhi managers, are kept apart");
+        String app = "@App:name('blockListApp') " +
+                "define stream blockedStream (userId string); " +
+                "define stream loginStream (userId string); " +
+                "@info(name = 'query1') " +
+                "from blockedStream#approximate:cuckooFilter('blockList', userId, 10000) " +
+                "select * " +
+                "insert into blockedLogStream; " +
+                "@info(name = 'query2') " +
+                "from loginStream[approximate:contains('blockList', userId)] " +
+                "select * " +
+                "insert into outputStream;";
+
+        SiddhiManager firstSiddhiManager = new SiddhiManager();
+        SiddhiManager secondSiddhiManager = new SiddhiManager();
+        SiddhiAppRuntime firstSiddhiAppRuntime = firstSiddhiManager.createSiddhiAppRuntime(app);
+        SiddhiAppRuntime secondSiddhiAppRuntime = secondSiddhiManager.createSiddhiAppRuntime(app);
+
+        AtomicInteger secondEventsArrived = new AtomicInteger(0);
+        firstSiddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+        secondSiddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                secondEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        firstSiddhiAppRuntime.start();
+        secondSiddhiAppRuntime.start();
+
+        firstSiddhiAppRuntime.getInputHandler("blockedStream").send(new Object[]{"blocked-0"});
+        firstSiddhiAppRuntime.getInputHandler("loginStream").send(new Object[]{"blocked-0"});
+        secondSiddhiAppRuntime.getInputHandler("loginStream").send(new Object[]{"blocked-0"});
+
+//      the user is blocked only in the first app, whose filter is not replaced by the filter of the second app
+        Assert.assertEquals(totalEventsArrived.get(), 1);
+        Assert.assertEquals(secondEventsArrived.get(), 0);
+
+        firstSiddhiAppRuntime.shutdown();
+        secondSiddhiAppRuntime.shutdown();
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.percentile;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PercentileAggTestCase {
+    private static final Logger LOG = Logger.getLogger(PercentileAggTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximatePercentileAgg_1() throws InterruptedException {
+        final int windowLength = 400;
+        final int totalNoOfEvents = 2000;
+        final double percentile = 0.9;
+        final double relativeError = 0.01;
+
+        LOG.info("Approximate Percentile Aggregator Test Case - for Siddhi length window with group by");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (service string, latency long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ") " +
+                "select service, approximate:percentileAgg(latency, " + percentile + ") as latencyPercentile " +
+                "group by service " +
+                "insert into outputStream;");
+
+        Map<String, List<Long>> windowOfService = new HashMap<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    String service = (String) event.getData(0);
+                    List<Long> window = windowOfService.get(service);
+                    List<Long> sortedWindow = new ArrayList<>(window);
+                    sortedWindow.sort(Long::compare);
+                    long exactPercentile = sortedWindow.get((int) (percentile * (sortedWindow.size() - 1)));
+                    double latencyPercentile = (double) event.getData(1);
+                    if (Math.abs(latencyPercentile - exactPercentile) <= relativeError * exactPercentile + 1e-9) {
+                        validEventsArrived.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      the window holds windowLength / 2 events of each service, the latencies of 'slow' are 10 times larger
+        for (int i = 0; i < totalNoOfEvents; i++) {
+            String service = i % 2 == 0 ? "fast" : "slow";
+            long latency = (i * 7919L % 1000 + 1) * (service.equals("fast") ? 1 : 10);
+            List<Long> window = windowOfService.computeIfAbsent(service, k -> new ArrayList<>());
+            window.add(latency);
+            if (window.size() > windowLength / 2) {
+                window.remove(0);
+            }
+            inputHandler.send(new Object[]{service, latency});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalNoOfEvents, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), totalNoOfEvents);
+        Assert.assertEquals(validEventsArrived.get(), totalNoOfEvents);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximatePercentileAgg_2() throws InterruptedException {
+        LOG.info("Approximate Percentile Aggregator Test Case - to validate the 2nd parameter inside " +
+                "percentileAgg function is in the range [0, 1]");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(10) " +
+                "select approximate:percentileAgg(latency, 99.0) as latencyPercentile " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside percentileAgg " +
+                    "function - 'percentile' must be in the range of [0, 1] but found 99.0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximatePercentileAgg_3() throws InterruptedException {
+        LOG.info("Approximate Percentile Aggregator Test Case - the state of a group is released once all the " +
+                "values of the group expired from the window");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (service string, latency double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(10) " +
+                "select service, approximate:percentileAgg(latency, 99.0) as latencyPercentile " +
+                "group by service " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                totalEventsArrived.addAndGet(events.length);
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 10; i++) {
+            inputHandler.send(new Object[]{"service-" + i, 10.0 + i});
+        }
+        int snapshotSizeOfWindow = siddhiAppRuntime.snapshot().length;
+//      each service appears once, hence only the 10 services in the window keep a state
+        for (int i = 10; i < 1010; i++) {
+            inputHandler.send(new Object[]{"service-" + i, 10.0 + i});
+        }
+        int snapshotSizeAfterExpiry = siddhiAppRuntime.snapshot().length;
+
+        SiddhiTestHelper.waitForEvents(200, 1010, totalEventsArrived, 60000);
+        Assert.assertTrue(snapshotSizeAfterExpiry < 2 * snapshotSizeOfWindow);
+
+        siddhiAppRuntime.shutdown();
+    }
+}
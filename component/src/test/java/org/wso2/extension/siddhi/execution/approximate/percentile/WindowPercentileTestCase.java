@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.percentile;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WindowPercentileTestCase {
+    private static final Logger LOG = Logger.getLogger(WindowPercentileTestCase.class);
+    private final int totalEventsSent = 2000;
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximatePercentile_1() throws InterruptedException {
+        final int windowLength = 500;
+        final double percentile = 0.99;
+        final double relativeError = 0.01;
+
+        LOG.info("Approximate Percentile Test Case - for Siddhi length window - " +
+                "percentile(" + percentile + ") and a default relative error(" + relativeError + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")#approximate:windowPercentile(latency, "
+                + percentile + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        final ArrayDeque<Double> window = new ArrayDeque<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    window.add((double) event.getData(0));
+                    if (window.size() > windowLength) {
+                        window.poll();
+                    }
+                    double[] values = window.stream().mapToDouble(Double::doubleValue).toArray();
+                    Arrays.sort(values);
+                    double exactPercentile = values[(int) (percentile * (values.length - 1))];
+
+                    double lowerBound = (double) event.getData(2);
+                    double upperBound = (double) event.getData(3);
+                    if (exactPercentile >= lowerBound && exactPercentile <= upperBound) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        Random random = new Random(123);
+        for (int noOfEvents = 0; noOfEvents < totalEventsSent; noOfEvents++) {
+            inputHandler.send(new Object[]{Math.exp(random.nextGaussian() * 2)});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+//      the relative error of the sketch is a guarantee, not a probability
+        Assert.assertEquals(totalEventsSent, validEvents.get());
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximatePercentile_2() throws InterruptedException {
+        final int windowLength = 100;
+
+        LOG.info("Approximate Percentile Test Case - for Siddhi length window - " +
+                "the median of integer values with a relative error of 0.05");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")" +
+                "#approximate:windowPercentile(number, 0.5, 0.05) " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int arrived = totalEventsArrived.incrementAndGet();
+//                  the window holds the values (arrived - windowLength, arrived]
+                    int windowSize = Math.min(arrived, windowLength);
+                    long exactMedian = arrived - windowSize + 1 + (windowSize - 1) / 2;
+                    double percentile = (double) event.getData(1);
+                    if (Math.abs(percentile - exactMedian) <= 0.05 * exactMedian) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 1; noOfEvents <= totalEventsSent; noOfEvents++) {
+            inputHandler.send(new Object[]{noOfEvents});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+        Assert.assertEquals(totalEventsSent, validEvents.get());
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximatePercentile_3() throws InterruptedException {
+        LOG.info("Approximate Percentile Test Case - to check the number of parameters " +
+                "passed to the windowPercentile function are not 2 or 3");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(1000)#approximate:windowPercentile(latency) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("2 or 3 attributes are expected but 1 attributes" +
+                    " are found inside the windowPercentile function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximatePercentile_4() throws InterruptedException {
+        LOG.info("Approximate Percentile Test Case - to validate the 1st parameter inside windowPercentile " +
+                "function is numeric");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(1000)#approximate:windowPercentile(ip, 0.99) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 1st parameter inside windowPercentile " +
+                    "function - 'value' should be of type Int, Long, Float or Double but found STRING"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximatePercentile_5() throws InterruptedException {
+        LOG.info("Approximate Percentile Test Case - to validate the 2nd parameter inside windowPercentile " +
+                "function is in the range of [0, 1]");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(1000)#approximate:windowPercentile(latency, 99.0) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside windowPercentile " +
+                    "function - 'percentile' must be in the range of [0, 1] but found 99.0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximatePercentile_6() throws InterruptedException {
+        LOG.info("Approximate Percentile Test Case - to validate the 3rd parameter inside windowPercentile " +
+                "function is in the range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(1000)#approximate:windowPercentile(latency, 0.99, 1.5) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside windowPercentile " +
+                    "function - 'relative.error' must be in the range of (0, 1) but found 1.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.profile;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProfileTestCase {
+    private static final Logger LOG = Logger.getLogger(ProfileTestCase.class);
+    private final int windowLength = 1000;
+    private final int noOfKeys = 10;
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateProfile_1() throws InterruptedException {
+        LOG.info("Approximate Profile Test Case - the count and the distinct count of the values in a window are " +
+                "calculated in a single pass");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#window.length(" + windowLength + ")" +
+                "#approximate:profile(ip, 'count,distinctCount') " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        AtomicInteger validValuesArrived = new AtomicInteger(0);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int index = totalEventsArrived.incrementAndGet();
+//                  once the window is full, each ip is in it 100 times
+                    if (index > windowLength) {
+                        long count = (Long) event.getData(1);
+                        long countLowerBound = (Long) event.getData(2);
+                        long countUpperBound = (Long) event.getData(3);
+                        long distinctCount = (Long) event.getData(4);
+                        if (count >= 100 && count <= 100 + 0.01 * windowLength && countLowerBound <= 100 &&
+                                countUpperBound >= 100 && distinctCount == noOfKeys) {
+                            validValuesArrived.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("requestStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 2 * windowLength; i++) {
+            inputHandler.send(new Object[]{"ip-" + (i % noOfKeys)});
+        }
+
+        Assert.assertEquals(totalEventsArrived.get(), 2 * windowLength);
+        Assert.assertEquals(validValuesArrived.get(), windowLength);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateProfile_2() throws InterruptedException {
+        LOG.info("Approximate Profile Test Case - the most frequent values replace the less frequent top k " +
+                "candidates");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#approximate:profile(ip, 'topK', 0.01, 0.99, 2) " +
+                "select ip, isTopK " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Boolean> isTopK = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    isTopK.add((Boolean) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("requestStream");
+        siddhiAppRuntime.start();
+
+//      ip-c and ip-d fill the candidates, ip-e is not frequent enough to replace them
+        inputHandler.send(new Object[]{"ip-c"});
+        inputHandler.send(new Object[]{"ip-d"});
+        inputHandler.send(new Object[]{"ip-e"});
+        for (int i = 0; i < 5; i++) {
+            inputHandler.send(new Object[]{"ip-a"});
+        }
+        for (int i = 0; i < 5; i++) {
+            inputHandler.send(new Object[]{"ip-b"});
+        }
+        inputHandler.send(new Object[]{"ip-a"});
+        inputHandler.send(new Object[]{"ip-c"});
+
+        Assert.assertEquals(totalEventsArrived.get(), 15);
+        Assert.assertTrue(isTopK.get(0));
+        Assert.assertTrue(isTopK.get(1));
+        Assert.assertFalse(isTopK.get(2));
+        Assert.assertTrue(isTopK.get(12));
+        Assert.assertTrue(isTopK.get(13));
+        Assert.assertFalse(isTopK.get(14));
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateProfile_3() throws InterruptedException {
+        LOG.info("Approximate Profile Test Case - to validate the 2nd parameter inside profile function is a list " +
+                "of the supported sketches");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream requestStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from requestStream#approximate:profile(ip, 'count,median') " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside profile function - " +
+                    "'sketches' must be a comma separated list of count, distinctCount and topK but found 'median'"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
+
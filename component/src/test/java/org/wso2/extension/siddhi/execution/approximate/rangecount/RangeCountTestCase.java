@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.rangecount;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RangeCountTestCase {
+    private static final Logger LOG = Logger.getLogger(RangeCountTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateRangeCount_1() throws InterruptedException {
+        final int windowLength = 1000;
+        final int totalEventsSent = 5000;
+        final double confidence = 0.99;
+
+        LOG.info("Approximate Range Count Test Case - for Siddhi length window - the exact count of the " +
+                "range is within the bounds");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")" +
+                "#approximate:rangeCount(latency, 200, 500) " +
+                "select latency, rangeCount, rangeCountLowerBound, rangeCountUpperBound " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Double> sentLatencies = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int eventNo = totalEventsArrived.getAndIncrement();
+                    long exactCount = 0;
+                    for (int i = Math.max(0, eventNo - windowLength + 1); i <= eventNo; i++) {
+                        double latency = sentLatencies.get(i);
+                        if (latency >= 200 && latency <= 500) {
+                            exactCount++;
+                        }
+                    }
+                    if (exactCount >= (long) event.getData(2) && exactCount <= (long) event.getData(3)) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < totalEventsSent; i++) {
+            double latency = (i * 7919) % 1000 + 0.5;
+            sentLatencies.add(latency);
+            inputHandler.send(new Object[]{latency});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), totalEventsSent);
+        Assert.assertTrue((double) validEvents.get() / totalEventsArrived.get() >= confidence);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateRangeCount_2() throws InterruptedException {
+        LOG.info("Approximate Range Count Test Case - the expired events are removed from the range count");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (amount int, low int, high int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(3)#approximate:rangeCount(amount, low, high) " +
+                "select amount, rangeCount " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Long> counts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    counts.add((Long) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Object[]{-5, -10, 15});
+        inputHandler.send(new Object[]{5, -10, 15});
+        inputHandler.send(new Object[]{10, -10, 15});
+//      -5 leaves the window
+        inputHandler.send(new Object[]{20, -10, 15});
+//      the range is given by each event
+        inputHandler.send(new Object[]{30, 10, 30});
+        inputHandler.send(new Object[]{40, 50, 40});
+
+        SiddhiTestHelper.waitForEvents(200, 6, totalEventsArrived, 60000);
+        Assert.assertEquals(counts.get(0).longValue(), 1L);
+        Assert.assertEquals(counts.get(1).longValue(), 2L);
+        Assert.assertEquals(counts.get(2).longValue(), 3L);
+        Assert.assertEquals(counts.get(3).longValue(), 2L);
+        Assert.assertEquals(counts.get(4).longValue(), 3L);
+        Assert.assertEquals(counts.get(5).longValue(), 0L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateRangeCount_3() throws InterruptedException {
+        LOG.info("Approximate Range Count Test Case - to check the number of parameters passed to the " +
+                "rangeCount function are 3 or 5");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double, path string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:rangeCount(latency, 200) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("3 or 5 attributes are expected but 2 attributes " +
+                    "are found inside the rangeCount function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateRangeCount_4() throws InterruptedException {
+        LOG.info("Approximate Range Count Test Case - to validate the 1st parameter inside rangeCount " +
+                "function is numeric");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double, path string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:rangeCount(path, 200, 500) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 1st parameter inside rangeCount function - " +
+                    "'value' should be of type Integer, Long, Double or Float but found STRING"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateRangeCount_5() throws InterruptedException {
+        LOG.info("Approximate Range Count Test Case - to validate the 4th parameter inside rangeCount " +
+                "function is in the range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (latency double, path string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(100)#approximate:rangeCount(latency, 200, 500, 1.5, 0.99) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 4th parameter inside rangeCount function - " +
+                    "'relative.error' must be in the range of (0, 1) but found 1.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.sample;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SampleTestCase {
+    private static final Logger LOG = Logger.getLogger(SampleTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateSample_1() throws InterruptedException {
+        final int sampleSize = 10;
+        final int emitEvery = 100;
+        final int totalEventsSent = 1000;
+
+        LOG.info("Approximate Sample Test Case - a sample of " + sampleSize + " events is emitted after every " +
+                emitEvery + " events");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:sample(" + sampleSize + ", " + emitEvery + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        List<Event> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event);
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < totalEventsSent; i++) {
+            inputHandler.send(i, new Object[]{i});
+        }
+
+        int expectedEvents = (totalEventsSent / emitEvery) * sampleSize;
+        SiddhiTestHelper.waitForEvents(200, expectedEvents, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), expectedEvents);
+
+//      each sample is taken from its own block of events, in the order of the timestamps
+        Set<Integer> sampledNumbers = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            int number = (Integer) results.get(i).getData(0);
+            Assert.assertEquals(number / emitEvery, i / sampleSize);
+            if (i % sampleSize > 0) {
+                Assert.assertTrue(results.get(i).getTimestamp() > results.get(i - 1).getTimestamp());
+            }
+            sampledNumbers.add(number);
+        }
+        Assert.assertEquals(sampledNumbers.size(), expectedEvents);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSample_2() throws InterruptedException {
+        LOG.info("Approximate Sample Test Case - a sample is emitted at the end of each batch of a " +
+                "batch window");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.lengthBatch(50)#approximate:sample(5) " +
+                "select * " +
+                "insert into outputStream;");
+
+        List<Event> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event);
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 500; i++) {
+            inputHandler.send(new Object[]{i});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 50, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 50);
+        for (int i = 0; i < results.size(); i++) {
+            Assert.assertEquals((int) results.get(i).getData(0) / 50, i / 5);
+        }
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSample_3() throws InterruptedException {
+        LOG.info("Approximate Sample Test Case - the events whose weight is zero are never sampled by the " +
+                "weightedSample function");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int, weight double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:weightedSample(20, weight, 1000) " +
+                "select * " +
+                "insert into outputStream;");
+
+        List<Event> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event);
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 1000; i++) {
+            inputHandler.send(new Object[]{i, i % 2 == 0 ? 0.0 : 1.0});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 20, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 20);
+        for (Event event : results) {
+            Assert.assertEquals((double) event.getData(1), 1.0);
+        }
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSample_4() throws InterruptedException {
+        LOG.info("Approximate Sample Test Case - the weightedSample function is biased towards the recent " +
+                "events when a half life is given");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int, weight int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:weightedSample(10, weight, 1000, 1 sec) " +
+                "select * " +
+                "insert into outputStream;");
+
+        List<Event> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event);
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      an event arrives every second, hence the weight of an event halves for each newer event
+        for (int i = 0; i < 1000; i++) {
+            inputHandler.send(i * 1000L, new Object[]{i, 1});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 10, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 10);
+        for (Event event : results) {
+            Assert.assertTrue((int) event.getData(0) >= 900);
+        }
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSample_5() throws InterruptedException {
+        LOG.info("Approximate Sample Test Case - to validate the 1st parameter inside sample function is " +
+                "a positive value");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:sample(0, 100) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 1st parameter inside sample " +
+                    "function - 'sample.size' must be a positive value but found 0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
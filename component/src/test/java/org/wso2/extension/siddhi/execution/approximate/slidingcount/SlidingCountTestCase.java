@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.slidingcount;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SlidingCountTestCase {
+    private static final Logger LOG = Logger.getLogger(SlidingCountTestCase.class);
+    private final int totalEventsSent = 5000;
+    private final int noOfUniqueEvents = 50;
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateSlidingCount_1() throws InterruptedException {
+        final long windowTime = 10000;
+        final long timeBetweenEvents = 10;
+        final double confidence = 0.9;
+        final double relativeError = 0.05;
+
+        LOG.info("Approximate Sliding Count Test Case - for a sliding window of " + windowTime + " milliseconds - " +
+                "a specified relative error(" + relativeError + ") and a confidence(" + confidence + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:slidingCount(number, " + windowTime + ", " + relativeError + ", " +
+                confidence + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int eventNo = totalEventsArrived.getAndIncrement();
+
+//                  an event arrives every 10 milliseconds, hence the window holds the last 1000 events
+                    long noOfEventsInWindow = windowTime / timeBetweenEvents;
+                    long exactCount = eventNo < noOfEventsInWindow ? (eventNo / noOfUniqueEvents) + 1 :
+                            noOfEventsInWindow / noOfUniqueEvents;
+
+                    if (exactCount >= (long) event.getData(2) && exactCount <= (long) event.getData(3)) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalEventsSent; noOfEvents++) {
+            inputHandler.send(noOfEvents * timeBetweenEvents, new Object[]{noOfEvents % noOfUniqueEvents});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+        Assert.assertTrue((double) validEvents.get() / totalEventsArrived.get() >= confidence);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSlidingCount_2() throws InterruptedException {
+        LOG.info("Approximate Sliding Count Test Case - the events older than the window are not counted");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:slidingCount(ip, 1 sec) " +
+                "select ip, slidingCount " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Long> counts = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    counts.add((Long) event.getData(1));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(1000, new Object[]{"a"});
+        inputHandler.send(1200, new Object[]{"a"});
+        inputHandler.send(1900, new Object[]{"a"});
+//      the event at 1000 has left the window
+        inputHandler.send(2000, new Object[]{"a"});
+//      only the event at 2000 is within the window
+        inputHandler.send(2950, new Object[]{"a"});
+        inputHandler.send(5000, new Object[]{"a"});
+
+        SiddhiTestHelper.waitForEvents(200, 6, totalEventsArrived, 60000);
+        Assert.assertEquals(counts.get(0).longValue(), 1L);
+        Assert.assertEquals(counts.get(1).longValue(), 2L);
+        Assert.assertEquals(counts.get(2).longValue(), 3L);
+        Assert.assertEquals(counts.get(3).longValue(), 3L);
+        Assert.assertEquals(counts.get(4).longValue(), 2L);
+        Assert.assertEquals(counts.get(5).longValue(), 1L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSlidingCount_3() throws InterruptedException {
+        LOG.info("Approximate Sliding Count Test Case - to check the number of parameters " +
+                "passed to the slidingCount function are 2 or 4");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:slidingCount(number) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("2 or 4 attributes are expected but 1 " +
+                    "attributes are found inside the slidingCount function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateSlidingCount_4() throws InterruptedException {
+        LOG.info("Approximate Sliding Count Test Case - to validate the 2nd parameter inside slidingCount " +
+                "function is a constant");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int, time long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:slidingCount(number, time) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside slidingCount " +
+                    "function - 'window.time' has to be a constant"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateSlidingCount_5() throws InterruptedException {
+        LOG.info("Approximate Sliding Count Test Case - to validate the 3rd parameter inside slidingCount " +
+                "function is in the range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (number int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:slidingCount(number, 1 min, 1.5, 0.99) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside slidingCount " +
+                    "function - 'relative.error' must be in the range of (0, 1) but found 1.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.sum;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SumTestCase {
+    private static final Logger LOG = Logger.getLogger(SumTestCase.class);
+    private final int totalEventsSent = 2000;
+    private final int noOfUniqueEvents = 100;
+
+    private AtomicInteger totalEventsArrived;
+    private AtomicInteger validEvents;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+        validEvents = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateSum_1() throws InterruptedException {
+        final int windowLength = 1000;
+        final double confidence = 0.9;
+        final double relativeError = 0.01;
+
+        LOG.info("Approximate Sum Test Case - for Siddhi length window - " +
+                "a specified relative error(" + relativeError + ") and a confidence(" + confidence + ")");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip int, bytes long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#window.length(" + windowLength + ")#approximate:sum(ip, bytes, "
+                + relativeError + ", " + confidence + ") " +
+                "select * " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    int eventNo = totalEventsArrived.getAndIncrement();
+                    int ip = (int) event.getData(0);
+
+//                  the ip i sends (i + 1) bytes in each event, and appears once in every 100 events
+                    long noOfEventsOfIp = eventNo < windowLength ? (eventNo / noOfUniqueEvents) + 1 :
+                            windowLength / noOfUniqueEvents;
+                    long exactSum = noOfEventsOfIp * (ip + 1);
+
+                    if (exactSum >= (long) event.getData(3) && exactSum <= (long) event.getData(4)) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalEventsSent; noOfEvents++) {
+            int ip = noOfEvents % noOfUniqueEvents;
+            inputHandler.send(new Object[]{ip, (long) ip + 1});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+        Assert.assertTrue((double) validEvents.get() / totalEventsArrived.get() >= confidence);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSum_2() throws InterruptedException {
+        LOG.info("Approximate Sum Test Case - the sum of a key never underestimates the exact sum");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (card string, amount int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:sum(card, amount) " +
+                "select card, amount, sum " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        long[] exactSums = new long[noOfUniqueEvents];
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    int card = Integer.parseInt(((String) event.getData(0)).substring("card-".length()));
+                    exactSums[card] += (int) event.getData(1);
+                    if ((long) event.getData(2) >= exactSums[card]) {
+                        validEvents.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int noOfEvents = 0; noOfEvents < totalEventsSent; noOfEvents++) {
+            inputHandler.send(new Object[]{"card-" + (noOfEvents % noOfUniqueEvents), noOfEvents % 7});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, totalEventsSent, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsSent, totalEventsArrived.get());
+        Assert.assertEquals(totalEventsSent, validEvents.get());
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSum_3() throws InterruptedException {
+        LOG.info("Approximate Sum Test Case - to check the number of parameters " +
+                "passed to the sum function are 2 or 4");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, bytes long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:sum(ip, bytes, 0.01) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("2 or 4 attributes are expected but 3 " +
+                    "attributes are found inside the sum function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateSum_4() throws InterruptedException {
+        LOG.info("Approximate Sum Test Case - to validate the 2nd parameter inside sum function is an int " +
+                "or a long");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, bytes double);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:sum(ip, bytes) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside sum function - " +
+                    "'weight' should be of type Int or Long but found DOUBLE"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateSum_5() throws InterruptedException {
+        LOG.info("Approximate Sum Test Case - to validate the 4th parameter inside sum function is in the " +
+                "range of (0, 1)");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (ip string, bytes long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:sum(ip, bytes, 0.01, 1.5) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 4th parameter inside sum function - " +
+                    "'confidence' must be in the range of (0, 1) but found 1.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateSum_6() throws InterruptedException {
+        LOG.info("Approximate Sum Test Case - an event with a negative weight is dropped, while the other events " +
+                "of the same chunk are summed");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (card string, amount int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:sum(card, amount) " +
+                "select card, amount, sum " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Long> sums = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    sums.add((Long) event.getData(2));
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        inputHandler.send(new Event[]{
+                new Event(System.currentTimeMillis(), new Object[]{"card-0", 5}),
+                new Event(System.currentTimeMillis(), new Object[]{"card-0", -3}),
+                new Event(System.currentTimeMillis(), new Object[]{"card-0", 7})
+        });
+
+        SiddhiTestHelper.waitForEvents(200, 2, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 2);
+        Assert.assertEquals(sums.get(0).longValue(), 5L);
+        Assert.assertEquals(sums.get(1).longValue(), 12L);
+
+        siddhiAppRuntime.shutdown();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.superspreader;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SuperspreaderTestCase {
+    private static final Logger LOG = Logger.getLogger(SuperspreaderTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateSuperspreader_1() throws InterruptedException {
+        LOG.info("Approximate Superspreader Test Case - the scanners are detected among many sources " +
+                "with a few destinations each");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (sourceIp string, destinationIp string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:superspreader(sourceIp, destinationIp, 200) " +
+                "select sourceIp, spread, spreadLowerBound, spreadUpperBound " +
+                "insert into outputStream;");
+
+        List<Object[]> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      2000 sources connect to 5 destinations each, while 2 scanners connect to 500 destinations each
+        for (int i = 0; i < 10000; i++) {
+            inputHandler.send(new Object[]{"10.0." + (i % 2000) / 256 + "." + (i % 2000) % 256,
+                    "172.16." + (i / 2000) + "." + (i % 2000) % 100});
+            if (i % 20 == 0) {
+                inputHandler.send(new Object[]{"192.168.1.1", "10.1." + (i / 20) / 256 + "." + (i / 20) % 256});
+                inputHandler.send(new Object[]{"192.168.1.2", "10.2." + (i / 20) / 256 + "." + (i / 20) % 256});
+            }
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 100, totalEventsArrived, 60000);
+
+        Set<Object> detectedSources = new HashSet<>();
+        for (Object[] result : results) {
+            detectedSources.add(result[0]);
+            Assert.assertTrue((long) result[1] >= 200);
+            Assert.assertTrue((long) result[2] <= (long) result[1] && (long) result[1] <= (long) result[3]);
+        }
+        Assert.assertEquals(detectedSources.size(), 2);
+        Assert.assertTrue(detectedSources.contains("192.168.1.1"));
+        Assert.assertTrue(detectedSources.contains("192.168.1.2"));
+//      the last spread of a scanner is within the bounds of its 500 destinations
+        Object[] lastResult = results.get(results.size() - 1);
+        Assert.assertTrue((long) lastResult[2] <= 500 && 500 <= (long) lastResult[3]);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSuperspreader_2() throws InterruptedException {
+        LOG.info("Approximate Superspreader Test Case - the repeated destinations of a source are not counted");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (sourceIp string, destinationIp string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:superspreader(sourceIp, destinationIp, 15) " +
+                "select sourceIp, spread " +
+                "insert into outputStream;");
+
+        List<Object[]> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      a source sends 1000 events to 10 destinations, and another source sends 20 events to 20 destinations
+        for (int i = 0; i < 1000; i++) {
+            inputHandler.send(new Object[]{"1.1.1.1", "2.2.2." + (i % 10)});
+        }
+        for (int i = 0; i < 20; i++) {
+            inputHandler.send(new Object[]{"3.3.3.3", "4.4.4." + i});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 6, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 6);
+        for (Object[] result : results) {
+            Assert.assertEquals(result[0], "3.3.3.3");
+        }
+//      the spread of the 20 destinations is within the relative error of the HyperLogLog of a cell
+        Assert.assertTrue(Math.abs((long) results.get(results.size() - 1)[1] - 20) <= 2);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateSuperspreader_3() throws InterruptedException {
+        LOG.info("Approximate Superspreader Test Case - to check the number of parameters passed to the " +
+                "superspreader function are 3, 5 or 6");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (sourceIp string, destinationIp string, limit int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:superspreader(sourceIp, destinationIp, 100, 0.1) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("3, 5 or 6 attributes are expected but 4 " +
+                    "attributes are found inside the superspreader function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateSuperspreader_4() throws InterruptedException {
+        LOG.info("Approximate Superspreader Test Case - to validate the 3rd parameter inside superspreader " +
+                "function is a constant");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (sourceIp string, destinationIp string, limit int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:superspreader(sourceIp, destinationIp, limit) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside superspreader function " +
+                    "- 'threshold' has to be a constant"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateSuperspreader_5() throws InterruptedException {
+        LOG.info("Approximate Superspreader Test Case - to validate the 4th parameter inside superspreader " +
+                "function is in the range of (0, 0.26]");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (sourceIp string, destinationIp string, limit int);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:superspreader(sourceIp, destinationIp, 100, 0.5, 0.99) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 4th parameter inside superspreader function " +
+                    "- 'relative.error' must be in the range of (0, 0.26] but found 0.5"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
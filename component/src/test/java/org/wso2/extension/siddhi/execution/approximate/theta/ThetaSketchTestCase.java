@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.theta;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThetaSketchTestCase {
+    private static final Logger LOG = Logger.getLogger(ThetaSketchTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateThetaSketch_1() throws InterruptedException {
+        LOG.info("Approximate Theta Sketch Test Case - the set operations are exact when the sketches hold " +
+                "less distinct values than the nominal entries");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream streamA (userId string); " +
+                "define stream streamB (userId string); " +
+                "define stream triggerStream (triggerId int);";
+        String query = ("@info(name = 'query1') " +
+                "from streamA#approximate:thetaSketch('A', userId) " +
+                "insert into logStreamA; " +
+                "@info(name = 'query2') " +
+                "from streamB#approximate:thetaSketch('B', userId) " +
+                "insert into logStreamB; " +
+                "@info(name = 'query3') " +
+                "from triggerStream " +
+                "select approximate:intersectionCount('A', 'B') as intersection, " +
+                "approximate:differenceCount('A', 'B') as difference, " +
+                "approximate:unionCount('A', 'B') as total " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Object[]> results = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandlerA = siddhiAppRuntime.getInputHandler("streamA");
+        InputHandler inputHandlerB = siddhiAppRuntime.getInputHandler("streamB");
+        InputHandler triggerHandler = siddhiAppRuntime.getInputHandler("triggerStream");
+        siddhiAppRuntime.start();
+
+//      A = {0, ..., 599} and B = {400, ..., 999}, each value is sent twice
+        for (int i = 0; i < 1200; i++) {
+            inputHandlerA.send(new Object[]{"user" + (i % 600)});
+            inputHandlerB.send(new Object[]{"user" + (400 + i % 600)});
+        }
+        triggerHandler.send(new Object[]{1});
+
+        SiddhiTestHelper.waitForEvents(200, 1, totalEventsArrived, 60000);
+        Assert.assertEquals(results.get(0)[0], 200L);
+        Assert.assertEquals(results.get(0)[1], 400L);
+        Assert.assertEquals(results.get(0)[2], 1000L);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateThetaSketch_2() throws InterruptedException {
+        final int nominalEntries = 256;
+
+        LOG.info("Approximate Theta Sketch Test Case - for sketches of " + nominalEntries + " nominal entries " +
+                "holding more distinct values than the nominal entries");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream streamA (userId string); " +
+                "define stream streamB (userId string); " +
+                "define stream triggerStream (triggerId int);";
+        String query = ("@info(name = 'query1') " +
+                "from streamA#approximate:thetaSketch('A', userId, " + nominalEntries + ") " +
+                "insert into logStreamA; " +
+                "@info(name = 'query2') " +
+                "from streamB#approximate:thetaSketch('B', userId, " + nominalEntries + ") " +
+                "insert into logStreamB; " +
+                "@info(name = 'query3') " +
+                "from triggerStream " +
+                "select approximate:intersectionCount('A', 'B') as intersection, " +
+                "approximate:differenceCount('A', 'B') as difference, " +
+                "approximate:unionCount('A', 'B') as total " +
+                "insert into outputStream;");
+
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        List<Object[]> results = new ArrayList<>();
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandlerA = siddhiAppRuntime.getInputHandler("streamA");
+        InputHandler inputHandlerB = siddhiAppRuntime.getInputHandler("streamB");
+        InputHandler triggerHandler = siddhiAppRuntime.getInputHandler("triggerStream");
+        siddhiAppRuntime.start();
+
+//      A = {0, ..., 5999} and B = {3000, ..., 8999}
+        for (int i = 0; i < 6000; i++) {
+            inputHandlerA.send(new Object[]{"user" + i});
+            inputHandlerB.send(new Object[]{"user" + (3000 + i)});
+        }
+        triggerHandler.send(new Object[]{1});
+
+        SiddhiTestHelper.waitForEvents(200, 1, totalEventsArrived, 60000);
+
+//      the error of each estimate is within 3 standard errors of the union distinctCount
+        double maxError = 3 * 9000 / Math.sqrt(nominalEntries);
+        Assert.assertTrue(Math.abs((long) results.get(0)[0] - 3000) <= maxError);
+        Assert.assertTrue(Math.abs((long) results.get(0)[1] - 3000) <= maxError);
+        Assert.assertTrue(Math.abs((long) results.get(0)[2] - 9000) <= maxError);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateThetaSketch_3() throws InterruptedException {
+        LOG.info("Approximate Theta Sketch Test Case - to validate the sketch names are unique within " +
+                "the Siddhi app");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream streamA (userId string); " +
+                "define stream streamB (userId string);";
+        String query = ("@info(name = 'query1') " +
+                "from streamA#approximate:thetaSketch('users', userId) " +
+                "insert into logStreamA; " +
+                "@info(name = 'query2') " +
+                "from streamB#approximate:thetaSketch('users', userId) " +
+                "insert into logStreamB;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("An approximate sketch named 'users' is " +
+                    "already defined in the Siddhi app"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateThetaSketch_4() throws InterruptedException {
+        LOG.info("Approximate Theta Sketch Test Case - to check the number of parameters " +
+                "passed to the intersectionCount function is 2");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream streamA (userId string); " +
+                "define stream triggerStream (triggerId int);";
+        String query = ("@info(name = 'query1') " +
+                "from streamA#approximate:thetaSketch('A', userId) " +
+                "insert into logStreamA; " +
+                "@info(name = 'query2') " +
+                "from triggerStream " +
+                "select approximate:intersectionCount('A') as intersection " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("2 attributes are expected but 1 " +
+                    "attributes are found inside the intersectionCount function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateThetaSketch_5() throws InterruptedException {
+        LOG.info("Approximate Theta Sketch Test Case - to validate the 3rd parameter inside thetaSketch " +
+                "function is not too small");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream streamA (userId string);";
+        String query = ("@info(name = 'query1') " +
+                "from streamA#approximate:thetaSketch('A', userId, 8) " +
+                "insert into logStreamA;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside thetaSketch " +
+                    "function - 'nominal.entries' must be in the range of [16, 67108864] but found 8"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
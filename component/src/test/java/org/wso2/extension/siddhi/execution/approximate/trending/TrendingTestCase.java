@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.trending;
+
+import io.siddhi.core.SiddhiAppRuntime;
+import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
+import io.siddhi.core.exception.SiddhiAppCreationException;
+import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.SiddhiTestHelper;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TrendingTestCase {
+    private static final Logger LOG = Logger.getLogger(TrendingTestCase.class);
+
+    private AtomicInteger totalEventsArrived;
+
+    @BeforeMethod
+    public void init() {
+        totalEventsArrived = new AtomicInteger(0);
+    }
+
+    @Test
+    public void testApproximateTrending_1() throws InterruptedException {
+        LOG.info("Approximate Trending Test Case - a term which suddenly becomes frequent is detected");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (term string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:trending(term, 1 sec, 100) " +
+                "select term, currentCount, previousCount, change, changeError " +
+                "insert into outputStream;");
+
+        List<Object[]> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+//      100 terms are searched 10 times each in both the seconds, and a new term is searched 100 times
+//      in the second second
+        for (int i = 0; i < 1000; i++) {
+            inputHandler.send(i, new Object[]{"term" + (i % 100)});
+        }
+        for (int i = 0; i < 1100; i++) {
+            inputHandler.send(1000 + (i * 9 / 10), new Object[]{i % 11 == 0 ? "trend" : "term" + (i % 100)});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 1, totalEventsArrived, 60000);
+        Assert.assertTrue(results.size() > 0);
+        for (Object[] result : results) {
+            Assert.assertEquals(result[0], "trend");
+        }
+        Object[] lastResult = results.get(results.size() - 1);
+        Assert.assertTrue(Math.abs((long) lastResult[3] - 100) <= (long) lastResult[4]);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateTrending_2() throws InterruptedException {
+        LOG.info("Approximate Trending Test Case - a declining term is detected, and the panes are cleared " +
+                "after a pane without events");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (term string);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:trending(term, 1000, 40) " +
+                "select term, currentCount, previousCount, change, changeError " +
+                "insert into outputStream;");
+
+        List<Object[]> results = new ArrayList<>();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            @Override
+            public void receive(Event[] events) {
+                for (Event event : events) {
+                    totalEventsArrived.incrementAndGet();
+                    results.add(event.getData());
+                }
+            }
+        });
+
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("inputStream");
+        siddhiAppRuntime.start();
+
+        for (int i = 0; i < 50; i++) {
+            inputHandler.send(i, new Object[]{"a"});
+            inputHandler.send(i, new Object[]{"b" + (i % 5)});
+        }
+        inputHandler.send(1500, new Object[]{"a"});
+        inputHandler.send(1500, new Object[]{"b1"});
+//      the pane starting at 2000 has no events, hence the previous pane of the pane at 3000 is empty
+        for (int i = 0; i < 30; i++) {
+            inputHandler.send(3000 + i, new Object[]{"a"});
+        }
+
+        SiddhiTestHelper.waitForEvents(200, 1, totalEventsArrived, 60000);
+        Assert.assertEquals(totalEventsArrived.get(), 1);
+        Object[] result = results.get(0);
+        Assert.assertEquals(result[0], "a");
+        Assert.assertTrue(Math.abs((long) result[3] + 49) <= (long) result[4]);
+        Assert.assertTrue((long) result[3] < 0);
+
+        siddhiAppRuntime.shutdown();
+    }
+
+    @Test
+    public void testApproximateTrending_3() throws InterruptedException {
+        LOG.info("Approximate Trending Test Case - to check the number of parameters passed to the " +
+                "trending function are 3 or 5");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (term string, paneLength long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:trending(term, 1 min) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("3 or 5 attributes are expected but 2 attributes " +
+                    "are found inside the trending function"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateTrending_4() throws InterruptedException {
+        LOG.info("Approximate Trending Test Case - to validate the 2nd parameter inside trending " +
+                "function is a constant");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (term string, paneLength long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:trending(term, paneLength, 100) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 2nd parameter inside trending function - " +
+                    "'interval' has to be a constant"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+
+    @Test
+    public void testApproximateTrending_5() throws InterruptedException {
+        LOG.info("Approximate Trending Test Case - to validate the 3rd parameter inside trending " +
+                "function is a positive value");
+        SiddhiManager siddhiManager = new SiddhiManager();
+
+        String inStreamDefinition = "define stream inputStream (term string, paneLength long);";
+        String query = ("@info(name = 'query1') " +
+                "from inputStream#approximate:trending(term, 1 min, 0) " +
+                "select * " +
+                "insert into outputStream;");
+
+        boolean exceptionOccurred = false;
+        try {
+            siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        } catch (Exception e) {
+            exceptionOccurred = true;
+            Assert.assertTrue(e instanceof SiddhiAppCreationException);
+            Assert.assertTrue(e.getCause().getMessage().contains("The 3rd parameter inside trending function - " +
+                    "'threshold' must be a positive value but found 0"));
+        }
+        Assert.assertEquals(true, exceptionOccurred);
+    }
+}
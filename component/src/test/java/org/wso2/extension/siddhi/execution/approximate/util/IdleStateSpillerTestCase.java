@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.extension.siddhi.execution.approximate.util;
+
+import io.siddhi.core.util.snapshot.state.State;
+import org.apache.log4j.Logger;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public class IdleStateSpillerTestCase {
+    private static final Logger LOG = Logger.getLogger(IdleStateSpillerTestCase.class);
+
+    @Test
+    public void testIdleStateSpiller_1() throws IOException {
+        LOG.info("Idle State Spiller Test Case - an idle state is spilled and reloaded with its values");
+        File spillDirectory = Files.createTempDirectory("state-spill").toFile();
+        IdleStateSpiller idleStateSpiller = new IdleStateSpiller(100, spillDirectory);
+        CounterState idleState = new CounterState();
+        CounterState activeState = new CounterState();
+
+        idleStateSpiller.use(idleState, 0);
+        idleState.counter = 5L;
+        idleStateSpiller.release(idleState);
+        idleStateSpiller.use(activeState, 200);
+        idleStateSpiller.release(activeState);
+
+        Assert.assertNull(idleState.counter);
+        Assert.assertEquals(spillDirectory.listFiles().length, 1);
+
+        idleStateSpiller.use(idleState, 250);
+        idleStateSpiller.release(idleState);
+
+        Assert.assertEquals(idleState.counter.longValue(), 5L);
+        Assert.assertEquals(spillDirectory.listFiles().length, 0);
+        Assert.assertTrue(spillDirectory.delete());
+    }
+
+    @Test
+    public void testIdleStateSpiller_2() throws IOException {
+        LOG.info("Idle State Spiller Test Case - an idle state is not spilled while it is acquired by another " +
+                "thread, and is spilled once it is released");
+        File spillDirectory = Files.createTempDirectory("state-spill").toFile();
+        IdleStateSpiller idleStateSpiller = new IdleStateSpiller(100, spillDirectory);
+        CounterState processedState = new CounterState();
+        CounterState activeState = new CounterState();
+
+//      the processed state is acquired, and is not released until it is processed
+        idleStateSpiller.use(processedState, 0);
+        processedState.counter = 5L;
+        idleStateSpiller.use(activeState, 200);
+        idleStateSpiller.release(activeState);
+
+        Assert.assertEquals(processedState.counter.longValue(), 5L);
+        Assert.assertEquals(spillDirectory.listFiles().length, 0);
+
+        idleStateSpiller.release(processedState);
+        idleStateSpiller.use(activeState, 400);
+        idleStateSpiller.release(activeState);
+
+        Assert.assertNull(processedState.counter);
+        Assert.assertEquals(spillDirectory.listFiles().length, 1);
+
+        idleStateSpiller.clear();
+        Assert.assertTrue(spillDirectory.delete());
+    }
+
+    private static class CounterState extends State {
+        private Long counter = 0L;
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("counter", counter);
+            return map;
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            counter = (Long) state.get("counter");
+        }
+    }
+}